@@ -0,0 +1,156 @@
+package com.aws.lambda.user;
+
+import com.amazonaws.serverless.proxy.internal.testutils.AwsProxyRequestBuilder;
+import com.amazonaws.serverless.proxy.internal.testutils.MockLambdaContext;
+import com.amazonaws.serverless.proxy.model.AwsProxyRequest;
+import com.amazonaws.serverless.proxy.model.AwsProxyResponse;
+import com.amazonaws.serverless.proxy.spring.SpringBootLambdaContainerHandler;
+import com.amazonaws.services.dynamodbv2.AbstractAmazonDynamoDB;
+import com.amazonaws.services.dynamodbv2.datamodeling.DynamoDBMapper;
+import com.amazonaws.services.dynamodbv2.model.AttributeValue;
+import com.amazonaws.services.dynamodbv2.model.GetItemRequest;
+import com.amazonaws.services.dynamodbv2.model.GetItemResult;
+import com.amazonaws.services.dynamodbv2.model.PutItemRequest;
+import com.amazonaws.services.dynamodbv2.model.PutItemResult;
+import com.amazonaws.services.dynamodbv2.model.QueryRequest;
+import com.amazonaws.services.dynamodbv2.model.QueryResult;
+import com.amazonaws.services.dynamodbv2.model.ScanRequest;
+import com.amazonaws.services.dynamodbv2.model.ScanResult;
+import com.amazonaws.services.lambda.runtime.Context;
+import com.aws.lambda.user.controllers.FastPathRouter;
+import com.aws.lambda.user.entities.User;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Import;
+import org.springframework.context.annotation.Primary;
+import org.springframework.context.annotation.Profile;
+import org.springframework.web.context.support.WebApplicationContextUtils;
+
+import java.time.LocalDateTime;
+import java.util.Collections;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares serving a request through {@code SpringBootLambdaContainerHandler.proxy}, which builds
+ * a servlet request and runs the filter chain and MVC dispatch, with the {@link FastPathRouter}.
+ * DynamoDB is replaced by a stub that answers every read with the same user, and rate limiting and
+ * authentication are disabled so that only the dispatch overhead is measured.
+ *
+ * Run with {@code ./gradlew jmh -PjmhInclude=LambdaFastPathBenchmark}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class LambdaFastPathBenchmark {
+
+    static final String BENCHMARK_PROFILE = "benchmark";
+
+    @Param({"/user/uuid-1", "/user/health"})
+    private String path;
+
+    private SpringBootLambdaContainerHandler<AwsProxyRequest, AwsProxyResponse> handler;
+
+    private FastPathRouter fastPathRouter;
+
+    private AwsProxyRequest request;
+
+    private Context lambdaContext;
+
+    @Setup
+    public void setUp() throws Exception {
+        System.setProperty("spring.main.allow-bean-definition-overriding", "true");
+        System.setProperty("auth.enabled", "false");
+        System.setProperty("auth.password.calibrate", "false");
+        System.setProperty("ratelimit.enabled", "false");
+        System.setProperty("logging.level.com.amazonaws", "ERROR");
+
+        handler = SpringBootLambdaContainerHandler.getAwsProxyHandler(BenchmarkApplication.class, BENCHMARK_PROFILE);
+        fastPathRouter = WebApplicationContextUtils.getRequiredWebApplicationContext(handler.getServletContext())
+                .getBean(FastPathRouter.class);
+        request = new AwsProxyRequestBuilder(path, "GET").build();
+        lambdaContext = new MockLambdaContext();
+
+        int proxied = handler.proxy(request, lambdaContext).getStatusCode();
+        int routed = fastPathRouter.route(request).getStatusCode();
+        if (proxied != 200 || routed != 200) {
+            throw new IllegalStateException("Unexpected status " + proxied + "/" + routed + " for " + path);
+        }
+    }
+
+    @Benchmark
+    public int springProxy() {
+        return handler.proxy(request, lambdaContext).getBody().length();
+    }
+
+    @Benchmark
+    public int fastPath() {
+        return fastPathRouter.route(request).getBody().length();
+    }
+
+    /**
+     * The application with DynamoDB replaced by a stub. Limited to the benchmark profile so that
+     * component scanning elsewhere never picks it up.
+     */
+    @Configuration
+    @Profile(BENCHMARK_PROFILE)
+    @Import(UserManagementApplication.class)
+    static class BenchmarkApplication {
+
+        @Bean
+        @Primary
+        public StubDynamoDB amazonDynamoDB() {
+            return new StubDynamoDB();
+        }
+
+    }
+
+    /**
+     * DynamoDB stub that returns the same user for every key, finds nothing by query or scan and
+     * accepts writes without keeping them.
+     */
+    static class StubDynamoDB extends AbstractAmazonDynamoDB {
+
+        private final Map<String, AttributeValue> item = new DynamoDBMapper(this).getTableModel(User.class)
+                .convert(User.builder()
+                        .uuid("uuid-1")
+                        .name("User 1")
+                        .email("user1@example.com")
+                        .age(30)
+                        .department("Engineering")
+                        .createdAt(LocalDateTime.now())
+                        .updatedAt(LocalDateTime.now())
+                        .isActive(true)
+                        .build());
+
+        @Override
+        public GetItemResult getItem(GetItemRequest request) {
+            return new GetItemResult().withItem(item);
+        }
+
+        @Override
+        public QueryResult query(QueryRequest request) {
+            return new QueryResult().withItems(Collections.emptyList()).withCount(0);
+        }
+
+        @Override
+        public ScanResult scan(ScanRequest request) {
+            return new ScanResult().withItems(Collections.emptyList()).withCount(0);
+        }
+
+        @Override
+        public PutItemResult putItem(PutItemRequest request) {
+            return new PutItemResult();
+        }
+
+    }
+
+}
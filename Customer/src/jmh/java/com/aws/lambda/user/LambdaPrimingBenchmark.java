@@ -0,0 +1,98 @@
+package com.aws.lambda.user;
+
+import com.amazonaws.serverless.proxy.internal.testutils.AwsProxyRequestBuilder;
+import com.amazonaws.serverless.proxy.internal.testutils.MockLambdaContext;
+import com.amazonaws.serverless.proxy.model.AwsProxyRequest;
+import com.amazonaws.serverless.proxy.model.AwsProxyResponse;
+import com.amazonaws.serverless.proxy.spring.SpringBootLambdaContainerHandler;
+import com.amazonaws.services.lambda.runtime.Context;
+import com.aws.lambda.user.controllers.FastPathRouter;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.web.context.WebApplicationContext;
+import org.springframework.web.context.support.WebApplicationContextUtils;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the latency of the first request a new container serves, with and without the
+ * {@link LambdaPrimer} running after startup. Every fork is a fresh JVM that starts the
+ * application against the stub DynamoDB of {@link LambdaFastPathBenchmark} and times a single
+ * request, dispatched the same way as {@link StreamLambdaHandler}.
+ *
+ * Run with {@code ./gradlew jmh -PjmhInclude=LambdaPrimingBenchmark}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Fork(10)
+@Warmup(iterations = 0)
+@Measurement(iterations = 1)
+public class LambdaPrimingBenchmark {
+
+    @Param({"false", "true"})
+    private boolean primed;
+
+    @Param({"GET /user/uuid-1", "POST /user"})
+    private String route;
+
+    private SpringBootLambdaContainerHandler<AwsProxyRequest, AwsProxyResponse> handler;
+
+    private FastPathRouter fastPathRouter;
+
+    private AwsProxyRequest request;
+
+    private Context lambdaContext;
+
+    @Setup
+    public void setUp() throws Exception {
+        System.setProperty("spring.main.allow-bean-definition-overriding", "true");
+        System.setProperty("auth.enabled", "false");
+        System.setProperty("auth.password.calibrate", "false");
+        System.setProperty("ratelimit.enabled", "false");
+        System.setProperty("logging.level.com.amazonaws", "ERROR");
+        System.setProperty("lambda.priming.enabled", Boolean.toString(primed));
+
+        handler = SpringBootLambdaContainerHandler.getAwsProxyHandler(LambdaFastPathBenchmark.BenchmarkApplication.class,
+                LambdaFastPathBenchmark.BENCHMARK_PROFILE);
+        WebApplicationContext applicationContext =
+                WebApplicationContextUtils.getRequiredWebApplicationContext(handler.getServletContext());
+        fastPathRouter = applicationContext.getBean(FastPathRouter.class);
+        applicationContext.getBean(LambdaPrimer.class).prime(primingRequest -> dispatch(primingRequest, null));
+
+        String[] methodAndPath = route.split(" ");
+        AwsProxyRequestBuilder builder = new AwsProxyRequestBuilder(methodAndPath[1], methodAndPath[0]);
+        if ("POST".equals(methodAndPath[0])) {
+            builder.header(HttpHeaders.CONTENT_TYPE, MediaType.APPLICATION_JSON_VALUE)
+                    .body("{\"name\":\"User 2\",\"email\":\"user2@example.com\",\"age\":30,\"department\":\"Engineering\"}");
+        }
+        request = builder.build();
+        lambdaContext = new MockLambdaContext();
+    }
+
+    @Benchmark
+    public int firstRequest() {
+        AwsProxyResponse response = dispatch(request, lambdaContext);
+        if (response.getStatusCode() >= 300) {
+            throw new IllegalStateException("Unexpected status " + response.getStatusCode() + " for " + route);
+        }
+        return response.getBody().length();
+    }
+
+    private AwsProxyResponse dispatch(AwsProxyRequest awsProxyRequest, Context context) {
+        AwsProxyResponse response = fastPathRouter.route(awsProxyRequest);
+        return response != null ? response : handler.proxy(awsProxyRequest, context);
+    }
+
+}
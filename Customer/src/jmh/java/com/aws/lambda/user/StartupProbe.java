@@ -0,0 +1,74 @@
+package com.aws.lambda.user;
+
+import com.amazonaws.serverless.proxy.internal.testutils.AwsProxyRequestBuilder;
+import com.amazonaws.serverless.proxy.internal.testutils.MockLambdaContext;
+import com.amazonaws.serverless.proxy.model.AwsProxyRequest;
+import com.amazonaws.serverless.proxy.model.AwsProxyResponse;
+import com.amazonaws.serverless.proxy.spring.SpringBootLambdaContainerHandler;
+import com.amazonaws.services.lambda.runtime.Context;
+import com.aws.lambda.user.controllers.FastPathRouter;
+import org.springframework.web.context.WebApplicationContext;
+import org.springframework.web.context.support.WebApplicationContextUtils;
+
+import java.lang.management.ManagementFactory;
+
+/**
+ * Training run and measurement for the class-data sharing archive built by {@code ./gradlew cdsArchive}.
+ * {@code train} starts the application through {@link StreamLambdaHandler}, whose {@link LambdaPrimer}
+ * runs the main request paths, so the JVM records the classes a cold start loads. {@code measure}
+ * starts the application against the stub DynamoDB of {@link LambdaFastPathBenchmark}, primes it the
+ * same way, and prints the time from JVM start until it is ready and the latency of its first request.
+ *
+ * Run with {@code ./gradlew cdsBenchmark}, which starts a JVM per run with and without the archive.
+ */
+public final class StartupProbe {
+
+    static final String RESULT_PREFIX = "startup ";
+
+    private StartupProbe() {
+    }
+
+    public static void main(String[] args) throws Exception {
+        System.setProperty("logging.level.root", "WARN");
+        System.setProperty("dynamodb.client.prewarm-connections", "0");
+        AwsProxyRequest health = new AwsProxyRequestBuilder("/user/health", "GET").build();
+        if (args.length > 0 && "train".equals(args[0])) {
+            // Loading the handler starts and primes the application as a cold start does
+            new StreamLambdaHandler().handleRequest(health, new MockLambdaContext());
+        } else {
+            measure();
+        }
+        System.exit(0);
+    }
+
+    private static void measure() throws Exception {
+        System.setProperty("spring.main.allow-bean-definition-overriding", "true");
+        System.setProperty("auth.enabled", "false");
+        System.setProperty("auth.password.calibrate", "false");
+        System.setProperty("ratelimit.enabled", "false");
+
+        SpringBootLambdaContainerHandler<AwsProxyRequest, AwsProxyResponse> handler = SpringBootLambdaContainerHandler
+                .getAwsProxyHandler(LambdaFastPathBenchmark.BenchmarkApplication.class, LambdaFastPathBenchmark.BENCHMARK_PROFILE);
+        WebApplicationContext applicationContext =
+                WebApplicationContextUtils.getRequiredWebApplicationContext(handler.getServletContext());
+        FastPathRouter fastPathRouter = applicationContext.getBean(FastPathRouter.class);
+        applicationContext.getBean(LambdaPrimer.class).prime(request -> dispatch(handler, fastPathRouter, request, null));
+        long readyMillis = System.currentTimeMillis() - ManagementFactory.getRuntimeMXBean().getStartTime();
+
+        long start = System.nanoTime();
+        AwsProxyResponse response = dispatch(handler, fastPathRouter,
+                new AwsProxyRequestBuilder("/user/uuid-1", "GET").build(), new MockLambdaContext());
+        long firstRequestNanos = System.nanoTime() - start;
+        if (response.getStatusCode() >= 300) {
+            throw new IllegalStateException("Unexpected status " + response.getStatusCode());
+        }
+        System.out.println(String.format("%sreadyMs=%d firstRequestMs=%.1f", RESULT_PREFIX, readyMillis, firstRequestNanos / 1_000_000.0));
+    }
+
+    private static AwsProxyResponse dispatch(SpringBootLambdaContainerHandler<AwsProxyRequest, AwsProxyResponse> handler,
+                                             FastPathRouter fastPathRouter, AwsProxyRequest request, Context context) {
+        AwsProxyResponse response = fastPathRouter.route(request);
+        return response != null ? response : handler.proxy(request, context);
+    }
+
+}
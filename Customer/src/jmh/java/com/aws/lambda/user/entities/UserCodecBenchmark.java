@@ -0,0 +1,95 @@
+package com.aws.lambda.user.entities;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+import java.time.LocalDateTime;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares reflective Jackson serialization of {@link User} with the {@link UserCodec}.
+ * Both mappers write ISO timestamps so that the output is identical.
+ *
+ * Run with {@code ./gradlew jmh -PjmhInclude=UserCodecBenchmark}; add {@code -prof gc} through the
+ * JMH command line to compare allocation per operation.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class UserCodecBenchmark {
+
+    private User user;
+
+    private String json;
+
+    private ObjectWriter reflectiveWriter;
+
+    private ObjectReader reflectiveReader;
+
+    private ObjectWriter codecWriter;
+
+    private ObjectReader codecReader;
+
+    @Setup
+    public void setUp() throws Exception {
+        ObjectMapper reflective = Jackson2ObjectMapperBuilder.json()
+                .featuresToDisable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS)
+                .build();
+        ObjectMapper codec = Jackson2ObjectMapperBuilder.json()
+                .featuresToDisable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS)
+                .modulesToInstall(UserCodec.module())
+                .build();
+        reflectiveWriter = reflective.writerFor(User.class);
+        reflectiveReader = reflective.readerFor(User.class);
+        codecWriter = codec.writerFor(User.class);
+        codecReader = codec.readerFor(User.class);
+
+        user = User.builder()
+                .uuid("0f8fad5b-d9cb-469f-a165-70867728950e")
+                .name("John Doe")
+                .email("john.doe@example.com")
+                .age(30)
+                .department("Engineering")
+                .role("Software Engineer")
+                .phoneNumber("+1234567890")
+                .createdAt(LocalDateTime.of(2024, 1, 15, 10, 30, 5, 123000000))
+                .updatedAt(LocalDateTime.of(2024, 1, 16, 8, 0, 0, 456000000))
+                .isActive(true)
+                .build();
+        json = codecWriter.writeValueAsString(user);
+        if (!json.equals(reflectiveWriter.writeValueAsString(user))) {
+            throw new IllegalStateException("Codec output differs from reflective output: " + json);
+        }
+    }
+
+    @Benchmark
+    public String reflectiveWrite() throws Exception {
+        return reflectiveWriter.writeValueAsString(user);
+    }
+
+    @Benchmark
+    public String codecWrite() throws Exception {
+        return codecWriter.writeValueAsString(user);
+    }
+
+    @Benchmark
+    public User reflectiveRead() throws Exception {
+        return reflectiveReader.readValue(json);
+    }
+
+    @Benchmark
+    public User codecRead() throws Exception {
+        return codecReader.readValue(json);
+    }
+
+}
@@ -0,0 +1,175 @@
+package com.aws.lambda.user.repositories;
+
+import com.amazonaws.handlers.AsyncHandler;
+import com.amazonaws.services.dynamodbv2.AbstractAmazonDynamoDBAsync;
+import com.amazonaws.services.dynamodbv2.AmazonDynamoDB;
+import com.amazonaws.services.dynamodbv2.datamodeling.DynamoDBMapper;
+import com.amazonaws.services.dynamodbv2.model.AttributeValue;
+import com.amazonaws.services.dynamodbv2.model.ScanRequest;
+import com.amazonaws.services.dynamodbv2.model.ScanResult;
+import com.aws.lambda.user.entities.User;
+import com.aws.lambda.user.entities.UserIndexKeys;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.springframework.context.annotation.AnnotationConfigApplicationContext;
+import org.springframework.context.annotation.Bean;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares scanning several departments one after another through {@link UserRepository}
+ * with fanning the scans out through {@link AsyncUserRepository}.
+ * DynamoDB is replaced by a stub that answers each scan after a fixed latency, and runs async
+ * calls on a fixed pool the way the SDK's async client does.
+ *
+ * Run with {@code ./gradlew jmh -PjmhInclude=DepartmentFanOutBenchmark}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class DepartmentFanOutBenchmark {
+
+    private static final long LATENCY_MS = 10;
+    private static final int USERS_PER_DEPARTMENT = 20;
+
+    @Param({"1", "4", "8"})
+    private int departmentCount;
+
+    private AnnotationConfigApplicationContext context;
+
+    private UserRepository userRepository;
+
+    private AsyncUserRepository asyncUserRepository;
+
+    private List<String> departments;
+
+    @Setup
+    public void setUp() {
+        context = new AnnotationConfigApplicationContext(StubDynamoDBConfig.class, DynamoDBPriming.class,
+                HedgedReadPolicy.class, UserLookupIndex.class, UserQueryPlanner.class, UserReassigner.class,
+                ReadCapacityGovernor.class, UserArchive.class, UserRepositoryImpl.class, AsyncUserRepositoryImpl.class);
+        userRepository = context.getBean(UserRepository.class);
+        asyncUserRepository = context.getBean(AsyncUserRepository.class);
+
+        departments = new ArrayList<>();
+        for (int i = 0; i < departmentCount; i++) {
+            departments.add("Department-" + i);
+        }
+    }
+
+    @TearDown
+    public void tearDown() {
+        context.close();
+    }
+
+    @Benchmark
+    public int sequentialScans() {
+        int users = 0;
+        for (String department : departments) {
+            users += userRepository.findByDepartment(department).size();
+        }
+        return users;
+    }
+
+    @Benchmark
+    public int concurrentScans() {
+        int users = 0;
+        for (List<User> departmentUsers : asyncUserRepository.findByDepartments(departments).join().values()) {
+            users += departmentUsers.size();
+        }
+        return users;
+    }
+
+    /**
+     * Bean definitions for the stub client, deliberately not a {@code @Configuration}
+     * so component scanning never picks it up.
+     */
+    static class StubDynamoDBConfig {
+
+        @Bean(destroyMethod = "shutdown")
+        public LatencyDynamoDB amazonDynamoDB() {
+            return new LatencyDynamoDB();
+        }
+
+        @Bean
+        public DynamoDBMapper dynamoDBMapper(AmazonDynamoDB amazonDynamoDB) {
+            return new DynamoDBMapper(amazonDynamoDB);
+        }
+
+        @Bean
+        public UserIndexKeys userIndexKeys() {
+            return new UserIndexKeys(null, 1);
+        }
+
+    }
+
+    /**
+     * DynamoDB stub whose scans return a single page after {@link #LATENCY_MS}.
+     */
+    static class LatencyDynamoDB extends AbstractAmazonDynamoDBAsync {
+
+        private final ExecutorService executor = Executors.newFixedThreadPool(16, runnable -> {
+            Thread thread = new Thread(runnable, "stub-dynamodb-async");
+            thread.setDaemon(true);
+            return thread;
+        });
+
+        private final List<Map<String, AttributeValue>> items = new ArrayList<>();
+
+        LatencyDynamoDB() {
+            DynamoDBMapper mapper = new DynamoDBMapper(this);
+            for (int i = 0; i < USERS_PER_DEPARTMENT; i++) {
+                items.add(mapper.getTableModel(User.class).convert(User.builder()
+                        .uuid("uuid-" + i)
+                        .name("User " + i)
+                        .email("user" + i + "@example.com")
+                        .age(30)
+                        .department("Engineering")
+                        .createdAt(LocalDateTime.now())
+                        .updatedAt(LocalDateTime.now())
+                        .isActive(true)
+                        .build()));
+            }
+        }
+
+        @Override
+        public ScanResult scan(ScanRequest request) {
+            try {
+                Thread.sleep(LATENCY_MS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return new ScanResult().withItems(items).withCount(items.size());
+        }
+
+        @Override
+        public Future<ScanResult> scanAsync(ScanRequest request, AsyncHandler<ScanRequest, ScanResult> handler) {
+            return executor.submit(() -> {
+                ScanResult result = scan(request);
+                handler.onSuccess(request, result);
+                return result;
+            });
+        }
+
+        @Override
+        public void shutdown() {
+            executor.shutdownNow();
+        }
+
+    }
+
+}
@@ -0,0 +1,117 @@
+package com.aws.lambda.user.repositories;
+
+import com.aws.lambda.user.entities.User;
+import com.aws.lambda.user.models.UserQuery;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+
+import java.time.LocalDateTime;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures point reads, indexed queries and updates against the {@link InMemoryUserRepository}
+ * from several threads, and reports the heap held per stored user after loading.
+ *
+ * Run with {@code ./gradlew jmh -PjmhInclude=InMemoryUserRepositoryBenchmark}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Threads(4)
+public class InMemoryUserRepositoryBenchmark {
+
+    private static final String[] DEPARTMENTS = {"Engineering", "Sales", "Marketing", "Support", "Finance"};
+    private static final String[] ROLES = {"Engineer", "Manager", "Analyst", "Director"};
+
+    @Param({"100000", "1000000"})
+    private int userCount;
+
+    private InMemoryUserRepository userRepository;
+
+    private String[] uuids;
+
+    private String[] emails;
+
+    @Setup
+    public void setUp() {
+        Runtime runtime = Runtime.getRuntime();
+        System.gc();
+        long before = runtime.totalMemory() - runtime.freeMemory();
+
+        userRepository = new InMemoryUserRepository();
+        LocalDateTime now = LocalDateTime.now();
+        for (int i = 0; i < userCount; i++) {
+            userRepository.save(user(i, now));
+        }
+
+        System.gc();
+        long after = runtime.totalMemory() - runtime.freeMemory();
+        System.out.println("Heap per user: " + (after - before) / userCount + " bytes");
+
+        // Keys are built up front so that only the lookups are measured
+        uuids = new String[userCount];
+        emails = new String[userCount];
+        for (int i = 0; i < userCount; i++) {
+            uuids[i] = uuid(i);
+            emails[i] = "user" + i + "@example.com";
+        }
+    }
+
+    @Benchmark
+    public User findById() {
+        return userRepository.findById(uuids[ThreadLocalRandom.current().nextInt(userCount)]);
+    }
+
+    @Benchmark
+    public User findByEmail() {
+        return userRepository.findByEmail(emails[ThreadLocalRandom.current().nextInt(userCount)]);
+    }
+
+    @Benchmark
+    public int queryDepartmentAndRole() {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        return userRepository.query(UserQuery.builder()
+                .department(DEPARTMENTS[random.nextInt(DEPARTMENTS.length)])
+                .role(ROLES[random.nextInt(ROLES.length)])
+                .minAge(30)
+                .limit(25)
+                .build()).getUsers().size();
+    }
+
+    @Benchmark
+    public User saveMovingDepartment() {
+        int i = ThreadLocalRandom.current().nextInt(userCount);
+        User user = user(i, LocalDateTime.now());
+        user.setDepartment(DEPARTMENTS[ThreadLocalRandom.current().nextInt(DEPARTMENTS.length)]);
+        return userRepository.save(user);
+    }
+
+    private static User user(int i, LocalDateTime now) {
+        return User.builder()
+                .uuid(uuid(i))
+                .name("User " + i)
+                .email("user" + i + "@example.com")
+                .age(20 + i % 40)
+                .department(new String(DEPARTMENTS[i % DEPARTMENTS.length]))
+                .role(new String(ROLES[i % ROLES.length]))
+                .phoneNumber("+1555" + i)
+                .createdAt(now)
+                .updatedAt(now)
+                .isActive(i % 10 != 0)
+                .passwordHash("hash")
+                .build();
+    }
+
+    private static String uuid(int i) {
+        return String.format("%08x-0000-4000-8000-000000000000", i);
+    }
+
+}
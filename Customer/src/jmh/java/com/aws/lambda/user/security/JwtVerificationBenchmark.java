@@ -0,0 +1,61 @@
+package com.aws.lambda.user.security;
+
+import com.aws.lambda.user.entities.User;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.springframework.context.annotation.AnnotationConfigApplicationContext;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the per-request cost of access token verification.
+ * {@code verifyCached} is the steady-state cost of a repeat token, {@code verifyUncached}
+ * the cost of decoding and checking the HMAC signature of a token seen for the first time.
+ *
+ * Run with {@code ./gradlew jmh -PjmhInclude=JwtVerificationBenchmark}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class JwtVerificationBenchmark {
+
+    private AnnotationConfigApplicationContext context;
+
+    private JwtTokenService jwtTokenService;
+
+    private String token;
+
+    @Setup
+    public void setUp() {
+        context = new AnnotationConfigApplicationContext(SigningKeyCache.class, JwtTokenService.class);
+        jwtTokenService = context.getBean(JwtTokenService.class);
+        token = jwtTokenService.issue(User.builder()
+                .uuid("3f1c2a9e-8d7b-4c55-9a60-1b2e3d4f5a6b")
+                .email("john.doe@example.com")
+                .role("Software Engineer")
+                .build(), "7d0b6c1e-2f4a-4e8b-9c3d-5a6f7e8d9c0b");
+        jwtTokenService.verify(token);
+    }
+
+    @TearDown
+    public void tearDown() {
+        context.close();
+    }
+
+    @Benchmark
+    public JwtClaims verifyCached() {
+        return jwtTokenService.verify(token);
+    }
+
+    @Benchmark
+    public JwtClaims verifyUncached() {
+        return jwtTokenService.verifyUncached(token);
+    }
+
+}
@@ -0,0 +1,66 @@
+package com.aws.lambda.user.security;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.springframework.context.annotation.AnnotationConfigApplicationContext;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures password hashing throughput and latency through the bounded worker pool.
+ * The contended variants run more callers than pool threads, showing how queueing adds
+ * latency while throughput stays capped at the pool size. Background calibration is disabled
+ * so it does not compete with the measured threads; the configured default cost is used.
+ *
+ * Run with {@code ./gradlew jmh -PjmhInclude=PasswordHashingBenchmark}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class PasswordHashingBenchmark {
+
+    private AnnotationConfigApplicationContext context;
+
+    private PasswordHashingService passwordHashingService;
+
+    private String storedHash;
+
+    @Setup
+    public void setUp() {
+        System.setProperty("auth.password.calibrate", "false");
+        context = new AnnotationConfigApplicationContext(PasswordHashingService.class);
+        passwordHashingService = context.getBean(PasswordHashingService.class);
+        storedHash = passwordHashingService.hash("correct-horse-battery");
+    }
+
+    @TearDown
+    public void tearDown() {
+        context.close();
+    }
+
+    @Benchmark
+    @Threads(1)
+    public String hash() {
+        return passwordHashingService.hash("correct-horse-battery");
+    }
+
+    @Benchmark
+    @Threads(1)
+    public PasswordHashingService.VerificationResult verify() {
+        return passwordHashingService.verify("correct-horse-battery", storedHash);
+    }
+
+    @Benchmark
+    @Threads(8)
+    public PasswordHashingService.VerificationResult verifyContended() {
+        return passwordHashingService.verify("correct-horse-battery", storedHash);
+    }
+
+}
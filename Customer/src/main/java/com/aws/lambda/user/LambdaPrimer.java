@@ -0,0 +1,206 @@
+package com.aws.lambda.user;
+
+import com.amazonaws.serverless.proxy.model.ApiGatewayRequestIdentity;
+import com.amazonaws.serverless.proxy.model.AwsProxyRequest;
+import com.amazonaws.serverless.proxy.model.AwsProxyRequestContext;
+import com.amazonaws.serverless.proxy.model.AwsProxyResponse;
+import com.amazonaws.serverless.proxy.model.Headers;
+import com.amazonaws.services.dynamodbv2.datamodeling.DynamoDBMapper;
+import com.aws.lambda.user.entities.Session;
+import com.aws.lambda.user.entities.User;
+import com.aws.lambda.user.repositories.DynamoDBPriming;
+import com.aws.lambda.user.security.JwtTokenService;
+import com.aws.lambda.user.services.SessionService;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.time.LocalDateTime;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+/**
+ * Warms a new Lambda container during its init phase, before the first real request arrives.
+ * Synthetic API Gateway requests for the main routes are pushed through the same dispatch as
+ * {@link StreamLambdaHandler}, with DynamoDB replaced by a no-op table (see {@link DynamoDBPriming}),
+ * so that Jackson, bean validation, the DynamoDB mapper's reflection caches, the servlet filters
+ * and the MVC handler mappings are loaded and exercised at startup instead of on a customer's request.
+ */
+@Slf4j
+@Component
+public class LambdaPrimer {
+
+    private static final String SOURCE_IP = "127.0.0.1";
+
+    @Autowired
+    private DynamoDBPriming dynamoDBPriming;
+
+    @Autowired
+    private DynamoDBMapper dynamoDBMapper;
+
+    @Autowired
+    private SessionService sessionService;
+
+    @Autowired
+    private JwtTokenService jwtTokenService;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Value("${lambda.priming.enabled:true}")
+    private boolean enabled;
+
+    /**
+     * Number of passes over the primed routes.
+     */
+    @Value("${lambda.priming.iterations:3}")
+    private int iterations;
+
+    @Value("${auth.enabled:true}")
+    private boolean authEnabled;
+
+    @Value("${user.context.path}")
+    private String contextPath;
+
+    /**
+     * Push synthetic requests for the main routes through a dispatcher. Failures are logged and
+     * never stop the container from starting.
+     *
+     * @param dispatcher Dispatch used for real requests
+     */
+    public void prime(Function<AwsProxyRequest, AwsProxyResponse> dispatcher) {
+        if (!enabled) {
+            return;
+        }
+        long start = System.nanoTime();
+        Run run = new Run(dispatcher);
+        try {
+            dynamoDBPriming.run(() -> {
+                // Marshal a user through the mapper once directly, before the routes do it
+                User user = syntheticUser("priming-" + UUID.randomUUID());
+                dynamoDBMapper.save(user);
+                dynamoDBMapper.load(User.class, user.getUuid());
+
+                Session session = authEnabled ? sessionService.createSession(user, jwtTokenService.getTtlSeconds()) : null;
+                String authorization = session == null ? null : "Bearer " + jwtTokenService.issue(user, session.getSessionId());
+                for (int i = 0; i < iterations; i++) {
+                    primeRoutes(run, authorization);
+                }
+                if (session != null) {
+                    sessionService.revoke(session.getSessionId());
+                }
+            });
+        } catch (RuntimeException e) {
+            log.warn("Lambda priming stopped early", e);
+        }
+        log.info("Lambda priming sent {} requests ({} unexpected responses) in {} ms", run.sent, run.unexpected,
+                TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+    }
+
+    private void primeRoutes(Run run, String authorization) {
+        String email = "priming-" + UUID.randomUUID() + "@example.com";
+        run.send(request("GET", contextPath + "/health", null, null), 200);
+        AwsProxyResponse created = run.send(request("POST", contextPath, "{\"name\":\"Priming\",\"email\":\"" + email
+                + "\",\"age\":30,\"department\":\"Priming\",\"role\":\"Priming\"}", null), 201);
+        String uuid = uuid(created);
+        if (uuid == null) {
+            return;
+        }
+        run.send(request("GET", contextPath + "/" + uuid, null, authorization), 200);
+        run.send(request("GET", contextPath + "/" + uuid + "-missing", null, authorization), 404);
+        run.send(request("PUT", contextPath, "{\"uuid\":\"" + uuid + "\",\"name\":\"Priming\",\"email\":\"" + email
+                + "\",\"age\":31,\"department\":\"Priming\",\"role\":\"Priming\"}", authorization), 200);
+        run.send(request("GET", contextPath + "/department/Priming", null, authorization), 200);
+
+        run.send(request("DELETE", contextPath + "/" + uuid, null, authorization), 200);
+    }
+
+    private String uuid(AwsProxyResponse response) {
+        if (response == null) {
+            return null;
+        }
+        try {
+            return objectMapper.readTree(response.getBody()).path("uuid").asText(null);
+        } catch (IOException e) {
+            return null;
+        }
+    }
+
+    private static User syntheticUser(String uuid) {
+        return User.builder()
+                .uuid(uuid)
+                .name("Priming")
+                .email(uuid + "@example.com")
+                .age(30)
+                .department("Priming")
+                .role("Priming")
+                .createdAt(LocalDateTime.now())
+                .updatedAt(LocalDateTime.now())
+                .isActive(true)
+                .build();
+    }
+
+    private static AwsProxyRequest request(String method, String path, String body, String authorization) {
+        Headers headers = new Headers();
+        headers.putSingle(HttpHeaders.ACCEPT, MediaType.APPLICATION_JSON_VALUE);
+        if (body != null) {
+            headers.putSingle(HttpHeaders.CONTENT_TYPE, MediaType.APPLICATION_JSON_VALUE);
+        }
+        if (authorization != null) {
+            headers.putSingle(HttpHeaders.AUTHORIZATION, authorization);
+        }
+
+        ApiGatewayRequestIdentity identity = new ApiGatewayRequestIdentity();
+        identity.setSourceIp(SOURCE_IP);
+        AwsProxyRequestContext requestContext = new AwsProxyRequestContext();
+        requestContext.setIdentity(identity);
+        requestContext.setHttpMethod(method);
+        requestContext.setPath(path);
+
+        AwsProxyRequest request = new AwsProxyRequest();
+        request.setHttpMethod(method);
+        request.setPath(path);
+        request.setBody(body);
+        request.setMultiValueHeaders(headers);
+        request.setRequestContext(requestContext);
+        return request;
+    }
+
+    /**
+     * Dispatcher of one priming run and the number of requests it sent.
+     */
+    private static final class Run {
+
+        private final Function<AwsProxyRequest, AwsProxyResponse> dispatcher;
+        private int sent;
+        private int unexpected;
+
+        private Run(Function<AwsProxyRequest, AwsProxyResponse> dispatcher) {
+            this.dispatcher = dispatcher;
+        }
+
+        /**
+         * Dispatch a request.
+         *
+         * @return Response, or null if it did not have the expected status
+         */
+        private AwsProxyResponse send(AwsProxyRequest request, int expectedStatus) {
+            sent++;
+            AwsProxyResponse response = dispatcher.apply(request);
+            if (response == null || response.getStatusCode() != expectedStatus) {
+                unexpected++;
+                log.debug("Priming {} {} returned {}", request.getHttpMethod(), request.getPath(),
+                        response == null ? null : response.getStatusCode());
+                return null;
+            }
+            return response;
+        }
+    }
+
+}
@@ -6,18 +6,42 @@ import com.amazonaws.serverless.proxy.model.AwsProxyResponse;
 import com.amazonaws.serverless.proxy.spring.SpringBootLambdaContainerHandler;
 import com.amazonaws.services.lambda.runtime.Context;
 import com.amazonaws.services.lambda.runtime.RequestHandler;
+import com.aws.lambda.user.controllers.FastPathRouter;
+import com.aws.lambda.user.repositories.DynamoDBConnectionPool;
+import com.aws.lambda.user.services.AuditService;
+import org.springframework.web.context.WebApplicationContext;
+import org.springframework.web.context.support.WebApplicationContextUtils;
 
 /**
  * Lambda handler for the User Management System.
  * Handles API Gateway requests and routes them to the Spring Boot application.
+ * Hot read-only routes are served by the {@link FastPathRouter} without a Spring MVC dispatch.
+ * Both paths bound each request by the time the invocation has left (see {@code DeadlineFilter}).
+ * The {@link LambdaPrimer} warms both paths while the container initializes, while the
+ * {@link DynamoDBConnectionPool} opens DynamoDB connections alongside it.
+ * The audit trail is drained before each invocation completes, since the container may be frozen after it.
  */
 public class StreamLambdaHandler implements RequestHandler<AwsProxyRequest, AwsProxyResponse> {
 
     private static SpringBootLambdaContainerHandler<AwsProxyRequest, AwsProxyResponse> handler;
 
+    private static FastPathRouter fastPathRouter;
+
+    private static AuditService auditService;
+
     static {
         try {
             handler = SpringBootLambdaContainerHandler.getAwsProxyHandler(UserManagementApplication.class);
+            WebApplicationContext applicationContext =
+                    WebApplicationContextUtils.getWebApplicationContext(handler.getServletContext());
+            if (applicationContext != null) {
+                fastPathRouter = applicationContext.getBean(FastPathRouter.class);
+                auditService = applicationContext.getBean(AuditService.class);
+                DynamoDBConnectionPool connectionPool = applicationContext.getBean(DynamoDBConnectionPool.class);
+                connectionPool.startWarming();
+                applicationContext.getBean(LambdaPrimer.class).prime(request -> dispatch(request, null));
+                connectionPool.awaitWarming();
+            }
         } catch (ContainerInitializationException e) {
             // Re-throw the exception to force another cold start
             e.printStackTrace();
@@ -27,7 +51,18 @@ public class StreamLambdaHandler implements RequestHandler<AwsProxyRequest, AwsP
 
     @Override
     public AwsProxyResponse handleRequest(AwsProxyRequest awsProxyRequest, Context context) {
-        return handler.proxy(awsProxyRequest, context);
+        return dispatch(awsProxyRequest, context);
+    }
+
+    private static AwsProxyResponse dispatch(AwsProxyRequest awsProxyRequest, Context context) {
+        try {
+            AwsProxyResponse response = fastPathRouter == null ? null : fastPathRouter.route(awsProxyRequest, context);
+            return response != null ? response : handler.proxy(awsProxyRequest, context);
+        } finally {
+            if (auditService != null) {
+                auditService.drain();
+            }
+        }
     }
 
 }
@@ -0,0 +1,41 @@
+package com.aws.lambda.user.configurations;
+
+import com.aws.lambda.user.controllers.DeadlineFilter;
+import org.springframework.boot.web.servlet.FilterRegistrationBean;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.Ordered;
+
+/**
+ * Deadline configuration class.
+ * Registers the filter that bounds how long each request may spend in DynamoDB.
+ */
+@Configuration
+public class DeadlineConfig {
+
+    /**
+     * Creates the request deadline filter.
+     *
+     * @return DeadlineFilter instance
+     */
+    @Bean
+    public DeadlineFilter deadlineFilter() {
+        return new DeadlineFilter();
+    }
+
+    /**
+     * Registers the deadline filter after tracing and ahead of rate limiting and authentication,
+     * whose DynamoDB calls are bounded by the deadline too.
+     *
+     * @param deadlineFilter Deadline filter instance
+     * @return Filter registration
+     */
+    @Bean
+    public FilterRegistrationBean<DeadlineFilter> deadlineFilterRegistration(DeadlineFilter deadlineFilter) {
+        FilterRegistrationBean<DeadlineFilter> registration = new FilterRegistrationBean<>(deadlineFilter);
+        registration.addUrlPatterns("/*");
+        registration.setOrder(Ordered.HIGHEST_PRECEDENCE + 5);
+        return registration;
+    }
+
+}
@@ -1,17 +1,36 @@
 package com.aws.lambda.user.configurations;
 
+import com.amazonaws.ClientConfiguration;
 import com.amazonaws.auth.DefaultAWSCredentialsProviderChain;
 import com.amazonaws.regions.Regions;
 import com.amazonaws.services.dynamodbv2.AmazonDynamoDB;
+import com.amazonaws.services.dynamodbv2.AmazonDynamoDBAsync;
+import com.amazonaws.services.dynamodbv2.AmazonDynamoDBAsyncClientBuilder;
 import com.amazonaws.services.dynamodbv2.AmazonDynamoDBClientBuilder;
 import com.amazonaws.services.dynamodbv2.datamodeling.DynamoDBMapper;
+import com.amazonaws.services.dynamodbv2.datamodeling.DynamoDBMapperConfig;
+import com.aws.lambda.user.entities.UserIndexKeys;
+import com.aws.lambda.user.entities.UserStorageFormat;
+import com.aws.lambda.user.repositories.DynamoDBCallTracer;
+import com.aws.lambda.user.repositories.DynamoDBConnectionPool;
+import com.aws.lambda.user.repositories.DynamoDBDeadlineHandler;
+import com.aws.lambda.user.repositories.ReadCapacityGovernor;
+import com.aws.lambda.user.utils.RequestTrace;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * DynamoDB configuration class.
  * Sets up DynamoDB client and mapper beans for the application.
+ * The blocking client is the primary {@link AmazonDynamoDB} bean; the asynchronous client
+ * is used by repositories that fan out independent requests. Both share one HTTP connection
+ * profile, and their pools are opened ahead of the first request by the {@link DynamoDBConnectionPool}.
  */
 @Configuration
 public class DynamoDBConfig {
@@ -19,28 +38,128 @@ public class DynamoDBConfig {
     @Value("${aws.region:us-east-1}")
     private String awsRegion;
 
+    @Value("${dynamodb.async.threads:16}")
+    private int asyncThreads;
+
+    @Value("${dynamodb.compact-storage.enabled:false}")
+    private boolean compactStorage;
+
+    /**
+     * Comma-separated list of {@code attribute:value:count} shard counts of hot index values.
+     */
+    @Value("${dynamodb.index.shards:}")
+    private String indexShards;
+
+    @Value("${dynamodb.index.default-shards:1}")
+    private int defaultIndexShards;
+
+    @Value("${dynamodb.client.max-connections:50}")
+    private int maxConnections;
+
+    @Value("${dynamodb.client.connection-timeout-ms:2000}")
+    private int connectionTimeoutMs;
+
+    @Value("${dynamodb.client.socket-timeout-ms:10000}")
+    private int socketTimeoutMs;
+
+    @Value("${dynamodb.client.tcp-keep-alive:true}")
+    private boolean tcpKeepAlive;
+
+    /**
+     * Longest a pooled connection is reused, so that DNS changes are picked up; -1 for no limit.
+     */
+    @Value("${dynamodb.client.connection-ttl-ms:300000}")
+    private long connectionTtlMs;
+
+    @Value("${dynamodb.client.connection-max-idle-ms:60000}")
+    private long connectionMaxIdleMs;
+
+    @Autowired
+    private ReadCapacityGovernor readCapacityGovernor;
+
     /**
      * Creates and configures the DynamoDB client.
+     * Calls are recorded in the trace of the request that made them, and time out at its deadline.
+     * Point reads are metered so that scans leave them the capacity they use.
      * 
      * @return Configured AmazonDynamoDB client
      */
     @Bean
+    @Primary
     public AmazonDynamoDB amazonDynamoDB() {
         return AmazonDynamoDBClientBuilder.standard()
                 .withCredentials(DefaultAWSCredentialsProviderChain.getInstance())
                 .withRegion(Regions.fromName(awsRegion))
+                .withClientConfiguration(clientConfiguration(maxConnections))
+                .withRequestHandlers(new DynamoDBDeadlineHandler(), new DynamoDBCallTracer(),
+                        readCapacityGovernor.pointReadMeter())
+                .build();
+    }
+
+    /**
+     * Creates and configures the asynchronous DynamoDB client.
+     * Requests run on a bounded pool of daemon threads, which caps the number of
+     * concurrent in-flight calls a single fan-out can make. Each request runs bound to the
+     * trace and deadline of the thread that submitted it, so it is timed and cut off for the right request.
+     * 
+     * @return Configured AmazonDynamoDBAsync client
+     */
+    @Bean(destroyMethod = "shutdown")
+    public AmazonDynamoDBAsync amazonDynamoDBAsync() {
+        AtomicInteger counter = new AtomicInteger();
+        return AmazonDynamoDBAsyncClientBuilder.standard()
+                .withCredentials(DefaultAWSCredentialsProviderChain.getInstance())
+                .withRegion(Regions.fromName(awsRegion))
+                // Every async thread can hold a connection, so none waits for one
+                .withClientConfiguration(clientConfiguration(Math.max(maxConnections, asyncThreads)))
+                .withRequestHandlers(new DynamoDBDeadlineHandler(), new DynamoDBCallTracer(),
+                        readCapacityGovernor.pointReadMeter())
+                .withExecutorFactory(() -> RequestTrace.propagating(Executors.newFixedThreadPool(asyncThreads, runnable -> {
+                    Thread thread = new Thread(runnable, "dynamodb-async-" + counter.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                })))
                 .build();
     }
 
+    /**
+     * HTTP connection profile of the DynamoDB clients. TCP keep-alive keeps idle pooled connections
+     * from being dropped by the network between invocations. The connect and socket timeouts bound
+     * calls made outside a request deadline.
+     */
+    private ClientConfiguration clientConfiguration(int connections) {
+        return new ClientConfiguration()
+                .withMaxConnections(connections)
+                .withConnectionTimeout(connectionTimeoutMs)
+                .withSocketTimeout(socketTimeoutMs)
+                .withTcpKeepAlive(tcpKeepAlive)
+                .withConnectionTTL(connectionTtlMs)
+                .withConnectionMaxIdleMillis(connectionMaxIdleMs);
+    }
+
+    /**
+     * Creates the sharded secondary index keys of users.
+     * 
+     * @return UserIndexKeys instance
+     */
+    @Bean
+    public UserIndexKeys userIndexKeys() {
+        return new UserIndexKeys(indexShards, defaultIndexShards);
+    }
+
     /**
      * Creates and configures the DynamoDB mapper.
+     * Users are read in both storage formats and written in the compact format when it is enabled,
+     * with their sharded index keys.
      * 
      * @param amazonDynamoDB DynamoDB client instance
+     * @param userIndexKeys  Sharded index keys of users
      * @return Configured DynamoDBMapper instance
      */
     @Bean
-    public DynamoDBMapper dynamoDBMapper(AmazonDynamoDB amazonDynamoDB) {
-        return new DynamoDBMapper(amazonDynamoDB);
+    public DynamoDBMapper dynamoDBMapper(AmazonDynamoDB amazonDynamoDB, UserIndexKeys userIndexKeys) {
+        return new DynamoDBMapper(amazonDynamoDB, DynamoDBMapperConfig.DEFAULT,
+                new UserStorageFormat.Transformer(compactStorage, userIndexKeys));
     }
 
 }
@@ -0,0 +1,45 @@
+package com.aws.lambda.user.configurations;
+
+import com.aws.lambda.user.entities.UserCodec;
+import com.fasterxml.jackson.databind.Module;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.http.converter.HttpMessageConverter;
+import org.springframework.http.converter.json.MappingJackson2HttpMessageConverter;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+
+import java.util.List;
+
+/**
+ * JSON configuration class.
+ * Registers the {@link UserCodec} with both the application ObjectMapper and the Spring MVC
+ * message converters, which {@code @EnableWebMvc} builds separately.
+ */
+@Configuration
+public class JsonConfig implements WebMvcConfigurer {
+
+    /**
+     * Creates the User codec module, picked up by the application ObjectMapper.
+     * 
+     * @return Jackson module for User
+     */
+    @Bean
+    public Module userCodecModule() {
+        return UserCodec.module();
+    }
+
+    /**
+     * Registers the User codec with the MVC JSON converters.
+     * 
+     * @param converters Configured message converters
+     */
+    @Override
+    public void extendMessageConverters(List<HttpMessageConverter<?>> converters) {
+        for (HttpMessageConverter<?> converter : converters) {
+            if (converter instanceof MappingJackson2HttpMessageConverter) {
+                ((MappingJackson2HttpMessageConverter) converter).getObjectMapper().registerModule(UserCodec.module());
+            }
+        }
+    }
+
+}
@@ -0,0 +1,67 @@
+package com.aws.lambda.user.configurations;
+
+import com.aws.lambda.user.security.JwtAuthenticationFilter;
+import com.aws.lambda.user.security.RateLimitFilter;
+import org.springframework.boot.web.servlet.FilterRegistrationBean;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.Ordered;
+
+/**
+ * Security configuration class.
+ * Registers the servlet filters that rate limit and authenticate API requests.
+ */
+@Configuration
+public class SecurityConfig {
+
+    /**
+     * Creates the per-client rate limiting filter.
+     * 
+     * @return RateLimitFilter instance
+     */
+    @Bean
+    public RateLimitFilter rateLimitFilter() {
+        return new RateLimitFilter();
+    }
+
+    /**
+     * Registers the rate limiting filter ahead of authentication, so rejected clients
+     * cost neither a token check nor a DynamoDB read.
+     * 
+     * @param rateLimitFilter Rate limiting filter instance
+     * @return Filter registration
+     */
+    @Bean
+    public FilterRegistrationBean<RateLimitFilter> rateLimitFilterRegistration(RateLimitFilter rateLimitFilter) {
+        FilterRegistrationBean<RateLimitFilter> registration = new FilterRegistrationBean<>(rateLimitFilter);
+        registration.addUrlPatterns("/*");
+        registration.setOrder(Ordered.HIGHEST_PRECEDENCE + 10);
+        return registration;
+    }
+
+    /**
+     * Creates the bearer token authentication filter.
+     * 
+     * @return JwtAuthenticationFilter instance
+     */
+    @Bean
+    public JwtAuthenticationFilter jwtAuthenticationFilter() {
+        return new JwtAuthenticationFilter();
+    }
+
+    /**
+     * Registers the authentication filter for all API paths.
+     * 
+     * @param jwtAuthenticationFilter Authentication filter instance
+     * @return Filter registration
+     */
+    @Bean
+    public FilterRegistrationBean<JwtAuthenticationFilter> jwtAuthenticationFilterRegistration(
+            JwtAuthenticationFilter jwtAuthenticationFilter) {
+        FilterRegistrationBean<JwtAuthenticationFilter> registration = new FilterRegistrationBean<>(jwtAuthenticationFilter);
+        registration.addUrlPatterns("/*");
+        registration.setOrder(Ordered.HIGHEST_PRECEDENCE + 20);
+        return registration;
+    }
+
+}
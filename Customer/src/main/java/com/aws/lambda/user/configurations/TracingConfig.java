@@ -0,0 +1,41 @@
+package com.aws.lambda.user.configurations;
+
+import com.aws.lambda.user.controllers.RequestTraceFilter;
+import org.springframework.boot.web.servlet.FilterRegistrationBean;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.Ordered;
+
+/**
+ * Tracing configuration class.
+ * Registers the filter that times the DynamoDB calls made by each request.
+ */
+@Configuration
+public class TracingConfig {
+
+    /**
+     * Creates the request tracing filter.
+     *
+     * @return RequestTraceFilter instance
+     */
+    @Bean
+    public RequestTraceFilter requestTraceFilter() {
+        return new RequestTraceFilter();
+    }
+
+    /**
+     * Registers the tracing filter ahead of rate limiting and authentication, so the
+     * DynamoDB calls they make are part of the trace.
+     *
+     * @param requestTraceFilter Request tracing filter instance
+     * @return Filter registration
+     */
+    @Bean
+    public FilterRegistrationBean<RequestTraceFilter> requestTraceFilterRegistration(RequestTraceFilter requestTraceFilter) {
+        FilterRegistrationBean<RequestTraceFilter> registration = new FilterRegistrationBean<>(requestTraceFilter);
+        registration.addUrlPatterns("/*");
+        registration.setOrder(Ordered.HIGHEST_PRECEDENCE);
+        return registration;
+    }
+
+}
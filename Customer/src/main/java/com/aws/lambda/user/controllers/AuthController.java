@@ -0,0 +1,73 @@
+package com.aws.lambda.user.controllers;
+
+import com.amazonaws.AmazonClientException;
+import com.amazonaws.AmazonServiceException;
+import com.aws.lambda.user.models.LoginRequest;
+import com.aws.lambda.user.models.TokenResponse;
+import com.aws.lambda.user.security.JwtAuthenticationFilter;
+import com.aws.lambda.user.security.JwtClaims;
+import com.aws.lambda.user.services.AuthService;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+import org.springframework.web.server.ResponseStatusException;
+
+import javax.validation.Valid;
+import java.util.concurrent.RejectedExecutionException;
+
+/**
+ * REST Controller for authentication operations.
+ * Exchanges user credentials for signed access tokens.
+ */
+@RestController
+@RequestMapping(path = "${user.context.path}${auth.path}")
+public class AuthController {
+
+    @Autowired
+    AuthService authService;
+
+    /**
+     * Issue an access token for valid credentials.
+     * 
+     * @param request Login credentials
+     * @return ResponseEntity with the issued token
+     */
+    @PostMapping(path = "/token", consumes = {MediaType.APPLICATION_JSON_VALUE}, produces = {MediaType.APPLICATION_JSON_VALUE})
+    public ResponseEntity<TokenResponse> createToken(@Valid @RequestBody LoginRequest request) {
+        try {
+            TokenResponse response = authService.login(request.getEmail(), request.getPassword());
+            if (response == null) {
+                throw new ResponseStatusException(HttpStatus.UNAUTHORIZED, "Invalid email or password");
+            }
+            return ResponseEntity.status(HttpStatus.OK).body(response);
+        } catch (AmazonServiceException e) {
+            throw new ResponseStatusException(HttpStatus.valueOf(e.getStatusCode()), e.getMessage(), e);
+        } catch (RejectedExecutionException e) {
+            throw new ResponseStatusException(HttpStatus.SERVICE_UNAVAILABLE, "Too many concurrent password operations, retry later", e);
+        } catch (AmazonClientException e) {
+            throw new ResponseStatusException(HttpStatus.INTERNAL_SERVER_ERROR, e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Revoke the session of the calling token.
+     * 
+     * @param claims Verified claims of the calling token
+     * @return Empty response once the session is revoked
+     */
+    @PostMapping(path = "/logout")
+    public ResponseEntity<Void> logout(@RequestAttribute(JwtAuthenticationFilter.CLAIMS_ATTRIBUTE) JwtClaims claims) {
+        try {
+            authService.logout(claims);
+            return ResponseEntity.status(HttpStatus.NO_CONTENT).build();
+        } catch (AmazonServiceException e) {
+            throw new ResponseStatusException(HttpStatus.valueOf(e.getStatusCode()), e.getMessage(), e);
+        } catch (AmazonClientException e) {
+            throw new ResponseStatusException(HttpStatus.INTERNAL_SERVER_ERROR, e.getMessage(), e);
+        }
+    }
+
+}
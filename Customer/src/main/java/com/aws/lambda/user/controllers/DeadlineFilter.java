@@ -0,0 +1,66 @@
+package com.aws.lambda.user.controllers;
+
+import com.amazonaws.serverless.proxy.RequestReader;
+import com.amazonaws.services.lambda.runtime.Context;
+import com.aws.lambda.user.utils.Deadline;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import javax.servlet.FilterChain;
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+
+/**
+ * Servlet filter that gives each request a {@link Deadline}: the configured API budget, or the time
+ * the Lambda invocation has left if that is shorter, less a margin for writing the response.
+ * DynamoDB calls made under the deadline time out when it passes, and scans stop early and return
+ * a cursor instead of running until the function is stopped.
+ */
+public class DeadlineFilter extends OncePerRequestFilter {
+
+    /**
+     * Time a request may take, or zero for no limit beyond the Lambda timeout.
+     */
+    @Value("${api.deadline-ms:28000}")
+    private long budgetMs;
+
+    /**
+     * Time kept back from the deadline for serializing and returning the response.
+     */
+    @Value("${api.deadline.margin-ms:1000}")
+    private long marginMs;
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain chain)
+            throws ServletException, IOException {
+        begin((Context) request.getAttribute(RequestReader.LAMBDA_CONTEXT_PROPERTY));
+        try {
+            chain.doFilter(request, response);
+        } finally {
+            Deadline.bind(null);
+        }
+    }
+
+    /**
+     * Start the deadline of a request, binding it to the current thread.
+     * The caller unbinds it with {@code Deadline.bind(null)} when done.
+     *
+     * @param context Lambda context of the invocation, or null outside Lambda
+     * @return Deadline, or null if the request has no time limit
+     */
+    public Deadline begin(Context context) {
+        long allowed = budgetMs > 0 ? budgetMs : Long.MAX_VALUE;
+        if (context != null) {
+            allowed = Math.min(allowed, context.getRemainingTimeInMillis());
+        }
+        if (allowed == Long.MAX_VALUE) {
+            return null;
+        }
+        Deadline deadline = Deadline.after(allowed - marginMs);
+        Deadline.bind(deadline);
+        return deadline;
+    }
+
+}
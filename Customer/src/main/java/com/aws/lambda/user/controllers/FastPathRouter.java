@@ -0,0 +1,262 @@
+package com.aws.lambda.user.controllers;
+
+import com.amazonaws.AmazonClientException;
+import com.amazonaws.AmazonServiceException;
+import com.amazonaws.serverless.proxy.model.AwsProxyRequest;
+import com.amazonaws.serverless.proxy.model.AwsProxyResponse;
+import com.amazonaws.serverless.proxy.model.Headers;
+import com.amazonaws.services.lambda.runtime.Context;
+import com.aws.lambda.user.entities.User;
+import com.aws.lambda.user.entities.UserCodec;
+import com.aws.lambda.user.security.InvalidTokenException;
+import com.aws.lambda.user.security.JwtAuthenticationFilter;
+import com.aws.lambda.user.security.RateLimitFilter;
+import com.aws.lambda.user.security.RateLimiter;
+import com.aws.lambda.user.services.UserService;
+import com.aws.lambda.user.utils.Deadline;
+import com.aws.lambda.user.utils.ErrorResponses;
+import com.aws.lambda.user.utils.RequestTrace;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.converter.HttpMessageConverter;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+import org.springframework.http.converter.json.MappingJackson2HttpMessageConverter;
+import org.springframework.stereotype.Component;
+import org.springframework.web.servlet.mvc.method.RequestMappingInfo;
+import org.springframework.web.servlet.mvc.method.annotation.RequestMappingHandlerAdapter;
+import org.springframework.web.servlet.mvc.method.annotation.RequestMappingHandlerMapping;
+
+import javax.annotation.PostConstruct;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Serves hot read-only routes straight from the API Gateway event, skipping the mock servlet
+ * request, filter chain and MVC dispatch that {@code SpringBootLambdaContainerHandler} runs for
+ * every call. Rate limiting and authentication are applied exactly as the servlet filters apply
+ * them, requests are traced and given a deadline as {@link RequestTraceFilter} and {@link DeadlineFilter}
+ * do for other requests, and responses are serialized
+ * with the same ObjectMapper, and so the same {@link UserCodec}, as the MVC message converter.
+ * Any request it does not recognise is left to Spring.
+ */
+@Slf4j
+@Component
+public class FastPathRouter {
+
+    @Autowired
+    UserService userService;
+
+    @Autowired
+    UserController userController;
+
+    @Autowired
+    RateLimiter rateLimiter;
+
+    @Autowired
+    JwtAuthenticationFilter jwtAuthenticationFilter;
+
+    @Autowired
+    RequestTraceFilter requestTraceFilter;
+
+    @Autowired
+    DeadlineFilter deadlineFilter;
+
+    @Autowired(required = false)
+    RequestMappingHandlerAdapter handlerAdapter;
+
+    @Autowired(required = false)
+    RequestMappingHandlerMapping handlerMapping;
+
+    @Value("${fastpath.enabled:true}")
+    boolean enabled;
+
+    @Value("${user.context.path}")
+    String contextPath;
+
+    @Value("${user.all}")
+    String allPath;
+
+    @Value("${user.batch}")
+    String batchPath;
+
+    @Value("${user.departments}")
+    String departmentsPath;
+
+    @Value("${user.query}")
+    String queryPath;
+
+    @Value("${user.reassignments}")
+    String reassignmentsPath;
+
+    @Value("${auth.path}")
+    String authPath;
+
+    private final Set<String> reservedSegments = new HashSet<>();
+
+    private ObjectWriter userWriter;
+
+    private ObjectWriter mapWriter;
+
+    @PostConstruct
+    void init() {
+        // Single-segment paths that belong to other handlers rather than GET by UUID, whatever their method
+        for (String path : new String[]{allPath, batchPath, departmentsPath, queryPath, reassignmentsPath, authPath, "/health"}) {
+            reservedSegments.add(path.startsWith("/") ? path.substring(1) : path);
+        }
+        if (handlerMapping != null) {
+            for (RequestMappingInfo mapping : handlerMapping.getHandlerMethods().keySet()) {
+                for (String pattern : mapping.getPatternsCondition().getPatterns()) {
+                    addReservedSegment(pattern);
+                }
+            }
+        }
+
+        ObjectMapper objectMapper = mvcObjectMapper();
+        userWriter = objectMapper.writerFor(User.class);
+        mapWriter = objectMapper.writerFor(Map.class);
+    }
+
+    /**
+     * Serve a request directly if it targets a fast-path route.
+     *
+     * @param request API Gateway proxy request
+     * @return Response, or null if the request should be proxied to Spring
+     */
+    public AwsProxyResponse route(AwsProxyRequest request) {
+        return route(request, null);
+    }
+
+    /**
+     * Serve a request directly if it targets a fast-path route, within the time the invocation has left.
+     *
+     * @param request API Gateway proxy request
+     * @param context Lambda context of the invocation, or null outside Lambda
+     * @return Response, or null if the request should be proxied to Spring
+     */
+    public AwsProxyResponse route(AwsProxyRequest request, Context context) {
+        String path = request.getPath();
+        if (!enabled || !"GET".equals(request.getHttpMethod()) || path == null
+                || !path.startsWith(contextPath + "/")) {
+            return null;
+        }
+        String segment = path.substring(contextPath.length() + 1);
+        boolean health = "health".equals(segment);
+        if (segment.isEmpty() || segment.indexOf('/') >= 0 || segment.indexOf('%') >= 0
+                || (!health && reservedSegments.contains(segment))) {
+            return null;
+        }
+
+        RequestTrace trace = requestTraceFilter.begin();
+        deadlineFilter.begin(context);
+        try {
+            AwsProxyResponse response;
+            try {
+                response = serve(request, path, segment, health);
+            } catch (RuntimeException e) {
+                // Answered with the same 500 body the Spring path gives, not as an invocation error
+                log.error("Fast-path request {} failed", path, e);
+                response = error(HttpStatus.INTERNAL_SERVER_ERROR, e.getMessage(), path);
+            }
+            String serverTiming = requestTraceFilter.complete(trace, "GET", path, response.getStatusCode());
+            if (serverTiming != null) {
+                response.addHeader(RequestTraceFilter.SERVER_TIMING_HEADER, serverTiming);
+            }
+            return response;
+        } finally {
+            RequestTrace.bind(null);
+            Deadline.bind(null);
+        }
+    }
+
+    private AwsProxyResponse serve(AwsProxyRequest request, String path, String segment, boolean health) {
+        Headers headers = request.getMultiValueHeaders();
+        RateLimiter.Decision decision = rateLimiter.acquire(
+                RateLimitFilter.clientId(RateLimitFilter.validatedApiKeyId(request.getRequestContext()), sourceIp(request)), "GET", path);
+        if (!decision.isAllowed()) {
+            AwsProxyResponse response = error(HttpStatus.TOO_MANY_REQUESTS,
+                    "Rate limit of " + rateLimiter.getLimit() + " units exceeded", path);
+            response.addHeader(HttpHeaders.RETRY_AFTER, Long.toString(decision.getRetryAfterSeconds()));
+            return response;
+        }
+        if (jwtAuthenticationFilter.requiresAuthentication("GET", path)) {
+            try {
+                jwtAuthenticationFilter.authenticate(header(headers, HttpHeaders.AUTHORIZATION));
+            } catch (InvalidTokenException e) {
+                AwsProxyResponse response = error(HttpStatus.UNAUTHORIZED, e.getMessage(), path);
+                response.addHeader(HttpHeaders.WWW_AUTHENTICATE, "Bearer");
+                return response;
+            }
+        }
+
+        try {
+            if (health) {
+                return json(HttpStatus.OK, mapWriter.writeValueAsString(userController.healthCheck().getBody()));
+            }
+            User user = userService.getUser(segment);
+            if (user == null) {
+                return error(HttpStatus.NOT_FOUND, "User not found with ID: " + segment, path);
+            }
+            return json(HttpStatus.OK, userWriter.writeValueAsString(user));
+        } catch (AmazonServiceException e) {
+            return error(HttpStatus.valueOf(e.getStatusCode()), e.getMessage(), path);
+        } catch (AmazonClientException e) {
+            return error(HttpStatus.INTERNAL_SERVER_ERROR, e.getMessage(), path);
+        } catch (JsonProcessingException e) {
+            log.error("Unable to serialize fast-path response for {}", path, e);
+            return error(HttpStatus.INTERNAL_SERVER_ERROR, "Unable to serialize response", path);
+        }
+    }
+
+    private void addReservedSegment(String pattern) {
+        if (!pattern.startsWith(contextPath + "/")) {
+            return;
+        }
+        String segment = pattern.substring(contextPath.length() + 1);
+        int end = segment.indexOf('/');
+        segment = end >= 0 ? segment.substring(0, end) : segment;
+        if (!segment.isEmpty() && segment.indexOf('{') < 0) {
+            reservedSegments.add(segment);
+        }
+    }
+
+    private ObjectMapper mvcObjectMapper() {
+        if (handlerAdapter != null) {
+            for (HttpMessageConverter<?> converter : handlerAdapter.getMessageConverters()) {
+                if (converter instanceof MappingJackson2HttpMessageConverter) {
+                    return ((MappingJackson2HttpMessageConverter) converter).getObjectMapper();
+                }
+            }
+        }
+        return Jackson2ObjectMapperBuilder.json().modulesToInstall(UserCodec.module()).build();
+    }
+
+    private static String header(Headers headers, String name) {
+        return headers == null ? null : headers.getFirst(name);
+    }
+
+    private static String sourceIp(AwsProxyRequest request) {
+        if (request.getRequestContext() == null || request.getRequestContext().getIdentity() == null) {
+            return null;
+        }
+        return request.getRequestContext().getIdentity().getSourceIp();
+    }
+
+    private static AwsProxyResponse json(HttpStatus status, String body) {
+        Headers headers = new Headers();
+        headers.putSingle(HttpHeaders.CONTENT_TYPE, MediaType.APPLICATION_JSON_VALUE);
+        return new AwsProxyResponse(status.value(), headers, body);
+    }
+
+    private static AwsProxyResponse error(HttpStatus status, String message, String path) {
+        return json(status, ErrorResponses.body(status, message, path));
+    }
+
+}
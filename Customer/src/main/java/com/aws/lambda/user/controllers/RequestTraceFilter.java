@@ -0,0 +1,224 @@
+package com.aws.lambda.user.controllers;
+
+import com.aws.lambda.user.utils.RequestTrace;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import javax.servlet.FilterChain;
+import javax.servlet.ServletException;
+import javax.servlet.ServletOutputStream;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import javax.servlet.http.HttpServletResponseWrapper;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Servlet filter that traces the DynamoDB calls made while serving each request.
+ * The breakdown is returned in a {@code Server-Timing} header, added just before the response
+ * body starts, and a sample of requests, plus every slow one, is logged as a JSON line.
+ * Recording a call costs two clock reads and an allocation, so tracing is meant to stay on.
+ */
+@Slf4j
+public class RequestTraceFilter extends OncePerRequestFilter {
+
+    public static final String SERVER_TIMING_HEADER = "Server-Timing";
+
+    private static final String TRACE_ATTRIBUTE = RequestTraceFilter.class.getName() + ".TRACE";
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Value("${tracing.enabled:true}")
+    private boolean enabled;
+
+    @Value("${tracing.server-timing.enabled:true}")
+    private boolean serverTimingEnabled;
+
+    /**
+     * Fraction of requests logged regardless of latency.
+     */
+    @Value("${tracing.log-sample-rate:0.01}")
+    private double logSampleRate;
+
+    @Value("${tracing.slow-request-ms:1000}")
+    private long slowRequestMs;
+
+    /**
+     * Maximum number of individual calls listed in the header and log line.
+     */
+    @Value("${tracing.max-calls:20}")
+    private int maxCalls;
+
+    @Override
+    protected boolean shouldNotFilterAsyncDispatch() {
+        // Asynchronous handlers write their response on the async dispatch, under the same trace
+        return false;
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain chain)
+            throws ServletException, IOException {
+        if (!enabled) {
+            chain.doFilter(request, response);
+            return;
+        }
+        RequestTrace trace = (RequestTrace) request.getAttribute(TRACE_ATTRIBUTE);
+        if (trace == null) {
+            trace = new RequestTrace();
+            request.setAttribute(TRACE_ATTRIBUTE, trace);
+        }
+        TimingResponse timingResponse = new TimingResponse(response, trace);
+        RequestTrace.bind(trace);
+        try {
+            chain.doFilter(request, timingResponse);
+        } finally {
+            RequestTrace.bind(null);
+            if (!request.isAsyncStarted()) {
+                timingResponse.addServerTiming();
+                log(trace, request.getMethod(), request.getRequestURI(), response.getStatus());
+            }
+        }
+    }
+
+    /**
+     * Start tracing a request served outside the servlet filter chain, binding the trace to the
+     * current thread. The caller unbinds it with {@code RequestTrace.bind(null)} when done.
+     *
+     * @return Trace, or null if tracing is disabled
+     */
+    public RequestTrace begin() {
+        if (!enabled) {
+            return null;
+        }
+        RequestTrace trace = new RequestTrace();
+        RequestTrace.bind(trace);
+        return trace;
+    }
+
+    /**
+     * Finish tracing a request served outside the servlet filter chain, logging it if sampled.
+     *
+     * @param trace  Trace returned by {@link #begin()}, may be null
+     * @param method HTTP method
+     * @param path   Request path
+     * @param status Response status
+     * @return {@code Server-Timing} header value, or null if it should not be sent
+     */
+    public String complete(RequestTrace trace, String method, String path, int status) {
+        if (trace == null) {
+            return null;
+        }
+        log(trace, method, path, status);
+        return serverTimingEnabled ? trace.serverTiming(maxCalls) : null;
+    }
+
+    private void log(RequestTrace trace, String method, String path, int status) {
+        long totalNanos = trace.elapsedNanos();
+        if (TimeUnit.NANOSECONDS.toMillis(totalNanos) < slowRequestMs
+                && ThreadLocalRandom.current().nextDouble() >= logSampleRate) {
+            return;
+        }
+        List<RequestTrace.Call> recorded = trace.getCalls();
+        long dynamoDBNanos = 0;
+        List<Map<String, Object>> calls = new ArrayList<>();
+        for (RequestTrace.Call call : recorded) {
+            dynamoDBNanos += call.getNanos();
+            if (calls.size() < maxCalls) {
+                Map<String, Object> entry = new LinkedHashMap<>();
+                entry.put("operation", call.getOperation());
+                entry.put("target", call.getTarget());
+                entry.put("ms", Double.valueOf(RequestTrace.millis(call.getNanos())));
+                if (call.getItemsRead() >= 0) {
+                    entry.put("itemsRead", call.getItemsRead());
+                }
+                if (call.getCapacityUnits() >= 0) {
+                    entry.put("capacityUnits", call.getCapacityUnits());
+                }
+                if (call.getError() != null) {
+                    entry.put("error", call.getError());
+                }
+                calls.add(entry);
+            }
+        }
+        Map<String, Object> line = new LinkedHashMap<>();
+        line.put("method", method);
+        line.put("path", path);
+        line.put("status", status);
+        line.put("totalMs", Double.valueOf(RequestTrace.millis(totalNanos)));
+        line.put("dynamodbMs", Double.valueOf(RequestTrace.millis(dynamoDBNanos)));
+        line.put("dynamodbCalls", recorded.size());
+        if (trace.getConnectionLeases() > 0) {
+            line.put("connectionWaitMs", Double.valueOf(RequestTrace.millis(trace.getConnectionWaitNanos())));
+        }
+        line.put("calls", calls);
+        try {
+            log.info("Request trace {}", objectMapper.writeValueAsString(line));
+        } catch (JsonProcessingException e) {
+            log.warn("Unable to serialize request trace for {} {}", method, path, e);
+        }
+    }
+
+    /**
+     * Response that adds the {@code Server-Timing} header before the body is started,
+     * since headers cannot be added once the response is committed.
+     */
+    private final class TimingResponse extends HttpServletResponseWrapper {
+
+        private final RequestTrace trace;
+        private boolean added;
+
+        private TimingResponse(HttpServletResponse response, RequestTrace trace) {
+            super(response);
+            this.trace = trace;
+        }
+
+        private void addServerTiming() {
+            if (!added && serverTimingEnabled && !isCommitted()) {
+                added = true;
+                setHeader(SERVER_TIMING_HEADER, trace.serverTiming(maxCalls));
+            }
+        }
+
+        @Override
+        public ServletOutputStream getOutputStream() throws IOException {
+            addServerTiming();
+            return super.getOutputStream();
+        }
+
+        @Override
+        public PrintWriter getWriter() throws IOException {
+            addServerTiming();
+            return super.getWriter();
+        }
+
+        @Override
+        public void flushBuffer() throws IOException {
+            addServerTiming();
+            super.flushBuffer();
+        }
+
+        @Override
+        public void sendError(int sc) throws IOException {
+            addServerTiming();
+            super.sendError(sc);
+        }
+
+        @Override
+        public void sendError(int sc, String msg) throws IOException {
+            addServerTiming();
+            super.sendError(sc, msg);
+        }
+    }
+
+}
@@ -3,9 +3,19 @@ package com.aws.lambda.user.controllers;
 import com.amazonaws.AmazonClientException;
 import com.amazonaws.AmazonServiceException;
 import com.aws.lambda.user.entities.User;
+import com.aws.lambda.user.models.Reassignment;
+import com.aws.lambda.user.models.ReassignmentResult;
+import com.aws.lambda.user.models.UserQuery;
+import com.aws.lambda.user.models.UserQueryPage;
+import com.aws.lambda.user.security.JwtAuthenticationFilter;
+import com.aws.lambda.user.security.JwtClaims;
+import com.aws.lambda.user.security.RateLimitFilter;
+import com.aws.lambda.user.services.IdempotencyService;
 import com.aws.lambda.user.services.UserService;
+import com.aws.lambda.user.utils.Futures;
 
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
@@ -13,41 +23,92 @@ import org.springframework.web.bind.annotation.*;
 import org.springframework.web.server.ResponseStatusException;
 import org.springframework.web.servlet.config.annotation.EnableWebMvc;
 
+import javax.servlet.http.HttpServletRequest;
 import javax.validation.Valid;
 import java.time.LocalDateTime;
 import java.util.List;
 import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.RejectedExecutionException;
 
 /**
  * REST Controller for User Management operations.
  * Provides CRUD endpoints for user data with comprehensive error handling.
+ * Callers may change only their own user unless their token carries the administrator role;
+ * only administrators may grant that role or reassign users in bulk.
  */
 @RestController
 @RequestMapping(path = "${user.context.path}")
 @EnableWebMvc
 public class UserController {
 
+    /**
+     * Response header describing how a query was executed.
+     */
+    public static final String QUERY_PLAN_HEADER = "X-Query-Plan";
+
+    /**
+     * Response header carrying the cursor for the rest of a list cut short by the request deadline.
+     */
+    public static final String NEXT_CURSOR_HEADER = "X-Next-Cursor";
+
     @Autowired
     UserService userService;
 
+    @Autowired
+    IdempotencyService idempotencyService;
+
+    @Value("${user.batch.max-size:100}")
+    int maxBatchSize;
+
+    @Value("${user.departments.max-size:10}")
+    int maxDepartments;
+
+    @Value("${user.query.max-limit:100}")
+    int maxQueryLimit;
+
+    @Value("${user.reassign.max-uuids:1000}")
+    int maxReassignUuids;
+
+    @Value("${auth.enabled:true}")
+    boolean authEnabled;
+
+    @Value("${auth.admin-role:Administrator}")
+    String adminRole;
+
     /**
      * Create a new user in the system.
+     * Retries carrying the same {@code Idempotency-Key} replay the original response.
+     * 
+     * Anyone may register; creating an administrator requires an administrator's token.
      * 
      * @param user User object containing user details
+     * @param idempotencyKey Optional client-supplied idempotency key
+     * @param claims Verified claims of the calling token, if one was sent
      * @return ResponseEntity with created user data
      */
     @PostMapping(consumes = {MediaType.APPLICATION_JSON_VALUE}, produces = {MediaType.APPLICATION_JSON_VALUE})
-    public ResponseEntity<User> createUser(@Valid @RequestBody User user) {
+    public ResponseEntity<User> createUser(@Valid @RequestBody User user,
+            @RequestHeader(value = IdempotencyService.IDEMPOTENCY_KEY_HEADER, required = false) String idempotencyKey,
+            @RequestAttribute(value = JwtAuthenticationFilter.CLAIMS_ATTRIBUTE, required = false) JwtClaims claims) {
+        if (adminRole.equals(user.getRole()) && !isAdmin(claims)) {
+            throw new ResponseStatusException(HttpStatus.FORBIDDEN, "Only administrators can create administrators");
+        }
         try {
-            // Set creation timestamp
-            user.setCreatedAt(LocalDateTime.now());
-            user.setUpdatedAt(LocalDateTime.now());
-            user.setIsActive(true);
-            
-            User response = userService.createUser(user);
-            return ResponseEntity.status(HttpStatus.CREATED).body(response);
+            return idempotencyService.execute("createUser", idempotencyKey, user, User.class, () -> {
+                // Set creation timestamp
+                user.setCreatedAt(LocalDateTime.now());
+                user.setUpdatedAt(LocalDateTime.now());
+                user.setIsActive(true);
+
+                User response = userService.createUser(user);
+                return ResponseEntity.status(HttpStatus.CREATED).body(response);
+            });
         } catch (AmazonServiceException e) {
             throw new ResponseStatusException(HttpStatus.valueOf(e.getStatusCode()), e.getMessage(), e);
+        } catch (RejectedExecutionException e) {
+            throw new ResponseStatusException(HttpStatus.SERVICE_UNAVAILABLE, "Too many concurrent password operations, retry later", e);
         } catch (AmazonClientException e) {
             throw new ResponseStatusException(HttpStatus.INTERNAL_SERVER_ERROR, e.getMessage(), e);
         }
@@ -76,12 +137,19 @@ public class UserController {
 
     /**
      * Update an existing user's information.
+     * Users other than administrators may update only themselves and cannot change their role.
      * 
      * @param user User object with updated information
+     * @param claims Verified claims of the calling token
      * @return ResponseEntity with updated user data
      */
     @PutMapping(consumes = {MediaType.APPLICATION_JSON_VALUE}, produces = {MediaType.APPLICATION_JSON_VALUE})
-    public ResponseEntity<User> updateUser(@Valid @RequestBody User user) {
+    public ResponseEntity<User> updateUser(@Valid @RequestBody User user,
+            @RequestAttribute(value = JwtAuthenticationFilter.CLAIMS_ATTRIBUTE, required = false) JwtClaims claims) {
+        requireSelfOrAdmin(claims, user.getUuid());
+        if (!isAdmin(claims) && !Objects.equals(claims.getRole(), user.getRole())) {
+            throw new ResponseStatusException(HttpStatus.FORBIDDEN, "Only administrators can change roles");
+        }
         try {
             // Set update timestamp
             user.setUpdatedAt(LocalDateTime.now());
@@ -93,6 +161,8 @@ public class UserController {
             return ResponseEntity.status(HttpStatus.OK).body(response);
         } catch (AmazonServiceException e) {
             throw new ResponseStatusException(HttpStatus.valueOf(e.getStatusCode()), e.getMessage(), e);
+        } catch (RejectedExecutionException e) {
+            throw new ResponseStatusException(HttpStatus.SERVICE_UNAVAILABLE, "Too many concurrent password operations, retry later", e);
         } catch (AmazonClientException e) {
             throw new ResponseStatusException(HttpStatus.INTERNAL_SERVER_ERROR, e.getMessage(), e);
         }
@@ -100,12 +170,16 @@ public class UserController {
 
     /**
      * Delete a user from the system.
+     * Users other than administrators may delete only themselves.
      * 
      * @param uuid User's unique identifier
+     * @param claims Verified claims of the calling token
      * @return ResponseEntity with deletion confirmation
      */
     @DeleteMapping(path = "${user.uuid}")
-    public ResponseEntity<Map<String, String>> deleteUser(@PathVariable("uuid") String uuid) {
+    public ResponseEntity<Map<String, String>> deleteUser(@PathVariable("uuid") String uuid,
+            @RequestAttribute(value = JwtAuthenticationFilter.CLAIMS_ATTRIBUTE, required = false) JwtClaims claims) {
+        requireSelfOrAdmin(claims, uuid);
         try {
             boolean deleted = userService.deleteUser(uuid);
             if (!deleted) {
@@ -127,14 +201,18 @@ public class UserController {
 
     /**
      * Retrieve all users from the system.
+     * If the request deadline cuts the scan short, the users read so far are returned with the
+     * {@value #NEXT_CURSOR_HEADER} header; repeat the request with that cursor for the rest.
      * 
+     * @param cursor Cursor returned with the previous partial list
      * @return ResponseEntity with list of all users
      */
     @GetMapping(value = "${user.all}")
-    public ResponseEntity<List<User>> getAllUsers() {
+    public ResponseEntity<List<User>> getAllUsers(@RequestParam(value = "cursor", required = false) String cursor) {
         try {
-            List<User> response = userService.getAllUsers();
-            return ResponseEntity.status(HttpStatus.OK).body(response);
+            return partialList(userService.getAllUsers(cursor));
+        } catch (IllegalArgumentException e) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, e.getMessage(), e);
         } catch (AmazonServiceException e) {
             throw new ResponseStatusException(HttpStatus.valueOf(e.getStatusCode()), e.getMessage(), e);
         } catch (AmazonClientException e) {
@@ -144,15 +222,158 @@ public class UserController {
 
     /**
      * Search users by department.
+     * If the request deadline cuts the search short, the users read so far are returned with the
+     * {@value #NEXT_CURSOR_HEADER} header; repeat the request with that cursor for the rest.
      * 
      * @param department Department name to search for
+     * @param cursor Cursor returned with the previous partial list
      * @return ResponseEntity with list of users in the department
      */
     @GetMapping(value = "/department/{department}")
-    public ResponseEntity<List<User>> getUsersByDepartment(@PathVariable("department") String department) {
+    public ResponseEntity<List<User>> getUsersByDepartment(@PathVariable("department") String department,
+                                                           @RequestParam(value = "cursor", required = false) String cursor) {
         try {
-            List<User> response = userService.getUsersByDepartment(department);
+            return partialList(userService.getUsersByDepartment(department, cursor));
+        } catch (IllegalArgumentException e) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, e.getMessage(), e);
+        } catch (AmazonServiceException e) {
+            throw new ResponseStatusException(HttpStatus.valueOf(e.getStatusCode()), e.getMessage(), e);
+        } catch (AmazonClientException e) {
+            throw new ResponseStatusException(HttpStatus.INTERNAL_SERVER_ERROR, e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Retrieve several users by their unique identifiers.
+     * The request thread is released while DynamoDB batch reads are in flight.
+     * 
+     * @param uuids User identifiers
+     * @return Future of the ResponseEntity with the users found
+     */
+    @GetMapping(value = "${user.batch}")
+    public CompletableFuture<ResponseEntity<List<User>>> getUsers(@RequestParam("uuids") List<String> uuids) {
+        if (uuids.size() > maxBatchSize) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "At most " + maxBatchSize + " users can be requested at once");
+        }
+        try {
+            return userService.getUsers(uuids)
+                    .handle((response, e) -> {
+                        if (e != null) {
+                            throw toResponseStatus(e);
+                        }
+                        return ResponseEntity.status(HttpStatus.OK).body(response);
+                    });
+        } catch (IllegalArgumentException e) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Search users in several departments at once.
+     * The departments are queried concurrently, so the response takes about as long as the slowest query.
+     * 
+     * @param departments Department names to search for
+     * @return Future of the ResponseEntity with users per department
+     */
+    @GetMapping(value = "${user.departments}")
+    public CompletableFuture<ResponseEntity<Map<String, List<User>>>> getUsersByDepartments(
+            @RequestParam("names") List<String> departments) {
+        if (departments.size() > maxDepartments) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "At most " + maxDepartments + " departments can be requested at once");
+        }
+        try {
+            return userService.getUsersByDepartments(departments)
+                    .handle((response, e) -> {
+                        if (e != null) {
+                            throw toResponseStatus(e);
+                        }
+                        return ResponseEntity.status(HttpStatus.OK).body(response);
+                    });
+        } catch (IllegalArgumentException e) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Search users matching all of the given predicates, one page at a time.
+     * The {@value #QUERY_PLAN_HEADER} response header shows the index or scan chosen, the filters
+     * applied and the estimated and consumed read units.
+     * 
+     * @param department Optional department to match
+     * @param role Optional role to match
+     * @param email Optional email to match
+     * @param active Optional active status to match
+     * @param minAge Optional minimum age, inclusive
+     * @param maxAge Optional maximum age, inclusive
+     * @param fields Optional user properties to return
+     * @param limit Maximum number of users to return
+     * @param cursor Cursor returned with the previous page
+     * @param request Current request, marked for the scan rate limit cost if the query scanned
+     * @return ResponseEntity with one page of users and the cursor for the next one
+     */
+    @GetMapping(value = "${user.query}", produces = {MediaType.APPLICATION_JSON_VALUE})
+    public ResponseEntity<UserQueryPage> queryUsers(@RequestParam(value = "department", required = false) String department,
+                                                    @RequestParam(value = "role", required = false) String role,
+                                                    @RequestParam(value = "email", required = false) String email,
+                                                    @RequestParam(value = "active", required = false) Boolean active,
+                                                    @RequestParam(value = "minAge", required = false) Integer minAge,
+                                                    @RequestParam(value = "maxAge", required = false) Integer maxAge,
+                                                    @RequestParam(value = "fields", required = false) List<String> fields,
+                                                    @RequestParam(value = "limit", defaultValue = "25") int limit,
+                                                    @RequestParam(value = "cursor", required = false) String cursor,
+                                                    HttpServletRequest request) {
+        if (limit < 1 || limit > maxQueryLimit) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Limit must be between 1 and " + maxQueryLimit);
+        }
+        UserQuery query = UserQuery.builder()
+                .department(department)
+                .role(role)
+                .email(email)
+                .isActive(active)
+                .minAge(minAge)
+                .maxAge(maxAge)
+                .fields(fields)
+                .limit(limit)
+                .cursor(cursor)
+                .build();
+        try {
+            UserQueryPage page = userService.queryUsers(query);
+            if (page.isScanned()) {
+                request.setAttribute(RateLimitFilter.SCANNED_ATTRIBUTE, true);
+            }
+            return ResponseEntity.status(HttpStatus.OK).header(QUERY_PLAN_HEADER, page.getPlan()).body(page);
+        } catch (IllegalArgumentException e) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, e.getMessage(), e);
+        } catch (AmazonServiceException e) {
+            throw new ResponseStatusException(HttpStatus.valueOf(e.getStatusCode()), e.getMessage(), e);
+        } catch (AmazonClientException e) {
+            throw new ResponseStatusException(HttpStatus.INTERNAL_SERVER_ERROR, e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Move every user of one department to another, or give a list of users a role.
+     * Each call stops before exceeding its write capacity budget; while the result is not complete,
+     * repeat the request with the returned cursor to continue. Only administrators may reassign users.
+     * 
+     * @param reassignment Reassignment to apply, with the cursor of the previous call if any
+     * @param claims Verified claims of the calling token
+     * @return ResponseEntity with the progress of this call
+     */
+    @PostMapping(value = "${user.reassignments}", consumes = {MediaType.APPLICATION_JSON_VALUE}, produces = {MediaType.APPLICATION_JSON_VALUE})
+    public ResponseEntity<ReassignmentResult> reassignUsers(@RequestBody Reassignment reassignment,
+            @RequestAttribute(value = JwtAuthenticationFilter.CLAIMS_ATTRIBUTE, required = false) JwtClaims claims) {
+        if (!isAdmin(claims)) {
+            throw new ResponseStatusException(HttpStatus.FORBIDDEN, "Only administrators can reassign users");
+        }
+        if (reassignment.getUuids() != null && reassignment.getUuids().size() > maxReassignUuids) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "At most " + maxReassignUuids + " users can be reassigned at once");
+        }
+        try {
+            ReassignmentResult response = userService.reassignUsers(reassignment);
             return ResponseEntity.status(HttpStatus.OK).body(response);
+        } catch (IllegalArgumentException e) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, e.getMessage(), e);
         } catch (AmazonServiceException e) {
             throw new ResponseStatusException(HttpStatus.valueOf(e.getStatusCode()), e.getMessage(), e);
         } catch (AmazonClientException e) {
@@ -176,4 +397,36 @@ public class UserController {
         return ResponseEntity.status(HttpStatus.OK).body(health);
     }
 
+    /**
+     * With authentication disabled there are no claims and every caller is trusted.
+     */
+    private boolean isAdmin(JwtClaims claims) {
+        return !authEnabled || (claims != null && adminRole.equals(claims.getRole()));
+    }
+
+    private void requireSelfOrAdmin(JwtClaims claims, String uuid) {
+        if (!isAdmin(claims) && (claims == null || !Objects.equals(claims.getSubject(), uuid))) {
+            throw new ResponseStatusException(HttpStatus.FORBIDDEN, "Users can only change themselves");
+        }
+    }
+
+    private static ResponseEntity<List<User>> partialList(UserQueryPage page) {
+        ResponseEntity.BodyBuilder response = ResponseEntity.status(HttpStatus.OK);
+        if (page.getNextCursor() != null) {
+            response.header(NEXT_CURSOR_HEADER, page.getNextCursor());
+        }
+        return response.body(page.getUsers());
+    }
+
+    private static ResponseStatusException toResponseStatus(Throwable throwable) {
+        RuntimeException e = Futures.unwrap(throwable);
+        if (e instanceof ResponseStatusException) {
+            return (ResponseStatusException) e;
+        }
+        if (e instanceof AmazonServiceException) {
+            return new ResponseStatusException(HttpStatus.valueOf(((AmazonServiceException) e).getStatusCode()), e.getMessage(), e);
+        }
+        return new ResponseStatusException(HttpStatus.INTERNAL_SERVER_ERROR, e.getMessage(), e);
+    }
+
 }
@@ -0,0 +1,124 @@
+package com.aws.lambda.user.entities;
+
+import com.amazonaws.services.dynamodbv2.datamodeling.DynamoDBAttribute;
+import com.amazonaws.services.dynamodbv2.datamodeling.DynamoDBHashKey;
+import com.amazonaws.services.dynamodbv2.datamodeling.DynamoDBRangeKey;
+import com.amazonaws.services.dynamodbv2.datamodeling.DynamoDBTable;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Audit event recording who changed a user and how.
+ * Events of a user sort by the time they occurred; only the fields that changed are stored.
+ */
+@Getter
+@Setter
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@DynamoDBTable(tableName = "UserAudit")
+public class AuditEvent {
+
+    public static final String CREATE = "CREATE";
+    public static final String UPDATE = "UPDATE";
+    public static final String ACTIVATE = "ACTIVATE";
+    public static final String DEACTIVATE = "DEACTIVATE";
+    public static final String DELETE = "DELETE";
+
+    // Stands in for the password hash, which is compared but never stored in the trail
+    private static final String REDACTED = "[redacted]";
+
+    @DynamoDBHashKey(attributeName = "userUuid")
+    private String userUuid;
+
+    /**
+     * Occurrence time in zero-padded epoch milliseconds followed by a random suffix.
+     */
+    @DynamoDBRangeKey(attributeName = "eventId")
+    private String eventId;
+
+    @DynamoDBAttribute(attributeName = "action")
+    private String action;
+
+    /**
+     * Subject of the access token of the request that made the change, or {@code anonymous}.
+     */
+    @DynamoDBAttribute(attributeName = "actor")
+    private String actor;
+
+    /**
+     * Occurrence time in epoch milliseconds.
+     */
+    @DynamoDBAttribute(attributeName = "occurredAt")
+    private Long occurredAt;
+
+    /**
+     * Previous values of the fields that changed, absent for a created user.
+     */
+    @DynamoDBAttribute(attributeName = "before")
+    private Map<String, String> before;
+
+    /**
+     * New values of the fields that changed, absent for a deleted user.
+     */
+    @DynamoDBAttribute(attributeName = "after")
+    private Map<String, String> after;
+
+    /**
+     * Capture the audited fields of a user, before it is changed in place.
+     *
+     * @param user User, may be null
+     * @return Field values by name, null for a null user
+     */
+    public static Map<String, String> fieldsOf(User user) {
+        if (user == null) {
+            return null;
+        }
+        Map<String, String> fields = new LinkedHashMap<>();
+        fields.put("name", user.getName());
+        fields.put("email", user.getEmail());
+        fields.put("age", user.getAge() == null ? null : user.getAge().toString());
+        fields.put("department", user.getDepartment());
+        fields.put("role", user.getRole());
+        fields.put("isActive", user.getIsActive() == null ? null : user.getIsActive().toString());
+        fields.put("phoneNumber", user.getPhoneNumber());
+        fields.put("password", user.getPasswordHash());
+        return fields;
+    }
+
+    /**
+     * Store the fields that differ between two captures on this event.
+     *
+     * @param beforeFields Fields before the change, null for a created user
+     * @param afterFields  Fields after the change, null for a deleted user
+     */
+    public void setChanges(Map<String, String> beforeFields, Map<String, String> afterFields) {
+        Map<String, String> changedBefore = new LinkedHashMap<>();
+        Map<String, String> changedAfter = new LinkedHashMap<>();
+        Map<String, String> names = beforeFields != null ? beforeFields : afterFields;
+        if (names != null) {
+            for (String name : names.keySet()) {
+                String oldValue = beforeFields == null ? null : beforeFields.get(name);
+                String newValue = afterFields == null ? null : afterFields.get(name);
+                if (oldValue == null ? newValue == null : oldValue.equals(newValue)) {
+                    continue;
+                }
+                if (oldValue != null) {
+                    changedBefore.put(name, "password".equals(name) ? REDACTED : oldValue);
+                }
+                if (newValue != null) {
+                    changedAfter.put(name, "password".equals(name) ? REDACTED : newValue);
+                }
+            }
+        }
+        before = beforeFields == null ? null : changedBefore;
+        after = afterFields == null ? null : changedAfter;
+    }
+
+}
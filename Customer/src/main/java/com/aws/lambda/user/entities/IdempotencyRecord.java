@@ -0,0 +1,61 @@
+package com.aws.lambda.user.entities;
+
+import com.amazonaws.services.dynamodbv2.datamodeling.DynamoDBAttribute;
+import com.amazonaws.services.dynamodbv2.datamodeling.DynamoDBHashKey;
+import com.amazonaws.services.dynamodbv2.datamodeling.DynamoDBTable;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+/**
+ * Idempotency record entity holding the outcome of a request made with an {@code Idempotency-Key}.
+ * A record is first written as {@code IN_PROGRESS} with a short lease, then replaced by the stored
+ * response once the request completes. Expired items are removed by DynamoDB TTL on {@code expiresAt}.
+ */
+@Getter
+@Setter
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@DynamoDBTable(tableName = "Idempotency")
+public class IdempotencyRecord {
+
+    public static final String IN_PROGRESS = "IN_PROGRESS";
+    public static final String COMPLETED = "COMPLETED";
+
+    /**
+     * Operation scope and client-supplied key, such as {@code POST /user#<key>}.
+     */
+    @DynamoDBHashKey(attributeName = "idempotencyKey")
+    private String idempotencyKey;
+
+    @DynamoDBAttribute(attributeName = "status")
+    private String status;
+
+    /**
+     * Digest of the request body, used to reject a key reused for a different request.
+     */
+    @DynamoDBAttribute(attributeName = "fingerprint")
+    private String fingerprint;
+
+    @DynamoDBAttribute(attributeName = "statusCode")
+    private Integer statusCode;
+
+    @DynamoDBAttribute(attributeName = "responseBody")
+    private String responseBody;
+
+    /**
+     * End of the in-progress lease in epoch milliseconds; absent once completed.
+     */
+    @DynamoDBAttribute(attributeName = "leaseExpiresAt")
+    private Long leaseExpiresAt;
+
+    /**
+     * Expiry time in epoch seconds, used as the table's TTL attribute.
+     */
+    @DynamoDBAttribute(attributeName = "expiresAt")
+    private Long expiresAt;
+
+}
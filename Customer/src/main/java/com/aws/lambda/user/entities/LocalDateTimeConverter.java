@@ -0,0 +1,23 @@
+package com.aws.lambda.user.entities;
+
+import com.amazonaws.services.dynamodbv2.datamodeling.DynamoDBTypeConverter;
+
+import java.time.LocalDateTime;
+
+/**
+ * Stores {@link LocalDateTime} attributes as ISO-8601 strings, which the DynamoDB mapper
+ * cannot convert on its own.
+ */
+public class LocalDateTimeConverter implements DynamoDBTypeConverter<String, LocalDateTime> {
+
+    @Override
+    public String convert(LocalDateTime value) {
+        return value.toString();
+    }
+
+    @Override
+    public LocalDateTime unconvert(String value) {
+        return LocalDateTime.parse(value);
+    }
+
+}
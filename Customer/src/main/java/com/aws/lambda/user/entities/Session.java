@@ -0,0 +1,45 @@
+package com.aws.lambda.user.entities;
+
+import com.amazonaws.services.dynamodbv2.datamodeling.DynamoDBAttribute;
+import com.amazonaws.services.dynamodbv2.datamodeling.DynamoDBHashKey;
+import com.amazonaws.services.dynamodbv2.datamodeling.DynamoDBTable;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+/**
+ * Session entity representing a logged-in user session.
+ * Expired items are removed by DynamoDB TTL on the {@code expiresAt} attribute.
+ */
+@Getter
+@Setter
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@DynamoDBTable(tableName = "Session")
+public class Session {
+
+    @DynamoDBHashKey(attributeName = "sessionId")
+    private String sessionId;
+
+    @DynamoDBAttribute(attributeName = "userUuid")
+    private String userUuid;
+
+    /**
+     * Creation time in epoch seconds.
+     */
+    @DynamoDBAttribute(attributeName = "createdAt")
+    private Long createdAt;
+
+    /**
+     * Expiry time in epoch seconds, used as the table's TTL attribute.
+     */
+    @DynamoDBAttribute(attributeName = "expiresAt")
+    private Long expiresAt;
+
+    @DynamoDBAttribute(attributeName = "revoked")
+    private Boolean revoked;
+
+}
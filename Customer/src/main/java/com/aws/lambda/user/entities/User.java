@@ -3,7 +3,11 @@ package com.aws.lambda.user.entities;
 import com.amazonaws.services.dynamodbv2.datamodeling.DynamoDBAttribute;
 import com.amazonaws.services.dynamodbv2.datamodeling.DynamoDBAutoGeneratedKey;
 import com.amazonaws.services.dynamodbv2.datamodeling.DynamoDBHashKey;
+import com.amazonaws.services.dynamodbv2.datamodeling.DynamoDBIgnore;
 import com.amazonaws.services.dynamodbv2.datamodeling.DynamoDBTable;
+import com.amazonaws.services.dynamodbv2.datamodeling.DynamoDBTypeConverted;
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.fasterxml.jackson.annotation.JsonProperty;
 import lombok.Builder;
 import lombok.Getter;
 import lombok.NoArgsConstructor;
@@ -15,6 +19,7 @@ import javax.validation.constraints.NotBlank;
 import javax.validation.constraints.NotNull;
 import javax.validation.constraints.Min;
 import javax.validation.constraints.Max;
+import javax.validation.constraints.Size;
 import java.time.LocalDateTime;
 
 /**
@@ -54,9 +59,11 @@ public class User {
     private String role;
 
     @DynamoDBAttribute(attributeName = "createdAt")
+    @DynamoDBTypeConverted(converter = LocalDateTimeConverter.class)
     private LocalDateTime createdAt;
 
     @DynamoDBAttribute(attributeName = "updatedAt")
+    @DynamoDBTypeConverted(converter = LocalDateTimeConverter.class)
     private LocalDateTime updatedAt;
 
     @DynamoDBAttribute(attributeName = "isActive")
@@ -65,4 +72,13 @@ public class User {
     @DynamoDBAttribute(attributeName = "phoneNumber")
     private String phoneNumber;
 
+    @Size(min = 8, max = 128, message = "Password must be between 8 and 128 characters")
+    @JsonProperty(access = JsonProperty.Access.WRITE_ONLY)
+    @DynamoDBIgnore
+    private String password;
+
+    @JsonIgnore
+    @DynamoDBAttribute(attributeName = "passwordHash")
+    private String passwordHash;
+
 }
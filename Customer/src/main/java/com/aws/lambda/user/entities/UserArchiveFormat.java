@@ -0,0 +1,201 @@
+package com.aws.lambda.user.entities;
+
+import com.amazonaws.services.dynamodbv2.model.AttributeValue;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.Inflater;
+
+/**
+ * Storage format of users moved to the archive table.
+ * An archived item keeps the UUID and email as plain attributes, so it can be found by either,
+ * and the time it was archived. The other attributes, with the cold ones packed as in the
+ * {@link UserStorageFormat}, are deflated into one binary attribute. A single user is too small for
+ * deflate to find much to repeat, so it starts from a preset dictionary of the attribute names.
+ * The sharded index keys are left out and derived again on restore.
+ */
+public final class UserArchiveFormat {
+
+    public static final String DATA_ATTRIBUTE = "data";
+    public static final String ARCHIVED_AT = "archivedAt";
+
+    static final String UUID = "uuid";
+    static final String EMAIL = "email";
+
+    private static final int VERSION = 1;
+    private static final int STRING = 0;
+    private static final int NUMBER = 1;
+    private static final int BINARY = 2;
+    private static final int BOOLEAN = 3;
+
+    private static final byte[] DICTIONARY = ("ageupdatedAtcreatedAtdepartmentisActivenamepasswordHash"
+            + "phoneNumberrole" + UserStorageFormat.COMPACT_ATTRIBUTE + "pbkdf2$").getBytes(StandardCharsets.US_ASCII);
+
+    private UserArchiveFormat() {
+    }
+
+    /**
+     * Build the archive item of a user.
+     *
+     * @param item       User item in either storage format
+     * @param archivedAt Time the user is archived, in epoch milliseconds
+     * @return Archive item
+     * @throws IllegalArgumentException if the item has no UUID or holds a value the format cannot represent
+     */
+    public static Map<String, AttributeValue> archive(Map<String, AttributeValue> item, long archivedAt) {
+        Map<String, AttributeValue> expanded = new TreeMap<>(UserStorageFormat.expand(item));
+        expanded.keySet().removeAll(UserIndexKeys.KEY_ATTRIBUTES.values());
+        AttributeValue uuid = expanded.get(UUID);
+        if (uuid == null || uuid.getS() == null) {
+            throw new IllegalArgumentException("User item has no UUID");
+        }
+
+        Map<String, AttributeValue> archived = new HashMap<>();
+        archived.put(UUID, uuid);
+        if (expanded.get(EMAIL) != null) {
+            archived.put(EMAIL, expanded.get(EMAIL));
+        }
+        archived.put(ARCHIVED_AT, new AttributeValue().withN(Long.toString(archivedAt)));
+        expanded.remove(UUID);
+        expanded.remove(EMAIL);
+        archived.put(DATA_ATTRIBUTE, new AttributeValue().withB(ByteBuffer.wrap(encode(new TreeMap<>(UserStorageFormat.compact(expanded))))));
+        return archived;
+    }
+
+    /**
+     * Unpack the user item held by an archive item.
+     *
+     * @param archived Archive item
+     * @return User item in the legacy format, without index keys
+     */
+    public static Map<String, AttributeValue> restore(Map<String, AttributeValue> archived) {
+        ByteBuffer data = archived.get(DATA_ATTRIBUTE).getB().duplicate();
+        byte[] bytes = new byte[data.remaining()];
+        data.get(bytes);
+        Map<String, AttributeValue> item = decode(bytes);
+        item.put(UUID, archived.get(UUID));
+        if (archived.get(EMAIL) != null) {
+            item.put(EMAIL, archived.get(EMAIL));
+        }
+        return UserStorageFormat.expand(item);
+    }
+
+    private static byte[] encode(Map<String, AttributeValue> item) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        bytes.write(VERSION);
+        Deflater deflater = new Deflater(Deflater.BEST_COMPRESSION);
+        deflater.setDictionary(DICTIONARY);
+        try (DataOutputStream out = new DataOutputStream(new DeflaterOutputStream(bytes, deflater))) {
+            out.writeShort(item.size());
+            for (Map.Entry<String, AttributeValue> attribute : item.entrySet()) {
+                AttributeValue value = attribute.getValue();
+                writeBytes(out, attribute.getKey().getBytes(StandardCharsets.UTF_8));
+                if (value.getS() != null) {
+                    out.writeByte(STRING);
+                    writeBytes(out, value.getS().getBytes(StandardCharsets.UTF_8));
+                } else if (value.getN() != null) {
+                    out.writeByte(NUMBER);
+                    writeBytes(out, value.getN().getBytes(StandardCharsets.US_ASCII));
+                } else if (value.getB() != null) {
+                    ByteBuffer binary = value.getB().duplicate();
+                    byte[] copy = new byte[binary.remaining()];
+                    binary.get(copy);
+                    out.writeByte(BINARY);
+                    writeBytes(out, copy);
+                } else if (value.getBOOL() != null) {
+                    out.writeByte(BOOLEAN);
+                    out.writeBoolean(value.getBOOL());
+                } else {
+                    throw new IllegalArgumentException("Cannot archive attribute " + attribute.getKey());
+                }
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        } finally {
+            deflater.end();
+        }
+        return bytes.toByteArray();
+    }
+
+    private static Map<String, AttributeValue> decode(byte[] bytes) {
+        if (bytes.length == 0 || bytes[0] != VERSION) {
+            throw new IllegalArgumentException("Unknown archive format version");
+        }
+        Map<String, AttributeValue> item = new HashMap<>();
+        try (DataInputStream in = new DataInputStream(new ByteArrayInputStream(inflate(bytes)))) {
+            int count = in.readUnsignedShort();
+            for (int i = 0; i < count; i++) {
+                String name = new String(readBytes(in), StandardCharsets.UTF_8);
+                int type = in.readUnsignedByte();
+                switch (type) {
+                    case STRING:
+                        item.put(name, new AttributeValue().withS(new String(readBytes(in), StandardCharsets.UTF_8)));
+                        break;
+                    case NUMBER:
+                        item.put(name, new AttributeValue().withN(new String(readBytes(in), StandardCharsets.US_ASCII)));
+                        break;
+                    case BINARY:
+                        item.put(name, new AttributeValue().withB(ByteBuffer.wrap(readBytes(in))));
+                        break;
+                    case BOOLEAN:
+                        item.put(name, new AttributeValue().withBOOL(in.readBoolean()));
+                        break;
+                    default:
+                        throw new IllegalArgumentException("Unknown archived attribute type " + type);
+                }
+            }
+        } catch (IOException e) {
+            throw new IllegalArgumentException("Corrupt archived user", e);
+        }
+        return item;
+    }
+
+    private static byte[] inflate(byte[] bytes) {
+        // InflaterInputStream stops at a preset dictionary instead of asking for it
+        Inflater inflater = new Inflater();
+        inflater.setInput(bytes, 1, bytes.length - 1);
+        ByteArrayOutputStream out = new ByteArrayOutputStream(bytes.length * 2);
+        byte[] buffer = new byte[512];
+        try {
+            while (!inflater.finished()) {
+                int length = inflater.inflate(buffer);
+                if (length > 0) {
+                    out.write(buffer, 0, length);
+                } else if (inflater.needsDictionary()) {
+                    inflater.setDictionary(DICTIONARY);
+                } else if (inflater.needsInput()) {
+                    throw new IllegalArgumentException("Truncated archived user");
+                }
+            }
+        } catch (DataFormatException e) {
+            throw new IllegalArgumentException("Corrupt archived user", e);
+        } finally {
+            inflater.end();
+        }
+        return out.toByteArray();
+    }
+
+    private static void writeBytes(DataOutputStream out, byte[] value) throws IOException {
+        out.writeInt(value.length);
+        out.write(value);
+    }
+
+    private static byte[] readBytes(DataInputStream in) throws IOException {
+        byte[] value = new byte[in.readInt()];
+        in.readFully(value);
+        return value;
+    }
+
+}
@@ -0,0 +1,314 @@
+package com.aws.lambda.user.entities;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.core.io.SerializedString;
+import com.fasterxml.jackson.databind.DeserializationContext;
+import com.fasterxml.jackson.databind.SerializerProvider;
+import com.fasterxml.jackson.databind.deser.std.StdDeserializer;
+import com.fasterxml.jackson.databind.module.SimpleModule;
+import com.fasterxml.jackson.databind.ser.std.StdSerializer;
+
+import java.io.IOException;
+import java.time.DateTimeException;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+
+/**
+ * Hand-written Jackson codec for {@link User}.
+ * Properties are read and written directly through the entity's accessors with pre-encoded names,
+ * so no bean introspection happens per request, and timestamps are written as ISO-8601 local
+ * date-times without intermediate strings. The JSON shape matches the entity's Jackson annotations:
+ * {@code password} is write-only and {@code passwordHash} is never exposed.
+ */
+public final class UserCodec {
+
+    private static final SerializedString UUID = new SerializedString("uuid");
+    private static final SerializedString NAME = new SerializedString("name");
+    private static final SerializedString EMAIL = new SerializedString("email");
+    private static final SerializedString AGE = new SerializedString("age");
+    private static final SerializedString DEPARTMENT = new SerializedString("department");
+    private static final SerializedString ROLE = new SerializedString("role");
+    private static final SerializedString CREATED_AT = new SerializedString("createdAt");
+    private static final SerializedString UPDATED_AT = new SerializedString("updatedAt");
+    private static final SerializedString IS_ACTIVE = new SerializedString("isActive");
+    private static final SerializedString PHONE_NUMBER = new SerializedString("phoneNumber");
+
+    private UserCodec() {
+    }
+
+    /**
+     * Create a Jackson module registering the codec.
+     *
+     * @return Module with the User serializer and deserializer
+     */
+    public static SimpleModule module() {
+        SimpleModule module = new SimpleModule("UserCodec");
+        module.addSerializer(User.class, new Serializer());
+        module.addDeserializer(User.class, new Deserializer());
+        return module;
+    }
+
+    /**
+     * Writes users in declaration order, honouring the mapper's default null inclusion.
+     */
+    static final class Serializer extends StdSerializer<User> {
+
+        private static final long serialVersionUID = 1L;
+
+        Serializer() {
+            super(User.class);
+        }
+
+        @Override
+        public void serialize(User user, JsonGenerator generator, SerializerProvider provider) throws IOException {
+            JsonInclude.Include inclusion = provider.getConfig().getDefaultPropertyInclusion(User.class).getValueInclusion();
+            boolean writeNulls = inclusion == JsonInclude.Include.ALWAYS || inclusion == JsonInclude.Include.USE_DEFAULTS;
+
+            generator.writeStartObject(user);
+            writeString(generator, UUID, user.getUuid(), writeNulls);
+            writeString(generator, NAME, user.getName(), writeNulls);
+            writeString(generator, EMAIL, user.getEmail(), writeNulls);
+            if (user.getAge() != null) {
+                generator.writeFieldName(AGE);
+                generator.writeNumber(user.getAge());
+            } else if (writeNulls) {
+                generator.writeFieldName(AGE);
+                generator.writeNull();
+            }
+            writeString(generator, DEPARTMENT, user.getDepartment(), writeNulls);
+            writeString(generator, ROLE, user.getRole(), writeNulls);
+            writeDateTime(generator, CREATED_AT, user.getCreatedAt(), writeNulls);
+            writeDateTime(generator, UPDATED_AT, user.getUpdatedAt(), writeNulls);
+            if (user.getIsActive() != null) {
+                generator.writeFieldName(IS_ACTIVE);
+                generator.writeBoolean(user.getIsActive());
+            } else if (writeNulls) {
+                generator.writeFieldName(IS_ACTIVE);
+                generator.writeNull();
+            }
+            writeString(generator, PHONE_NUMBER, user.getPhoneNumber(), writeNulls);
+            generator.writeEndObject();
+        }
+
+        private static void writeString(JsonGenerator generator, SerializedString name, String value,
+                                        boolean writeNulls) throws IOException {
+            if (value != null) {
+                generator.writeFieldName(name);
+                generator.writeString(value);
+            } else if (writeNulls) {
+                generator.writeFieldName(name);
+                generator.writeNull();
+            }
+        }
+
+        private static void writeDateTime(JsonGenerator generator, SerializedString name, LocalDateTime value,
+                                          boolean writeNulls) throws IOException {
+            if (value == null) {
+                if (writeNulls) {
+                    generator.writeFieldName(name);
+                    generator.writeNull();
+                }
+                return;
+            }
+            generator.writeFieldName(name);
+            int year = value.getYear();
+            if (year < 0 || year > 9999) {
+                generator.writeString(DateTimeFormatter.ISO_LOCAL_DATE_TIME.format(value));
+                return;
+            }
+
+            // Same text as ISO_LOCAL_DATE_TIME: seconds always present, fraction without trailing zeros
+            char[] buffer = new char[29];
+            digits(buffer, 0, year, 4);
+            buffer[4] = '-';
+            digits(buffer, 5, value.getMonthValue(), 2);
+            buffer[7] = '-';
+            digits(buffer, 8, value.getDayOfMonth(), 2);
+            buffer[10] = 'T';
+            digits(buffer, 11, value.getHour(), 2);
+            buffer[13] = ':';
+            digits(buffer, 14, value.getMinute(), 2);
+            buffer[16] = ':';
+            digits(buffer, 17, value.getSecond(), 2);
+            int length = 19;
+            int nano = value.getNano();
+            if (nano > 0) {
+                buffer[19] = '.';
+                digits(buffer, 20, nano, 9);
+                length = 29;
+                while (buffer[length - 1] == '0') {
+                    length--;
+                }
+            }
+            generator.writeString(buffer, 0, length);
+        }
+
+        private static void digits(char[] buffer, int offset, int value, int width) {
+            for (int i = offset + width - 1; i >= offset; i--) {
+                buffer[i] = (char) ('0' + value % 10);
+                value /= 10;
+            }
+        }
+
+    }
+
+    /**
+     * Reads users field by field. Timestamps may be ISO strings or the array form written by
+     * mappers that serialize dates as timestamps.
+     */
+    static final class Deserializer extends StdDeserializer<User> {
+
+        private static final long serialVersionUID = 1L;
+
+        Deserializer() {
+            super(User.class);
+        }
+
+        @Override
+        public User deserialize(JsonParser parser, DeserializationContext context) throws IOException {
+            JsonToken token = parser.currentToken();
+            if (token == JsonToken.START_OBJECT) {
+                token = parser.nextToken();
+            } else if (token != JsonToken.FIELD_NAME && token != JsonToken.END_OBJECT) {
+                return (User) context.handleUnexpectedToken(User.class, parser);
+            }
+
+            User user = new User();
+            for (; token == JsonToken.FIELD_NAME; token = parser.nextToken()) {
+                String field = parser.getCurrentName();
+                parser.nextToken();
+                switch (field) {
+                    case "uuid":
+                        user.setUuid(readString(parser, context));
+                        break;
+                    case "name":
+                        user.setName(readString(parser, context));
+                        break;
+                    case "email":
+                        user.setEmail(readString(parser, context));
+                        break;
+                    case "age":
+                        user.setAge(parser.currentToken() == JsonToken.VALUE_NULL ? null : context.readValue(parser, Integer.class));
+                        break;
+                    case "department":
+                        user.setDepartment(readString(parser, context));
+                        break;
+                    case "role":
+                        user.setRole(readString(parser, context));
+                        break;
+                    case "createdAt":
+                        user.setCreatedAt(readDateTime(parser, context));
+                        break;
+                    case "updatedAt":
+                        user.setUpdatedAt(readDateTime(parser, context));
+                        break;
+                    case "isActive":
+                        user.setIsActive(parser.currentToken() == JsonToken.VALUE_NULL ? null : context.readValue(parser, Boolean.class));
+                        break;
+                    case "phoneNumber":
+                        user.setPhoneNumber(readString(parser, context));
+                        break;
+                    case "password":
+                        user.setPassword(readString(parser, context));
+                        break;
+                    case "passwordHash":
+                        // Ignored property, never accepted from clients
+                        parser.skipChildren();
+                        break;
+                    default:
+                        context.handleUnknownProperty(parser, this, user, field);
+                }
+            }
+            return user;
+        }
+
+        private static String readString(JsonParser parser, DeserializationContext context) throws IOException {
+            JsonToken token = parser.currentToken();
+            if (token == JsonToken.VALUE_STRING) {
+                return parser.getText();
+            }
+            return token == JsonToken.VALUE_NULL ? null : context.readValue(parser, String.class);
+        }
+
+        private static LocalDateTime readDateTime(JsonParser parser, DeserializationContext context) throws IOException {
+            JsonToken token = parser.currentToken();
+            if (token == JsonToken.VALUE_NULL) {
+                return null;
+            }
+            if (token != JsonToken.VALUE_STRING) {
+                return context.readValue(parser, LocalDateTime.class);
+            }
+            LocalDateTime parsed = parseIso(parser.getTextCharacters(), parser.getTextOffset(), parser.getTextLength());
+            if (parsed != null) {
+                return parsed;
+            }
+            String text = parser.getText().trim();
+            try {
+                return text.isEmpty() ? null : LocalDateTime.parse(text);
+            } catch (DateTimeParseException e) {
+                return (LocalDateTime) context.handleWeirdStringValue(LocalDateTime.class, text, e.getMessage());
+            }
+        }
+
+        /**
+         * Parse {@code yyyy-MM-ddTHH:mm[:ss[.fraction]]} in place.
+         *
+         * @return Parsed value, or null if the text needs the general parser
+         */
+        private static LocalDateTime parseIso(char[] text, int offset, int length) {
+            if (length < 16 || text[offset + 4] != '-' || text[offset + 7] != '-' || text[offset + 10] != 'T'
+                    || text[offset + 13] != ':') {
+                return null;
+            }
+            int year = number(text, offset, 4);
+            int month = number(text, offset + 5, 2);
+            int day = number(text, offset + 8, 2);
+            int hour = number(text, offset + 11, 2);
+            int minute = number(text, offset + 14, 2);
+            int second = 0;
+            int nano = 0;
+            if (length > 16) {
+                if (length < 19 || text[offset + 16] != ':') {
+                    return null;
+                }
+                second = number(text, offset + 17, 2);
+                if (length > 19) {
+                    int digits = length - 20;
+                    if (text[offset + 19] != '.' || digits < 1 || digits > 9) {
+                        return null;
+                    }
+                    nano = number(text, offset + 20, digits);
+                    for (int i = digits; i < 9 && nano > 0; i++) {
+                        nano *= 10;
+                    }
+                }
+            }
+            if ((year | month | day | hour | minute | second | nano) < 0) {
+                return null;
+            }
+            try {
+                return LocalDateTime.of(year, month, day, hour, minute, second, nano);
+            } catch (DateTimeException e) {
+                return null;
+            }
+        }
+
+        private static int number(char[] text, int offset, int width) {
+            int value = 0;
+            for (int i = offset; i < offset + width; i++) {
+                int digit = text[i] - '0';
+                if (digit < 0 || digit > 9) {
+                    return -1;
+                }
+                value = value * 10 + digit;
+            }
+            return value;
+        }
+
+    }
+
+}
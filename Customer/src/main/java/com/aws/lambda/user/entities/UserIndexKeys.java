@@ -0,0 +1,173 @@
+package com.aws.lambda.user.entities;
+
+import com.amazonaws.services.dynamodbv2.model.AttributeValue;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Write-sharded partition keys for the {@link User} secondary indexes.
+ * A department or role shared by many users puts all of them, and all their writes, in one index
+ * partition. Each indexed attribute therefore has a key attribute holding the value with a shard
+ * suffix chosen from the user's UUID, such as {@code Engineering#3}, which spreads the users of a
+ * hot value over several partitions. Reading a value queries every shard and merges the results.
+ * Shard counts are set per value; values without one have a single shard.
+ */
+public final class UserIndexKeys {
+
+    /**
+     * Indexed attributes and the attributes holding their sharded keys.
+     */
+    public static final Map<String, String> KEY_ATTRIBUTES;
+
+    static {
+        Map<String, String> keyAttributes = new LinkedHashMap<>();
+        keyAttributes.put("department", "departmentKey");
+        keyAttributes.put("role", "roleKey");
+        KEY_ATTRIBUTES = Collections.unmodifiableMap(keyAttributes);
+    }
+
+    private static final char SEPARATOR = '#';
+
+    private final Map<String, Integer> shardCounts = new HashMap<>();
+
+    private final int defaultShards;
+
+    /**
+     * @param shards        Comma-separated list of {@code attribute:value:count} shard counts
+     * @param defaultShards Shard count of values without one
+     * @throws IllegalArgumentException if an entry is malformed
+     */
+    public UserIndexKeys(String shards, int defaultShards) {
+        if (defaultShards < 1) {
+            throw new IllegalArgumentException("Default shard count must be positive");
+        }
+        this.defaultShards = defaultShards;
+        if (shards == null) {
+            return;
+        }
+        for (String entry : shards.split(",")) {
+            String trimmed = entry.trim();
+            if (trimmed.isEmpty()) {
+                continue;
+            }
+            int first = trimmed.indexOf(':');
+            int last = trimmed.lastIndexOf(':');
+            if (first <= 0 || last == first || !KEY_ATTRIBUTES.containsKey(trimmed.substring(0, first))) {
+                throw new IllegalArgumentException("Invalid index shard entry: " + trimmed);
+            }
+            int count;
+            try {
+                count = Integer.parseInt(trimmed.substring(last + 1).trim());
+            } catch (NumberFormatException e) {
+                throw new IllegalArgumentException("Invalid index shard entry: " + trimmed);
+            }
+            if (count < 1) {
+                throw new IllegalArgumentException("Invalid index shard entry: " + trimmed);
+            }
+            shardCounts.put(trimmed.substring(0, last), count);
+        }
+    }
+
+    /**
+     * Describe the shard counts, identically for configurations that key every user the same way.
+     *
+     * @return Canonical description of the shard counts
+     */
+    public String signature() {
+        StringBuilder signature = new StringBuilder().append(defaultShards);
+        new TreeMap<>(shardCounts).forEach((value, count) -> {
+            if (count != defaultShards) {
+                signature.append(',').append(value).append(':').append(count);
+            }
+        });
+        return signature.toString();
+    }
+
+    /**
+     * Get the attribute holding the sharded key of an indexed attribute.
+     *
+     * @param attribute Indexed attribute
+     * @return Key attribute, or null if the attribute is not sharded
+     */
+    public static String keyAttribute(String attribute) {
+        return KEY_ATTRIBUTES.get(attribute);
+    }
+
+    /**
+     * Get the number of shards of a value.
+     *
+     * @param attribute Indexed attribute
+     * @param value     Attribute value
+     * @return Shard count
+     */
+    public int shards(String attribute, String value) {
+        return shardCounts.getOrDefault(attribute + ":" + value, defaultShards);
+    }
+
+    /**
+     * Get the sharded key a user's value is indexed under.
+     *
+     * @param attribute Indexed attribute
+     * @param value     Attribute value
+     * @param uuid      User UUID
+     * @return Sharded key
+     */
+    public String key(String attribute, String value, String uuid) {
+        return value + SEPARATOR + Math.floorMod(uuid.hashCode(), shards(attribute, value));
+    }
+
+    /**
+     * Get every sharded key of a value, in shard order.
+     *
+     * @param attribute Indexed attribute
+     * @param value     Attribute value
+     * @return Sharded keys
+     */
+    public List<String> keys(String attribute, String value) {
+        int count = shards(attribute, value);
+        List<String> keys = new ArrayList<>(count);
+        for (int shard = 0; shard < count; shard++) {
+            keys.add(value + SEPARATOR + shard);
+        }
+        return keys;
+    }
+
+    /**
+     * Set the sharded key attributes of a user item from its indexed attributes.
+     *
+     * @param item DynamoDB user item
+     * @return The item if its keys are already current, otherwise a copy with current keys
+     */
+    public Map<String, AttributeValue> withKeys(Map<String, AttributeValue> item) {
+        AttributeValue uuid = item.get("uuid");
+        if (uuid == null || uuid.getS() == null) {
+            return item;
+        }
+        Map<String, AttributeValue> keyed = item;
+        for (Map.Entry<String, String> keyAttribute : KEY_ATTRIBUTES.entrySet()) {
+            AttributeValue value = item.get(keyAttribute.getKey());
+            AttributeValue current = item.get(keyAttribute.getValue());
+            String key = value == null || value.getS() == null ? null : key(keyAttribute.getKey(), value.getS(), uuid.getS());
+            String currentKey = current == null ? null : current.getS();
+            if (key == null ? current == null : key.equals(currentKey)) {
+                continue;
+            }
+            if (keyed == item) {
+                keyed = new HashMap<>(item);
+            }
+            if (key == null) {
+                keyed.remove(keyAttribute.getValue());
+            } else {
+                keyed.put(keyAttribute.getValue(), new AttributeValue(key));
+            }
+        }
+        return keyed;
+    }
+
+}
@@ -0,0 +1,295 @@
+package com.aws.lambda.user.entities;
+
+import com.amazonaws.services.dynamodbv2.datamodeling.AttributeTransformer;
+import com.amazonaws.services.dynamodbv2.datamodeling.DynamoDBMappingException;
+import com.amazonaws.services.dynamodbv2.model.AttributeValue;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeParseException;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Compact storage format for rarely read {@link User} attributes.
+ * The phone number, timestamps and active flag are packed into a single binary attribute
+ * instead of four attributes with long names and ISO-8601 strings, which takes them from about
+ * 100 bytes to about 35. Attributes used in keys and filter expressions stay top-level.
+ * Items in either format are read transparently, so the format can be switched in both directions
+ * while a migration is running.
+ */
+public final class UserStorageFormat {
+
+    /**
+     * Name of the binary attribute holding the packed attributes.
+     */
+    public static final String COMPACT_ATTRIBUTE = "c";
+
+    static final String PHONE_NUMBER = "phoneNumber";
+    static final String CREATED_AT = "createdAt";
+    static final String UPDATED_AT = "updatedAt";
+    static final String IS_ACTIVE = "isActive";
+
+    /**
+     * Attributes stored in the compact attribute, in encoding order.
+     */
+    public static final List<String> COLD_ATTRIBUTES = Collections.unmodifiableList(
+            Arrays.asList(PHONE_NUMBER, CREATED_AT, UPDATED_AT, IS_ACTIVE));
+
+    private static final int VERSION = 1;
+    private static final int HAS_PHONE_NUMBER = 1;
+    private static final int HAS_CREATED_AT = 1 << 1;
+    private static final int HAS_UPDATED_AT = 1 << 2;
+    private static final int HAS_IS_ACTIVE = 1 << 3;
+    private static final int IS_ACTIVE_TRUE = 1 << 4;
+
+    private UserStorageFormat() {
+    }
+
+    /**
+     * Check whether an item is stored in the compact format.
+     *
+     * @param item DynamoDB item
+     * @return true if the item has a compact attribute
+     */
+    public static boolean isCompact(Map<String, AttributeValue> item) {
+        return item.containsKey(COMPACT_ATTRIBUTE);
+    }
+
+    /**
+     * Move the cold attributes of a legacy item into the compact attribute.
+     *
+     * @param item DynamoDB item in the legacy format
+     * @return Item in the compact format, or the same item if it is already compact, has no cold
+     *         attributes or holds values the compact format cannot represent
+     */
+    public static Map<String, AttributeValue> compact(Map<String, AttributeValue> item) {
+        if (isCompact(item)) {
+            return item;
+        }
+        byte[] encoded = encode(item);
+        if (encoded == null) {
+            return item;
+        }
+        Map<String, AttributeValue> compacted = new HashMap<>(item);
+        compacted.keySet().removeAll(COLD_ATTRIBUTES);
+        compacted.put(COMPACT_ATTRIBUTE, new AttributeValue().withB(ByteBuffer.wrap(encoded)));
+        return compacted;
+    }
+
+    /**
+     * Restore the cold attributes of a compact item as top-level attributes.
+     * Top-level values win over packed ones, since they can only have been written later.
+     *
+     * @param item DynamoDB item in either format
+     * @return Item in the legacy format
+     */
+    public static Map<String, AttributeValue> expand(Map<String, AttributeValue> item) {
+        AttributeValue compact = item.get(COMPACT_ATTRIBUTE);
+        if (compact == null) {
+            return item;
+        }
+        Map<String, AttributeValue> expanded = new HashMap<>(item);
+        expanded.remove(COMPACT_ATTRIBUTE);
+        decode(compact.getB(), expanded);
+        return expanded;
+    }
+
+    /**
+     * Estimate the size DynamoDB bills for an item: attribute name and value lengths in bytes.
+     *
+     * @param item DynamoDB item
+     * @return Approximate item size in bytes
+     */
+    public static int itemSize(Map<String, AttributeValue> item) {
+        int size = 0;
+        for (Map.Entry<String, AttributeValue> attribute : item.entrySet()) {
+            size += attribute.getKey().getBytes(StandardCharsets.UTF_8).length;
+            AttributeValue value = attribute.getValue();
+            if (value.getS() != null) {
+                size += value.getS().getBytes(StandardCharsets.UTF_8).length;
+            } else if (value.getN() != null) {
+                size += (value.getN().length() + 1) / 2 + 1;
+            } else if (value.getB() != null) {
+                size += value.getB().remaining();
+            } else {
+                size += 1;
+            }
+        }
+        return size;
+    }
+
+    private static byte[] encode(Map<String, AttributeValue> item) {
+        AttributeValue phoneNumber = item.get(PHONE_NUMBER);
+        AttributeValue createdAt = item.get(CREATED_AT);
+        AttributeValue updatedAt = item.get(UPDATED_AT);
+        AttributeValue isActive = item.get(IS_ACTIVE);
+        if (phoneNumber == null && createdAt == null && updatedAt == null && isActive == null) {
+            return null;
+        }
+
+        int flags = 0;
+        ByteArrayOutputStream out = new ByteArrayOutputStream(32);
+        if (phoneNumber != null) {
+            if (phoneNumber.getS() == null) {
+                return null;
+            }
+            flags |= HAS_PHONE_NUMBER;
+            byte[] bytes = phoneNumber.getS().getBytes(StandardCharsets.UTF_8);
+            writeVarint(out, bytes.length);
+            out.write(bytes, 0, bytes.length);
+        }
+        if (createdAt != null) {
+            if (!writeDateTime(out, createdAt)) {
+                return null;
+            }
+            flags |= HAS_CREATED_AT;
+        }
+        if (updatedAt != null) {
+            if (!writeDateTime(out, updatedAt)) {
+                return null;
+            }
+            flags |= HAS_UPDATED_AT;
+        }
+        if (isActive != null) {
+            Boolean active = isActive.getBOOL() != null ? isActive.getBOOL()
+                    : "1".equals(isActive.getN()) ? Boolean.TRUE : "0".equals(isActive.getN()) ? Boolean.FALSE : null;
+            if (active == null) {
+                return null;
+            }
+            flags |= HAS_IS_ACTIVE | (active ? IS_ACTIVE_TRUE : 0);
+        }
+
+        byte[] body = out.toByteArray();
+        byte[] encoded = new byte[body.length + 2];
+        encoded[0] = VERSION;
+        encoded[1] = (byte) flags;
+        System.arraycopy(body, 0, encoded, 2, body.length);
+        return encoded;
+    }
+
+    private static void decode(ByteBuffer buffer, Map<String, AttributeValue> item) {
+        ByteBuffer in = buffer.duplicate();
+        try {
+            int version = in.get();
+            if (version != VERSION) {
+                throw new DynamoDBMappingException("Unsupported compact user attribute version " + version);
+            }
+            int flags = in.get();
+            if ((flags & HAS_PHONE_NUMBER) != 0) {
+                byte[] bytes = new byte[(int) readVarint(in)];
+                in.get(bytes);
+                item.putIfAbsent(PHONE_NUMBER, new AttributeValue().withS(new String(bytes, StandardCharsets.UTF_8)));
+            }
+            if ((flags & HAS_CREATED_AT) != 0) {
+                item.putIfAbsent(CREATED_AT, readDateTime(in));
+            }
+            if ((flags & HAS_UPDATED_AT) != 0) {
+                item.putIfAbsent(UPDATED_AT, readDateTime(in));
+            }
+            if ((flags & HAS_IS_ACTIVE) != 0) {
+                // Same representation the mapper writes for Boolean attributes
+                item.putIfAbsent(IS_ACTIVE, new AttributeValue().withN((flags & IS_ACTIVE_TRUE) != 0 ? "1" : "0"));
+            }
+        } catch (BufferUnderflowException | NegativeArraySizeException e) {
+            throw new DynamoDBMappingException("Malformed compact user attribute", e);
+        }
+    }
+
+    private static boolean writeDateTime(ByteArrayOutputStream out, AttributeValue value) {
+        if (value.getS() == null) {
+            return false;
+        }
+        LocalDateTime dateTime;
+        try {
+            dateTime = LocalDateTime.parse(value.getS());
+        } catch (DateTimeParseException e) {
+            return false;
+        }
+        long seconds = dateTime.toEpochSecond(ZoneOffset.UTC);
+        writeVarint(out, (seconds << 1) ^ (seconds >> 63));
+        writeVarint(out, dateTime.getNano());
+        return true;
+    }
+
+    private static AttributeValue readDateTime(ByteBuffer in) {
+        long zigzag = readVarint(in);
+        long seconds = (zigzag >>> 1) ^ -(zigzag & 1);
+        int nano = (int) readVarint(in);
+        // Same text LocalDateTimeConverter writes
+        return new AttributeValue().withS(LocalDateTime.ofEpochSecond(seconds, nano, ZoneOffset.UTC).toString());
+    }
+
+    private static void writeVarint(ByteArrayOutputStream out, long value) {
+        while ((value & ~0x7FL) != 0) {
+            out.write((int) (value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        out.write((int) value);
+    }
+
+    private static long readVarint(ByteBuffer in) {
+        long value = 0;
+        for (int shift = 0; shift < 64; shift += 7) {
+            byte b = in.get();
+            value |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+        }
+        throw new DynamoDBMappingException("Malformed varint in compact user attribute");
+    }
+
+    /**
+     * Mapper hook that writes {@link User} items in the compact format when enabled and reads
+     * both formats. Other entities pass through unchanged. User saves must use
+     * {@code SaveBehavior.PUT}: partial updates are written in the legacy format and can leave
+     * a stale compact attribute behind. Saved users also get their {@link UserIndexKeys} sharded
+     * index keys.
+     */
+    public static final class Transformer implements AttributeTransformer {
+
+        private final boolean writeCompact;
+        private final UserIndexKeys indexKeys;
+
+        /**
+         * @param writeCompact Whether saved users are written in the compact format
+         */
+        public Transformer(boolean writeCompact) {
+            this(writeCompact, new UserIndexKeys(null, 1));
+        }
+
+        /**
+         * @param writeCompact Whether saved users are written in the compact format
+         * @param indexKeys    Sharded index keys written with saved users
+         */
+        public Transformer(boolean writeCompact, UserIndexKeys indexKeys) {
+            this.writeCompact = writeCompact;
+            this.indexKeys = indexKeys;
+        }
+
+        @Override
+        public Map<String, AttributeValue> transform(Parameters<?> parameters) {
+            Map<String, AttributeValue> item = parameters.getAttributeValues();
+            if (parameters.getModelClass() != User.class || parameters.isPartialUpdate()) {
+                return item;
+            }
+            return indexKeys.withKeys(writeCompact ? compact(item) : item);
+        }
+
+        @Override
+        public Map<String, AttributeValue> untransform(Parameters<?> parameters) {
+            Map<String, AttributeValue> item = parameters.getAttributeValues();
+            return parameters.getModelClass() == User.class ? expand(item) : item;
+        }
+
+    }
+
+}
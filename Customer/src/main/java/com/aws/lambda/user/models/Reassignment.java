@@ -0,0 +1,50 @@
+package com.aws.lambda.user.models;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+import java.util.List;
+
+/**
+ * Bulk change of department or role.
+ * Either moves every user of {@code fromDepartment} to {@code toDepartment}, or gives every user
+ * in {@code uuids} the {@code role}.
+ */
+@Getter
+@Setter
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class Reassignment {
+
+    private String fromDepartment;
+
+    private String toDepartment;
+
+    private List<String> uuids;
+
+    private String role;
+
+    /**
+     * Write capacity units this call may consume; the configured maximum when not given.
+     */
+    private Integer maxWriteUnits;
+
+    /**
+     * Opaque cursor returned by the previous call of an unfinished reassignment.
+     */
+    private String cursor;
+
+    /**
+     * Check whether this reassignment moves users between departments.
+     *
+     * @return true for a department transfer, false for a role assignment
+     */
+    public boolean isDepartmentTransfer() {
+        return fromDepartment != null;
+    }
+
+}
@@ -0,0 +1,86 @@
+package com.aws.lambda.user.models;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+import java.util.List;
+
+/**
+ * Progress of a bulk reassignment after one call.
+ */
+@Getter
+@Setter
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class ReassignmentResult {
+
+    /**
+     * Users read in this call.
+     */
+    private int matched;
+
+    /**
+     * Users changed in this call.
+     */
+    private int updated;
+
+    /**
+     * Users that were missing, already reassigned or changed concurrently.
+     */
+    private int skipped;
+
+    private double consumedWriteUnits;
+
+    /**
+     * How the writes were made: {@code transaction}, {@code conditional-updates} or, in memory, {@code memory}.
+     */
+    private String mode;
+
+    /**
+     * Cursor to resume the reassignment with, or null when it is complete.
+     */
+    private String nextCursor;
+
+    /**
+     * Users changed in this call, for the audit log.
+     */
+    @JsonIgnore
+    private List<Change> changes;
+
+    /**
+     * Check whether the reassignment has finished.
+     *
+     * @return true if there is nothing left to resume
+     */
+    public boolean isComplete() {
+        return nextCursor == null;
+    }
+
+    /**
+     * Department or role of one user before and after a reassignment changed it.
+     */
+    @Getter
+    @AllArgsConstructor
+    public static class Change {
+
+        private final String uuid;
+
+        /**
+         * Changed attribute, {@code department} or {@code role}.
+         */
+        private final String attribute;
+
+        /**
+         * Previous value, null if the user had none.
+         */
+        private final String before;
+
+        private final String after;
+    }
+
+}
@@ -0,0 +1,27 @@
+package com.aws.lambda.user.models;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+/**
+ * Access token issued after a successful login.
+ */
+@Getter
+@Setter
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class TokenResponse {
+
+    private String accessToken;
+
+    private String tokenType;
+
+    private long expiresIn;
+
+    private String uuid;
+
+}
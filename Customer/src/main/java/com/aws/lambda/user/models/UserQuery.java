@@ -0,0 +1,46 @@
+package com.aws.lambda.user.models;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+import java.util.List;
+
+/**
+ * Combination of predicates for a paginated user query.
+ * Every predicate is optional; the ones given must all match.
+ */
+@Getter
+@Setter
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class UserQuery {
+
+    private String department;
+
+    private String role;
+
+    private String email;
+
+    private Boolean isActive;
+
+    private Integer minAge;
+
+    private Integer maxAge;
+
+    /**
+     * User properties to return; all properties when empty.
+     */
+    private List<String> fields;
+
+    private int limit;
+
+    /**
+     * Opaque cursor returned with the previous page.
+     */
+    private String cursor;
+
+}
@@ -0,0 +1,42 @@
+package com.aws.lambda.user.models;
+
+import com.aws.lambda.user.entities.User;
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+import java.util.List;
+
+/**
+ * One page of user query results.
+ */
+@Getter
+@Setter
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class UserQueryPage {
+
+    private List<User> users;
+
+    /**
+     * Cursor for the next page, or null when there are no more results.
+     */
+    private String nextCursor;
+
+    /**
+     * Description of how the query was executed, returned in a response header.
+     */
+    @JsonIgnore
+    private String plan;
+
+    /**
+     * Whether the page was read by scanning the User table rather than querying an index.
+     */
+    @JsonIgnore
+    private boolean scanned;
+
+}
@@ -0,0 +1,48 @@
+package com.aws.lambda.user.repositories;
+
+import com.aws.lambda.user.entities.User;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Asynchronous counterpart of {@link UserRepository}.
+ * Methods return immediately, so independent lookups can be issued together and awaited once.
+ */
+public interface AsyncUserRepository {
+
+    /**
+     * Find a user by their unique identifier.
+     * 
+     * @param uuid User's unique identifier
+     * @return Future of the user, completing with null if not found
+     */
+    CompletableFuture<User> findById(String uuid);
+
+    /**
+     * Find several users by their unique identifiers.
+     * 
+     * @param uuids User identifiers
+     * @return Future of the users found, in no particular order
+     */
+    CompletableFuture<List<User>> findByIds(Collection<String> uuids);
+
+    /**
+     * Find users by department.
+     * 
+     * @param department Department name
+     * @return Future of the users in the department
+     */
+    CompletableFuture<List<User>> findByDepartment(String department);
+
+    /**
+     * Find users in each of several departments, reading the departments concurrently.
+     * 
+     * @param departments Department names
+     * @return Future of the users per department, in the order the departments were given
+     */
+    CompletableFuture<Map<String, List<User>>> findByDepartments(Collection<String> departments);
+
+}
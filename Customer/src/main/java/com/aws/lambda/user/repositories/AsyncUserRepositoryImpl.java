@@ -0,0 +1,266 @@
+package com.aws.lambda.user.repositories;
+
+import com.amazonaws.AmazonClientException;
+import com.amazonaws.AmazonWebServiceRequest;
+import com.amazonaws.handlers.AsyncHandler;
+import com.amazonaws.services.dynamodbv2.AmazonDynamoDBAsync;
+import com.amazonaws.services.dynamodbv2.datamodeling.DynamoDBMapper;
+import com.amazonaws.services.dynamodbv2.datamodeling.DynamoDBMapperTableModel;
+import com.amazonaws.services.dynamodbv2.datamodeling.DynamoDBTable;
+import com.amazonaws.services.dynamodbv2.model.AttributeValue;
+import com.amazonaws.services.dynamodbv2.model.BatchGetItemRequest;
+import com.amazonaws.services.dynamodbv2.model.BatchGetItemResult;
+import com.amazonaws.services.dynamodbv2.model.GetItemRequest;
+import com.amazonaws.services.dynamodbv2.model.GetItemResult;
+import com.amazonaws.services.dynamodbv2.model.KeysAndAttributes;
+import com.amazonaws.services.dynamodbv2.model.QueryRequest;
+import com.amazonaws.services.dynamodbv2.model.QueryResult;
+import com.amazonaws.services.dynamodbv2.model.ReturnConsumedCapacity;
+import com.amazonaws.services.dynamodbv2.model.ScanRequest;
+import com.amazonaws.services.dynamodbv2.model.ScanResult;
+import com.aws.lambda.user.entities.User;
+import com.aws.lambda.user.entities.UserStorageFormat;
+import com.aws.lambda.user.models.UserQuery;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Profile;
+import org.springframework.stereotype.Repository;
+
+import javax.annotation.PostConstruct;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Future;
+import java.util.function.BiFunction;
+
+/**
+ * Asynchronous repository implementation for User data access operations using DynamoDB.
+ * Items are expanded from either storage format and converted with the mapper's table model,
+ * so they are read exactly as {@link UserRepositoryImpl} reads them. A lookup by ID that misses
+ * restores the user from the {@link UserArchive} on the callback thread; batch lookups do not.
+ * Department lookups take the access path the {@link UserQueryPlanner} chooses.
+ */
+@Repository
+@Profile("!" + InMemoryUserRepository.PROFILE)
+public class AsyncUserRepositoryImpl implements AsyncUserRepository {
+
+    private static final int BATCH_GET_LIMIT = 100;
+    private static final int MAX_BATCH_ATTEMPTS = 8;
+
+    private final String tableName = User.class.getAnnotation(DynamoDBTable.class).tableName();
+
+    @Autowired
+    private AmazonDynamoDBAsync amazonDynamoDBAsync;
+
+    @Autowired
+    private DynamoDBMapper dynamoDBMapper;
+
+    @Autowired
+    private UserArchive userArchive;
+
+    @Autowired
+    private UserQueryPlanner userQueryPlanner;
+
+    @Autowired
+    private ReadCapacityGovernor readCapacityGovernor;
+
+    private DynamoDBMapperTableModel<User> tableModel;
+
+    @PostConstruct
+    void init() {
+        tableModel = dynamoDBMapper.getTableModel(User.class);
+    }
+
+    @Override
+    public CompletableFuture<User> findById(String uuid) {
+        GetItemRequest request = new GetItemRequest()
+                .withTableName(tableName)
+                .withKey(key(uuid));
+        return AsyncUserRepositoryImpl.<GetItemRequest, GetItemResult>call(amazonDynamoDBAsync::getItemAsync, request)
+                .thenApply(result -> result.getItem() == null ? userArchive.restore(uuid) : unconvert(result.getItem()));
+    }
+
+    @Override
+    public CompletableFuture<List<User>> findByIds(Collection<String> uuids) {
+        List<Map<String, AttributeValue>> keys = new ArrayList<>();
+        for (String uuid : new LinkedHashSet<>(uuids)) {
+            keys.add(key(uuid));
+        }
+
+        List<CompletableFuture<List<User>>> batches = new ArrayList<>();
+        for (int start = 0; start < keys.size(); start += BATCH_GET_LIMIT) {
+            List<Map<String, AttributeValue>> batch = keys.subList(start, Math.min(keys.size(), start + BATCH_GET_LIMIT));
+            batches.add(batchGet(new KeysAndAttributes().withKeys(batch), new ArrayList<>(), 1));
+        }
+        return CompletableFuture.allOf(batches.toArray(new CompletableFuture<?>[0]))
+                .thenApply(ignored -> {
+                    List<User> users = new ArrayList<>();
+                    batches.forEach(batch -> users.addAll(batch.join()));
+                    return users;
+                });
+    }
+
+    @Override
+    public CompletableFuture<List<User>> findByDepartment(String department) {
+        return findByDepartments(Collections.singletonList(department)).thenApply(users -> users.get(department));
+    }
+
+    /**
+     * Departments with an index are queried concurrently, one Query per index key. The others share
+     * a single scan, paced by the {@link ReadCapacityGovernor}, rather than each scanning the table.
+     */
+    @Override
+    public CompletableFuture<Map<String, List<User>>> findByDepartments(Collection<String> departments) {
+        Set<String> distinct = new LinkedHashSet<>(departments);
+        Map<String, CompletableFuture<List<User>>> queries = new LinkedHashMap<>();
+        List<String> unindexed = new ArrayList<>();
+        for (String department : distinct) {
+            UserQueryPlanner.QueryPlan plan = userQueryPlanner.plan(UserQuery.builder().department(department).build());
+            if (plan.isScan()) {
+                unindexed.add(department);
+            } else {
+                queries.put(department, query(plan));
+            }
+        }
+        CompletableFuture<Map<String, List<User>>> scan = unindexed.isEmpty()
+                ? CompletableFuture.completedFuture(Collections.emptyMap()) : scanDepartments(unindexed);
+        List<CompletableFuture<?>> reads = new ArrayList<>(queries.values());
+        reads.add(scan);
+        return CompletableFuture.allOf(reads.toArray(new CompletableFuture<?>[0]))
+                .thenApply(ignored -> {
+                    Map<String, List<User>> users = new LinkedHashMap<>();
+                    for (String department : distinct) {
+                        CompletableFuture<List<User>> query = queries.get(department);
+                        users.put(department, query != null ? query.join() : scan.join().get(department));
+                    }
+                    return users;
+                });
+    }
+
+    private CompletableFuture<List<User>> query(UserQueryPlanner.QueryPlan plan) {
+        List<CompletableFuture<List<User>>> keys = new ArrayList<>();
+        for (String keyValue : plan.getKeyValues()) {
+            keys.add(query(plan, keyValue, null, new ArrayList<>()));
+        }
+        return CompletableFuture.allOf(keys.toArray(new CompletableFuture<?>[0]))
+                .thenApply(ignored -> {
+                    List<User> users = new ArrayList<>();
+                    keys.forEach(key -> users.addAll(key.join()));
+                    return users;
+                });
+    }
+
+    private CompletableFuture<List<User>> query(UserQueryPlanner.QueryPlan plan, String keyValue,
+                                                Map<String, AttributeValue> startKey, List<User> accumulated) {
+        QueryRequest request = plan.queryRequest(keyValue, Integer.MAX_VALUE, startKey);
+        return AsyncUserRepositoryImpl.<QueryRequest, QueryResult>call(amazonDynamoDBAsync::queryAsync, request).thenCompose(result -> {
+            for (Map<String, AttributeValue> item : result.getItems()) {
+                User user = unconvert(item);
+                if (plan.matches(user)) {
+                    accumulated.add(user);
+                }
+            }
+            if (result.getLastEvaluatedKey() == null || result.getLastEvaluatedKey().isEmpty()) {
+                return CompletableFuture.completedFuture(accumulated);
+            }
+            return query(plan, keyValue, result.getLastEvaluatedKey(), accumulated);
+        });
+    }
+
+    private CompletableFuture<Map<String, List<User>>> scanDepartments(List<String> departments) {
+        Map<String, AttributeValue> values = new LinkedHashMap<>();
+        Map<String, List<User>> users = new LinkedHashMap<>();
+        for (String department : departments) {
+            values.put(":department" + values.size(), new AttributeValue().withS(department));
+            users.put(department, new ArrayList<>());
+        }
+        ScanRequest request = new ScanRequest()
+                .withTableName(tableName)
+                .withFilterExpression("#department IN (" + String.join(", ", values.keySet()) + ")")
+                .withExpressionAttributeNames(Collections.singletonMap("#department", "department"))
+                .withExpressionAttributeValues(values)
+                .withReturnConsumedCapacity(ReturnConsumedCapacity.TOTAL);
+        return scan(request, readCapacityGovernor.pacer(), users);
+    }
+
+    /**
+     * Scan a page at a time, waiting for scan capacity before each page on the thread that
+     * issues it, which is the caller's for the first page and a callback thread afterwards.
+     */
+    private CompletableFuture<Map<String, List<User>>> scan(ScanRequest request, ReadCapacityGovernor.ScanPacer pacer,
+                                                             Map<String, List<User>> accumulated) {
+        request.setLimit(pacer.nextLimit(Integer.MAX_VALUE, null));
+        return AsyncUserRepositoryImpl.<ScanRequest, ScanResult>call(amazonDynamoDBAsync::scanAsync, request).thenCompose(result -> {
+            pacer.record(result.getConsumedCapacity(), result.getScannedCount());
+            for (Map<String, AttributeValue> item : result.getItems()) {
+                User user = unconvert(item);
+                List<User> department = accumulated.get(user.getDepartment());
+                if (department != null) {
+                    department.add(user);
+                }
+            }
+            if (result.getLastEvaluatedKey() == null || result.getLastEvaluatedKey().isEmpty()) {
+                return CompletableFuture.completedFuture(accumulated);
+            }
+            return scan(request.clone().withExclusiveStartKey(result.getLastEvaluatedKey()), pacer, accumulated);
+        });
+    }
+
+    private User unconvert(Map<String, AttributeValue> item) {
+        return tableModel.unconvert(UserStorageFormat.expand(item));
+    }
+
+    private CompletableFuture<List<User>> batchGet(KeysAndAttributes keys, List<User> accumulated, int attempt) {
+        BatchGetItemRequest request = new BatchGetItemRequest()
+                .withRequestItems(Collections.singletonMap(tableName, keys));
+        return AsyncUserRepositoryImpl.<BatchGetItemRequest, BatchGetItemResult>call(amazonDynamoDBAsync::batchGetItemAsync, request).thenCompose(result -> {
+            List<Map<String, AttributeValue>> items = result.getResponses().get(tableName);
+            if (items != null) {
+                items.forEach(item -> accumulated.add(unconvert(item)));
+            }
+            KeysAndAttributes unprocessed = result.getUnprocessedKeys() == null ? null : result.getUnprocessedKeys().get(tableName);
+            if (unprocessed == null || unprocessed.getKeys().isEmpty()) {
+                return CompletableFuture.completedFuture(accumulated);
+            }
+            if (attempt >= MAX_BATCH_ATTEMPTS) {
+                throw new AmazonClientException(unprocessed.getKeys().size() + " keys left unprocessed after "
+                        + attempt + " batch get attempts");
+            }
+            return batchGet(unprocessed, accumulated, attempt + 1);
+        });
+    }
+
+    private static Map<String, AttributeValue> key(String uuid) {
+        return Collections.singletonMap("uuid", new AttributeValue().withS(uuid));
+    }
+
+    /**
+     * Adapt an SDK asynchronous call to a {@link CompletableFuture}.
+     */
+    static <Q extends AmazonWebServiceRequest, R> CompletableFuture<R> call(
+            BiFunction<Q, AsyncHandler<Q, R>, Future<R>> method, Q request) {
+        CompletableFuture<R> future = new CompletableFuture<>();
+        try {
+            method.apply(request, new AsyncHandler<Q, R>() {
+                @Override
+                public void onError(Exception exception) {
+                    future.completeExceptionally(exception);
+                }
+
+                @Override
+                public void onSuccess(Q completedRequest, R result) {
+                    future.complete(result);
+                }
+            });
+        } catch (RuntimeException e) {
+            future.completeExceptionally(e);
+        }
+        return future;
+    }
+
+}
@@ -0,0 +1,21 @@
+package com.aws.lambda.user.repositories;
+
+import com.aws.lambda.user.entities.AuditEvent;
+
+import java.util.List;
+
+/**
+ * Repository interface for AuditEvent data access operations.
+ * Defines methods for interacting with the audit trail data store.
+ */
+public interface AuditRepository {
+
+    /**
+     * Save a batch of audit events.
+     *
+     * @param events Audit events to save
+     * @return Events that could not be saved, empty if all were
+     */
+    List<AuditEvent> saveAll(List<AuditEvent> events);
+
+}
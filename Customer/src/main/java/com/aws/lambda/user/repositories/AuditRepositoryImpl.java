@@ -0,0 +1,55 @@
+package com.aws.lambda.user.repositories;
+
+import com.amazonaws.services.dynamodbv2.datamodeling.DynamoDBMapper;
+import com.amazonaws.services.dynamodbv2.model.AttributeValue;
+import com.amazonaws.services.dynamodbv2.model.WriteRequest;
+import com.aws.lambda.user.entities.AuditEvent;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Repository;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Repository implementation for AuditEvent data access operations using DynamoDB.
+ * Events are written with {@code BatchWriteItem}, up to 25 to a request; the mapper retries
+ * unprocessed items and reports the batches that still failed.
+ */
+@Slf4j
+@Repository
+public class AuditRepositoryImpl implements AuditRepository {
+
+    @Autowired
+    private DynamoDBMapper dynamoDBMapper;
+
+    @Override
+    public List<AuditEvent> saveAll(List<AuditEvent> events) {
+        List<DynamoDBMapper.FailedBatch> failedBatches = dynamoDBMapper.batchSave(events);
+        if (failedBatches.isEmpty()) {
+            return new ArrayList<>();
+        }
+
+        Map<String, AuditEvent> byKey = new HashMap<>();
+        for (AuditEvent event : events) {
+            byKey.put(event.getUserUuid() + "/" + event.getEventId(), event);
+        }
+        List<AuditEvent> unsaved = new ArrayList<>();
+        for (DynamoDBMapper.FailedBatch failedBatch : failedBatches) {
+            log.warn("Unable to save audit events: {}", failedBatch.getException().getMessage());
+            for (List<WriteRequest> requests : failedBatch.getUnprocessedItems().values()) {
+                for (WriteRequest request : requests) {
+                    Map<String, AttributeValue> item = request.getPutRequest().getItem();
+                    AuditEvent event = byKey.get(item.get("userUuid").getS() + "/" + item.get("eventId").getS());
+                    if (event != null) {
+                        unsaved.add(event);
+                    }
+                }
+            }
+        }
+        return unsaved;
+    }
+
+}
@@ -0,0 +1,30 @@
+package com.aws.lambda.user.repositories;
+
+import com.amazonaws.AmazonServiceException;
+import org.springframework.http.HttpStatus;
+
+/**
+ * Thrown instead of starting a DynamoDB call once the deadline of the current request has passed.
+ * It carries a {@code 504 Gateway Timeout} status so that it is reported like any other
+ * DynamoDB error.
+ */
+public class DeadlineExceededException extends AmazonServiceException {
+
+    private static final long serialVersionUID = 1L;
+
+    public static final String ERROR_CODE = "RequestDeadlineExceeded";
+
+    /**
+     * Create the exception for a call that was not started.
+     *
+     * @param operation DynamoDB operation that was not started
+     */
+    public DeadlineExceededException(String operation) {
+        super("Request deadline exceeded before " + operation);
+        setStatusCode(HttpStatus.GATEWAY_TIMEOUT.value());
+        setErrorCode(ERROR_CODE);
+        setErrorType(ErrorType.Client);
+        setServiceName("AmazonDynamoDBv2");
+    }
+
+}
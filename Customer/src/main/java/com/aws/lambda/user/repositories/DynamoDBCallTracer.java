@@ -0,0 +1,193 @@
+package com.aws.lambda.user.repositories;
+
+import com.amazonaws.AmazonServiceException;
+import com.amazonaws.AmazonWebServiceRequest;
+import com.amazonaws.Request;
+import com.amazonaws.Response;
+import com.amazonaws.handlers.HandlerContextKey;
+import com.amazonaws.handlers.RequestHandler2;
+import com.amazonaws.services.dynamodbv2.model.AttributeValue;
+import com.amazonaws.services.dynamodbv2.model.BatchGetItemRequest;
+import com.amazonaws.services.dynamodbv2.model.BatchGetItemResult;
+import com.amazonaws.services.dynamodbv2.model.BatchWriteItemRequest;
+import com.amazonaws.services.dynamodbv2.model.BatchWriteItemResult;
+import com.amazonaws.services.dynamodbv2.model.ConsumedCapacity;
+import com.amazonaws.services.dynamodbv2.model.DeleteItemRequest;
+import com.amazonaws.services.dynamodbv2.model.DeleteItemResult;
+import com.amazonaws.services.dynamodbv2.model.GetItemRequest;
+import com.amazonaws.services.dynamodbv2.model.GetItemResult;
+import com.amazonaws.services.dynamodbv2.model.PutItemRequest;
+import com.amazonaws.services.dynamodbv2.model.PutItemResult;
+import com.amazonaws.services.dynamodbv2.model.QueryRequest;
+import com.amazonaws.services.dynamodbv2.model.QueryResult;
+import com.amazonaws.services.dynamodbv2.model.ReturnConsumedCapacity;
+import com.amazonaws.services.dynamodbv2.model.ScanRequest;
+import com.amazonaws.services.dynamodbv2.model.ScanResult;
+import com.amazonaws.services.dynamodbv2.model.TransactWriteItemsRequest;
+import com.amazonaws.services.dynamodbv2.model.TransactWriteItemsResult;
+import com.amazonaws.services.dynamodbv2.model.UpdateItemRequest;
+import com.amazonaws.services.dynamodbv2.model.UpdateItemResult;
+import com.aws.lambda.user.utils.RequestTrace;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Records every DynamoDB call made while serving a traced request in its {@link RequestTrace}:
+ * the operation, table, latency, items read and capacity consumed. Consumed capacity is requested
+ * only for traced calls that did not already ask for it; untraced calls are left untouched.
+ */
+public class DynamoDBCallTracer extends RequestHandler2 {
+
+    private static final HandlerContextKey<RequestTrace> TRACE = new HandlerContextKey<>("RequestTrace");
+    private static final HandlerContextKey<Long> START = new HandlerContextKey<>("RequestTraceStart");
+    private static final String TOTAL = ReturnConsumedCapacity.TOTAL.toString();
+
+    @Override
+    public AmazonWebServiceRequest beforeExecution(AmazonWebServiceRequest request) {
+        if (RequestTrace.current() == null) {
+            return request;
+        }
+        if (request instanceof GetItemRequest && ((GetItemRequest) request).getReturnConsumedCapacity() == null) {
+            ((GetItemRequest) request).setReturnConsumedCapacity(TOTAL);
+        } else if (request instanceof PutItemRequest && ((PutItemRequest) request).getReturnConsumedCapacity() == null) {
+            ((PutItemRequest) request).setReturnConsumedCapacity(TOTAL);
+        } else if (request instanceof UpdateItemRequest && ((UpdateItemRequest) request).getReturnConsumedCapacity() == null) {
+            ((UpdateItemRequest) request).setReturnConsumedCapacity(TOTAL);
+        } else if (request instanceof DeleteItemRequest && ((DeleteItemRequest) request).getReturnConsumedCapacity() == null) {
+            ((DeleteItemRequest) request).setReturnConsumedCapacity(TOTAL);
+        } else if (request instanceof QueryRequest && ((QueryRequest) request).getReturnConsumedCapacity() == null) {
+            ((QueryRequest) request).setReturnConsumedCapacity(TOTAL);
+        } else if (request instanceof ScanRequest && ((ScanRequest) request).getReturnConsumedCapacity() == null) {
+            ((ScanRequest) request).setReturnConsumedCapacity(TOTAL);
+        } else if (request instanceof BatchGetItemRequest && ((BatchGetItemRequest) request).getReturnConsumedCapacity() == null) {
+            ((BatchGetItemRequest) request).setReturnConsumedCapacity(TOTAL);
+        } else if (request instanceof BatchWriteItemRequest && ((BatchWriteItemRequest) request).getReturnConsumedCapacity() == null) {
+            ((BatchWriteItemRequest) request).setReturnConsumedCapacity(TOTAL);
+        } else if (request instanceof TransactWriteItemsRequest && ((TransactWriteItemsRequest) request).getReturnConsumedCapacity() == null) {
+            ((TransactWriteItemsRequest) request).setReturnConsumedCapacity(TOTAL);
+        }
+        return request;
+    }
+
+    @Override
+    public void beforeRequest(Request<?> request) {
+        RequestTrace trace = RequestTrace.current();
+        if (trace != null) {
+            request.addHandlerContext(TRACE, trace);
+            request.addHandlerContext(START, System.nanoTime());
+            trace.started(request, operation(request), target(request.getOriginalRequest()));
+        }
+    }
+
+    @Override
+    public void afterResponse(Request<?> request, Response<?> response) {
+        RequestTrace trace = request.getHandlerContext(TRACE);
+        if (trace != null) {
+            Object result = response == null ? null : response.getAwsResponse();
+            trace.record(request, new RequestTrace.Call(operation(request), target(request.getOriginalRequest()),
+                    System.nanoTime() - request.getHandlerContext(START), itemsRead(result), capacityUnits(result), null));
+        }
+    }
+
+    @Override
+    public void afterError(Request<?> request, Response<?> response, Exception e) {
+        RequestTrace trace = request.getHandlerContext(TRACE);
+        if (trace != null) {
+            String error = e instanceof AmazonServiceException ? ((AmazonServiceException) e).getErrorCode() : e.getClass().getSimpleName();
+            trace.record(request, new RequestTrace.Call(operation(request), target(request.getOriginalRequest()),
+                    System.nanoTime() - request.getHandlerContext(START), -1, -1, error));
+        }
+    }
+
+    private static String operation(Request<?> request) {
+        String name = request.getOriginalRequest().getClass().getSimpleName();
+        return name.endsWith("Request") ? name.substring(0, name.length() - "Request".length()) : name;
+    }
+
+    private static String target(AmazonWebServiceRequest request) {
+        if (request instanceof GetItemRequest) {
+            return ((GetItemRequest) request).getTableName();
+        } else if (request instanceof PutItemRequest) {
+            return ((PutItemRequest) request).getTableName();
+        } else if (request instanceof UpdateItemRequest) {
+            return ((UpdateItemRequest) request).getTableName();
+        } else if (request instanceof DeleteItemRequest) {
+            return ((DeleteItemRequest) request).getTableName();
+        } else if (request instanceof QueryRequest) {
+            return index(((QueryRequest) request).getTableName(), ((QueryRequest) request).getIndexName());
+        } else if (request instanceof ScanRequest) {
+            return index(((ScanRequest) request).getTableName(), ((ScanRequest) request).getIndexName());
+        } else if (request instanceof BatchGetItemRequest) {
+            return String.join(",", ((BatchGetItemRequest) request).getRequestItems().keySet());
+        } else if (request instanceof BatchWriteItemRequest) {
+            return String.join(",", ((BatchWriteItemRequest) request).getRequestItems().keySet());
+        }
+        return null;
+    }
+
+    private static String index(String tableName, String indexName) {
+        return indexName == null ? tableName : tableName + "." + indexName;
+    }
+
+    private static int itemsRead(Object result) {
+        if (result instanceof GetItemResult) {
+            return ((GetItemResult) result).getItem() == null ? 0 : 1;
+        } else if (result instanceof QueryResult) {
+            return count(((QueryResult) result).getScannedCount());
+        } else if (result instanceof ScanResult) {
+            return count(((ScanResult) result).getScannedCount());
+        } else if (result instanceof BatchGetItemResult && ((BatchGetItemResult) result).getResponses() != null) {
+            int items = 0;
+            for (List<Map<String, AttributeValue>> table : ((BatchGetItemResult) result).getResponses().values()) {
+                items += table.size();
+            }
+            return items;
+        }
+        return -1;
+    }
+
+    private static int count(Integer count) {
+        return count == null ? -1 : count;
+    }
+
+    private static double capacityUnits(Object result) {
+        if (result instanceof GetItemResult) {
+            return units(((GetItemResult) result).getConsumedCapacity());
+        } else if (result instanceof PutItemResult) {
+            return units(((PutItemResult) result).getConsumedCapacity());
+        } else if (result instanceof UpdateItemResult) {
+            return units(((UpdateItemResult) result).getConsumedCapacity());
+        } else if (result instanceof DeleteItemResult) {
+            return units(((DeleteItemResult) result).getConsumedCapacity());
+        } else if (result instanceof QueryResult) {
+            return units(((QueryResult) result).getConsumedCapacity());
+        } else if (result instanceof ScanResult) {
+            return units(((ScanResult) result).getConsumedCapacity());
+        } else if (result instanceof BatchGetItemResult) {
+            return units(((BatchGetItemResult) result).getConsumedCapacity());
+        } else if (result instanceof BatchWriteItemResult) {
+            return units(((BatchWriteItemResult) result).getConsumedCapacity());
+        } else if (result instanceof TransactWriteItemsResult) {
+            return units(((TransactWriteItemsResult) result).getConsumedCapacity());
+        }
+        return -1;
+    }
+
+    private static double units(ConsumedCapacity capacity) {
+        return capacity == null || capacity.getCapacityUnits() == null ? -1 : capacity.getCapacityUnits();
+    }
+
+    private static double units(Collection<ConsumedCapacity> capacities) {
+        if (capacities == null || capacities.isEmpty()) {
+            return -1;
+        }
+        double total = 0;
+        for (ConsumedCapacity capacity : capacities) {
+            total += capacity.getCapacityUnits() == null ? 0 : capacity.getCapacityUnits();
+        }
+        return total;
+    }
+
+}
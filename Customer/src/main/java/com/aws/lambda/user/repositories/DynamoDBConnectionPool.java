@@ -0,0 +1,238 @@
+package com.aws.lambda.user.repositories;
+
+import com.amazonaws.metrics.AwsSdkMetrics;
+import com.amazonaws.metrics.ByteThroughputProvider;
+import com.amazonaws.metrics.MetricCollector;
+import com.amazonaws.metrics.RequestMetricCollector;
+import com.amazonaws.metrics.ServiceLatencyProvider;
+import com.amazonaws.metrics.ServiceMetricCollector;
+import com.amazonaws.services.dynamodbv2.AmazonDynamoDB;
+import com.amazonaws.services.dynamodbv2.AmazonDynamoDBAsync;
+import com.amazonaws.services.dynamodbv2.datamodeling.DynamoDBTable;
+import com.amazonaws.services.dynamodbv2.model.DescribeTableRequest;
+import com.amazonaws.services.dynamodbv2.model.DescribeTableResult;
+import com.amazonaws.util.AWSServiceMetrics;
+import com.aws.lambda.user.entities.User;
+import com.aws.lambda.user.utils.Futures;
+import com.aws.lambda.user.utils.LatencyWindow;
+import com.aws.lambda.user.utils.RequestTrace;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Opens connections in the DynamoDB clients' HTTP pools before the first request, and measures
+ * how long calls wait to lease a connection from them.
+ * Warming makes concurrent DescribeTable calls on both clients, so the first requests do not pay
+ * for the TCP and TLS handshakes. The keep-alive and pool settings in {@code DynamoDBConfig} then
+ * keep those connections open between invocations. The SDK reports each lease time to its service
+ * metric collector. This class records the time in the {@link RequestTrace} of the waiting request
+ * and logs a summary at a fixed interval of leases.
+ */
+@Slf4j
+@Component
+public class DynamoDBConnectionPool {
+
+    private final String tableName = User.class.getAnnotation(DynamoDBTable.class).tableName();
+
+    @Autowired
+    private AmazonDynamoDB amazonDynamoDB;
+
+    @Autowired
+    private AmazonDynamoDBAsync amazonDynamoDBAsync;
+
+    /**
+     * Connections opened in each client's pool while the container initializes.
+     */
+    @Value("${dynamodb.client.prewarm-connections:2}")
+    private int prewarmConnections;
+
+    @Value("${dynamodb.client.prewarm-timeout-ms:3000}")
+    private long prewarmTimeoutMs;
+
+    @Value("${dynamodb.client.acquire-metrics.enabled:true}")
+    private boolean acquireMetricsEnabled;
+
+    @Value("${dynamodb.client.acquire-metrics.report-interval:1000}")
+    private long reportInterval;
+
+    private final AtomicLong acquisitions = new AtomicLong();
+    private final AtomicLong acquireNanos = new AtomicLong();
+    private final LatencyWindow acquireLatencies = new LatencyWindow(1024, 99);
+
+    private volatile CompletableFuture<Void> warming;
+
+    @PostConstruct
+    void init() {
+        if (acquireMetricsEnabled) {
+            AwsSdkMetrics.setMetricCollector(new AcquireTimeCollector());
+        }
+    }
+
+    @PreDestroy
+    void shutdown() {
+        if (acquireMetricsEnabled) {
+            AwsSdkMetrics.setMetricCollector(MetricCollector.NONE);
+        }
+    }
+
+    /**
+     * Start opening connections in the background. Running this alongside other init work hides
+     * the handshakes behind it.
+     */
+    public void startWarming() {
+        if (prewarmConnections <= 0 || warming != null) {
+            return;
+        }
+        long start = System.nanoTime();
+        ExecutorService executor = Executors.newFixedThreadPool(prewarmConnections, runnable -> {
+            Thread thread = new Thread(runnable, "dynamodb-prewarm");
+            thread.setDaemon(true);
+            return thread;
+        });
+        List<CompletableFuture<?>> calls = new ArrayList<>();
+        for (int i = 0; i < prewarmConnections; i++) {
+            // The blocking client holds a connection per calling thread
+            calls.add(CompletableFuture.runAsync(() -> amazonDynamoDB.describeTable(tableName), executor));
+            calls.add(AsyncUserRepositoryImpl.<DescribeTableRequest, DescribeTableResult>call(
+                    amazonDynamoDBAsync::describeTableAsync, new DescribeTableRequest(tableName)));
+        }
+        warming = CompletableFuture.allOf(calls.toArray(new CompletableFuture<?>[0])).whenComplete((ignored, error) -> {
+            executor.shutdown();
+            if (error == null) {
+                log.info("Opened {} DynamoDB connections per client in {} ms", prewarmConnections,
+                        RequestTrace.millis(System.nanoTime() - start));
+            }
+        });
+    }
+
+    /**
+     * Wait for the connections started by {@link #startWarming()}, so the handshakes finish before
+     * the container can be frozen. Failures are logged and never stop the container from starting.
+     */
+    public void awaitWarming() {
+        CompletableFuture<Void> current = warming;
+        if (current == null) {
+            return;
+        }
+        try {
+            current.get(prewarmTimeoutMs, TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            log.warn("DynamoDB connections not opened within {} ms, continuing without them", prewarmTimeoutMs);
+        } catch (ExecutionException e) {
+            log.warn("Unable to open DynamoDB connections ahead of the first request: {}",
+                    Futures.unwrap(e.getCause()).getMessage());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Get a snapshot of connection lease times for this container.
+     *
+     * @return Current lease statistics
+     */
+    public AcquireStats getStats() {
+        long count = acquisitions.get();
+        long p99 = acquireLatencies.percentile();
+        return new AcquireStats(count, count == 0 ? 0 : acquireNanos.get() / count, Math.max(0, p99));
+    }
+
+    void recordAcquire(long nanos) {
+        RequestTrace trace = RequestTrace.current();
+        if (trace != null) {
+            trace.connectionAcquired(nanos);
+        }
+        acquireLatencies.record(nanos);
+        acquireNanos.addAndGet(nanos);
+        long count = acquisitions.incrementAndGet();
+        if (reportInterval > 0 && count % reportInterval == 0) {
+            log.info("DynamoDB connection leases: {}", getStats());
+        }
+    }
+
+    /**
+     * SDK metric collector that receives connection lease times and nothing else, so enabling it
+     * does not turn on the SDK's per-request metrics.
+     */
+    private final class AcquireTimeCollector extends MetricCollector {
+
+        private final ServiceMetricCollector serviceMetrics = new ServiceMetricCollector() {
+
+            @Override
+            public void collectByteThroughput(ByteThroughputProvider provider) {
+            }
+
+            @Override
+            public void collectLatency(ServiceLatencyProvider provider) {
+                if (provider.getServiceMetricType() == AWSServiceMetrics.HttpClientGetConnectionTime) {
+                    recordAcquire((long) (provider.getDurationMilli() * 1_000_000));
+                }
+            }
+
+            @Override
+            public boolean isEnabled() {
+                return true;
+            }
+        };
+
+        @Override
+        public boolean start() {
+            return true;
+        }
+
+        @Override
+        public boolean stop() {
+            return true;
+        }
+
+        @Override
+        public boolean isEnabled() {
+            return true;
+        }
+
+        @Override
+        public RequestMetricCollector getRequestMetricCollector() {
+            return RequestMetricCollector.NONE;
+        }
+
+        @Override
+        public ServiceMetricCollector getServiceMetricCollector() {
+            return serviceMetrics;
+        }
+    }
+
+    /**
+     * Snapshot of connection lease statistics.
+     */
+    @Getter
+    @AllArgsConstructor
+    public static class AcquireStats {
+
+        private final long acquisitions;
+        private final long meanNanos;
+        private final long p99Nanos;
+
+        @Override
+        public String toString() {
+            return "acquisitions=" + acquisitions + ", meanMs=" + RequestTrace.millis(meanNanos)
+                    + ", p99Ms=" + RequestTrace.millis(p99Nanos);
+        }
+    }
+
+}
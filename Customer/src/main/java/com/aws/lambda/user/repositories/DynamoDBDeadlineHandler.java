@@ -0,0 +1,32 @@
+package com.aws.lambda.user.repositories;
+
+import com.amazonaws.AmazonWebServiceRequest;
+import com.amazonaws.handlers.RequestHandler2;
+import com.aws.lambda.user.utils.Deadline;
+
+/**
+ * Gives every DynamoDB call made under a request {@link Deadline} the time that is left as its
+ * client execution timeout, retries included, and refuses to start calls once the deadline has passed.
+ * Calls made outside a request, such as background index builds, are left untouched.
+ */
+public class DynamoDBDeadlineHandler extends RequestHandler2 {
+
+    @Override
+    public AmazonWebServiceRequest beforeExecution(AmazonWebServiceRequest request) {
+        Deadline deadline = Deadline.current();
+        if (deadline == null) {
+            return request;
+        }
+        long remaining = deadline.remainingMillis();
+        if (remaining <= 0) {
+            String name = request.getClass().getSimpleName();
+            throw new DeadlineExceededException(name.endsWith("Request") ? name.substring(0, name.length() - "Request".length()) : name);
+        }
+        Integer timeout = request.getSdkClientExecutionTimeout();
+        if (timeout == null || timeout <= 0 || timeout > remaining) {
+            request.setSdkClientExecutionTimeout((int) Math.min(remaining, Integer.MAX_VALUE));
+        }
+        return request;
+    }
+
+}
@@ -0,0 +1,226 @@
+package com.aws.lambda.user.repositories;
+
+import com.amazonaws.AmazonClientException;
+import com.amazonaws.AmazonWebServiceRequest;
+import com.amazonaws.handlers.AsyncHandler;
+import com.amazonaws.services.dynamodbv2.AbstractAmazonDynamoDBAsync;
+import com.amazonaws.services.dynamodbv2.AmazonDynamoDB;
+import com.amazonaws.services.dynamodbv2.AmazonDynamoDBAsync;
+import com.amazonaws.services.dynamodbv2.model.AttributeAction;
+import com.amazonaws.services.dynamodbv2.model.AttributeValue;
+import com.amazonaws.services.dynamodbv2.model.AttributeValueUpdate;
+import com.amazonaws.services.dynamodbv2.model.BatchGetItemRequest;
+import com.amazonaws.services.dynamodbv2.model.BatchGetItemResult;
+import com.amazonaws.services.dynamodbv2.model.DeleteItemRequest;
+import com.amazonaws.services.dynamodbv2.model.DeleteItemResult;
+import com.amazonaws.services.dynamodbv2.model.GetItemRequest;
+import com.amazonaws.services.dynamodbv2.model.GetItemResult;
+import com.amazonaws.services.dynamodbv2.model.KeysAndAttributes;
+import com.amazonaws.services.dynamodbv2.model.PutItemRequest;
+import com.amazonaws.services.dynamodbv2.model.PutItemResult;
+import com.amazonaws.services.dynamodbv2.model.QueryRequest;
+import com.amazonaws.services.dynamodbv2.model.QueryResult;
+import com.amazonaws.services.dynamodbv2.model.ScanRequest;
+import com.amazonaws.services.dynamodbv2.model.ScanResult;
+import com.amazonaws.services.dynamodbv2.model.UpdateItemRequest;
+import com.amazonaws.services.dynamodbv2.model.UpdateItemResult;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.stereotype.Component;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Future;
+import java.util.function.Function;
+
+/**
+ * Keeps Lambda priming away from the real tables.
+ * Every DynamoDB client bean is wrapped so that calls made on a thread inside {@link #run(Runnable)}
+ * are answered by an in-process no-op table instead: items written while priming can be read back,
+ * queries and scans find nothing, conditions are not checked, and other operations, including
+ * update expressions, fail as unavailable. Calls from any other thread, such as background index
+ * refreshes running at the same time, reach DynamoDB as usual.
+ */
+@Component
+public class DynamoDBPriming implements BeanPostProcessor {
+
+    private final ThreadLocal<NoOpDynamoDB> active = new ThreadLocal<>();
+
+    /**
+     * Run priming work with the DynamoDB clients switched to a fresh no-op table on this thread.
+     * Asynchronous calls started on this thread complete before returning, so their callbacks stay
+     * on it as well.
+     *
+     * @param priming Work to run
+     */
+    public void run(Runnable priming) {
+        active.set(new NoOpDynamoDB());
+        try {
+            priming.run();
+        } finally {
+            active.remove();
+        }
+    }
+
+    /**
+     * Check whether the current thread is running priming work.
+     *
+     * @return true inside {@link #run(Runnable)}
+     */
+    public boolean isActive() {
+        return active.get() != null;
+    }
+
+    @Override
+    public Object postProcessAfterInitialization(Object bean, String beanName) {
+        if (bean instanceof AmazonDynamoDBAsync) {
+            return wrap(AmazonDynamoDBAsync.class, (AmazonDynamoDBAsync) bean);
+        }
+        if (bean instanceof AmazonDynamoDB) {
+            return wrap(AmazonDynamoDB.class, (AmazonDynamoDB) bean);
+        }
+        return bean;
+    }
+
+    private <T> T wrap(Class<T> type, T client) {
+        return type.cast(Proxy.newProxyInstance(type.getClassLoader(), new Class<?>[]{type}, (proxy, method, args) -> {
+            NoOpDynamoDB noOp = active.get();
+            try {
+                return method.invoke(noOp != null ? noOp : client, args);
+            } catch (InvocationTargetException e) {
+                if (noOp != null && e.getCause() instanceof UnsupportedOperationException) {
+                    throw new AmazonClientException(method.getName() + " is not available while priming");
+                }
+                throw e.getCause();
+            }
+        }));
+    }
+
+    /**
+     * Table of the items written while priming, matched by key attributes.
+     * Not thread safe; it is only ever used by the thread that created it.
+     */
+    static class NoOpDynamoDB extends AbstractAmazonDynamoDBAsync {
+
+        private final Map<String, List<Map<String, AttributeValue>>> tables = new HashMap<>();
+
+        @Override
+        public PutItemResult putItem(PutItemRequest request) {
+            // Key attributes are unknown here, so the newest item shadows older ones with the same key
+            tables.computeIfAbsent(request.getTableName(), table -> new ArrayList<>()).add(0, new HashMap<>(request.getItem()));
+            return new PutItemResult();
+        }
+
+        @Override
+        public UpdateItemResult updateItem(UpdateItemRequest request) {
+            if (request.getUpdateExpression() != null) {
+                throw new UnsupportedOperationException();
+            }
+            // Attribute updates, as written by the mapper's UPDATE save behaviours
+            Map<String, AttributeValue> item = find(request.getTableName(), request.getKey());
+            item = item == null ? new HashMap<>(request.getKey()) : item;
+            if (request.getAttributeUpdates() != null) {
+                for (Map.Entry<String, AttributeValueUpdate> update : request.getAttributeUpdates().entrySet()) {
+                    if (AttributeAction.DELETE.toString().equals(update.getValue().getAction())) {
+                        item.remove(update.getKey());
+                    } else {
+                        item.put(update.getKey(), update.getValue().getValue());
+                    }
+                }
+            }
+            tables.computeIfAbsent(request.getTableName(), table -> new ArrayList<>()).add(0, item);
+            return new UpdateItemResult();
+        }
+
+        @Override
+        public GetItemResult getItem(GetItemRequest request) {
+            return new GetItemResult().withItem(find(request.getTableName(), request.getKey()));
+        }
+
+        @Override
+        public DeleteItemResult deleteItem(DeleteItemRequest request) {
+            List<Map<String, AttributeValue>> items = tables.getOrDefault(request.getTableName(), Collections.emptyList());
+            items.removeIf(item -> matches(item, request.getKey()));
+            return new DeleteItemResult();
+        }
+
+        @Override
+        public BatchGetItemResult batchGetItem(BatchGetItemRequest request) {
+            Map<String, List<Map<String, AttributeValue>>> responses = new HashMap<>();
+            for (Map.Entry<String, KeysAndAttributes> entry : request.getRequestItems().entrySet()) {
+                List<Map<String, AttributeValue>> found = new ArrayList<>();
+                for (Map<String, AttributeValue> key : entry.getValue().getKeys()) {
+                    Map<String, AttributeValue> item = find(entry.getKey(), key);
+                    if (item != null) {
+                        found.add(item);
+                    }
+                }
+                responses.put(entry.getKey(), found);
+            }
+            return new BatchGetItemResult().withResponses(responses).withUnprocessedKeys(Collections.emptyMap());
+        }
+
+        @Override
+        public QueryResult query(QueryRequest request) {
+            return new QueryResult().withItems(Collections.emptyList()).withCount(0).withScannedCount(0);
+        }
+
+        @Override
+        public ScanResult scan(ScanRequest request) {
+            return new ScanResult().withItems(Collections.emptyList()).withCount(0).withScannedCount(0);
+        }
+
+        @Override
+        public Future<GetItemResult> getItemAsync(GetItemRequest request,
+                                                  AsyncHandler<GetItemRequest, GetItemResult> handler) {
+            return complete(request, handler, this::getItem);
+        }
+
+        @Override
+        public Future<BatchGetItemResult> batchGetItemAsync(BatchGetItemRequest request,
+                                                            AsyncHandler<BatchGetItemRequest, BatchGetItemResult> handler) {
+            return complete(request, handler, this::batchGetItem);
+        }
+
+        @Override
+        public Future<QueryResult> queryAsync(QueryRequest request,
+                                              AsyncHandler<QueryRequest, QueryResult> handler) {
+            return complete(request, handler, this::query);
+        }
+
+        @Override
+        public Future<ScanResult> scanAsync(ScanRequest request,
+                                            AsyncHandler<ScanRequest, ScanResult> handler) {
+            return complete(request, handler, this::scan);
+        }
+
+        private Map<String, AttributeValue> find(String tableName, Map<String, AttributeValue> key) {
+            for (Map<String, AttributeValue> item : tables.getOrDefault(tableName, Collections.emptyList())) {
+                if (matches(item, key)) {
+                    return new HashMap<>(item);
+                }
+            }
+            return null;
+        }
+
+        private static boolean matches(Map<String, AttributeValue> item, Map<String, AttributeValue> key) {
+            return item.entrySet().containsAll(key.entrySet());
+        }
+
+        private static <Q extends AmazonWebServiceRequest, R> Future<R> complete(Q request, AsyncHandler<Q, R> handler,
+                                                                                 Function<Q, R> operation) {
+            R result = operation.apply(request);
+            if (handler != null) {
+                handler.onSuccess(request, result);
+            }
+            return CompletableFuture.completedFuture(result);
+        }
+
+    }
+
+}
@@ -0,0 +1,244 @@
+package com.aws.lambda.user.repositories;
+
+import com.aws.lambda.user.utils.LatencyWindow;
+import com.aws.lambda.user.utils.RequestTrace;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * Hedging policy for latency-critical DynamoDB point reads.
+ * If the first request has not answered within a delay derived from recent read latencies,
+ * a second identical request is fired and whichever returns first wins.
+ * Hedges are capped at a fraction of all reads so extra capacity use stays bounded.
+ */
+@Slf4j
+@Component
+public class HedgedReadPolicy {
+
+    private static final int MIN_SAMPLES = 32;
+
+    @Autowired
+    private DynamoDBPriming dynamoDBPriming;
+
+    @Value("${dynamodb.hedging.enabled:false}")
+    private boolean enabled;
+
+    @Value("${dynamodb.hedging.percentile:95}")
+    private double percentile;
+
+    @Value("${dynamodb.hedging.min-delay-ms:5}")
+    private long minDelayMs;
+
+    @Value("${dynamodb.hedging.max-delay-ms:250}")
+    private long maxDelayMs;
+
+    @Value("${dynamodb.hedging.max-hedge-ratio:0.05}")
+    private double maxHedgeRatio;
+
+    @Value("${dynamodb.hedging.threads:8}")
+    private int threads;
+
+    @Value("${dynamodb.hedging.report-interval:1000}")
+    private long reportInterval;
+
+    private final AtomicLong reads = new AtomicLong();
+    private final AtomicLong hedges = new AtomicLong();
+    private final AtomicLong hedgeWins = new AtomicLong();
+    private final AtomicLong hedgesSuppressed = new AtomicLong();
+
+    private LatencyWindow latencies;
+    private ExecutorService executor;
+
+    @PostConstruct
+    void init() {
+        latencies = new LatencyWindow(1024, percentile);
+        if (enabled) {
+            AtomicInteger counter = new AtomicInteger();
+            executor = RequestTrace.propagating(new ThreadPoolExecutor(0, threads, 60L, TimeUnit.SECONDS, new SynchronousQueue<>(), runnable -> {
+                Thread thread = new Thread(runnable, "dynamodb-hedge-" + counter.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            }));
+        }
+    }
+
+    @PreDestroy
+    void shutdown() {
+        if (executor != null) {
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * Execute a read, hedging it if the policy is enabled.
+     *
+     * @param read Idempotent read operation
+     * @param <T>  Result type
+     * @return Result of whichever attempt completed first
+     */
+    public <T> T execute(Supplier<T> read) {
+        // Priming is flagged per thread, so its reads must stay on the caller's to reach the no-op table
+        if (!enabled || dynamoDBPriming.isActive()) {
+            return read.get();
+        }
+        long count = reads.incrementAndGet();
+        if (reportInterval > 0 && count % reportInterval == 0) {
+            log.info("Hedged reads: {}", getStats());
+        }
+
+        CompletableFuture<T> primary;
+        try {
+            primary = CompletableFuture.supplyAsync(timed(read), executor);
+        } catch (RejectedExecutionException e) {
+            return timed(read).get();
+        }
+
+        try {
+            return primary.get(currentDelayMs(), TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            // Primary is slow, fall through to hedge
+        } catch (ExecutionException e) {
+            throw propagate(e.getCause());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting for DynamoDB read", e);
+        }
+
+        if (!tryAcquireHedge()) {
+            hedgesSuppressed.incrementAndGet();
+            return await(primary);
+        }
+
+        CompletableFuture<T> hedge;
+        try {
+            hedge = CompletableFuture.supplyAsync(read, executor);
+        } catch (RejectedExecutionException e) {
+            hedges.decrementAndGet();
+            hedgesSuppressed.incrementAndGet();
+            return await(primary);
+        }
+
+        CompletableFuture<T> winner = new CompletableFuture<>();
+        AtomicInteger failures = new AtomicInteger();
+        primary.whenComplete((value, error) -> {
+            if (error == null) {
+                winner.complete(value);
+            } else if (failures.incrementAndGet() == 2) {
+                winner.completeExceptionally(error);
+            }
+        });
+        hedge.whenComplete((value, error) -> {
+            if (error == null) {
+                // Count the win before completing so callers never observe a stale counter
+                hedgeWins.incrementAndGet();
+                if (!winner.complete(value)) {
+                    hedgeWins.decrementAndGet();
+                }
+            } else if (failures.incrementAndGet() == 2) {
+                winner.completeExceptionally(error);
+            }
+        });
+        return await(winner);
+    }
+
+    /**
+     * Get the current hedge delay.
+     *
+     * @return Delay in milliseconds before a hedge is fired
+     */
+    public long currentDelayMs() {
+        if (latencies.size() < MIN_SAMPLES) {
+            return maxDelayMs;
+        }
+        return Math.max(minDelayMs, Math.min(maxDelayMs, latencies.percentile()));
+    }
+
+    /**
+     * Get a snapshot of the hedging counters.
+     *
+     * @return Current hedging statistics
+     */
+    public HedgingStats getStats() {
+        return new HedgingStats(reads.get(), hedges.get(), hedgeWins.get(), hedgesSuppressed.get(), currentDelayMs());
+    }
+
+    private boolean tryAcquireHedge() {
+        while (true) {
+            long current = hedges.get();
+            long allowed = (long) (reads.get() * maxHedgeRatio);
+            if (current >= allowed) {
+                return false;
+            }
+            if (hedges.compareAndSet(current, current + 1)) {
+                return true;
+            }
+        }
+    }
+
+    private <T> Supplier<T> timed(Supplier<T> read) {
+        return () -> {
+            long start = System.nanoTime();
+            T result = read.get();
+            latencies.record(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+            return result;
+        };
+    }
+
+    private static <T> T await(CompletableFuture<T> future) {
+        try {
+            return future.join();
+        } catch (CompletionException e) {
+            throw propagate(e.getCause());
+        }
+    }
+
+    private static RuntimeException propagate(Throwable cause) {
+        if (cause instanceof RuntimeException) {
+            return (RuntimeException) cause;
+        }
+        if (cause instanceof Error) {
+            throw (Error) cause;
+        }
+        return new IllegalStateException(cause);
+    }
+
+    /**
+     * Snapshot of hedged read counters.
+     */
+    @Getter
+    @AllArgsConstructor
+    public static class HedgingStats {
+
+        private final long reads;
+        private final long hedges;
+        private final long hedgeWins;
+        private final long hedgesSuppressed;
+        private final long delayMs;
+
+        @Override
+        public String toString() {
+            return "reads=" + reads + ", hedges=" + hedges + ", hedgeWins=" + hedgeWins
+                    + ", suppressed=" + hedgesSuppressed + ", delayMs=" + delayMs;
+        }
+    }
+
+}
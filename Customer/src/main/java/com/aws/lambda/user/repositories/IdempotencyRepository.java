@@ -0,0 +1,43 @@
+package com.aws.lambda.user.repositories;
+
+import com.aws.lambda.user.entities.IdempotencyRecord;
+
+/**
+ * Repository interface for idempotency record data access operations.
+ * Defines methods for interacting with the idempotency record data store.
+ */
+public interface IdempotencyRepository {
+
+    /**
+     * Write an in-progress record unless the key is already held by a completed
+     * record or by an in-progress record whose lease has not expired.
+     * 
+     * @param record In-progress record to write
+     * @return true if the key was reserved, false if it is already taken
+     */
+    boolean reserve(IdempotencyRecord record);
+
+    /**
+     * Find a record by its key.
+     * 
+     * @param idempotencyKey Scoped idempotency key
+     * @return Record if found, null otherwise
+     */
+    IdempotencyRecord findById(String idempotencyKey);
+
+    /**
+     * Save a record, replacing any existing one.
+     * 
+     * @param record Record to save
+     * @return Saved record
+     */
+    IdempotencyRecord save(IdempotencyRecord record);
+
+    /**
+     * Delete a record by its key.
+     * 
+     * @param idempotencyKey Scoped idempotency key
+     */
+    void delete(String idempotencyKey);
+
+}
@@ -0,0 +1,71 @@
+package com.aws.lambda.user.repositories;
+
+import com.amazonaws.services.dynamodbv2.datamodeling.DynamoDBMapper;
+import com.amazonaws.services.dynamodbv2.datamodeling.DynamoDBMapperConfig;
+import com.amazonaws.services.dynamodbv2.datamodeling.DynamoDBSaveExpression;
+import com.amazonaws.services.dynamodbv2.model.AttributeValue;
+import com.amazonaws.services.dynamodbv2.model.ComparisonOperator;
+import com.amazonaws.services.dynamodbv2.model.ConditionalCheckFailedException;
+import com.amazonaws.services.dynamodbv2.model.ConditionalOperator;
+import com.amazonaws.services.dynamodbv2.model.ExpectedAttributeValue;
+import com.aws.lambda.user.entities.IdempotencyRecord;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Repository;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Repository implementation for idempotency record data access operations using DynamoDB.
+ * Handles all database interactions for idempotency-related operations.
+ */
+@Repository
+public class IdempotencyRepositoryImpl implements IdempotencyRepository {
+
+    private static final DynamoDBMapperConfig CONSISTENT_READS = DynamoDBMapperConfig.builder()
+            .withConsistentReads(DynamoDBMapperConfig.ConsistentReads.CONSISTENT)
+            .build();
+
+    @Autowired
+    private DynamoDBMapper dynamoDBMapper;
+
+    @Override
+    public boolean reserve(IdempotencyRecord record) {
+        // Either no record exists, or a previous attempt stopped without releasing its lease
+        Map<String, ExpectedAttributeValue> expected = new HashMap<>();
+        expected.put("idempotencyKey", new ExpectedAttributeValue(false));
+        expected.put("leaseExpiresAt", new ExpectedAttributeValue()
+                .withComparisonOperator(ComparisonOperator.LT)
+                .withAttributeValueList(new AttributeValue().withN(Long.toString(System.currentTimeMillis()))));
+
+        DynamoDBSaveExpression saveExpression = new DynamoDBSaveExpression()
+                .withExpected(expected)
+                .withConditionalOperator(ConditionalOperator.OR);
+        try {
+            dynamoDBMapper.save(record, saveExpression);
+            return true;
+        } catch (ConditionalCheckFailedException e) {
+            return false;
+        }
+    }
+
+    @Override
+    public IdempotencyRecord findById(String idempotencyKey) {
+        // A retry usually follows the first attempt closely, so read its latest state
+        return dynamoDBMapper.load(IdempotencyRecord.class, idempotencyKey, CONSISTENT_READS);
+    }
+
+    @Override
+    public IdempotencyRecord save(IdempotencyRecord record) {
+        dynamoDBMapper.save(record);
+        return record;
+    }
+
+    @Override
+    public void delete(String idempotencyKey) {
+        IdempotencyRecord record = new IdempotencyRecord();
+        record.setIdempotencyKey(idempotencyKey);
+        dynamoDBMapper.delete(record);
+    }
+
+}
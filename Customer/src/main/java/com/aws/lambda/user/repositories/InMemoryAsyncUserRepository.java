@@ -0,0 +1,57 @@
+package com.aws.lambda.user.repositories;
+
+import com.aws.lambda.user.entities.User;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Profile;
+import org.springframework.stereotype.Repository;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Asynchronous view of the {@link InMemoryUserRepository}.
+ * Lookups are answered on the calling thread and return completed futures.
+ */
+@Repository
+@Profile(InMemoryUserRepository.PROFILE)
+public class InMemoryAsyncUserRepository implements AsyncUserRepository {
+
+    @Autowired
+    private InMemoryUserRepository inMemoryUserRepository;
+
+    @Override
+    public CompletableFuture<User> findById(String uuid) {
+        return CompletableFuture.completedFuture(inMemoryUserRepository.findById(uuid));
+    }
+
+    @Override
+    public CompletableFuture<List<User>> findByIds(Collection<String> uuids) {
+        List<User> users = new ArrayList<>();
+        for (String uuid : uuids) {
+            User user = inMemoryUserRepository.findById(uuid);
+            if (user != null) {
+                users.add(user);
+            }
+        }
+        return CompletableFuture.completedFuture(users);
+    }
+
+    @Override
+    public CompletableFuture<List<User>> findByDepartment(String department) {
+        return CompletableFuture.completedFuture(inMemoryUserRepository.findByDepartment(department));
+    }
+
+    @Override
+    public CompletableFuture<Map<String, List<User>>> findByDepartments(Collection<String> departments) {
+        Map<String, List<User>> users = new LinkedHashMap<>();
+        for (String department : departments) {
+            users.computeIfAbsent(department, inMemoryUserRepository::findByDepartment);
+        }
+        return CompletableFuture.completedFuture(users);
+    }
+
+}
@@ -0,0 +1,518 @@
+package com.aws.lambda.user.repositories;
+
+import com.aws.lambda.user.entities.User;
+import com.aws.lambda.user.models.Reassignment;
+import com.aws.lambda.user.models.ReassignmentResult;
+import com.aws.lambda.user.models.UserQuery;
+import com.aws.lambda.user.models.UserQueryPage;
+import org.springframework.context.annotation.Profile;
+import org.springframework.stereotype.Repository;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Locale;
+import java.util.NavigableSet;
+import java.util.Objects;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
+
+/**
+ * In-memory repository for local runs, load tests and benchmarks without DynamoDB.
+ * Selected by the {@value #PROFILE} profile, in which it replaces {@link UserRepositoryImpl} and,
+ * through {@link InMemoryAsyncUserRepository}, {@link AsyncUserRepositoryImpl}.
+ *
+ * Users are kept in a concurrent map ordered by UUID, with secondary indexes on email, department,
+ * role and active flag that are updated together with the map on every write. Writes to different
+ * users run in parallel; {@link #findAll()} briefly excludes writers so that it returns a single
+ * point in time. Stored users are private copies that share their UUID instance with the indexes
+ * and a single instance per distinct department and role, which keeps a typical user, its strings
+ * and its index entries to about 500 bytes of heap.
+ */
+@Repository
+@Profile(InMemoryUserRepository.PROFILE)
+public class InMemoryUserRepository implements UserRepository {
+
+    /**
+     * Profile that selects this repository.
+     */
+    public static final String PROFILE = "in-memory";
+
+    private static final int LOCK_STRIPES = 64;
+
+    private final ConcurrentSkipListMap<String, User> users = new ConcurrentSkipListMap<>();
+    private final ConcurrentMap<String, String> emailIndex = new ConcurrentHashMap<>();
+    private final ConcurrentMap<String, Postings> departmentIndex = new ConcurrentHashMap<>();
+    private final ConcurrentMap<String, Postings> roleIndex = new ConcurrentHashMap<>();
+    private final ConcurrentMap<Boolean, Postings> activeIndex = new ConcurrentHashMap<>();
+    private final ConcurrentMap<String, String> sharedValues = new ConcurrentHashMap<>();
+    private final AtomicLong size = new AtomicLong();
+
+    // Writers share the lock and serialize per user on a stripe; snapshots take it exclusively
+    private final ReentrantReadWriteLock snapshotLock = new ReentrantReadWriteLock();
+    private final Object[] stripes = new Object[LOCK_STRIPES];
+
+    public InMemoryUserRepository() {
+        for (int i = 0; i < LOCK_STRIPES; i++) {
+            stripes[i] = new Object();
+        }
+    }
+
+    @Override
+    public User save(User user) {
+        if (user.getUuid() == null) {
+            // Same key DynamoDBAutoGeneratedKey would have generated
+            user.setUuid(UUID.randomUUID().toString());
+        }
+        User stored = copy(user, true);
+        Lock lock = snapshotLock.readLock();
+        lock.lock();
+        try {
+            synchronized (stripe(stored.getUuid())) {
+                User previous = users.put(stored.getUuid(), stored);
+                if (previous == null) {
+                    size.incrementAndGet();
+                }
+                reindex(previous, stored);
+            }
+        } finally {
+            lock.unlock();
+        }
+        return user;
+    }
+
+    @Override
+    public User findById(String uuid) {
+        User user = users.get(uuid);
+        return user == null ? null : copy(user, false);
+    }
+
+    @Override
+    public List<User> findAll() {
+        List<User> snapshot;
+        Lock lock = snapshotLock.writeLock();
+        lock.lock();
+        try {
+            snapshot = new ArrayList<>(users.values());
+        } finally {
+            lock.unlock();
+        }
+        // Stored users are never modified, so they can be copied outside the lock
+        List<User> copies = new ArrayList<>(snapshot.size());
+        for (User user : snapshot) {
+            copies.add(copy(user, false));
+        }
+        return copies;
+    }
+
+    @Override
+    public UserQueryPage findAll(String cursor) {
+        // Reads never approach a deadline here, so every page is the last
+        return UserQueryPage.builder().users(findAll()).build();
+    }
+
+    @Override
+    public boolean updatePasswordHash(String uuid, String currentHash, String newHash) {
+        return update(uuid, user -> Objects.equals(currentHash, user.getPasswordHash()), user -> user.setPasswordHash(newHash));
+    }
+
+    @Override
+    public void delete(String uuid) {
+        Lock lock = snapshotLock.readLock();
+        lock.lock();
+        try {
+            synchronized (stripe(uuid)) {
+                User previous = users.remove(uuid);
+                if (previous != null) {
+                    size.decrementAndGet();
+                    reindex(previous, null);
+                }
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public List<User> findByDepartment(String department) {
+        return resolve(departmentIndex.get(department), user -> Objects.equals(department, user.getDepartment()));
+    }
+
+    @Override
+    public UserQueryPage findByDepartment(String department, String cursor) {
+        return UserQueryPage.builder().users(findByDepartment(department)).build();
+    }
+
+    @Override
+    public List<User> findByRole(String role) {
+        return resolve(roleIndex.get(role), user -> Objects.equals(role, user.getRole()));
+    }
+
+    @Override
+    public User findByEmail(String email) {
+        String uuid = emailIndex.get(email);
+        User user = uuid == null ? null : users.get(uuid);
+        return user == null || !email.equals(user.getEmail()) ? null : copy(user, false);
+    }
+
+    @Override
+    public List<User> findByNameContaining(String name) {
+        String lowerName = name.toLowerCase(Locale.ROOT);
+        List<User> matches = new ArrayList<>();
+        for (User user : users.values()) {
+            if (user.getName() != null && user.getName().toLowerCase(Locale.ROOT).contains(lowerName)) {
+                matches.add(copy(user, false));
+            }
+        }
+        return matches;
+    }
+
+    @Override
+    public boolean existsById(String uuid) {
+        return users.containsKey(uuid);
+    }
+
+    @Override
+    public boolean existsByEmail(String email) {
+        return findByEmail(email) != null;
+    }
+
+    @Override
+    public long count() {
+        // Maintained by every write, so counting never iterates
+        return size.get();
+    }
+
+    @Override
+    public UserQueryPage query(UserQuery query) {
+        if (query.getMinAge() != null && query.getMaxAge() != null && query.getMinAge() > query.getMaxAge()) {
+            throw new IllegalArgumentException("minAge must not be greater than maxAge");
+        }
+        List<String> fields = fields(query.getFields());
+        String after = decodeCursor(query.getCursor());
+
+        // Walk the smallest posting list of an equality predicate, or all users without one
+        String indexName = null;
+        NavigableSet<String> candidates = users.navigableKeySet();
+        if (query.getEmail() != null) {
+            String uuid = emailIndex.get(query.getEmail());
+            indexName = "email";
+            candidates = new ConcurrentSkipListSet<>(uuid == null ? Collections.emptySet() : Collections.singleton(uuid));
+        } else {
+            int smallest = Integer.MAX_VALUE;
+            Postings[] postings = {
+                    query.getDepartment() == null ? null : departmentIndex.getOrDefault(query.getDepartment(), Postings.EMPTY),
+                    query.getRole() == null ? null : roleIndex.getOrDefault(query.getRole(), Postings.EMPTY),
+                    query.getIsActive() == null ? null : activeIndex.getOrDefault(query.getIsActive(), Postings.EMPTY)};
+            String[] names = {"department", "role", "isActive"};
+            for (int i = 0; i < postings.length; i++) {
+                if (postings[i] != null && postings[i].size.get() < smallest) {
+                    smallest = postings[i].size.get();
+                    indexName = names[i];
+                    candidates = postings[i].ids;
+                }
+            }
+        }
+        if (after != null) {
+            candidates = candidates.tailSet(after, false);
+        }
+
+        List<User> page = new ArrayList<>();
+        int examined = 0;
+        String last = null;
+        Iterator<String> iterator = candidates.iterator();
+        while (page.size() < query.getLimit() && iterator.hasNext()) {
+            String uuid = iterator.next();
+            User user = users.get(uuid);
+            examined++;
+            if (user != null && matches(query, user)) {
+                page.add(fields == null ? copy(user, false) : project(user, fields));
+                last = uuid;
+            }
+        }
+        return UserQueryPage.builder()
+                .users(page)
+                .nextCursor(iterator.hasNext() && last != null ? encodeCursor(last) : null)
+                .plan((indexName == null ? "memory scan" : "memory index=" + indexName) + "; examined=" + examined)
+                .build();
+    }
+
+    @Override
+    public ReassignmentResult reassign(Reassignment reassignment) {
+        // Every write counts as one unit of the budget
+        int budget = reassignment.getMaxWriteUnits() == null ? Integer.MAX_VALUE : reassignment.getMaxWriteUnits();
+        LocalDateTime now = LocalDateTime.now();
+        int updated = 0;
+        int skipped = 0;
+        String nextCursor = null;
+        List<ReassignmentResult.Change> changes = new ArrayList<>();
+        if (reassignment.isDepartmentTransfer()) {
+            String from = reassignment.getFromDepartment();
+            Postings postings = departmentIndex.getOrDefault(from, Postings.EMPTY);
+            String after = decodeCursor(reassignment.getCursor());
+            Iterator<String> iterator = (after == null ? postings.ids : postings.ids.tailSet(after, false)).iterator();
+            while (updated + skipped < budget && iterator.hasNext()) {
+                String uuid = iterator.next();
+                boolean changed = update(uuid, user -> from.equals(user.getDepartment()), user -> {
+                    changes.add(new ReassignmentResult.Change(uuid, "department", from, reassignment.getToDepartment()));
+                    user.setDepartment(reassignment.getToDepartment());
+                    user.setUpdatedAt(now);
+                });
+                if (changed) {
+                    updated++;
+                } else {
+                    skipped++;
+                }
+                nextCursor = iterator.hasNext() ? encodeCursor(uuid) : null;
+            }
+        } else {
+            List<String> uuids = reassignment.getUuids();
+            int offset = decodeOffset(reassignment.getCursor(), uuids.size());
+            for (; offset < uuids.size() && updated + skipped < budget; offset++) {
+                boolean changed = update(uuids.get(offset), user -> !reassignment.getRole().equals(user.getRole()), user -> {
+                    changes.add(new ReassignmentResult.Change(user.getUuid(), "role", user.getRole(), reassignment.getRole()));
+                    user.setRole(reassignment.getRole());
+                    user.setUpdatedAt(now);
+                });
+                if (changed) {
+                    updated++;
+                } else {
+                    skipped++;
+                }
+            }
+            nextCursor = offset < uuids.size() ? encodeCursor(String.valueOf(offset)) : null;
+        }
+        return ReassignmentResult.builder()
+                .matched(updated + skipped)
+                .updated(updated)
+                .skipped(skipped)
+                .consumedWriteUnits(updated + skipped)
+                .mode("memory")
+                .nextCursor(nextCursor)
+                .changes(changes)
+                .build();
+    }
+
+    private boolean update(String uuid, Predicate<User> condition, Consumer<User> change) {
+        Lock lock = snapshotLock.readLock();
+        lock.lock();
+        try {
+            synchronized (stripe(uuid)) {
+                User previous = users.get(uuid);
+                if (previous == null || !condition.test(previous)) {
+                    return false;
+                }
+                User changed = copy(previous, false);
+                change.accept(changed);
+                User stored = copy(changed, true);
+                users.put(uuid, stored);
+                reindex(previous, stored);
+                return true;
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private Object stripe(String uuid) {
+        return stripes[(uuid.hashCode() & 0x7FFFFFFF) % LOCK_STRIPES];
+    }
+
+    private void reindex(User previous, User current) {
+        String uuid = current != null ? current.getUuid() : previous.getUuid();
+        String previousEmail = previous == null ? null : previous.getEmail();
+        String currentEmail = current == null ? null : current.getEmail();
+        if (!Objects.equals(previousEmail, currentEmail)) {
+            if (previousEmail != null) {
+                emailIndex.remove(previousEmail, uuid);
+            }
+            if (currentEmail != null) {
+                emailIndex.put(currentEmail, uuid);
+            }
+        }
+        move(departmentIndex, previous == null ? null : previous.getDepartment(), current == null ? null : current.getDepartment(), uuid);
+        move(roleIndex, previous == null ? null : previous.getRole(), current == null ? null : current.getRole(), uuid);
+        move(activeIndex, previous == null ? null : previous.getIsActive(), current == null ? null : current.getIsActive(), uuid);
+    }
+
+    private static <K> void move(ConcurrentMap<K, Postings> index, K from, K to, String uuid) {
+        if (Objects.equals(from, to)) {
+            return;
+        }
+        if (from != null) {
+            index.computeIfPresent(from, (key, postings) -> postings.remove(uuid) ? null : postings);
+        }
+        if (to != null) {
+            index.compute(to, (key, postings) -> (postings == null ? new Postings() : postings).add(uuid));
+        }
+    }
+
+    private List<User> resolve(Postings postings, Predicate<User> stillMatches) {
+        if (postings == null) {
+            return new ArrayList<>();
+        }
+        List<User> found = new ArrayList<>(postings.size.get());
+        for (String uuid : postings.ids) {
+            User user = users.get(uuid);
+            // Skip users deleted or moved since the posting list was read
+            if (user != null && stillMatches.test(user)) {
+                found.add(copy(user, false));
+            }
+        }
+        return found;
+    }
+
+    private User copy(User user, boolean share) {
+        return User.builder()
+                .uuid(user.getUuid())
+                .name(user.getName())
+                .email(user.getEmail())
+                .age(user.getAge())
+                .department(share ? share(user.getDepartment()) : user.getDepartment())
+                .role(share ? share(user.getRole()) : user.getRole())
+                .phoneNumber(user.getPhoneNumber())
+                .createdAt(user.getCreatedAt())
+                .updatedAt(user.getUpdatedAt())
+                .isActive(user.getIsActive())
+                .passwordHash(user.getPasswordHash())
+                .build();
+    }
+
+    private String share(String value) {
+        return value == null ? null : sharedValues.computeIfAbsent(value, key -> key);
+    }
+
+    private static boolean matches(UserQuery query, User user) {
+        return (query.getDepartment() == null || query.getDepartment().equals(user.getDepartment()))
+                && (query.getRole() == null || query.getRole().equals(user.getRole()))
+                && (query.getEmail() == null || query.getEmail().equals(user.getEmail()))
+                && (query.getIsActive() == null || query.getIsActive().equals(user.getIsActive()))
+                && (query.getMinAge() == null || user.getAge() != null && user.getAge() >= query.getMinAge())
+                && (query.getMaxAge() == null || user.getAge() != null && user.getAge() <= query.getMaxAge());
+    }
+
+    private static List<String> fields(List<String> fields) {
+        if (fields == null || fields.isEmpty()) {
+            return null;
+        }
+        List<String> trimmed = new ArrayList<>();
+        for (String field : fields) {
+            if (!UserQueryPlanner.FIELDS.contains(field.trim())) {
+                throw new IllegalArgumentException("Unknown field: " + field.trim());
+            }
+            trimmed.add(field.trim());
+        }
+        return trimmed;
+    }
+
+    private static User project(User user, List<String> fields) {
+        User projected = User.builder().uuid(user.getUuid()).build();
+        for (String field : fields) {
+            switch (field) {
+                case "name":
+                    projected.setName(user.getName());
+                    break;
+                case "email":
+                    projected.setEmail(user.getEmail());
+                    break;
+                case "age":
+                    projected.setAge(user.getAge());
+                    break;
+                case "department":
+                    projected.setDepartment(user.getDepartment());
+                    break;
+                case "role":
+                    projected.setRole(user.getRole());
+                    break;
+                case "createdAt":
+                    projected.setCreatedAt(user.getCreatedAt());
+                    break;
+                case "updatedAt":
+                    projected.setUpdatedAt(user.getUpdatedAt());
+                    break;
+                case "isActive":
+                    projected.setIsActive(user.getIsActive());
+                    break;
+                case "phoneNumber":
+                    projected.setPhoneNumber(user.getPhoneNumber());
+                    break;
+                default:
+                    break;
+            }
+        }
+        return projected;
+    }
+
+    private static String encodeCursor(String uuid) {
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(uuid.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static int decodeOffset(String cursor, int size) {
+        String offset = decodeCursor(cursor);
+        if (offset == null) {
+            return 0;
+        }
+        try {
+            int value = Integer.parseInt(offset);
+            if (value >= 0 && value <= size) {
+                return value;
+            }
+        } catch (NumberFormatException e) {
+            // Reported below
+        }
+        throw new IllegalArgumentException("Invalid cursor");
+    }
+
+    private static String decodeCursor(String cursor) {
+        if (cursor == null || cursor.isEmpty()) {
+            return null;
+        }
+        try {
+            return new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Invalid cursor");
+        }
+    }
+
+    /**
+     * UUIDs of the users with one value of an indexed attribute, in UUID order, with their count.
+     */
+    private static final class Postings {
+
+        private static final Postings EMPTY = new Postings();
+
+        private final ConcurrentSkipListSet<String> ids = new ConcurrentSkipListSet<>();
+        private final AtomicInteger size = new AtomicInteger();
+
+        Postings add(String uuid) {
+            if (ids.add(uuid)) {
+                size.incrementAndGet();
+            }
+            return this;
+        }
+
+        /**
+         * @return true if the posting list is now empty and can be dropped
+         */
+        boolean remove(String uuid) {
+            if (ids.remove(uuid)) {
+                size.decrementAndGet();
+            }
+            return ids.isEmpty();
+        }
+    }
+
+}
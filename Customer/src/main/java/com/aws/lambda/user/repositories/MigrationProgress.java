@@ -0,0 +1,118 @@
+package com.aws.lambda.user.repositories;
+
+import com.amazonaws.services.dynamodbv2.AmazonDynamoDB;
+import com.amazonaws.services.dynamodbv2.model.AttributeValue;
+import com.amazonaws.services.dynamodbv2.model.ConditionalCheckFailedException;
+import com.amazonaws.services.dynamodbv2.model.GetItemRequest;
+import com.amazonaws.services.dynamodbv2.model.PutItemRequest;
+import com.amazonaws.services.dynamodbv2.model.UpdateItemRequest;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Profile;
+import org.springframework.stereotype.Component;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Records which parallel scan segments of the User table a background migration has finished,
+ * so that a restarted migration skips them and readers can tell when a backfill is complete.
+ * Each migration is one item of the Migration table, keyed by an ID that changes whenever the
+ * target of the migration does. The item holds the number of segments the table was split into and
+ * the set of those finished; a migration run with a different number of segments starts over.
+ */
+@Component
+@Profile("!" + InMemoryUserRepository.PROFILE)
+public class MigrationProgress {
+
+    public static final String TABLE_NAME = "Migration";
+
+    private static final String KEY = "migrationId";
+    private static final String TOTAL_SEGMENTS = "totalSegments";
+    private static final String FINISHED_SEGMENTS = "finishedSegments";
+
+    @Autowired
+    private AmazonDynamoDB amazonDynamoDB;
+
+    /**
+     * Get the segments a migration has finished.
+     *
+     * @param migrationId   Migration ID
+     * @param totalSegments Number of segments the table is split into
+     * @return Finished segments, empty if the migration was last run with another number of segments
+     */
+    public Set<Integer> finishedSegments(String migrationId, int totalSegments) {
+        Map<String, AttributeValue> item = item(migrationId);
+        Set<Integer> finished = new HashSet<>();
+        if (item == null || item.get(TOTAL_SEGMENTS) == null
+                || Integer.parseInt(item.get(TOTAL_SEGMENTS).getN()) != totalSegments) {
+            return finished;
+        }
+        AttributeValue segments = item.get(FINISHED_SEGMENTS);
+        if (segments != null && segments.getNS() != null) {
+            for (String segment : segments.getNS()) {
+                finished.add(Integer.valueOf(segment));
+            }
+        }
+        return finished;
+    }
+
+    /**
+     * Check whether a migration has finished every segment.
+     *
+     * @param migrationId Migration ID
+     * @return true if every segment of the last run was finished
+     */
+    public boolean isFinished(String migrationId) {
+        Map<String, AttributeValue> item = item(migrationId);
+        if (item == null || item.get(TOTAL_SEGMENTS) == null || item.get(FINISHED_SEGMENTS) == null) {
+            return false;
+        }
+        return item.get(FINISHED_SEGMENTS).getNS().size() >= Integer.parseInt(item.get(TOTAL_SEGMENTS).getN());
+    }
+
+    /**
+     * Record that a segment of a migration has finished.
+     *
+     * @param migrationId   Migration ID
+     * @param segment       Finished segment
+     * @param totalSegments Number of segments the table is split into
+     */
+    public void markFinished(String migrationId, int segment, int totalSegments) {
+        Map<String, String> names = new HashMap<>();
+        names.put("#total", TOTAL_SEGMENTS);
+        names.put("#finished", FINISHED_SEGMENTS);
+        Map<String, AttributeValue> values = new HashMap<>();
+        values.put(":total", new AttributeValue().withN(Integer.toString(totalSegments)));
+        values.put(":segment", new AttributeValue().withNS(Integer.toString(segment)));
+        try {
+            amazonDynamoDB.updateItem(new UpdateItemRequest()
+                    .withTableName(TABLE_NAME)
+                    .withKey(key(migrationId))
+                    .withUpdateExpression("SET #total = :total ADD #finished :segment")
+                    .withConditionExpression("attribute_not_exists(#total) OR #total = :total")
+                    .withExpressionAttributeNames(names)
+                    .withExpressionAttributeValues(values));
+        } catch (ConditionalCheckFailedException e) {
+            // Last run with another number of segments, whose progress does not carry over
+            Map<String, AttributeValue> item = new HashMap<>(key(migrationId));
+            item.put(TOTAL_SEGMENTS, values.get(":total"));
+            item.put(FINISHED_SEGMENTS, values.get(":segment"));
+            amazonDynamoDB.putItem(new PutItemRequest().withTableName(TABLE_NAME).withItem(item));
+        }
+    }
+
+    private Map<String, AttributeValue> item(String migrationId) {
+        return amazonDynamoDB.getItem(new GetItemRequest()
+                .withTableName(TABLE_NAME)
+                .withKey(key(migrationId))
+                .withConsistentRead(true)).getItem();
+    }
+
+    private static Map<String, AttributeValue> key(String migrationId) {
+        return Collections.singletonMap(KEY, new AttributeValue(migrationId));
+    }
+
+}
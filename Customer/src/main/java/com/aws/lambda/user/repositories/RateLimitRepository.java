@@ -0,0 +1,19 @@
+package com.aws.lambda.user.repositories;
+
+/**
+ * Repository interface for shared rate limit counters.
+ * Defines methods for interacting with the cluster-wide counter store.
+ */
+public interface RateLimitRepository {
+
+    /**
+     * Atomically add to a counter, creating it if it does not exist.
+     * 
+     * @param counterKey Counter identifier
+     * @param amount     Amount to add
+     * @param expiresAt  Time after which the counter may be deleted, in epoch seconds
+     * @return Counter value after the addition
+     */
+    long increment(String counterKey, long amount, long expiresAt);
+
+}
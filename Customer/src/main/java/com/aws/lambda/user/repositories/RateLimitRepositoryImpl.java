@@ -0,0 +1,50 @@
+package com.aws.lambda.user.repositories;
+
+import com.amazonaws.services.dynamodbv2.AmazonDynamoDB;
+import com.amazonaws.services.dynamodbv2.model.AttributeValue;
+import com.amazonaws.services.dynamodbv2.model.ReturnValue;
+import com.amazonaws.services.dynamodbv2.model.UpdateItemRequest;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Repository;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Repository implementation for shared rate limit counters using DynamoDB.
+ * Each counter is a single item updated with an atomic {@code ADD}, and expired
+ * counters are removed by DynamoDB TTL on the {@code expiresAt} attribute.
+ */
+@Repository
+public class RateLimitRepositoryImpl implements RateLimitRepository {
+
+    @Autowired
+    private AmazonDynamoDB amazonDynamoDB;
+
+    @Value("${ratelimit.shared.table-name:RateLimit}")
+    private String tableName;
+
+    @Override
+    public long increment(String counterKey, long amount, long expiresAt) {
+        Map<String, AttributeValue> key = new HashMap<>();
+        key.put("counterKey", new AttributeValue().withS(counterKey));
+
+        Map<String, AttributeValue> values = new HashMap<>();
+        values.put(":amount", new AttributeValue().withN(Long.toString(amount)));
+        values.put(":expiresAt", new AttributeValue().withN(Long.toString(expiresAt)));
+
+        UpdateItemRequest request = new UpdateItemRequest()
+                .withTableName(tableName)
+                .withKey(key)
+                .withUpdateExpression("ADD #count :amount SET expiresAt = :expiresAt")
+                .withExpressionAttributeNames(Collections.singletonMap("#count", "count"))
+                .withExpressionAttributeValues(values)
+                .withReturnValues(ReturnValue.UPDATED_NEW);
+
+        AttributeValue count = amazonDynamoDB.updateItem(request).getAttributes().get("count");
+        return Long.parseLong(count.getN());
+    }
+
+}
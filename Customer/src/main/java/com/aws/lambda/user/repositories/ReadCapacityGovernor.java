@@ -0,0 +1,255 @@
+package com.aws.lambda.user.repositories;
+
+import com.amazonaws.AmazonWebServiceRequest;
+import com.amazonaws.Request;
+import com.amazonaws.Response;
+import com.amazonaws.handlers.RequestHandler2;
+import com.amazonaws.services.dynamodbv2.datamodeling.DynamoDBTable;
+import com.amazonaws.services.dynamodbv2.model.AttributeValue;
+import com.amazonaws.services.dynamodbv2.model.BatchGetItemRequest;
+import com.amazonaws.services.dynamodbv2.model.BatchGetItemResult;
+import com.amazonaws.services.dynamodbv2.model.ConsumedCapacity;
+import com.amazonaws.services.dynamodbv2.model.GetItemRequest;
+import com.amazonaws.services.dynamodbv2.model.GetItemResult;
+import com.amazonaws.services.dynamodbv2.model.ReturnConsumedCapacity;
+import com.aws.lambda.user.entities.User;
+import com.aws.lambda.user.utils.Deadline;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Shares the User table's read capacity between point reads and scans, with point reads first.
+ * Scans draw from a token bucket refilled at a configured share of the table's read capacity,
+ * divided evenly between the containers that may scan at once, and size each page from the
+ * capacity one item cost on the previous page. Across all containers, scans therefore use at most
+ * that share, and point reads always have the rest.
+ *
+ * Point reads are never delayed. Their consumption is metered from the responses they get back, and
+ * a container's scans give way to the point reads beyond the headroom kept free for them. Only
+ * reads made by the same container are metered, so on Lambda, where a container serves one request
+ * at a time, this mostly sees the reads of the request doing the scan and not other clients' reads.
+ */
+@Component
+public class ReadCapacityGovernor {
+
+    private static final String TABLE_NAME = User.class.getAnnotation(DynamoDBTable.class).tableName();
+
+    // Read units per item assumed before a scan has reported any, one eventually consistent 4 KB read
+    private static final double INITIAL_UNITS_PER_ITEM = 0.5;
+
+    // Share of capacity scans always get, so that they finish even while point reads use it all
+    private static final double MIN_SCAN_SHARE = 0.05;
+
+    private static final long RATE_WINDOW_NANOS = TimeUnit.SECONDS.toNanos(1);
+
+    @Value("${dynamodb.scan.pacing.enabled:true}")
+    private boolean enabled;
+
+    /**
+     * Read capacity units per second of the User table, provisioned or targeted if on demand.
+     */
+    @Value("${dynamodb.read-capacity-units:5}")
+    private double readCapacityUnits;
+
+    /**
+     * Largest share of the read capacity that scans may use.
+     */
+    @Value("${dynamodb.scan.capacity-share:0.5}")
+    private double scanShare;
+
+    /**
+     * Share of the read capacity kept free for point reads beyond what they are using.
+     */
+    @Value("${dynamodb.scan.point-read-headroom:0.2}")
+    private double pointReadHeadroom;
+
+    /**
+     * Containers that may scan at the same time, such as the Lambda function's reserved concurrency.
+     */
+    @Value("${dynamodb.scan.concurrency:1}")
+    private int concurrency;
+
+    @Value("${dynamodb.scan.min-page-size:10}")
+    private int minPageSize;
+
+    @Value("${dynamodb.scan.max-page-size:1000}")
+    private int maxPageSize;
+
+    private double pointReadRate;
+    private long pointReadAt = System.nanoTime();
+
+    // The bucket starts full, so the first scan of a new container does not wait
+    private double tokens;
+    private long refilledAt = System.nanoTime() - TimeUnit.SECONDS.toNanos(1);
+
+    /**
+     * Start pacing a scan.
+     *
+     * @return Pacer for the pages of one scan
+     */
+    public ScanPacer pacer() {
+        return new ScanPacer();
+    }
+
+    /**
+     * Meter the capacity consumed by a point read.
+     *
+     * @param units Read units consumed
+     */
+    public synchronized void recordPointRead(double units) {
+        long now = System.nanoTime();
+        // Exponentially decaying rate, in units per second, over a window of about a second
+        pointReadRate = decayedPointReadRate(now) + units * TimeUnit.SECONDS.toNanos(1) / (double) RATE_WINDOW_NANOS;
+        pointReadAt = now;
+    }
+
+    /**
+     * Get the read units per second scans of this container may currently use.
+     *
+     * @return Scan rate
+     */
+    public synchronized double scanRate() {
+        double free = readCapacityUnits * (1 - pointReadHeadroom) - decayedPointReadRate(System.nanoTime());
+        double rate = Math.max(readCapacityUnits * MIN_SCAN_SHARE, Math.min(readCapacityUnits * scanShare, free));
+        return rate / Math.max(1, concurrency);
+    }
+
+    /**
+     * Create the request handler that meters point reads of the User table.
+     * It asks DynamoDB to report the capacity each read consumed.
+     *
+     * @return Request handler for the DynamoDB clients
+     */
+    public RequestHandler2 pointReadMeter() {
+        return new RequestHandler2() {
+            @Override
+            public AmazonWebServiceRequest beforeExecution(AmazonWebServiceRequest request) {
+                if (request instanceof GetItemRequest && TABLE_NAME.equals(((GetItemRequest) request).getTableName())
+                        && ((GetItemRequest) request).getReturnConsumedCapacity() == null) {
+                    ((GetItemRequest) request).setReturnConsumedCapacity(ReturnConsumedCapacity.TOTAL);
+                } else if (request instanceof BatchGetItemRequest && ((BatchGetItemRequest) request).getRequestItems().containsKey(TABLE_NAME)
+                        && ((BatchGetItemRequest) request).getReturnConsumedCapacity() == null) {
+                    ((BatchGetItemRequest) request).setReturnConsumedCapacity(ReturnConsumedCapacity.TOTAL);
+                }
+                return request;
+            }
+
+            @Override
+            public void afterResponse(Request<?> request, Response<?> response) {
+                Object result = response == null ? null : response.getAwsResponse();
+                if (result instanceof GetItemResult && request.getOriginalRequest() instanceof GetItemRequest
+                        && TABLE_NAME.equals(((GetItemRequest) request.getOriginalRequest()).getTableName())) {
+                    ConsumedCapacity consumed = ((GetItemResult) result).getConsumedCapacity();
+                    recordPointRead(consumed == null || consumed.getCapacityUnits() == null
+                            ? INITIAL_UNITS_PER_ITEM : consumed.getCapacityUnits());
+                } else if (result instanceof BatchGetItemResult) {
+                    BatchGetItemResult batch = (BatchGetItemResult) result;
+                    double units = 0;
+                    if (batch.getConsumedCapacity() != null) {
+                        for (ConsumedCapacity consumed : batch.getConsumedCapacity()) {
+                            if (TABLE_NAME.equals(consumed.getTableName()) && consumed.getCapacityUnits() != null) {
+                                units += consumed.getCapacityUnits();
+                            }
+                        }
+                    } else if (batch.getResponses() != null && batch.getResponses().containsKey(TABLE_NAME)) {
+                        List<Map<String, AttributeValue>> items = batch.getResponses().get(TABLE_NAME);
+                        units = items.size() * INITIAL_UNITS_PER_ITEM;
+                    }
+                    if (units > 0) {
+                        recordPointRead(units);
+                    }
+                }
+            }
+        };
+    }
+
+    /**
+     * Refill the scan bucket and check whether it holds enough for a page.
+     *
+     * @param units Units a page at the minimum size is expected to cost
+     * @return Units available to the page as zero or a negative number, or the nanoseconds to wait
+     */
+    private synchronized double tryTake(double units) {
+        long now = System.nanoTime();
+        double rate = scanRate();
+        tokens = Math.min(rate, tokens + rate * (now - refilledAt) / TimeUnit.SECONDS.toNanos(1));
+        refilledAt = now;
+        // A page costing more than the bucket holds goes ahead once it is full
+        double needed = Math.min(units, rate);
+        if (tokens >= needed) {
+            return -tokens;
+        }
+        return (needed - tokens) / rate * TimeUnit.SECONDS.toNanos(1);
+    }
+
+    private synchronized void consume(double units) {
+        // The bucket may go into debt; later pages wait until it is repaid
+        tokens -= units;
+    }
+
+    private double decayedPointReadRate(long now) {
+        return pointReadRate * Math.exp(-(double) (now - pointReadAt) / RATE_WINDOW_NANOS);
+    }
+
+    /**
+     * Paces the pages of one scan, learning what an item costs from the capacity each page consumed.
+     */
+    public final class ScanPacer {
+
+        private double unitsPerItem = INITIAL_UNITS_PER_ITEM;
+
+        private ScanPacer() {
+        }
+
+        /**
+         * Wait until scans have capacity for another page and size it to the capacity available.
+         *
+         * @param wanted   Most items the page may evaluate
+         * @param deadline Deadline not to wait past, or null to wait as long as needed
+         * @return Page limit, or 0 if the deadline would pass before the page could start
+         */
+        public int nextLimit(int wanted, Deadline deadline) {
+            if (!enabled) {
+                return wanted;
+            }
+            double minimum = Math.min(wanted, minPageSize) * unitsPerItem;
+            double result;
+            while ((result = tryTake(minimum)) > 0) {
+                long waitNanos = (long) result;
+                if (deadline != null && !deadline.hasTimeFor(waitNanos)) {
+                    return 0;
+                }
+                try {
+                    TimeUnit.NANOSECONDS.sleep(waitNanos);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new IllegalStateException("Interrupted while waiting for scan capacity", e);
+                }
+            }
+            long affordable = (long) (-result / unitsPerItem);
+            return (int) Math.max(1, Math.min(wanted, Math.min(maxPageSize, Math.max(minPageSize, affordable))));
+        }
+
+        /**
+         * Record what a page consumed.
+         *
+         * @param consumed     Capacity reported by DynamoDB, may be null
+         * @param scannedCount Items the page evaluated, may be null
+         */
+        public void record(ConsumedCapacity consumed, Integer scannedCount) {
+            if (!enabled || consumed == null || consumed.getCapacityUnits() == null) {
+                return;
+            }
+            double units = consumed.getCapacityUnits();
+            consume(units);
+            if (scannedCount != null && scannedCount > 0) {
+                unitsPerItem = units / scannedCount;
+            }
+        }
+    }
+
+}
@@ -0,0 +1,34 @@
+package com.aws.lambda.user.repositories;
+
+import com.aws.lambda.user.entities.Session;
+
+/**
+ * Repository interface for Session data access operations.
+ * Defines methods for interacting with the Session data store.
+ */
+public interface SessionRepository {
+
+    /**
+     * Save a session to the data store.
+     * 
+     * @param session Session object to save
+     * @return Saved session object
+     */
+    Session save(Session session);
+
+    /**
+     * Find a session by its identifier.
+     * 
+     * @param sessionId Session identifier
+     * @return Session object if found, null otherwise
+     */
+    Session findById(String sessionId);
+
+    /**
+     * Mark a session as revoked.
+     * 
+     * @param sessionId Session identifier
+     */
+    void revoke(String sessionId);
+
+}
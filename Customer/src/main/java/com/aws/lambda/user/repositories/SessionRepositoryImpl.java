@@ -0,0 +1,54 @@
+package com.aws.lambda.user.repositories;
+
+import com.amazonaws.services.dynamodbv2.datamodeling.DynamoDBMapper;
+import com.amazonaws.services.dynamodbv2.datamodeling.DynamoDBMapperConfig;
+import com.amazonaws.services.dynamodbv2.datamodeling.DynamoDBSaveExpression;
+import com.amazonaws.services.dynamodbv2.model.AttributeValue;
+import com.amazonaws.services.dynamodbv2.model.ConditionalCheckFailedException;
+import com.amazonaws.services.dynamodbv2.model.ExpectedAttributeValue;
+import com.aws.lambda.user.entities.Session;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Repository;
+
+/**
+ * Repository implementation for Session data access operations using DynamoDB.
+ * Handles all database interactions for session-related operations.
+ */
+@Repository
+public class SessionRepositoryImpl implements SessionRepository {
+
+    private static final DynamoDBMapperConfig UPDATE_SKIP_NULLS = DynamoDBMapperConfig.builder()
+            .withSaveBehavior(DynamoDBMapperConfig.SaveBehavior.UPDATE_SKIP_NULL_ATTRIBUTES)
+            .build();
+
+    @Autowired
+    private DynamoDBMapper dynamoDBMapper;
+
+    @Override
+    public Session save(Session session) {
+        dynamoDBMapper.save(session);
+        return session;
+    }
+
+    @Override
+    public Session findById(String sessionId) {
+        return dynamoDBMapper.load(Session.class, sessionId);
+    }
+
+    @Override
+    public void revoke(String sessionId) {
+        Session session = new Session();
+        session.setSessionId(sessionId);
+        session.setRevoked(true);
+
+        // Only flag existing sessions so revoking an unknown id does not create an item without a TTL
+        DynamoDBSaveExpression existing = new DynamoDBSaveExpression()
+                .withExpectedEntry("sessionId", new ExpectedAttributeValue(new AttributeValue(sessionId)));
+        try {
+            dynamoDBMapper.save(session, existing, UPDATE_SKIP_NULLS);
+        } catch (ConditionalCheckFailedException e) {
+            // Session already expired or never existed
+        }
+    }
+
+}
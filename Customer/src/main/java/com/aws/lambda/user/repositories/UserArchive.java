@@ -0,0 +1,222 @@
+package com.aws.lambda.user.repositories;
+
+import com.amazonaws.services.dynamodbv2.AmazonDynamoDB;
+import com.amazonaws.services.dynamodbv2.datamodeling.DynamoDBMapper;
+import com.amazonaws.services.dynamodbv2.datamodeling.DynamoDBMapperTableModel;
+import com.amazonaws.services.dynamodbv2.datamodeling.DynamoDBTable;
+import com.amazonaws.services.dynamodbv2.model.AttributeValue;
+import com.amazonaws.services.dynamodbv2.model.ConditionalCheckFailedException;
+import com.amazonaws.services.dynamodbv2.model.DeleteItemRequest;
+import com.amazonaws.services.dynamodbv2.model.GetItemRequest;
+import com.amazonaws.services.dynamodbv2.model.PutItemRequest;
+import com.amazonaws.services.dynamodbv2.model.QueryRequest;
+import com.amazonaws.services.dynamodbv2.model.QueryResult;
+import com.amazonaws.services.dynamodbv2.model.ReturnConsumedCapacity;
+import com.amazonaws.services.dynamodbv2.model.ScanRequest;
+import com.amazonaws.services.dynamodbv2.model.ScanResult;
+import com.aws.lambda.user.entities.User;
+import com.aws.lambda.user.entities.UserArchiveFormat;
+import com.aws.lambda.user.entities.UserIndexKeys;
+import com.aws.lambda.user.entities.UserStorageFormat;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Profile;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+
+/**
+ * Archive table of users that stayed inactive for longer than the configured period, which keeps
+ * them out of the scans of the User table.
+ * The {@link UserArchiver} moves users here in the {@link UserArchiveFormat}. A user is moved back
+ * the first time it is looked up by ID, and can be found by email through the archive's email
+ * index without being moved. Each move writes the new copy before deleting the old one, so a user
+ * is always in at least one of the tables. With the archive disabled nothing is ever found in it.
+ */
+@Slf4j
+@Component
+@Profile("!" + InMemoryUserRepository.PROFILE)
+public class UserArchive {
+
+    public static final String TABLE_NAME = "UserArchive";
+
+    static final String EMAIL_INDEX = "email-index";
+
+    /**
+     * Time a user was last restored, in epoch milliseconds, kept on the User table item until it is next saved.
+     */
+    public static final String RESTORED_AT = "restoredAt";
+
+    private final String userTableName = User.class.getAnnotation(DynamoDBTable.class).tableName();
+
+    @Autowired
+    private AmazonDynamoDB amazonDynamoDB;
+
+    @Autowired
+    private DynamoDBMapper dynamoDBMapper;
+
+    @Autowired
+    private UserIndexKeys userIndexKeys;
+
+    @Value("${user.archive.enabled:false}")
+    private boolean enabled;
+
+    @Value("${dynamodb.compact-storage.enabled:false}")
+    private boolean compactStorage;
+
+    private DynamoDBMapperTableModel<User> tableModel;
+
+    @PostConstruct
+    void init() {
+        tableModel = dynamoDBMapper.getTableModel(User.class);
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Move a user from the User table to the archive. The user is only deleted from the User table
+     * if its item is unchanged since it was read; otherwise the archived copy is deleted again.
+     *
+     * @param item User item as read from the User table
+     * @return Archive item, or null if the user changed since it was read
+     */
+    public Map<String, AttributeValue> archive(Map<String, AttributeValue> item) {
+        Map<String, AttributeValue> archived = UserArchiveFormat.archive(item, System.currentTimeMillis());
+        Map<String, AttributeValue> key = Collections.singletonMap("uuid", item.get("uuid"));
+        amazonDynamoDB.putItem(new PutItemRequest().withTableName(TABLE_NAME).withItem(archived));
+        try {
+            amazonDynamoDB.deleteItem(deleteUnchanged(item));
+        } catch (ConditionalCheckFailedException e) {
+            // Saved or restored since it was read, so the user stays in the User table
+            amazonDynamoDB.deleteItem(new DeleteItemRequest().withTableName(TABLE_NAME).withKey(key));
+            return null;
+        }
+        return archived;
+    }
+
+    /**
+     * Move an archived user back to the User table, in the configured storage format.
+     *
+     * @param uuid User's unique identifier
+     * @return Restored user, or null if the user is not archived
+     */
+    public User restore(String uuid) {
+        if (!enabled) {
+            return null;
+        }
+        Map<String, AttributeValue> key = Collections.singletonMap("uuid", new AttributeValue(uuid));
+        Map<String, AttributeValue> archived = amazonDynamoDB.getItem(new GetItemRequest(TABLE_NAME, key)).getItem();
+        if (archived == null) {
+            return null;
+        }
+        Map<String, AttributeValue> item = UserArchiveFormat.restore(archived);
+        Map<String, AttributeValue> stored = new HashMap<>(
+                userIndexKeys.withKeys(compactStorage ? UserStorageFormat.compact(item) : item));
+        stored.put(RESTORED_AT, new AttributeValue().withN(Long.toString(System.currentTimeMillis())));
+        try {
+            amazonDynamoDB.putItem(new PutItemRequest()
+                    .withTableName(userTableName)
+                    .withItem(stored)
+                    .withConditionExpression("attribute_not_exists(#uuid)")
+                    .withExpressionAttributeNames(Collections.singletonMap("#uuid", "uuid")));
+        } catch (ConditionalCheckFailedException e) {
+            // Restored by a concurrent lookup, which may have been followed by a save
+            Map<String, AttributeValue> current = amazonDynamoDB.getItem(new GetItemRequest(userTableName, key)).getItem();
+            item = current != null ? UserStorageFormat.expand(current) : item;
+        }
+        amazonDynamoDB.deleteItem(new DeleteItemRequest().withTableName(TABLE_NAME).withKey(key));
+        log.info("Restored archived user {}", uuid);
+        return tableModel.unconvert(item);
+    }
+
+    /**
+     * Find an archived user by email, without restoring it.
+     *
+     * @param email Email address
+     * @return Archived user, or null if none has the email
+     */
+    public User findByEmail(String email) {
+        if (!enabled) {
+            return null;
+        }
+        Map<String, AttributeValue> values = Collections.singletonMap(":email", new AttributeValue(email));
+        QueryResult result = amazonDynamoDB.query(new QueryRequest()
+                .withTableName(TABLE_NAME)
+                .withIndexName(EMAIL_INDEX)
+                .withKeyConditionExpression("#email = :email")
+                .withExpressionAttributeNames(Collections.singletonMap("#email", "email"))
+                .withExpressionAttributeValues(values)
+                .withLimit(1));
+        if (result.getItems().isEmpty()) {
+            return null;
+        }
+        // The email index only projects keys
+        Map<String, AttributeValue> key = Collections.singletonMap("uuid", result.getItems().get(0).get("uuid"));
+        Map<String, AttributeValue> archived = amazonDynamoDB.getItem(new GetItemRequest(TABLE_NAME, key)).getItem();
+        return archived == null ? null : tableModel.unconvert(UserArchiveFormat.restore(archived));
+    }
+
+    /**
+     * Pass the UUID and email of every archived user to a consumer.
+     *
+     * @param pacer    Pacer sizing and spacing the pages of the scan
+     * @param consumer Receives users with only their UUID and email set
+     */
+    public void scanKeys(ReadCapacityGovernor.ScanPacer pacer, Consumer<User> consumer) {
+        if (!enabled) {
+            return;
+        }
+        Map<String, String> names = new HashMap<>();
+        names.put("#uuid", "uuid");
+        names.put("#email", "email");
+        Map<String, AttributeValue> startKey = null;
+        do {
+            ScanResult page = amazonDynamoDB.scan(new ScanRequest()
+                    .withTableName(TABLE_NAME)
+                    .withProjectionExpression("#uuid, #email")
+                    .withExpressionAttributeNames(names)
+                    .withExclusiveStartKey(startKey)
+                    .withLimit(pacer.nextLimit(Integer.MAX_VALUE, null))
+                    .withReturnConsumedCapacity(ReturnConsumedCapacity.TOTAL));
+            pacer.record(page.getConsumedCapacity(), page.getScannedCount());
+            for (Map<String, AttributeValue> item : page.getItems()) {
+                AttributeValue email = item.get("email");
+                consumer.accept(User.builder()
+                        .uuid(item.get("uuid").getS())
+                        .email(email == null ? null : email.getS())
+                        .build());
+            }
+            startKey = page.getLastEvaluatedKey();
+        } while (startKey != null && !startKey.isEmpty());
+    }
+
+    private DeleteItemRequest deleteUnchanged(Map<String, AttributeValue> item) {
+        Map<String, String> names = new HashMap<>();
+        Map<String, AttributeValue> values = new HashMap<>();
+        List<String> conditions = new ArrayList<>();
+        int i = 0;
+        for (Map.Entry<String, AttributeValue> attribute : item.entrySet()) {
+            names.put("#a" + i, attribute.getKey());
+            values.put(":a" + i, attribute.getValue());
+            conditions.add("#a" + i + " = :a" + i);
+            i++;
+        }
+        // A save always changes the update time, so equal attributes mean an unchanged user
+        return new DeleteItemRequest()
+                .withTableName(userTableName)
+                .withKey(Collections.singletonMap("uuid", item.get("uuid")))
+                .withConditionExpression(String.join(" AND ", conditions))
+                .withExpressionAttributeNames(names)
+                .withExpressionAttributeValues(values);
+    }
+
+}
@@ -0,0 +1,233 @@
+package com.aws.lambda.user.repositories;
+
+import com.amazonaws.AmazonClientException;
+import com.amazonaws.services.dynamodbv2.AmazonDynamoDB;
+import com.amazonaws.services.dynamodbv2.datamodeling.DynamoDBMapper;
+import com.amazonaws.services.dynamodbv2.datamodeling.DynamoDBMapperTableModel;
+import com.amazonaws.services.dynamodbv2.datamodeling.DynamoDBTable;
+import com.amazonaws.services.dynamodbv2.model.AttributeValue;
+import com.amazonaws.services.dynamodbv2.model.ReturnConsumedCapacity;
+import com.amazonaws.services.dynamodbv2.model.ScanRequest;
+import com.amazonaws.services.dynamodbv2.model.ScanResult;
+import com.aws.lambda.user.entities.User;
+import com.aws.lambda.user.entities.UserStorageFormat;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Profile;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.time.LocalDateTime;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Background sweep that moves users inactive for longer than {@code user.archive.inactive-days}
+ * to the {@link UserArchive}, so scans of the User table stop paying for users nobody reads.
+ * Like the {@link UserStorageMigrator}, a container started with the sweep enabled works through
+ * the table's parallel scan segments from a random one, with pages sized and paced by the
+ * {@link ReadCapacityGovernor} and spaced to bound the write capacity used. Finished segments are
+ * recorded in {@link MigrationProgress} for the day's cutoff, so that containers started later that
+ * day skip them and the table is swept again once a day at most. A deactivated user's inactive period starts at its last update, or at
+ * its last restore if that is later, so a restored user is not archived again straight away.
+ */
+@Slf4j
+@Component
+@Profile("!" + InMemoryUserRepository.PROFILE)
+public class UserArchiver {
+
+    private final String tableName = User.class.getAnnotation(DynamoDBTable.class).tableName();
+
+    @Autowired
+    private AmazonDynamoDB amazonDynamoDB;
+
+    @Autowired
+    private DynamoDBMapper dynamoDBMapper;
+
+    @Autowired
+    private UserArchive userArchive;
+
+    @Autowired
+    private ReadCapacityGovernor readCapacityGovernor;
+
+    @Autowired
+    private MigrationProgress migrationProgress;
+
+    @Value("${user.archive.sweep.enabled:false}")
+    private boolean sweepEnabled;
+
+    @Value("${user.archive.inactive-days:90}")
+    private long inactiveDays;
+
+    @Value("${user.archive.sweep.segments:16}")
+    private int segments;
+
+    @Value("${user.archive.sweep.page-size:100}")
+    private int pageSize;
+
+    @Value("${user.archive.sweep.page-interval-ms:200}")
+    private long pageIntervalMs;
+
+    private final AtomicLong scanned = new AtomicLong();
+    private final AtomicLong archived = new AtomicLong();
+    private final AtomicLong conflicts = new AtomicLong();
+    private final AtomicLong bytesBefore = new AtomicLong();
+    private final AtomicLong bytesAfter = new AtomicLong();
+
+    private DynamoDBMapperTableModel<User> tableModel;
+    private ExecutorService executor;
+
+    @PostConstruct
+    void init() {
+        tableModel = dynamoDBMapper.getTableModel(User.class);
+        if (sweepEnabled && !userArchive.isEnabled()) {
+            log.warn("User archive sweep needs user.archive.enabled, so that archived users can still be found; not sweeping");
+        } else if (sweepEnabled) {
+            executor = Executors.newSingleThreadExecutor(runnable -> {
+                Thread thread = new Thread(runnable, "user-archiver");
+                thread.setDaemon(true);
+                return thread;
+            });
+            executor.execute(this::run);
+        }
+    }
+
+    @PreDestroy
+    void shutdown() {
+        if (executor != null) {
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * Get a snapshot of the sweep counters for this container.
+     *
+     * @return Current sweep statistics
+     */
+    public SweepStats getStats() {
+        return new SweepStats(scanned.get(), archived.get(), conflicts.get(), bytesBefore.get(), bytesAfter.get());
+    }
+
+    /**
+     * Get the ID under which a sweep is recorded in {@link MigrationProgress}.
+     * It changes with the day of the cutoff, since each day makes more users eligible.
+     *
+     * @param cutoff Users inactive since before this time are archived
+     * @return Migration ID
+     */
+    static String sweepId(LocalDateTime cutoff) {
+        return "user-archive:" + cutoff.toLocalDate();
+    }
+
+    void run() {
+        LocalDateTime cutoff = LocalDateTime.now().minusDays(inactiveDays);
+        log.info("Archiving users inactive since {}", cutoff);
+        int first = ThreadLocalRandom.current().nextInt(segments);
+        try {
+            Set<Integer> finished = migrationProgress.finishedSegments(sweepId(cutoff), segments);
+            if (finished.size() == segments) {
+                log.info("User archive sweep finished: every segment was already swept for {}", cutoff.toLocalDate());
+                return;
+            }
+            for (int i = 0; i < segments; i++) {
+                int segment = (first + i) % segments;
+                if (finished.contains(segment)) {
+                    continue;
+                }
+                sweepSegment(segment, cutoff);
+                migrationProgress.markFinished(sweepId(cutoff), segment, segments);
+            }
+            log.info("User archive sweep finished: {}", getStats());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (AmazonClientException e) {
+            log.warn("User archive sweep stopped after {}, it resumes on the next start: {}", getStats(), e.getMessage());
+        }
+    }
+
+    void sweepSegment(int segment, LocalDateTime cutoff) throws InterruptedException {
+        ReadCapacityGovernor.ScanPacer pacer = readCapacityGovernor.pacer();
+        Map<String, AttributeValue> startKey = null;
+        do {
+            ScanResult page = amazonDynamoDB.scan(new ScanRequest()
+                    .withTableName(tableName)
+                    .withSegment(segment)
+                    .withTotalSegments(segments)
+                    .withLimit(pacer.nextLimit(pageSize, null))
+                    .withExclusiveStartKey(startKey)
+                    .withReturnConsumedCapacity(ReturnConsumedCapacity.TOTAL));
+            pacer.record(page.getConsumedCapacity(), page.getScannedCount());
+            for (Map<String, AttributeValue> item : page.getItems()) {
+                archive(item, cutoff);
+            }
+            startKey = page.getLastEvaluatedKey();
+            if (startKey != null && !startKey.isEmpty() && pageIntervalMs > 0) {
+                Thread.sleep(pageIntervalMs);
+            }
+        } while (startKey != null && !startKey.isEmpty());
+    }
+
+    /**
+     * Archive a scanned user if it has been inactive since before the cutoff.
+     *
+     * @param item   Item as scanned
+     * @param cutoff Users inactive since before this time are archived
+     * @return true if the user was archived
+     */
+    boolean archive(Map<String, AttributeValue> item, LocalDateTime cutoff) {
+        scanned.incrementAndGet();
+        if (!isInactiveSince(item, cutoff)) {
+            return false;
+        }
+        Map<String, AttributeValue> archivedItem = userArchive.archive(item);
+        if (archivedItem == null) {
+            conflicts.incrementAndGet();
+            return false;
+        }
+        archived.incrementAndGet();
+        bytesBefore.addAndGet(UserStorageFormat.itemSize(item));
+        bytesAfter.addAndGet(UserStorageFormat.itemSize(archivedItem));
+        return true;
+    }
+
+    private boolean isInactiveSince(Map<String, AttributeValue> item, LocalDateTime cutoff) {
+        User user = tableModel.unconvert(UserStorageFormat.expand(item));
+        LocalDateTime lastChange = user.getUpdatedAt() != null ? user.getUpdatedAt() : user.getCreatedAt();
+        if (!Boolean.FALSE.equals(user.getIsActive()) || lastChange == null || !lastChange.isBefore(cutoff)) {
+            return false;
+        }
+        AttributeValue restoredAt = item.get(UserArchive.RESTORED_AT);
+        return restoredAt == null
+                || System.currentTimeMillis() - Long.parseLong(restoredAt.getN()) > TimeUnit.DAYS.toMillis(inactiveDays);
+    }
+
+    /**
+     * Snapshot of archive sweep counters.
+     */
+    @Getter
+    @AllArgsConstructor
+    public static class SweepStats {
+
+        private final long scanned;
+        private final long archived;
+        private final long conflicts;
+        private final long bytesBefore;
+        private final long bytesAfter;
+
+        @Override
+        public String toString() {
+            return "scanned=" + scanned + ", archived=" + archived + ", conflicts=" + conflicts
+                    + ", bytesBefore=" + bytesBefore + ", bytesAfter=" + bytesAfter;
+        }
+    }
+
+}
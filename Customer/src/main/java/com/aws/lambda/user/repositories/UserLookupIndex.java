@@ -0,0 +1,303 @@
+package com.aws.lambda.user.repositories;
+
+import com.amazonaws.AmazonClientException;
+import com.amazonaws.services.dynamodbv2.datamodeling.DynamoDBMapper;
+import com.amazonaws.services.dynamodbv2.datamodeling.DynamoDBScanExpression;
+import com.amazonaws.services.dynamodbv2.datamodeling.ScanResultPage;
+import com.amazonaws.services.dynamodbv2.model.ReturnConsumedCapacity;
+import com.aws.lambda.user.entities.User;
+import com.aws.lambda.user.utils.BloomFilter;
+import com.aws.lambda.user.utils.ExpiringLruCache;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Profile;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Per-container index that answers definite misses for user lookups without calling DynamoDB.
+ * Misses are remembered in a short-lived negative cache. Optionally, Bloom filters of all known
+ * UUIDs and emails, in the User table and the {@link UserArchive}, are built from projected table
+ * scans and kept up to date with this container's writes; a key the filter has never seen is
+ * reported missing. Writes made by other containers are only picked up by the next rebuild, so a
+ * filter is trusted for one rebuild interval after its scan started and ignored after that until
+ * a fresh one is ready.
+ */
+@Slf4j
+@Component
+@Profile("!" + InMemoryUserRepository.PROFILE)
+public class UserLookupIndex {
+
+    @Autowired
+    private DynamoDBMapper dynamoDBMapper;
+
+    @Autowired
+    private UserArchive userArchive;
+
+    @Autowired
+    private ReadCapacityGovernor readCapacityGovernor;
+
+    @Value("${userindex.negative-cache.size:10000}")
+    private int negativeCacheSize;
+
+    @Value("${userindex.negative-cache.ttl-seconds:5}")
+    private long negativeCacheTtlSeconds;
+
+    @Value("${userindex.bloom.enabled:false}")
+    private boolean bloomEnabled;
+
+    @Value("${userindex.bloom.expected-insertions:100000}")
+    private long expectedInsertions;
+
+    @Value("${userindex.bloom.false-positive-rate:0.01}")
+    private double falsePositiveRate;
+
+    @Value("${userindex.bloom.rebuild-interval-seconds:300}")
+    private long rebuildIntervalSeconds;
+
+    private final AtomicLong negativeHits = new AtomicLong();
+    private final AtomicLong bloomHits = new AtomicLong();
+    private final AtomicBoolean rebuilding = new AtomicBoolean();
+
+    private ExpiringLruCache<String, Boolean> missingIds;
+    private ExpiringLruCache<String, Boolean> missingEmails;
+    private ExecutorService executor;
+
+    private volatile Filters filters;
+    private volatile Filters building;
+    private volatile long retryAt;
+
+    @PostConstruct
+    void init() {
+        missingIds = new ExpiringLruCache<>(negativeCacheSize);
+        missingEmails = new ExpiringLruCache<>(negativeCacheSize);
+        if (bloomEnabled) {
+            executor = Executors.newSingleThreadExecutor(runnable -> {
+                Thread thread = new Thread(runnable, "user-lookup-index");
+                thread.setDaemon(true);
+                return thread;
+            });
+            rebuild(System.currentTimeMillis());
+        }
+    }
+
+    @PreDestroy
+    void shutdown() {
+        if (executor != null) {
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * Check whether a user ID is known not to exist.
+     *
+     * @param uuid User's unique identifier
+     * @return true if a lookup would definitely find nothing
+     */
+    public boolean isMissingId(String uuid) {
+        if (missingIds.containsKey(uuid)) {
+            negativeHits.incrementAndGet();
+            return true;
+        }
+        Filters current = trustedFilters();
+        if (current != null && !current.ids.mightContain(uuid)) {
+            bloomHits.incrementAndGet();
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Check whether an email is known not to belong to any user.
+     *
+     * @param email Email address
+     * @return true if a lookup would definitely find nothing
+     */
+    public boolean isMissingEmail(String email) {
+        if (missingEmails.containsKey(email)) {
+            negativeHits.incrementAndGet();
+            return true;
+        }
+        Filters current = trustedFilters();
+        if (current != null && !current.emails.mightContain(email)) {
+            bloomHits.incrementAndGet();
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Remember that a lookup by ID found nothing.
+     *
+     * @param uuid User's unique identifier
+     */
+    public void recordMissingId(String uuid) {
+        missingIds.put(uuid, Boolean.TRUE, negativeCacheTtlSeconds * 1000);
+    }
+
+    /**
+     * Remember that a lookup by email found nothing.
+     *
+     * @param email Email address
+     */
+    public void recordMissingEmail(String email) {
+        missingEmails.put(email, Boolean.TRUE, negativeCacheTtlSeconds * 1000);
+    }
+
+    /**
+     * Record a user written by this container so later lookups find it.
+     *
+     * @param user Saved user
+     */
+    public void recordSaved(User user) {
+        if (user.getUuid() != null) {
+            missingIds.invalidate(user.getUuid());
+        }
+        if (user.getEmail() != null) {
+            missingEmails.invalidate(user.getEmail());
+        }
+        add(filters, user);
+        add(building, user);
+    }
+
+    /**
+     * Get a snapshot of the index counters and filter sizes.
+     *
+     * @return Current index statistics
+     */
+    public IndexStats getStats() {
+        Filters current = filters;
+        return new IndexStats(negativeHits.get(), bloomHits.get(),
+                current == null ? 0 : current.ids.getBitCount() + current.emails.getBitCount(),
+                current == null ? 0 : current.ids.getHashCount(),
+                current == null ? 0 : current.ids.getInsertions(),
+                current == null ? 0 : Math.max(current.ids.expectedFalsePositiveRate(), current.emails.expectedFalsePositiveRate()),
+                current != null && isFresh(current));
+    }
+
+    private Filters trustedFilters() {
+        if (!bloomEnabled) {
+            return null;
+        }
+        Filters current = filters;
+        long now = System.currentTimeMillis();
+        // Start the next scan half way through the interval so a fresh filter is usually ready in time
+        if (current == null || now - current.startedAt >= rebuildIntervalSeconds * 500) {
+            rebuild(now);
+        }
+        return current != null && isFresh(current) ? current : null;
+    }
+
+    private boolean isFresh(Filters current) {
+        return System.currentTimeMillis() - current.startedAt < rebuildIntervalSeconds * 1000;
+    }
+
+    private void rebuild(long now) {
+        if (now < retryAt || !rebuilding.compareAndSet(false, true)) {
+            return;
+        }
+        try {
+            executor.execute(this::build);
+        } catch (RejectedExecutionException e) {
+            rebuilding.set(false);
+        }
+    }
+
+    void build() {
+        Filters next = new Filters(new BloomFilter(expectedInsertions, falsePositiveRate),
+                new BloomFilter(expectedInsertions, falsePositiveRate), System.currentTimeMillis());
+        building = next;
+        try {
+            Map<String, String> names = new HashMap<>();
+            names.put("#uuid", "uuid");
+            names.put("#email", "email");
+            DynamoDBScanExpression scanExpression = new DynamoDBScanExpression()
+                    .withProjectionExpression("#uuid, #email")
+                    .withExpressionAttributeNames(names)
+                    .withReturnConsumedCapacity(ReturnConsumedCapacity.TOTAL);
+            // Paced like any other scan, so a rebuild in every warm container does not crowd out point reads
+            ReadCapacityGovernor.ScanPacer pacer = readCapacityGovernor.pacer();
+            do {
+                ScanResultPage<User> page = dynamoDBMapper.scanPage(User.class,
+                        scanExpression.withLimit(pacer.nextLimit(Integer.MAX_VALUE, null)));
+                pacer.record(page.getConsumedCapacity(), page.getScannedCount());
+                for (User user : page.getResults()) {
+                    add(next, user);
+                }
+                scanExpression.setExclusiveStartKey(page.getLastEvaluatedKey());
+            } while (scanExpression.getExclusiveStartKey() != null);
+            userArchive.scanKeys(readCapacityGovernor.pacer(), user -> add(next, user));
+            filters = next;
+            log.info("Rebuilt user lookup filters: {}", getStats());
+            if (next.ids.getInsertions() > expectedInsertions) {
+                log.warn("User lookup filters hold {} users but are sized for {}; raise userindex.bloom.expected-insertions",
+                        next.ids.getInsertions(), expectedInsertions);
+            }
+        } catch (AmazonClientException e) {
+            // Back off so a failing scan is not retried on every lookup
+            retryAt = System.currentTimeMillis() + rebuildIntervalSeconds * 100;
+            log.warn("Unable to rebuild user lookup filters, lookups fall through to DynamoDB: {}", e.getMessage());
+        } finally {
+            building = null;
+            rebuilding.set(false);
+        }
+    }
+
+    private static void add(Filters target, User user) {
+        if (target == null) {
+            return;
+        }
+        if (user.getUuid() != null) {
+            target.ids.put(user.getUuid());
+        }
+        if (user.getEmail() != null) {
+            target.emails.put(user.getEmail());
+        }
+    }
+
+    /**
+     * Snapshot of lookup index counters.
+     */
+    @Getter
+    @AllArgsConstructor
+    public static class IndexStats {
+
+        private final long negativeCacheHits;
+        private final long bloomFilterHits;
+        private final long filterBits;
+        private final int hashFunctions;
+        private final long filterEntries;
+        private final double expectedFalsePositiveRate;
+        private final boolean filterTrusted;
+
+        @Override
+        public String toString() {
+            return "negativeCacheHits=" + negativeCacheHits + ", bloomFilterHits=" + bloomFilterHits
+                    + ", filterBits=" + filterBits + ", hashFunctions=" + hashFunctions
+                    + ", filterEntries=" + filterEntries
+                    + ", expectedFalsePositiveRate=" + String.format("%.5f", expectedFalsePositiveRate)
+                    + ", filterTrusted=" + filterTrusted;
+        }
+    }
+
+    @AllArgsConstructor
+    private static final class Filters {
+
+        private final BloomFilter ids;
+        private final BloomFilter emails;
+        private final long startedAt;
+    }
+
+}
@@ -0,0 +1,585 @@
+package com.aws.lambda.user.repositories;
+
+import com.amazonaws.AmazonClientException;
+import com.amazonaws.services.dynamodbv2.AmazonDynamoDB;
+import com.amazonaws.services.dynamodbv2.datamodeling.DynamoDBTable;
+import com.amazonaws.services.dynamodbv2.model.AttributeValue;
+import com.amazonaws.services.dynamodbv2.model.GlobalSecondaryIndexDescription;
+import com.amazonaws.services.dynamodbv2.model.KeySchemaElement;
+import com.amazonaws.services.dynamodbv2.model.KeyType;
+import com.amazonaws.services.dynamodbv2.model.QueryRequest;
+import com.amazonaws.services.dynamodbv2.model.ReturnConsumedCapacity;
+import com.amazonaws.services.dynamodbv2.model.ScanRequest;
+import com.amazonaws.services.dynamodbv2.model.TableDescription;
+import com.aws.lambda.user.entities.User;
+import com.aws.lambda.user.entities.UserIndexKeys;
+import com.aws.lambda.user.entities.UserStorageFormat;
+import com.aws.lambda.user.models.UserQuery;
+import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Predicate;
+
+/**
+ * Chooses how to execute a {@link UserQuery} against the User table.
+ * The table's item count, average item size and active global secondary indexes are read with
+ * DescribeTable and cached. Each equality predicate on an indexed attribute is a candidate index
+ * Query; the candidate expected to read the fewest items wins, and without one the table is
+ * scanned. The remaining predicates become the FilterExpression and the requested fields the
+ * ProjectionExpression. Predicates on attributes packed by {@link UserStorageFormat} cannot be
+ * evaluated by DynamoDB for compact items, so those items pass the filter and are checked again
+ * once read. Department and role are queried on the index of their {@link UserIndexKeys} sharded key
+ * when it exists, one Query per shard, but only once {@link MigrationProgress} records that the
+ * {@link UserStorageMigrator} has backfilled every user's keys for the configured shard counts.
+ * Until then, including after a shard count changes, their unsharded index is used instead.
+ */
+@Slf4j
+@Component
+public class UserQueryPlanner {
+
+    static final List<String> FIELDS = Collections.unmodifiableList(Arrays.asList("uuid", "name", "email", "age",
+            "department", "role", "createdAt", "updatedAt", "isActive", "phoneNumber"));
+
+    private static final ObjectMapper CURSOR_MAPPER = new ObjectMapper();
+
+    private final String tableName = User.class.getAnnotation(DynamoDBTable.class).tableName();
+
+    @Autowired
+    private AmazonDynamoDB amazonDynamoDB;
+
+    @Autowired
+    private UserIndexKeys userIndexKeys;
+
+    @Autowired(required = false)
+    private MigrationProgress migrationProgress;
+
+    @Autowired
+    private DynamoDBPriming dynamoDBPriming;
+
+    @Value("${query.planner.stats-ttl-seconds:600}")
+    private long statsTtlSeconds;
+
+    /**
+     * Comma-separated list of {@code attribute:count} estimates of distinct values per attribute.
+     */
+    @Value("${query.planner.distinct-values:department:20,role:10,email:1000000}")
+    private String distinctValues;
+
+    @Value("${query.planner.default-distinct-values:10}")
+    private long defaultDistinctValues;
+
+    private final Map<String, Long> distinctValueCounts = new HashMap<>();
+
+    private volatile TableStats stats;
+
+    @PostConstruct
+    void init() {
+        for (String entry : distinctValues.split(",")) {
+            String trimmed = entry.trim();
+            int colon = trimmed.lastIndexOf(':');
+            if (colon > 0) {
+                distinctValueCounts.put(trimmed.substring(0, colon), Long.parseLong(trimmed.substring(colon + 1).trim()));
+            }
+        }
+    }
+
+    /**
+     * Plan a query.
+     *
+     * @param query Query predicates, fields and cursor
+     * @return Plan to execute
+     * @throws IllegalArgumentException if the query or its cursor is invalid
+     */
+    public QueryPlan plan(UserQuery query) {
+        if (query.getMinAge() != null && query.getMaxAge() != null && query.getMinAge() > query.getMaxAge()) {
+            throw new IllegalArgumentException("minAge must not be greater than maxAge");
+        }
+        Map<String, String> equalities = new LinkedHashMap<>();
+        if (query.getDepartment() != null) {
+            equalities.put("department", query.getDepartment());
+        }
+        if (query.getRole() != null) {
+            equalities.put("role", query.getRole());
+        }
+        if (query.getEmail() != null) {
+            equalities.put("email", query.getEmail());
+        }
+
+        TableStats current = stats();
+        Cursor cursor = decodeCursor(query.getCursor());
+        String indexName = null;
+        String keyAttribute = null;
+        boolean sharded = false;
+        long estimatedItems = current.itemCount;
+        if (cursor != null) {
+            // Pages of one query must keep the access path the cursor was issued for, which must
+            // still be an active index on the cursor's attribute since the cursor is client input
+            if (cursor.getKey() != null) {
+                String cursorAttribute = cursor.getShards() != null ? UserIndexKeys.keyAttribute(cursor.getKey()) : cursor.getKey();
+                if (!equalities.containsKey(cursor.getKey()) || cursorAttribute == null
+                        || cursor.getIndex() == null || !cursor.getIndex().equals(current.indexes.get(cursorAttribute))) {
+                    throw new IllegalArgumentException("Cursor does not match the query");
+                }
+                indexName = cursor.getIndex();
+                keyAttribute = cursor.getKey();
+                sharded = cursor.getShards() != null;
+                estimatedItems = estimateMatches(keyAttribute, current);
+            } else if (cursor.getIndex() != null) {
+                throw new IllegalArgumentException("Cursor does not match the query");
+            }
+        } else {
+            for (String attribute : equalities.keySet()) {
+                String shardedIndex = current.indexes.get(UserIndexKeys.keyAttribute(attribute));
+                String index = shardedIndex != null ? shardedIndex : current.indexes.get(attribute);
+                long matches = estimateMatches(attribute, current);
+                if (index != null && (indexName == null || matches < estimatedItems)) {
+                    indexName = index;
+                    keyAttribute = attribute;
+                    sharded = shardedIndex != null;
+                    estimatedItems = matches;
+                }
+            }
+        }
+
+        String indexAttribute = sharded ? UserIndexKeys.keyAttribute(keyAttribute) : keyAttribute;
+        QueryPlan plan = new QueryPlan(tableName, indexName, keyAttribute, indexAttribute, estimatedItems,
+                estimatedItems < 0 ? -1 : estimatedItems * current.averageItemSize / 4096.0 / 2);
+        if (keyAttribute != null) {
+            String value = equalities.get(keyAttribute);
+            if (sharded) {
+                plan.keyValues.addAll(userIndexKeys.keys(keyAttribute, value));
+            } else {
+                plan.keyValues.add(value);
+            }
+            plan.names.put("#" + indexAttribute, indexAttribute);
+            plan.values.put(":" + indexAttribute, new AttributeValue(plan.keyValues.get(0)));
+        }
+        for (Map.Entry<String, String> equality : equalities.entrySet()) {
+            if (!equality.getKey().equals(keyAttribute)) {
+                plan.filter(equality.getKey(), "#" + equality.getKey() + " = :" + equality.getKey(),
+                        Collections.singletonMap(":" + equality.getKey(), new AttributeValue(equality.getValue())));
+            }
+        }
+        if (query.getMinAge() != null && query.getMaxAge() != null) {
+            Map<String, AttributeValue> values = new HashMap<>();
+            values.put(":minAge", new AttributeValue().withN(query.getMinAge().toString()));
+            values.put(":maxAge", new AttributeValue().withN(query.getMaxAge().toString()));
+            plan.filter("age", "#age BETWEEN :minAge AND :maxAge", values);
+        } else if (query.getMinAge() != null) {
+            plan.filter("age", "#age >= :minAge",
+                    Collections.singletonMap(":minAge", new AttributeValue().withN(query.getMinAge().toString())));
+        } else if (query.getMaxAge() != null) {
+            plan.filter("age", "#age <= :maxAge",
+                    Collections.singletonMap(":maxAge", new AttributeValue().withN(query.getMaxAge().toString())));
+        }
+        if (query.getIsActive() != null) {
+            Boolean active = query.getIsActive();
+            plan.filter("isActive", "(#isActive = :isActive OR attribute_exists(#" + UserStorageFormat.COMPACT_ATTRIBUTE + "))",
+                    Collections.singletonMap(":isActive", new AttributeValue().withN(active ? "1" : "0")));
+            plan.names.put("#" + UserStorageFormat.COMPACT_ATTRIBUTE, UserStorageFormat.COMPACT_ATTRIBUTE);
+            plan.residual.put("isActive", user -> active.equals(user.getIsActive()));
+        }
+        plan.project(query.getFields());
+        if (cursor != null && cursor.getShards() != null) {
+            for (Map.Entry<String, Map<String, String>> shard : cursor.getShards().entrySet()) {
+                if (!plan.keyValues.contains(shard.getKey())) {
+                    throw new IllegalArgumentException("Cursor does not match the query");
+                }
+                plan.positions.put(shard.getKey(), shard.getValue().isEmpty() ? null : Cursor.startKey(shard.getValue()));
+            }
+        } else {
+            plan.startKey = cursor == null ? null : cursor.startKey();
+            for (String keyValue : plan.keyValues) {
+                plan.positions.put(keyValue, plan.startKey);
+            }
+        }
+        return plan;
+    }
+
+    private long estimateMatches(String attribute, TableStats current) {
+        if (current.itemCount < 0) {
+            return -1;
+        }
+        long distinct = Math.max(1, distinctValueCounts.getOrDefault(attribute, defaultDistinctValues));
+        return (current.itemCount + distinct - 1) / distinct;
+    }
+
+    private TableStats stats() {
+        TableStats current = stats;
+        long now = System.currentTimeMillis();
+        if (current != null && now < current.expiresAt) {
+            return current;
+        }
+        if (dynamoDBPriming.isActive()) {
+            // The no-op table cannot be described, and caching that would leave real queries scanning
+            return new TableStats(Collections.emptyMap(), -1, 1024, now);
+        }
+        try {
+            TableDescription table = amazonDynamoDB.describeTable(tableName).getTable();
+            Map<String, String> indexes = new HashMap<>();
+            if (table.getGlobalSecondaryIndexes() != null) {
+                for (GlobalSecondaryIndexDescription index : table.getGlobalSecondaryIndexes()) {
+                    // Only indexes that hold whole items can answer a query without a second read
+                    if ("ACTIVE".equals(index.getIndexStatus()) && !Boolean.TRUE.equals(index.getBackfilling())
+                            && "ALL".equals(index.getProjection().getProjectionType())) {
+                        for (KeySchemaElement key : index.getKeySchema()) {
+                            if (KeyType.HASH.toString().equals(key.getKeyType())) {
+                                indexes.putIfAbsent(key.getAttributeName(), index.getIndexName());
+                            }
+                        }
+                    }
+                }
+            }
+            if (!Collections.disjoint(indexes.keySet(), UserIndexKeys.KEY_ATTRIBUTES.values()) && !shardKeysBackfilled()) {
+                indexes.keySet().removeAll(UserIndexKeys.KEY_ATTRIBUTES.values());
+            }
+            long itemCount = table.getItemCount() == null ? -1 : table.getItemCount();
+            long averageItemSize = itemCount > 0 && table.getTableSizeBytes() != null ? table.getTableSizeBytes() / itemCount : 1024;
+            current = new TableStats(indexes, itemCount, averageItemSize, now + statsTtlSeconds * 1000);
+        } catch (AmazonClientException e) {
+            log.warn("Unable to describe table {}, user queries scan until it can be: {}", tableName, e.getMessage());
+            current = new TableStats(Collections.emptyMap(), -1, 1024, now + statsTtlSeconds * 100);
+        }
+        stats = current;
+        return current;
+    }
+
+    private boolean shardKeysBackfilled() {
+        String migrationId = UserStorageMigrator.indexKeysMigrationId(userIndexKeys);
+        try {
+            if (migrationProgress != null && migrationProgress.isFinished(migrationId)) {
+                return true;
+            }
+            log.info("Shard keys are not backfilled for {}, user queries use the unsharded indexes", migrationId);
+        } catch (AmazonClientException e) {
+            log.warn("Unable to read the progress of {}, user queries use the unsharded indexes: {}", migrationId, e.getMessage());
+        }
+        return false;
+    }
+
+    private static Cursor decodeCursor(String cursor) {
+        if (cursor == null || cursor.isEmpty()) {
+            return null;
+        }
+        try {
+            return CURSOR_MAPPER.readValue(Base64.getUrlDecoder().decode(cursor), Cursor.class);
+        } catch (IOException | IllegalArgumentException e) {
+            throw new IllegalArgumentException("Invalid cursor");
+        }
+    }
+
+    /**
+     * Execution plan for one user query.
+     */
+    @Getter
+    public static class QueryPlan {
+
+        private final String tableName;
+        private final String indexName;
+        private final String keyAttribute;
+        private final String indexAttribute;
+        private final long estimatedItems;
+        private final double estimatedReadUnits;
+        private final List<String> keyValues = new ArrayList<>();
+        private final Map<String, String> names = new HashMap<>();
+        private final Map<String, AttributeValue> values = new HashMap<>();
+        private final List<String> filterAttributes = new ArrayList<>();
+        private final List<String> filterConditions = new ArrayList<>();
+        private final Map<String, Predicate<User>> residual = new LinkedHashMap<>();
+        private final Set<String> projection = new LinkedHashSet<>();
+        private final Map<String, Map<String, AttributeValue>> positions = new LinkedHashMap<>();
+        private Map<String, AttributeValue> startKey;
+
+        QueryPlan(String tableName, String indexName, String keyAttribute, String indexAttribute,
+                  long estimatedItems, double estimatedReadUnits) {
+            this.tableName = tableName;
+            this.indexName = indexName;
+            this.keyAttribute = keyAttribute;
+            this.indexAttribute = indexAttribute;
+            this.estimatedItems = estimatedItems;
+            this.estimatedReadUnits = estimatedReadUnits;
+        }
+
+        /**
+         * Check whether the plan scans the table rather than querying an index.
+         *
+         * @return true for a scan
+         */
+        public boolean isScan() {
+            return indexName == null;
+        }
+
+        /**
+         * Check whether the plan queries a sharded index, one Query per shard.
+         *
+         * @return true for a sharded index plan
+         */
+        public boolean isSharded() {
+            return indexAttribute != null && !indexAttribute.equals(keyAttribute);
+        }
+
+        /**
+         * Get the position of each index key still to be read, in key order.
+         *
+         * @return Copy of the positions, mapping each key value to the key to resume from, or to
+         *         null if none of its items have been read yet
+         */
+        public Map<String, Map<String, AttributeValue>> getPositions() {
+            return new LinkedHashMap<>(positions);
+        }
+
+        /**
+         * Build the Query request for the next page of an index plan with a single key value.
+         *
+         * @param limit     Maximum number of items to evaluate
+         * @param startKey  Key to resume from, or null for the first page
+         * @return Query request
+         */
+        public QueryRequest queryRequest(int limit, Map<String, AttributeValue> startKey) {
+            return queryRequest(keyValues.get(0), limit, startKey);
+        }
+
+        /**
+         * Build the Query request for the next page of one key value of an index plan.
+         *
+         * @param keyValue  Index key value, one of {@link #getKeyValues()}
+         * @param limit     Maximum number of items to evaluate
+         * @param startKey  Key to resume from, or null for the first page
+         * @return Query request
+         */
+        public QueryRequest queryRequest(String keyValue, int limit, Map<String, AttributeValue> startKey) {
+            Map<String, AttributeValue> requestValues = new HashMap<>(values);
+            requestValues.put(":" + indexAttribute, new AttributeValue(keyValue));
+            return new QueryRequest()
+                    .withTableName(tableName)
+                    .withIndexName(indexName)
+                    .withKeyConditionExpression("#" + indexAttribute + " = :" + indexAttribute)
+                    .withFilterExpression(filterExpression())
+                    .withProjectionExpression(projectionExpression())
+                    .withExpressionAttributeNames(names)
+                    .withExpressionAttributeValues(requestValues)
+                    .withLimit(limit)
+                    .withExclusiveStartKey(startKey)
+                    .withReturnConsumedCapacity(ReturnConsumedCapacity.TOTAL);
+        }
+
+        /**
+         * Build the Scan request for the next page of a scan plan.
+         *
+         * @param limit     Maximum number of items to evaluate
+         * @param startKey  Key to resume from, or null for the first page
+         * @return Scan request
+         */
+        public ScanRequest scanRequest(int limit, Map<String, AttributeValue> startKey) {
+            return new ScanRequest()
+                    .withTableName(tableName)
+                    .withFilterExpression(filterExpression())
+                    .withProjectionExpression(projectionExpression())
+                    .withExpressionAttributeNames(names.isEmpty() ? null : names)
+                    .withExpressionAttributeValues(values.isEmpty() ? null : values)
+                    .withLimit(limit)
+                    .withExclusiveStartKey(startKey)
+                    .withReturnConsumedCapacity(ReturnConsumedCapacity.TOTAL);
+        }
+
+        /**
+         * Re-check predicates DynamoDB could not fully evaluate.
+         *
+         * @param user User read by the plan
+         * @return true if the user matches the query
+         */
+        public boolean matches(User user) {
+            for (Predicate<User> predicate : residual.values()) {
+                if (!predicate.test(user)) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        /**
+         * Encode a cursor for resuming this plan.
+         *
+         * @param lastEvaluatedKey Last key evaluated by DynamoDB
+         * @return Opaque cursor
+         */
+        public String cursor(Map<String, AttributeValue> lastEvaluatedKey) {
+            Map<String, String> start = new LinkedHashMap<>();
+            lastEvaluatedKey.forEach((name, value) -> start.put(name, value.getS()));
+            return encode(new Cursor(indexName, keyAttribute, start, null));
+        }
+
+        /**
+         * Encode a cursor for resuming an index plan at the given positions.
+         *
+         * @param pending Positions of the index keys still to be read, as from {@link #getPositions()}
+         * @return Opaque cursor, or null if every key has been read
+         */
+        public String indexCursor(Map<String, Map<String, AttributeValue>> pending) {
+            if (pending.isEmpty()) {
+                return null;
+            }
+            if (!isSharded()) {
+                return cursor(pending.values().iterator().next());
+            }
+            Map<String, Map<String, String>> shards = new LinkedHashMap<>();
+            pending.forEach((keyValue, lastEvaluatedKey) -> {
+                Map<String, String> start = new LinkedHashMap<>();
+                if (lastEvaluatedKey != null) {
+                    lastEvaluatedKey.forEach((name, value) -> start.put(name, value.getS()));
+                }
+                shards.put(keyValue, start);
+            });
+            return encode(new Cursor(indexName, keyAttribute, null, shards));
+        }
+
+        private static String encode(Cursor cursor) {
+            try {
+                return Base64.getUrlEncoder().withoutPadding().encodeToString(CURSOR_MAPPER.writeValueAsBytes(cursor));
+            } catch (IOException e) {
+                throw new IllegalStateException("Unable to encode cursor", e);
+            }
+        }
+
+        /**
+         * Describe the plan and how it ran, for the query plan header.
+         *
+         * @param pages             Number of pages read
+         * @param consumedReadUnits Read units reported by DynamoDB
+         * @return Plan description
+         */
+        public String describe(int pages, double consumedReadUnits) {
+            return (isScan() ? "scan" : "query index=" + indexName + " key=" + keyAttribute
+                    + (isSharded() ? " shards=" + keyValues.size() : ""))
+                    + "; filter=" + (filterAttributes.isEmpty() ? "none" : String.join(",", filterAttributes))
+                    + "; residual=" + (residual.isEmpty() ? "none" : String.join(",", residual.keySet()))
+                    + "; projection=" + (projection.isEmpty() ? "all" : String.join(",", projection))
+                    + "; estimatedItems=" + (estimatedItems < 0 ? "unknown" : String.valueOf(estimatedItems))
+                    + "; estimatedRcu=" + (estimatedReadUnits < 0 ? "unknown" : String.format(Locale.ROOT, "%.1f", estimatedReadUnits))
+                    + "; pages=" + pages
+                    + "; consumedRcu=" + String.format(Locale.ROOT, "%.1f", consumedReadUnits);
+        }
+
+        @Override
+        public String toString() {
+            return describe(0, 0);
+        }
+
+        void filter(String attribute, String condition, Map<String, AttributeValue> conditionValues) {
+            filterAttributes.add(attribute);
+            filterConditions.add(condition);
+            names.put("#" + attribute, attribute);
+            values.putAll(conditionValues);
+        }
+
+        void project(List<String> fields) {
+            if (fields == null || fields.isEmpty()) {
+                return;
+            }
+            projection.add("uuid");
+            for (String field : fields) {
+                String trimmed = field.trim();
+                if (!FIELDS.contains(trimmed)) {
+                    throw new IllegalArgumentException("Unknown field: " + trimmed);
+                }
+                projection.add(trimmed);
+            }
+            // Residual predicates need their attributes, and packed attributes may be in either format
+            projection.addAll(residual.keySet());
+            for (String attribute : new ArrayList<>(projection)) {
+                if (UserStorageFormat.COLD_ATTRIBUTES.contains(attribute)) {
+                    projection.add(UserStorageFormat.COMPACT_ATTRIBUTE);
+                    break;
+                }
+            }
+            for (String attribute : projection) {
+                names.put("#" + attribute, attribute);
+            }
+        }
+
+        private String filterExpression() {
+            return filterConditions.isEmpty() ? null : String.join(" AND ", filterConditions);
+        }
+
+        private String projectionExpression() {
+            if (projection.isEmpty()) {
+                return null;
+            }
+            List<String> placeholders = new ArrayList<>();
+            projection.forEach(attribute -> placeholders.add("#" + attribute));
+            return String.join(", ", placeholders);
+        }
+    }
+
+    /**
+     * Position of a paginated query, serialized into the opaque cursor.
+     * A sharded index query has a position per shard still to be read instead of a start key,
+     * empty for a shard none of whose items have been read.
+     */
+    @Getter
+    @AllArgsConstructor
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    static class Cursor {
+
+        private final String index;
+        private final String key;
+        private final Map<String, String> start;
+        private final Map<String, Map<String, String>> shards;
+
+        @JsonCreator
+        static Cursor of(@JsonProperty("index") String index,
+                         @JsonProperty("key") String key,
+                         @JsonProperty("start") Map<String, String> start,
+                         @JsonProperty("shards") Map<String, Map<String, String>> shards) {
+            if (shards != null) {
+                if (shards.isEmpty() || key == null || start != null || shards.containsValue(null)) {
+                    throw new IllegalArgumentException("Cursor has no shard positions");
+                }
+            } else if (start == null || start.isEmpty()) {
+                throw new IllegalArgumentException("Cursor has no start key");
+            }
+            return new Cursor(index, key, start, shards);
+        }
+
+        Map<String, AttributeValue> startKey() {
+            return startKey(start);
+        }
+
+        static Map<String, AttributeValue> startKey(Map<String, String> start) {
+            Map<String, AttributeValue> key = new HashMap<>();
+            start.forEach((name, value) -> key.put(name, new AttributeValue(value)));
+            return key;
+        }
+    }
+
+    @AllArgsConstructor
+    private static final class TableStats {
+
+        private final Map<String, String> indexes;
+        private final long itemCount;
+        private final long averageItemSize;
+        private final long expiresAt;
+    }
+
+}
@@ -0,0 +1,461 @@
+package com.aws.lambda.user.repositories;
+
+import com.amazonaws.services.dynamodbv2.AmazonDynamoDB;
+import com.amazonaws.services.dynamodbv2.AmazonDynamoDBAsync;
+import com.amazonaws.services.dynamodbv2.datamodeling.DynamoDBTable;
+import com.amazonaws.services.dynamodbv2.model.AttributeValue;
+import com.amazonaws.services.dynamodbv2.model.BatchGetItemRequest;
+import com.amazonaws.services.dynamodbv2.model.BatchGetItemResult;
+import com.amazonaws.services.dynamodbv2.model.ConditionalCheckFailedException;
+import com.amazonaws.services.dynamodbv2.model.ConsumedCapacity;
+import com.amazonaws.services.dynamodbv2.model.KeysAndAttributes;
+import com.amazonaws.services.dynamodbv2.model.QueryResult;
+import com.amazonaws.services.dynamodbv2.model.ReturnConsumedCapacity;
+import com.amazonaws.services.dynamodbv2.model.ReturnValue;
+import com.amazonaws.services.dynamodbv2.model.ScanResult;
+import com.amazonaws.services.dynamodbv2.model.TransactWriteItem;
+import com.amazonaws.services.dynamodbv2.model.TransactWriteItemsRequest;
+import com.amazonaws.services.dynamodbv2.model.TransactWriteItemsResult;
+import com.amazonaws.services.dynamodbv2.model.TransactionCanceledException;
+import com.amazonaws.services.dynamodbv2.model.Update;
+import com.amazonaws.services.dynamodbv2.model.UpdateItemRequest;
+import com.amazonaws.services.dynamodbv2.model.UpdateItemResult;
+import com.aws.lambda.user.entities.User;
+import com.aws.lambda.user.entities.UserIndexKeys;
+import com.aws.lambda.user.models.Reassignment;
+import com.aws.lambda.user.models.ReassignmentResult;
+import com.aws.lambda.user.models.UserQuery;
+import com.aws.lambda.user.utils.Futures;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Profile;
+import org.springframework.stereotype.Component;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Applies a {@link Reassignment} to the User table with attribute updates instead of full puts.
+ * A set of users small enough for one transaction is changed atomically with TransactWriteItems;
+ * larger sets are changed a page at a time with concurrent conditional UpdateItem calls. Every
+ * write is conditional on the user still needing the change, so a reassignment can be resumed or
+ * repeated safely. Each call stops before exceeding its write capacity budget and returns a cursor
+ * to resume from. Updates keep the users' {@link UserIndexKeys} sharded index keys in step, and the
+ * shards of a sharded department index are walked one after another. The previous department or
+ * role of every user changed is returned for the audit log.
+ */
+@Slf4j
+@Component
+@Profile("!" + InMemoryUserRepository.PROFILE)
+public class UserReassigner {
+
+    static final String TRANSACTION = "transaction";
+    static final String CONDITIONAL_UPDATES = "conditional-updates";
+
+    private final String tableName = User.class.getAnnotation(DynamoDBTable.class).tableName();
+
+    @Autowired
+    private AmazonDynamoDB amazonDynamoDB;
+
+    @Autowired
+    private AmazonDynamoDBAsync amazonDynamoDBAsync;
+
+    @Autowired
+    private UserQueryPlanner userQueryPlanner;
+
+    @Autowired
+    private UserIndexKeys userIndexKeys;
+
+    @Value("${user.reassign.transaction-limit:25}")
+    private int transactionLimit;
+
+    @Value("${user.reassign.page-size:25}")
+    private int pageSize;
+
+    @Value("${user.reassign.max-pages:50}")
+    private int maxPages;
+
+    @Value("${user.reassign.max-write-units:200}")
+    private int maxWriteUnits;
+
+    /**
+     * Apply as much of a reassignment as the write capacity budget of one call allows.
+     *
+     * @param reassignment Reassignment and the cursor of the previous call, if any
+     * @return Progress of this call
+     * @throws IllegalArgumentException if the cursor is invalid
+     */
+    public ReassignmentResult reassign(Reassignment reassignment) {
+        int budget = reassignment.getMaxWriteUnits() == null ? maxWriteUnits
+                : Math.min(reassignment.getMaxWriteUnits(), maxWriteUnits);
+        Progress progress = new Progress(budget);
+        String nextCursor = reassignment.isDepartmentTransfer()
+                ? transferDepartment(reassignment, progress)
+                : assignRole(reassignment, progress);
+        log.info("Reassignment {} matched={}, updated={}, skipped={}, consumedWcu={}", nextCursor == null ? "finished" : "paused",
+                progress.matched, progress.updated, progress.skipped, progress.consumed);
+        return ReassignmentResult.builder()
+                .matched(progress.matched)
+                .updated(progress.updated)
+                .skipped(progress.skipped)
+                .consumedWriteUnits(progress.consumed)
+                .mode(progress.mode)
+                .nextCursor(nextCursor)
+                .changes(progress.changes)
+                .build();
+    }
+
+    private String transferDepartment(Reassignment reassignment, Progress progress) {
+        // Only the keys are read; the department index is used when it is available
+        UserQueryPlanner.QueryPlan plan = userQueryPlanner.plan(UserQuery.builder()
+                .department(reassignment.getFromDepartment())
+                .fields(Collections.singletonList("department"))
+                .cursor(reassignment.getCursor())
+                .build());
+        String now = LocalDateTime.now().toString();
+        boolean firstCall = reassignment.getCursor() == null;
+        Map<String, AttributeValue> startKey = plan.getStartKey();
+        Map<String, Map<String, AttributeValue>> positions = plan.getPositions();
+        int pages = 0;
+        boolean more;
+        do {
+            // A first page that holds the whole department is small enough for one transaction
+            int limit = firstCall && pages == 0 ? transactionLimit + 1 : progress.affordable(pageSize);
+            List<Map<String, AttributeValue>> items;
+            String keyValue = null;
+            if (plan.isScan()) {
+                ScanResult result = amazonDynamoDB.scan(plan.scanRequest(limit, startKey));
+                items = result.getItems();
+                startKey = result.getLastEvaluatedKey();
+                more = !isEmpty(startKey);
+            } else {
+                keyValue = positions.keySet().iterator().next();
+                QueryResult result = amazonDynamoDB.query(plan.queryRequest(keyValue, limit, positions.get(keyValue)));
+                items = result.getItems();
+                if (isEmpty(result.getLastEvaluatedKey())) {
+                    positions.remove(keyValue);
+                } else {
+                    positions.put(keyValue, result.getLastEvaluatedKey());
+                }
+                more = !positions.isEmpty();
+            }
+            pages++;
+
+            List<UpdateItemRequest> updates = new ArrayList<>();
+            for (Map<String, AttributeValue> item : items) {
+                updates.add(departmentUpdate(item.get("uuid"), reassignment.getFromDepartment(), reassignment.getToDepartment(), now));
+            }
+            progress.matched += updates.size();
+            boolean whole = firstCall && pages == 1 && !more;
+            if (whole && updates.size() <= transactionLimit && 2 * updates.size() <= progress.budget
+                    && transact(updates, progress)) {
+                continue;
+            }
+            int affordable = progress.affordable(updates.size());
+            if (affordable < updates.size()) {
+                // The first page was read for a transaction; write what the budget allows
+                // and resume after the last user written
+                update(updates.subList(0, affordable), progress);
+                progress.matched -= updates.size() - affordable;
+                Map<String, AttributeValue> resumeKey = resumeKey(plan, keyValue, items.get(affordable - 1));
+                if (plan.isScan()) {
+                    return plan.cursor(resumeKey);
+                }
+                positions.put(keyValue, resumeKey);
+                return plan.indexCursor(positions);
+            }
+            update(updates, progress);
+        } while (more && pages < maxPages && progress.affordable(1) > 0);
+        if (!more) {
+            return null;
+        }
+        return plan.isScan() ? plan.cursor(startKey) : plan.indexCursor(positions);
+    }
+
+    private String assignRole(Reassignment reassignment, Progress progress) {
+        List<String> uuids = reassignment.getUuids();
+        int offset = decodeOffset(reassignment.getCursor(), uuids.size());
+        String now = LocalDateTime.now().toString();
+
+        if (offset == 0 && uuids.size() <= transactionLimit && 2 * uuids.size() <= progress.budget) {
+            Map<String, Map<String, AttributeValue>> current = currentRoles(uuids, reassignment.getRole());
+            if (current != null) {
+                List<UpdateItemRequest> updates = new ArrayList<>();
+                for (String uuid : uuids) {
+                    updates.add(pinRole(roleUpdate(uuid, reassignment.getRole(), now), current.get(uuid).get("role")));
+                }
+                progress.matched += updates.size();
+                if (transact(updates, progress)) {
+                    return null;
+                }
+                progress.matched -= updates.size();
+            }
+        }
+        int pages = 0;
+        while (offset < uuids.size() && pages < maxPages && progress.affordable(1) > 0) {
+            int end = Math.min(uuids.size(), offset + progress.affordable(pageSize));
+            List<UpdateItemRequest> updates = new ArrayList<>();
+            for (String uuid : uuids.subList(offset, end)) {
+                updates.add(roleUpdate(uuid, reassignment.getRole(), now));
+            }
+            progress.matched += updates.size();
+            update(updates, progress);
+            offset = end;
+            pages++;
+        }
+        return offset < uuids.size() ? encodeOffset(offset) : null;
+    }
+
+    /**
+     * Read the roles of users about to be changed in one transaction, which returns no previous values.
+     *
+     * @return Items by UUID, or null if a user is missing, listed twice or already has the role,
+     *         so that the transaction would be cancelled
+     */
+    private Map<String, Map<String, AttributeValue>> currentRoles(List<String> uuids, String role) {
+        if (new HashSet<>(uuids).size() < uuids.size()) {
+            return null;
+        }
+        List<Map<String, AttributeValue>> keys = new ArrayList<>();
+        for (String uuid : uuids) {
+            keys.add(Collections.singletonMap("uuid", new AttributeValue(uuid)));
+        }
+        Map<String, String> names = new HashMap<>();
+        names.put("#uuid", "uuid");
+        names.put("#role", "role");
+        BatchGetItemResult result = amazonDynamoDB.batchGetItem(new BatchGetItemRequest()
+                .withRequestItems(Collections.singletonMap(tableName, new KeysAndAttributes()
+                        .withKeys(keys)
+                        .withProjectionExpression("#uuid, #role")
+                        .withExpressionAttributeNames(names)
+                        .withConsistentRead(true))));
+        List<Map<String, AttributeValue>> items = result.getResponses().get(tableName);
+        Map<String, Map<String, AttributeValue>> current = new HashMap<>();
+        if (items != null) {
+            for (Map<String, AttributeValue> item : items) {
+                AttributeValue previous = item.get("role");
+                if (previous != null && role.equals(previous.getS())) {
+                    return null;
+                }
+                current.put(item.get("uuid").getS(), item);
+            }
+        }
+        // Unprocessed keys leave users unread as well
+        return current.size() == uuids.size() ? current : null;
+    }
+
+    private static Map<String, AttributeValue> resumeKey(UserQueryPlanner.QueryPlan plan, String keyValue,
+                                                         Map<String, AttributeValue> item) {
+        // Same attributes DynamoDB returns as the last evaluated key of the table or index
+        Map<String, AttributeValue> key = new HashMap<>();
+        key.put("uuid", item.get("uuid"));
+        if (!plan.isScan()) {
+            key.put(plan.getIndexAttribute(), new AttributeValue(keyValue));
+        }
+        return key;
+    }
+
+    private UpdateItemRequest departmentUpdate(AttributeValue uuid, String from, String to, String now) {
+        Map<String, AttributeValue> values = new HashMap<>();
+        values.put(":from", new AttributeValue(from));
+        values.put(":to", new AttributeValue(to));
+        values.put(":toKey", new AttributeValue(userIndexKeys.key("department", to, uuid.getS())));
+        values.put(":updatedAt", new AttributeValue(now));
+        Map<String, String> names = names("department");
+        names.put("#departmentKey", UserIndexKeys.keyAttribute("department"));
+        // A top-level updatedAt takes precedence over one packed in the compact attribute
+        return new UpdateItemRequest()
+                .withTableName(tableName)
+                .withKey(Collections.singletonMap("uuid", uuid))
+                .withUpdateExpression("SET #department = :to, #departmentKey = :toKey, #updatedAt = :updatedAt")
+                .withConditionExpression("#department = :from")
+                .withExpressionAttributeNames(names)
+                .withExpressionAttributeValues(values);
+    }
+
+    private UpdateItemRequest roleUpdate(String uuid, String role, String now) {
+        Map<String, AttributeValue> values = new HashMap<>();
+        values.put(":role", new AttributeValue(role));
+        values.put(":roleKey", new AttributeValue(userIndexKeys.key("role", role, uuid)));
+        values.put(":updatedAt", new AttributeValue(now));
+        Map<String, String> names = names("role");
+        names.put("#roleKey", UserIndexKeys.keyAttribute("role"));
+        names.put("#uuid", "uuid");
+        return new UpdateItemRequest()
+                .withTableName(tableName)
+                .withKey(Collections.singletonMap("uuid", new AttributeValue(uuid)))
+                .withUpdateExpression("SET #role = :role, #roleKey = :roleKey, #updatedAt = :updatedAt")
+                .withConditionExpression("attribute_exists(#uuid) AND (attribute_not_exists(#role) OR #role <> :role)")
+                .withExpressionAttributeNames(names)
+                .withExpressionAttributeValues(values);
+    }
+
+    /**
+     * Make a role update conditional on the role read before, so that the previous role recorded is the one replaced.
+     */
+    private static UpdateItemRequest pinRole(UpdateItemRequest update, AttributeValue previous) {
+        if (previous == null) {
+            return update.withConditionExpression("attribute_exists(#uuid) AND attribute_not_exists(#role)");
+        }
+        update.getExpressionAttributeValues().put(":previous", previous);
+        return update.withConditionExpression("attribute_exists(#uuid) AND #role = :previous");
+    }
+
+    /**
+     * Describe the change an applied update made.
+     *
+     * @param previous Previous values returned by DynamoDB, or null if the update was conditional on them
+     */
+    private static ReassignmentResult.Change change(UpdateItemRequest update, Map<String, AttributeValue> previous) {
+        String uuid = update.getKey().get("uuid").getS();
+        Map<String, AttributeValue> values = update.getExpressionAttributeValues();
+        if (values.containsKey(":to")) {
+            return new ReassignmentResult.Change(uuid, "department", values.get(":from").getS(), values.get(":to").getS());
+        }
+        AttributeValue before = previous == null ? values.get(":previous") : previous.get("role");
+        return new ReassignmentResult.Change(uuid, "role", before == null ? null : before.getS(), values.get(":role").getS());
+    }
+
+    private static Map<String, String> names(String attribute) {
+        Map<String, String> names = new HashMap<>();
+        names.put("#" + attribute, attribute);
+        names.put("#updatedAt", "updatedAt");
+        return names;
+    }
+
+    /**
+     * Apply all updates atomically.
+     *
+     * @return true if the transaction committed, false if a condition failed and the updates
+     *         must be applied one by one instead
+     */
+    private boolean transact(List<UpdateItemRequest> updates, Progress progress) {
+        if (updates.isEmpty()) {
+            progress.mode = TRANSACTION;
+            return true;
+        }
+        List<TransactWriteItem> items = new ArrayList<>();
+        for (UpdateItemRequest update : updates) {
+            items.add(new TransactWriteItem().withUpdate(new Update()
+                    .withTableName(update.getTableName())
+                    .withKey(update.getKey())
+                    .withUpdateExpression(update.getUpdateExpression())
+                    .withConditionExpression(update.getConditionExpression())
+                    .withExpressionAttributeNames(update.getExpressionAttributeNames())
+                    .withExpressionAttributeValues(update.getExpressionAttributeValues())));
+        }
+        try {
+            TransactWriteItemsResult result = amazonDynamoDB.transactWriteItems(new TransactWriteItemsRequest()
+                    .withTransactItems(items)
+                    .withReturnConsumedCapacity(ReturnConsumedCapacity.TOTAL));
+            double consumed = 0;
+            if (result.getConsumedCapacity() != null) {
+                for (ConsumedCapacity capacity : result.getConsumedCapacity()) {
+                    consumed += capacity.getCapacityUnits() == null ? 0 : capacity.getCapacityUnits();
+                }
+            }
+            // Transactional writes cost two units per item
+            progress.consumed += consumed > 0 ? consumed : 2.0 * updates.size();
+            progress.updated += updates.size();
+            for (UpdateItemRequest update : updates) {
+                progress.changes.add(change(update, null));
+            }
+            progress.mode = TRANSACTION;
+            return true;
+        } catch (TransactionCanceledException e) {
+            // Some users were already reassigned, missing or being written concurrently
+            log.debug("Reassignment transaction cancelled, updating users individually: {}", e.getMessage());
+            return false;
+        }
+    }
+
+    private void update(List<UpdateItemRequest> updates, Progress progress) {
+        progress.mode = CONDITIONAL_UPDATES;
+        List<CompletableFuture<UpdateItemResult>> writes = new ArrayList<>();
+        for (UpdateItemRequest update : updates) {
+            writes.add(AsyncUserRepositoryImpl.<UpdateItemRequest, UpdateItemResult>call(amazonDynamoDBAsync::updateItemAsync,
+                    update.withReturnConsumedCapacity(ReturnConsumedCapacity.TOTAL).withReturnValues(ReturnValue.UPDATED_OLD))
+                    .exceptionally(throwable -> {
+                        if (Futures.unwrap(throwable) instanceof ConditionalCheckFailedException) {
+                            return null;
+                        }
+                        throw Futures.unwrap(throwable);
+                    }));
+        }
+        Futures.join(CompletableFuture.allOf(writes.toArray(new CompletableFuture<?>[0])));
+        for (int i = 0; i < writes.size(); i++) {
+            UpdateItemResult result = writes.get(i).join();
+            if (result == null) {
+                // A failed condition still consumes a write unit
+                progress.skipped++;
+                progress.consumed += 1;
+            } else {
+                progress.updated++;
+                progress.consumed += result.getConsumedCapacity() == null || result.getConsumedCapacity().getCapacityUnits() == null
+                        ? 1.0 : result.getConsumedCapacity().getCapacityUnits();
+                progress.changes.add(change(updates.get(i),
+                        result.getAttributes() == null ? Collections.emptyMap() : result.getAttributes()));
+            }
+        }
+    }
+
+    private static boolean isEmpty(Map<String, AttributeValue> key) {
+        return key == null || key.isEmpty();
+    }
+
+    private static String encodeOffset(int offset) {
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(String.valueOf(offset).getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static int decodeOffset(String cursor, int size) {
+        if (cursor == null || cursor.isEmpty()) {
+            return 0;
+        }
+        try {
+            int offset = Integer.parseInt(new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8));
+            if (offset < 0 || offset > size) {
+                throw new IllegalArgumentException("Invalid cursor");
+            }
+            return offset;
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Invalid cursor");
+        }
+    }
+
+    /**
+     * Counters of one call and the write capacity it has left.
+     */
+    private static final class Progress {
+
+        private final int budget;
+        private final List<ReassignmentResult.Change> changes = new ArrayList<>();
+        private int matched;
+        private int updated;
+        private int skipped;
+        private double consumed;
+        private String mode = CONDITIONAL_UPDATES;
+
+        private Progress(int budget) {
+            this.budget = budget;
+        }
+
+        /**
+         * Number of further writes the budget allows, at the cost per write seen so far.
+         */
+        private int affordable(int wanted) {
+            int writes = updated + skipped;
+            double perWrite = writes == 0 ? 1.0 : Math.max(1.0, consumed / writes);
+            return (int) Math.max(0, Math.min(wanted, Math.floor((budget - consumed) / perWrite)));
+        }
+    }
+
+}
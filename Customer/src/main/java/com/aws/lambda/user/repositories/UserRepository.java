@@ -1,6 +1,10 @@
 package com.aws.lambda.user.repositories;
 
 import com.aws.lambda.user.entities.User;
+import com.aws.lambda.user.models.Reassignment;
+import com.aws.lambda.user.models.ReassignmentResult;
+import com.aws.lambda.user.models.UserQuery;
+import com.aws.lambda.user.models.UserQueryPage;
 import java.util.List;
 
 /**
@@ -32,6 +36,26 @@ public interface UserRepository {
      */
     List<User> findAll();
 
+    /**
+     * Find all users, one page at a time. A page ends early when the deadline of the current
+     * request is near, so that a partial result is returned instead of none.
+     * 
+     * @param cursor Cursor returned with the previous page, or null to start
+     * @return Users read before the deadline and the cursor for the rest, if any
+     */
+    UserQueryPage findAll(String cursor);
+
+    /**
+     * Replace a user's password hash, unless it changed since it was read.
+     * No other attribute of the user is written.
+     * 
+     * @param uuid User's unique identifier
+     * @param currentHash Password hash the user was read with
+     * @param newHash Password hash to store
+     * @return true if the hash was replaced, false if the user is gone or has another hash
+     */
+    boolean updatePasswordHash(String uuid, String currentHash, String newHash);
+
     /**
      * Delete a user by their unique identifier.
      * 
@@ -47,6 +71,16 @@ public interface UserRepository {
      */
     List<User> findByDepartment(String department);
 
+    /**
+     * Find users by department, one page at a time. A page ends early when the deadline of the
+     * current request is near, so that a partial result is returned instead of none.
+     * 
+     * @param department Department name to search for
+     * @param cursor Cursor returned with the previous page, or null to start
+     * @return Users read before the deadline and the cursor for the rest, if any
+     */
+    UserQueryPage findByDepartment(String department, String cursor);
+
     /**
      * Find users by role.
      * 
@@ -79,6 +113,14 @@ public interface UserRepository {
      */
     boolean existsById(String uuid);
 
+    /**
+     * Check if a user exists by email, reading the stored users rather than any lookup cache.
+     * 
+     * @param email Email address to search for
+     * @return true if a user has the email, false otherwise
+     */
+    boolean existsByEmail(String email);
+
     /**
      * Count total number of users.
      * 
@@ -86,4 +128,20 @@ public interface UserRepository {
      */
     long count();
 
+    /**
+     * Find one page of users matching all predicates of a query.
+     * 
+     * @param query Query predicates, fields, page size and cursor
+     * @return Matching users, the cursor for the next page and a description of the plan used
+     */
+    UserQueryPage query(UserQuery query);
+
+    /**
+     * Change the department or role of many users, as far as the write capacity budget allows.
+     * 
+     * @param reassignment Users to change, their new department or role, and the cursor of the previous call
+     * @return Progress of this call and the cursor to resume from
+     */
+    ReassignmentResult reassign(Reassignment reassignment);
+
 }
@@ -1,45 +1,147 @@
 package com.aws.lambda.user.repositories;
 
 import com.amazonaws.services.dynamodbv2.AmazonDynamoDB;
+import com.amazonaws.services.dynamodbv2.AmazonDynamoDBAsync;
 import com.amazonaws.services.dynamodbv2.datamodeling.DynamoDBMapper;
+import com.amazonaws.services.dynamodbv2.datamodeling.DynamoDBMapperConfig;
 import com.amazonaws.services.dynamodbv2.datamodeling.DynamoDBScanExpression;
+import com.amazonaws.services.dynamodbv2.datamodeling.DynamoDBTable;
+import com.amazonaws.services.dynamodbv2.datamodeling.ScanResultPage;
+import com.amazonaws.services.dynamodbv2.datamodeling.DynamoDBMapperTableModel;
 import com.amazonaws.services.dynamodbv2.model.AttributeValue;
+import com.amazonaws.services.dynamodbv2.model.ConditionalCheckFailedException;
+import com.amazonaws.services.dynamodbv2.model.ConsumedCapacity;
+import com.amazonaws.services.dynamodbv2.model.QueryRequest;
+import com.amazonaws.services.dynamodbv2.model.QueryResult;
+import com.amazonaws.services.dynamodbv2.model.ReturnConsumedCapacity;
+import com.amazonaws.services.dynamodbv2.model.ScanResult;
+import com.amazonaws.services.dynamodbv2.model.Select;
+import com.amazonaws.services.dynamodbv2.model.UpdateItemRequest;
 import com.aws.lambda.user.entities.User;
+import com.aws.lambda.user.entities.UserStorageFormat;
+import com.aws.lambda.user.models.Reassignment;
+import com.aws.lambda.user.models.ReassignmentResult;
+import com.aws.lambda.user.models.UserQuery;
+import com.aws.lambda.user.models.UserQueryPage;
+import com.aws.lambda.user.utils.Deadline;
+import com.aws.lambda.user.utils.Futures;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Profile;
 import org.springframework.stereotype.Repository;
 
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
 
 /**
  * Repository implementation for User data access operations using DynamoDB.
  * Handles all database interactions for user-related operations.
+ * Lookups that the {@link UserLookupIndex} knows will miss are answered without calling DynamoDB.
+ * Paginated reads stop at the deadline of the current request and return a cursor for the rest.
+ * Scans are paced by the {@link ReadCapacityGovernor}, so they cannot take the capacity point reads need,
+ * except the email lookups that create and login wait on.
+ * The shards of a sharded index are queried in parallel and their results merged.
+ * Users moved to the {@link UserArchive} are restored when looked up by ID, and found by email
+ * without being restored; scans and counts only read the User table.
  */
 @Repository
+@Profile("!" + InMemoryUserRepository.PROFILE)
 public class UserRepositoryImpl implements UserRepository {
 
+    // Users are always saved whole, and a put lets the storage format change in a single write
+    private static final DynamoDBMapperConfig PUT = DynamoDBMapperConfig.builder()
+            .withSaveBehavior(DynamoDBMapperConfig.SaveBehavior.PUT)
+            .build();
+
+    private final String tableName = User.class.getAnnotation(DynamoDBTable.class).tableName();
+
     @Autowired
     private DynamoDBMapper dynamoDBMapper;
 
     @Autowired
     private AmazonDynamoDB amazonDynamoDB;
 
+    @Autowired
+    private AmazonDynamoDBAsync amazonDynamoDBAsync;
+
+    @Autowired
+    private HedgedReadPolicy hedgedReadPolicy;
+
+    @Autowired
+    private UserLookupIndex userLookupIndex;
+
+    @Autowired
+    private UserQueryPlanner userQueryPlanner;
+
+    @Autowired
+    private UserReassigner userReassigner;
+
+    @Autowired
+    private ReadCapacityGovernor readCapacityGovernor;
+
+    @Autowired
+    private UserArchive userArchive;
+
+    @Value("${user.query.max-pages:10}")
+    private int maxQueryPages;
+
     @Override
     public User save(User user) {
-        dynamoDBMapper.save(user);
+        dynamoDBMapper.save(user, PUT);
+        userLookupIndex.recordSaved(user);
         return user;
     }
 
     @Override
     public User findById(String uuid) {
-        return dynamoDBMapper.load(User.class, uuid);
+        if (userLookupIndex.isMissingId(uuid)) {
+            return null;
+        }
+        User user = hedgedReadPolicy.execute(() -> dynamoDBMapper.load(User.class, uuid));
+        if (user == null) {
+            user = userArchive.restore(uuid);
+        }
+        if (user == null) {
+            userLookupIndex.recordMissingId(uuid);
+        }
+        return user;
     }
 
     @Override
     public List<User> findAll() {
         DynamoDBScanExpression scanExpression = new DynamoDBScanExpression();
-        return dynamoDBMapper.scan(User.class, scanExpression);
+        return scan(scanExpression, Integer.MAX_VALUE, readCapacityGovernor.pacer());
+    }
+
+    @Override
+    public UserQueryPage findAll(String cursor) {
+        return read(userQueryPlanner.plan(UserQuery.builder().cursor(cursor).build()), Integer.MAX_VALUE, Integer.MAX_VALUE);
+    }
+
+    @Override
+    public boolean updatePasswordHash(String uuid, String currentHash, String newHash) {
+        Map<String, String> names = new HashMap<>();
+        names.put("#passwordHash", "passwordHash");
+        Map<String, AttributeValue> values = new HashMap<>();
+        values.put(":current", new AttributeValue(currentHash));
+        values.put(":new", new AttributeValue(newHash));
+        try {
+            amazonDynamoDB.updateItem(new UpdateItemRequest()
+                    .withTableName(tableName)
+                    .withKey(Collections.singletonMap("uuid", new AttributeValue(uuid)))
+                    .withUpdateExpression("SET #passwordHash = :new")
+                    .withConditionExpression("#passwordHash = :current")
+                    .withExpressionAttributeNames(names)
+                    .withExpressionAttributeValues(values));
+            return true;
+        } catch (ConditionalCheckFailedException e) {
+            return false;
+        }
     }
 
     @Override
@@ -47,6 +149,7 @@ public class UserRepositoryImpl implements UserRepository {
         User user = new User();
         user.setUuid(uuid);
         dynamoDBMapper.delete(user);
+        userLookupIndex.recordMissingId(uuid);
     }
 
     @Override
@@ -58,7 +161,13 @@ public class UserRepositoryImpl implements UserRepository {
                 .withFilterExpression("department = :department")
                 .withExpressionAttributeValues(expressionAttributeValues);
 
-        return dynamoDBMapper.scan(User.class, scanExpression);
+        return scan(scanExpression, Integer.MAX_VALUE, readCapacityGovernor.pacer());
+    }
+
+    @Override
+    public UserQueryPage findByDepartment(String department, String cursor) {
+        UserQuery query = UserQuery.builder().department(department).cursor(cursor).build();
+        return read(userQueryPlanner.plan(query), Integer.MAX_VALUE, Integer.MAX_VALUE);
     }
 
     @Override
@@ -70,20 +179,19 @@ public class UserRepositoryImpl implements UserRepository {
                 .withFilterExpression("role = :role")
                 .withExpressionAttributeValues(expressionAttributeValues);
 
-        return dynamoDBMapper.scan(User.class, scanExpression);
+        return scan(scanExpression, Integer.MAX_VALUE, readCapacityGovernor.pacer());
     }
 
     @Override
     public User findByEmail(String email) {
-        Map<String, AttributeValue> expressionAttributeValues = new HashMap<>();
-        expressionAttributeValues.put(":email", new AttributeValue().withS(email));
-
-        DynamoDBScanExpression scanExpression = new DynamoDBScanExpression()
-                .withFilterExpression("email = :email")
-                .withExpressionAttributeValues(expressionAttributeValues);
-
-        List<User> users = dynamoDBMapper.scan(User.class, scanExpression);
-        return users.isEmpty() ? null : users.get(0);
+        if (userLookupIndex.isMissingEmail(email)) {
+            return null;
+        }
+        User user = scanByEmail(email, false);
+        if (user == null) {
+            userLookupIndex.recordMissingEmail(email);
+        }
+        return user;
     }
 
     @Override
@@ -95,7 +203,7 @@ public class UserRepositoryImpl implements UserRepository {
                 .withFilterExpression("contains(lower(name), :name)")
                 .withExpressionAttributeValues(expressionAttributeValues);
 
-        return dynamoDBMapper.scan(User.class, scanExpression);
+        return scan(scanExpression, Integer.MAX_VALUE, readCapacityGovernor.pacer());
     }
 
     @Override
@@ -104,10 +212,185 @@ public class UserRepositoryImpl implements UserRepository {
         return user != null;
     }
 
+    /**
+     * Checks the table itself with a consistent read, so a user created a moment ago is seen
+     * even if the lookup index has recorded the email as missing or has yet to include it.
+     */
+    @Override
+    public boolean existsByEmail(String email) {
+        return scanByEmail(email, true) != null;
+    }
+
     @Override
     public long count() {
-        DynamoDBScanExpression scanExpression = new DynamoDBScanExpression();
-        return dynamoDBMapper.count(User.class, scanExpression);
+        ReadCapacityGovernor.ScanPacer pacer = readCapacityGovernor.pacer();
+        DynamoDBScanExpression scanExpression = new DynamoDBScanExpression()
+                .withSelect(Select.COUNT)
+                .withReturnConsumedCapacity(ReturnConsumedCapacity.TOTAL);
+        long count = 0;
+        do {
+            ScanResultPage<User> page = dynamoDBMapper.scanPage(User.class,
+                    scanExpression.withLimit(pacer.nextLimit(Integer.MAX_VALUE, null)));
+            pacer.record(page.getConsumedCapacity(), page.getScannedCount());
+            count += page.getCount();
+            scanExpression.setExclusiveStartKey(page.getLastEvaluatedKey());
+        } while (scanExpression.getExclusiveStartKey() != null);
+        return count;
+    }
+
+    @Override
+    public UserQueryPage query(UserQuery query) {
+        return read(userQueryPlanner.plan(query), query.getLimit(), maxQueryPages);
+    }
+
+    private User scanByEmail(String email, boolean consistentRead) {
+        Map<String, AttributeValue> expressionAttributeValues = new HashMap<>();
+        expressionAttributeValues.put(":email", new AttributeValue().withS(email));
+
+        DynamoDBScanExpression scanExpression = new DynamoDBScanExpression()
+                .withFilterExpression("email = :email")
+                .withExpressionAttributeValues(expressionAttributeValues)
+                .withConsistentRead(consistentRead);
+
+        // Create and login wait on this lookup, so it is not held back for scan capacity
+        List<User> users = scan(scanExpression, 1, null);
+        return users.isEmpty() ? userArchive.findByEmail(email) : users.get(0);
+    }
+
+    /**
+     * Scan users a page at a time, each page sized and paced by the {@link ReadCapacityGovernor}
+     * if a pacer is given. The scan does not stop at the deadline, since its callers need every
+     * match; a request out of time is failed by the {@link DynamoDBDeadlineHandler} instead.
+     */
+    private List<User> scan(DynamoDBScanExpression scanExpression, int maxResults, ReadCapacityGovernor.ScanPacer pacer) {
+        scanExpression.withReturnConsumedCapacity(ReturnConsumedCapacity.TOTAL);
+        List<User> users = new ArrayList<>();
+        do {
+            ScanResultPage<User> page = dynamoDBMapper.scanPage(User.class,
+                    scanExpression.withLimit(pacer == null ? null : pacer.nextLimit(Integer.MAX_VALUE, null)));
+            if (pacer != null) {
+                pacer.record(page.getConsumedCapacity(), page.getScannedCount());
+            }
+            users.addAll(page.getResults());
+            scanExpression.setExclusiveStartKey(page.getLastEvaluatedKey());
+        } while (users.size() < maxResults && scanExpression.getExclusiveStartKey() != null);
+        return users;
+    }
+
+    /**
+     * Read pages of a plan until enough users match, the page limit is reached or the deadline of
+     * the current request leaves no time for another page, judged by the slowest page so far
+     * or by the wait for scan capacity. A page of an index plan is one Query of each of its index
+     * keys still to be read, up to the number of users still missing.
+     */
+    private UserQueryPage read(UserQueryPlanner.QueryPlan plan, int limit, int maxPages) {
+        DynamoDBMapperTableModel<User> tableModel = dynamoDBMapper.getTableModel(User.class);
+        Deadline deadline = Deadline.current();
+
+        // Ask only for as many items as are still missing, so a page never ends part way through
+        // DynamoDB's results and the last evaluated key is always a valid cursor
+        List<User> users = new ArrayList<>();
+        ReadCapacityGovernor.ScanPacer pacer = plan.isScan() ? readCapacityGovernor.pacer() : null;
+        Map<String, AttributeValue> startKey = plan.getStartKey();
+        Map<String, Map<String, AttributeValue>> positions = plan.getPositions();
+        double consumedReadUnits = 0;
+        int pages = 0;
+        long slowestPageNanos = 0;
+        boolean more;
+        do {
+            int remaining = limit - users.size();
+            List<Map<String, AttributeValue>> items = new ArrayList<>();
+            long pageStart;
+            if (plan.isScan()) {
+                // The first page is always read, so that every call makes progress
+                remaining = pacer.nextLimit(remaining, pages == 0 ? null : deadline);
+                if (remaining == 0) {
+                    break;
+                }
+                pageStart = System.nanoTime();
+                ScanResult result = amazonDynamoDB.scan(plan.scanRequest(remaining, startKey));
+                items.addAll(result.getItems());
+                consumedReadUnits += readUnits(result.getConsumedCapacity());
+                startKey = result.getLastEvaluatedKey();
+                pacer.record(result.getConsumedCapacity(), result.getScannedCount());
+                more = startKey != null && !startKey.isEmpty();
+            } else {
+                pageStart = System.nanoTime();
+                for (QueryResult result : queryShards(plan, positions, remaining)) {
+                    items.addAll(result.getItems());
+                    consumedReadUnits += readUnits(result.getConsumedCapacity());
+                }
+                more = !positions.isEmpty();
+            }
+            pages++;
+            slowestPageNanos = Math.max(slowestPageNanos, System.nanoTime() - pageStart);
+            for (Map<String, AttributeValue> item : items) {
+                User user = tableModel.unconvert(UserStorageFormat.expand(item));
+                if (plan.matches(user)) {
+                    users.add(user);
+                }
+            }
+        } while (users.size() < limit && more && pages < maxPages
+                && (deadline == null || deadline.hasTimeFor(slowestPageNanos)));
+
+        String nextCursor;
+        if (plan.isScan()) {
+            nextCursor = startKey != null && !startKey.isEmpty() ? plan.cursor(startKey) : null;
+        } else {
+            nextCursor = plan.indexCursor(positions);
+        }
+        return UserQueryPage.builder()
+                .users(users)
+                .nextCursor(nextCursor)
+                .plan(plan.describe(pages, consumedReadUnits))
+                .scanned(plan.isScan())
+                .build();
+    }
+
+    /**
+     * Query the next page of the index keys still to be read and advance their positions,
+     * removing the keys that have been read to the end. At most as many keys as users are
+     * missing are queried, each for an equal share, so that no key returns more items than
+     * can be used and every position stays a valid cursor. Keys are queried in parallel when
+     * there is more than one.
+     */
+    private List<QueryResult> queryShards(UserQueryPlanner.QueryPlan plan,
+                                          Map<String, Map<String, AttributeValue>> positions, int remaining) {
+        List<String> keyValues = new ArrayList<>(positions.keySet());
+        keyValues = keyValues.subList(0, Math.min(keyValues.size(), Math.max(1, remaining)));
+        int shardLimit = Math.max(1, remaining / keyValues.size());
+
+        Map<String, QueryResult> results = new LinkedHashMap<>();
+        if (keyValues.size() == 1) {
+            String keyValue = keyValues.get(0);
+            results.put(keyValue, amazonDynamoDB.query(plan.queryRequest(keyValue, shardLimit, positions.get(keyValue))));
+        } else {
+            Map<String, CompletableFuture<QueryResult>> futures = new LinkedHashMap<>();
+            for (String keyValue : keyValues) {
+                QueryRequest request = plan.queryRequest(keyValue, shardLimit, positions.get(keyValue));
+                futures.put(keyValue, AsyncUserRepositoryImpl.<QueryRequest, QueryResult>call(amazonDynamoDBAsync::queryAsync, request));
+            }
+            futures.forEach((keyValue, future) -> results.put(keyValue, Futures.join(future)));
+        }
+
+        results.forEach((keyValue, result) -> {
+            Map<String, AttributeValue> lastEvaluatedKey = result.getLastEvaluatedKey();
+            if (lastEvaluatedKey == null || lastEvaluatedKey.isEmpty()) {
+                positions.remove(keyValue);
+            } else {
+                positions.put(keyValue, lastEvaluatedKey);
+            }
+        });
+        return new ArrayList<>(results.values());
+    }
+
+    private static double readUnits(ConsumedCapacity consumed) {
+        return consumed == null || consumed.getCapacityUnits() == null ? 0 : consumed.getCapacityUnits();
+    }
+
+    @Override
+    public ReassignmentResult reassign(Reassignment reassignment) {
+        return userReassigner.reassign(reassignment);
     }
 
 }
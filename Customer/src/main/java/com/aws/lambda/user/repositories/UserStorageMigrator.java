@@ -0,0 +1,270 @@
+package com.aws.lambda.user.repositories;
+
+import com.amazonaws.AmazonClientException;
+import com.amazonaws.services.dynamodbv2.AmazonDynamoDB;
+import com.amazonaws.services.dynamodbv2.datamodeling.DynamoDBTable;
+import com.amazonaws.services.dynamodbv2.model.AttributeValue;
+import com.amazonaws.services.dynamodbv2.model.ConditionalCheckFailedException;
+import com.amazonaws.services.dynamodbv2.model.ReturnConsumedCapacity;
+import com.amazonaws.services.dynamodbv2.model.ScanRequest;
+import com.amazonaws.services.dynamodbv2.model.ScanResult;
+import com.amazonaws.services.dynamodbv2.model.UpdateItemRequest;
+import com.aws.lambda.user.entities.User;
+import com.aws.lambda.user.entities.UserIndexKeys;
+import com.aws.lambda.user.entities.UserStorageFormat;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Profile;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Background migration of stored users to the configured storage format, which also backfills
+ * their {@link UserIndexKeys} sharded index keys.
+ * A container started with the migration enabled works through the table's parallel scan segments,
+ * beginning at a random one so that concurrent containers spread the work without coordinating.
+ * Finished segments are recorded in {@link MigrationProgress}, once for the storage format and once
+ * for the index keys, so that a restarted migration skips them and a finished one reads nothing.
+ * Each rewrite is conditional on the rewritten attributes being unchanged since the scan. Pages are
+ * sized and paced by the {@link ReadCapacityGovernor}, and spaced to bound the write capacity used.
+ */
+@Slf4j
+@Component
+@Profile("!" + InMemoryUserRepository.PROFILE)
+public class UserStorageMigrator {
+
+    private final String tableName = User.class.getAnnotation(DynamoDBTable.class).tableName();
+
+    @Autowired
+    private AmazonDynamoDB amazonDynamoDB;
+
+    @Autowired
+    private UserIndexKeys userIndexKeys;
+
+    @Autowired
+    private ReadCapacityGovernor readCapacityGovernor;
+
+    @Autowired
+    private MigrationProgress migrationProgress;
+
+    @Value("${dynamodb.compact-storage.enabled:false}")
+    private boolean compactStorage;
+
+    @Value("${dynamodb.compact-storage.migration.enabled:false}")
+    private boolean migrationEnabled;
+
+    @Value("${dynamodb.compact-storage.migration.segments:16}")
+    private int segments;
+
+    @Value("${dynamodb.compact-storage.migration.page-size:100}")
+    private int pageSize;
+
+    @Value("${dynamodb.compact-storage.migration.page-interval-ms:200}")
+    private long pageIntervalMs;
+
+    private final AtomicLong scanned = new AtomicLong();
+    private final AtomicLong migrated = new AtomicLong();
+    private final AtomicLong conflicts = new AtomicLong();
+    private final AtomicLong bytesBefore = new AtomicLong();
+    private final AtomicLong bytesAfter = new AtomicLong();
+
+    private ExecutorService executor;
+
+    @PostConstruct
+    void init() {
+        if (migrationEnabled) {
+            executor = Executors.newSingleThreadExecutor(runnable -> {
+                Thread thread = new Thread(runnable, "user-storage-migrator");
+                thread.setDaemon(true);
+                return thread;
+            });
+            executor.execute(this::run);
+        }
+    }
+
+    @PreDestroy
+    void shutdown() {
+        if (executor != null) {
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * Get a snapshot of the migration counters for this container.
+     *
+     * @return Current migration statistics
+     */
+    public MigrationStats getStats() {
+        return new MigrationStats(scanned.get(), migrated.get(), conflicts.get(), bytesBefore.get(), bytesAfter.get());
+    }
+
+    /**
+     * Get the ID under which the backfill of index keys is recorded in {@link MigrationProgress}.
+     * It changes with the shard counts, since users are keyed differently after a change.
+     *
+     * @param userIndexKeys Index keys the users are backfilled with
+     * @return Migration ID
+     */
+    static String indexKeysMigrationId(UserIndexKeys userIndexKeys) {
+        return "user-index-keys:" + userIndexKeys.signature();
+    }
+
+    private String storageFormatMigrationId() {
+        return "user-storage-format:" + (compactStorage ? "compact" : "legacy");
+    }
+
+    void run() {
+        log.info("Migrating users to the {} storage format", compactStorage ? "compact" : "legacy");
+        int first = ThreadLocalRandom.current().nextInt(segments);
+        try {
+            Set<Integer> finished = migrationProgress.finishedSegments(storageFormatMigrationId(), segments);
+            finished.retainAll(migrationProgress.finishedSegments(indexKeysMigrationId(userIndexKeys), segments));
+            if (finished.size() == segments) {
+                log.info("User storage migration finished: every segment was already migrated");
+                return;
+            }
+            for (int i = 0; i < segments; i++) {
+                int segment = (first + i) % segments;
+                if (finished.contains(segment)) {
+                    continue;
+                }
+                migrateSegment(segment);
+                migrationProgress.markFinished(storageFormatMigrationId(), segment, segments);
+                migrationProgress.markFinished(indexKeysMigrationId(userIndexKeys), segment, segments);
+            }
+            log.info("User storage migration finished: {}", getStats());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (AmazonClientException e) {
+            log.warn("User storage migration stopped after {}, it resumes on the next start: {}", getStats(), e.getMessage());
+        }
+    }
+
+    void migrateSegment(int segment) throws InterruptedException {
+        ReadCapacityGovernor.ScanPacer pacer = readCapacityGovernor.pacer();
+        Map<String, AttributeValue> startKey = null;
+        do {
+            ScanResult page = amazonDynamoDB.scan(new ScanRequest()
+                    .withTableName(tableName)
+                    .withSegment(segment)
+                    .withTotalSegments(segments)
+                    .withLimit(pacer.nextLimit(pageSize, null))
+                    .withExclusiveStartKey(startKey)
+                    .withReturnConsumedCapacity(ReturnConsumedCapacity.TOTAL));
+            pacer.record(page.getConsumedCapacity(), page.getScannedCount());
+            for (Map<String, AttributeValue> item : page.getItems()) {
+                migrate(item);
+            }
+            startKey = page.getLastEvaluatedKey();
+            if (startKey != null && !startKey.isEmpty() && pageIntervalMs > 0) {
+                Thread.sleep(pageIntervalMs);
+            }
+        } while (startKey != null && !startKey.isEmpty());
+    }
+
+    /**
+     * Rewrite a scanned item in the configured storage format with current index keys.
+     *
+     * @param item Item as scanned
+     * @return true if the item was rewritten
+     */
+    boolean migrate(Map<String, AttributeValue> item) {
+        scanned.incrementAndGet();
+        Map<String, AttributeValue> target = userIndexKeys.withKeys(
+                compactStorage ? UserStorageFormat.compact(item) : UserStorageFormat.expand(item));
+        if (target == item) {
+            return false;
+        }
+        try {
+            amazonDynamoDB.updateItem(rewrite(item, target));
+        } catch (ConditionalCheckFailedException e) {
+            // Saved or deleted since the scan; a save already used the configured format
+            conflicts.incrementAndGet();
+            return false;
+        }
+        migrated.incrementAndGet();
+        bytesBefore.addAndGet(UserStorageFormat.itemSize(item));
+        bytesAfter.addAndGet(UserStorageFormat.itemSize(target));
+        return true;
+    }
+
+    private UpdateItemRequest rewrite(Map<String, AttributeValue> item, Map<String, AttributeValue> target) {
+        List<String> attributes = new ArrayList<>(UserStorageFormat.COLD_ATTRIBUTES);
+        attributes.add(UserStorageFormat.COMPACT_ATTRIBUTE);
+        // The index keys are derived from the indexed attributes, which must be unchanged too
+        attributes.addAll(UserIndexKeys.KEY_ATTRIBUTES.keySet());
+        attributes.addAll(UserIndexKeys.KEY_ATTRIBUTES.values());
+
+        Map<String, String> names = new HashMap<>();
+        Map<String, AttributeValue> values = new HashMap<>();
+        List<String> conditions = new ArrayList<>();
+        List<String> sets = new ArrayList<>();
+        List<String> removes = new ArrayList<>();
+        for (int i = 0; i < attributes.size(); i++) {
+            String name = "#a" + i;
+            AttributeValue before = item.get(attributes.get(i));
+            AttributeValue after = target.get(attributes.get(i));
+            names.put(name, attributes.get(i));
+            if (before == null) {
+                conditions.add("attribute_not_exists(" + name + ")");
+            } else {
+                conditions.add(name + " = :old" + i);
+                values.put(":old" + i, before);
+            }
+            if (after == null) {
+                if (before != null) {
+                    removes.add(name);
+                }
+            } else if (!after.equals(before)) {
+                sets.add(name + " = :new" + i);
+                values.put(":new" + i, after);
+            }
+        }
+
+        String update = (sets.isEmpty() ? "" : "SET " + String.join(", ", sets))
+                + (removes.isEmpty() ? "" : " REMOVE " + String.join(", ", removes));
+        return new UpdateItemRequest()
+                .withTableName(tableName)
+                .withKey(Collections.singletonMap("uuid", item.get("uuid")))
+                .withUpdateExpression(update.trim())
+                .withConditionExpression(String.join(" AND ", conditions))
+                .withExpressionAttributeNames(names)
+                .withExpressionAttributeValues(values);
+    }
+
+    /**
+     * Snapshot of storage migration counters.
+     */
+    @Getter
+    @AllArgsConstructor
+    public static class MigrationStats {
+
+        private final long scanned;
+        private final long migrated;
+        private final long conflicts;
+        private final long bytesBefore;
+        private final long bytesAfter;
+
+        @Override
+        public String toString() {
+            return "scanned=" + scanned + ", migrated=" + migrated + ", conflicts=" + conflicts
+                    + ", bytesBefore=" + bytesBefore + ", bytesAfter=" + bytesAfter;
+        }
+    }
+
+}
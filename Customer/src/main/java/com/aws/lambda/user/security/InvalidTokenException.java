@@ -0,0 +1,18 @@
+package com.aws.lambda.user.security;
+
+/**
+ * Thrown when an access token is malformed, has a bad signature or has expired.
+ */
+public class InvalidTokenException extends RuntimeException {
+
+    private static final long serialVersionUID = 1L;
+
+    public InvalidTokenException(String message) {
+        super(message);
+    }
+
+    public InvalidTokenException(String message, Throwable cause) {
+        super(message, cause);
+    }
+
+}
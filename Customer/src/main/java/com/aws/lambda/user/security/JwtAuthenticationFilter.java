@@ -0,0 +1,120 @@
+package com.aws.lambda.user.security;
+
+import com.aws.lambda.user.services.AuthService;
+import com.aws.lambda.user.utils.ErrorResponses;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import javax.annotation.PostConstruct;
+import javax.servlet.FilterChain;
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * Servlet filter that requires a valid bearer token on every non-public endpoint.
+ * Verified claims are exposed to handlers through the {@link #CLAIMS_ATTRIBUTE} request attribute.
+ * A token sent to a public endpoint is verified too, so handlers can tell who is calling, but an
+ * invalid one there is ignored rather than rejected.
+ */
+public class JwtAuthenticationFilter extends OncePerRequestFilter {
+
+    public static final String CLAIMS_ATTRIBUTE = "jwtClaims";
+
+    private static final String BEARER_PREFIX = "Bearer ";
+
+    @Autowired
+    private AuthService authService;
+
+    @Value("${auth.enabled:true}")
+    private boolean enabled;
+
+    /**
+     * Comma-separated list of {@code METHOD /path} entries that do not require a token.
+     */
+    @Value("${auth.public-endpoints:}")
+    private String publicEndpoints;
+
+    private final Set<String> publicEndpointSet = new HashSet<>();
+
+    @PostConstruct
+    void init() {
+        for (String endpoint : publicEndpoints.split(",")) {
+            if (!endpoint.trim().isEmpty()) {
+                publicEndpointSet.add(endpoint.trim().replaceAll("\\s+", " "));
+            }
+        }
+    }
+
+    @Override
+    protected boolean shouldNotFilter(HttpServletRequest request) {
+        return !enabled || (isPublic(request.getMethod(), request.getRequestURI())
+                && request.getHeader(HttpHeaders.AUTHORIZATION) == null);
+    }
+
+    /**
+     * Check whether an endpoint needs a bearer token.
+     *
+     * @param method HTTP method
+     * @param path   Request path
+     * @return true if authentication is enabled and the endpoint is not public
+     */
+    public boolean requiresAuthentication(String method, String path) {
+        return enabled && !isPublic(method, path);
+    }
+
+    /**
+     * Check whether an endpoint is reachable without a token.
+     *
+     * @param method HTTP method
+     * @param path   Request path
+     * @return true if the endpoint is public
+     */
+    public boolean isPublic(String method, String path) {
+        return publicEndpointSet.contains(method + " " + path);
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain chain)
+            throws ServletException, IOException {
+        JwtClaims claims;
+        try {
+            claims = authenticate(request.getHeader(HttpHeaders.AUTHORIZATION));
+        } catch (InvalidTokenException e) {
+            if (isPublic(request.getMethod(), request.getRequestURI())) {
+                chain.doFilter(request, response);
+                return;
+            }
+            response.setStatus(HttpStatus.UNAUTHORIZED.value());
+            response.setHeader(HttpHeaders.WWW_AUTHENTICATE, "Bearer");
+            response.setContentType(MediaType.APPLICATION_JSON_VALUE);
+            response.getWriter().write(ErrorResponses.body(HttpStatus.UNAUTHORIZED, e.getMessage(), request.getRequestURI()));
+            return;
+        }
+
+        request.setAttribute(CLAIMS_ATTRIBUTE, claims);
+        chain.doFilter(request, response);
+    }
+
+    /**
+     * Authenticate the value of an Authorization header.
+     *
+     * @param authorizationHeader Header value, may be null
+     * @return Verified claims
+     * @throws InvalidTokenException if the header has no valid bearer token
+     */
+    public JwtClaims authenticate(String authorizationHeader) {
+        if (authorizationHeader == null || !authorizationHeader.startsWith(BEARER_PREFIX)) {
+            throw new InvalidTokenException("Missing bearer token");
+        }
+        return authService.authenticate(authorizationHeader.substring(BEARER_PREFIX.length()).trim());
+    }
+
+}
@@ -0,0 +1,25 @@
+package com.aws.lambda.user.security;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+/**
+ * Verified claims carried by an access token.
+ */
+@Getter
+@AllArgsConstructor
+public class JwtClaims {
+
+    private final String subject;
+
+    private final String email;
+
+    private final String role;
+
+    private final String sessionId;
+
+    private final long issuedAt;
+
+    private final long expiresAt;
+
+}
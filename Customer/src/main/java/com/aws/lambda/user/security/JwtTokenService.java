@@ -0,0 +1,153 @@
+package com.aws.lambda.user.security;
+
+import com.aws.lambda.user.entities.User;
+import com.aws.lambda.user.utils.ExpiringLruCache;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.util.Base64;
+
+/**
+ * Issues and verifies HS256-signed JSON Web Tokens.
+ * Successfully verified tokens are kept in a bounded cache until they expire,
+ * so repeat requests with the same token skip decoding and signature checks.
+ */
+@Component
+public class JwtTokenService {
+
+    private static final Base64.Encoder ENCODER = Base64.getUrlEncoder().withoutPadding();
+    private static final Base64.Decoder DECODER = Base64.getUrlDecoder();
+
+    @Autowired
+    private SigningKeyCache signingKeyCache;
+
+    @Value("${auth.jwt.issuer:user-management-system}")
+    private String issuer;
+
+    @Value("${auth.jwt.ttl-seconds:3600}")
+    private long ttlSeconds;
+
+    @Value("${auth.jwt.verified-cache-size:10000}")
+    private int verifiedCacheSize;
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    private ExpiringLruCache<String, JwtClaims> verifiedTokens;
+
+    @PostConstruct
+    void init() {
+        verifiedTokens = new ExpiringLruCache<>(verifiedCacheSize);
+    }
+
+    /**
+     * Issue an access token for a user.
+     *
+     * @param user      Authenticated user
+     * @param sessionId Session the token is bound to
+     * @return Signed compact JWT
+     */
+    public String issue(User user, String sessionId) {
+        long now = System.currentTimeMillis() / 1000;
+        String keyId = signingKeyCache.getActiveKeyId();
+
+        ObjectNode header = objectMapper.createObjectNode()
+                .put("alg", "HS256")
+                .put("typ", "JWT")
+                .put("kid", keyId);
+        ObjectNode payload = objectMapper.createObjectNode()
+                .put("iss", issuer)
+                .put("sub", user.getUuid())
+                .put("email", user.getEmail())
+                .put("role", user.getRole())
+                .put("sid", sessionId)
+                .put("iat", now)
+                .put("exp", now + ttlSeconds);
+
+        String signingInput = encode(header) + "." + encode(payload);
+        byte[] signature = signingKeyCache.sign(keyId, signingInput.getBytes(StandardCharsets.US_ASCII));
+        return signingInput + "." + ENCODER.encodeToString(signature);
+    }
+
+    /**
+     * Verify an access token, using the verification cache when possible.
+     *
+     * @param token Compact JWT
+     * @return Verified claims
+     * @throws InvalidTokenException if the token is malformed, forged or expired
+     */
+    public JwtClaims verify(String token) {
+        JwtClaims cached = verifiedTokens.get(token);
+        if (cached != null) {
+            return cached;
+        }
+        JwtClaims claims = verifyUncached(token);
+        long ttlMillis = claims.getExpiresAt() * 1000 - System.currentTimeMillis();
+        verifiedTokens.put(token, claims, ttlMillis);
+        return claims;
+    }
+
+    /**
+     * Get the lifetime of newly issued tokens.
+     *
+     * @return Token lifetime in seconds
+     */
+    public long getTtlSeconds() {
+        return ttlSeconds;
+    }
+
+    JwtClaims verifyUncached(String token) {
+        int firstDot = token.indexOf('.');
+        int lastDot = token.lastIndexOf('.');
+        if (firstDot <= 0 || lastDot == firstDot || lastDot == token.length() - 1) {
+            throw new InvalidTokenException("Malformed token");
+        }
+
+        try {
+            JsonNode header = objectMapper.readTree(DECODER.decode(token.substring(0, firstDot)));
+            if (!"HS256".equals(header.path("alg").asText())) {
+                throw new InvalidTokenException("Unsupported token algorithm");
+            }
+            byte[] expected = signingKeyCache.sign(header.path("kid").asText(),
+                    token.substring(0, lastDot).getBytes(StandardCharsets.US_ASCII));
+            byte[] actual = DECODER.decode(token.substring(lastDot + 1));
+            if (expected == null || !MessageDigest.isEqual(expected, actual)) {
+                throw new InvalidTokenException("Invalid token signature");
+            }
+
+            JsonNode payload = objectMapper.readTree(DECODER.decode(token.substring(firstDot + 1, lastDot)));
+            long expiresAt = payload.path("exp").asLong();
+            if (expiresAt <= System.currentTimeMillis() / 1000) {
+                throw new InvalidTokenException("Token has expired");
+            }
+            if (!issuer.equals(payload.path("iss").asText())) {
+                throw new InvalidTokenException("Unexpected token issuer");
+            }
+            return new JwtClaims(
+                    payload.path("sub").asText(),
+                    payload.path("email").asText(null),
+                    payload.path("role").asText(null),
+                    payload.path("sid").asText(null),
+                    payload.path("iat").asLong(),
+                    expiresAt);
+        } catch (IOException | IllegalArgumentException e) {
+            throw new InvalidTokenException("Malformed token", e);
+        }
+    }
+
+    private String encode(ObjectNode node) {
+        try {
+            return ENCODER.encodeToString(objectMapper.writeValueAsBytes(node));
+        } catch (IOException e) {
+            throw new IllegalStateException("Unable to encode token", e);
+        }
+    }
+
+}
@@ -0,0 +1,89 @@
+package com.aws.lambda.user.security;
+
+import javax.crypto.SecretKeyFactory;
+import javax.crypto.spec.PBEKeySpec;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.util.Base64;
+
+/**
+ * PBKDF2 password hashing primitives.
+ * Hashes are stored as {@code pbkdf2$<iterations>$<salt>$<hash>} so the cost can change over time.
+ */
+public class PasswordHasher {
+
+    private static final String ALGORITHM = "PBKDF2WithHmacSHA256";
+    private static final String PREFIX = "pbkdf2";
+    private static final int SALT_BYTES = 16;
+    private static final int HASH_BITS = 256;
+
+    private final SecureRandom random = new SecureRandom();
+
+    /**
+     * Hash a password with a fresh salt.
+     *
+     * @param password   Plain-text password
+     * @param iterations PBKDF2 iteration count
+     * @return Encoded hash
+     */
+    public String hash(String password, int iterations) {
+        byte[] salt = new byte[SALT_BYTES];
+        random.nextBytes(salt);
+        byte[] hash = derive(password, salt, iterations);
+        return PREFIX + "$" + iterations + "$"
+                + Base64.getEncoder().encodeToString(salt) + "$"
+                + Base64.getEncoder().encodeToString(hash);
+    }
+
+    /**
+     * Check a password against an encoded hash.
+     *
+     * @param password    Plain-text password
+     * @param encodedHash Hash previously produced by {@link #hash(String, int)}
+     * @return true if the password matches
+     */
+    public boolean verify(String password, String encodedHash) {
+        if (password == null || iterations(encodedHash) <= 0) {
+            return false;
+        }
+        String[] parts = encodedHash.split("\\$");
+        byte[] salt = Base64.getDecoder().decode(parts[2]);
+        byte[] expected = Base64.getDecoder().decode(parts[3]);
+        byte[] actual = derive(password, salt, Integer.parseInt(parts[1]));
+        return MessageDigest.isEqual(expected, actual);
+    }
+
+    /**
+     * Get the iteration count an encoded hash was produced with.
+     *
+     * @param encodedHash Encoded hash
+     * @return Iteration count, or -1 if the hash is not in the expected format
+     */
+    public int iterations(String encodedHash) {
+        if (encodedHash == null) {
+            return -1;
+        }
+        String[] parts = encodedHash.split("\\$");
+        if (parts.length != 4 || !PREFIX.equals(parts[0])) {
+            return -1;
+        }
+        try {
+            return Integer.parseInt(parts[1]);
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    private static byte[] derive(String password, byte[] salt, int iterations) {
+        PBEKeySpec spec = new PBEKeySpec(password.toCharArray(), salt, iterations, HASH_BITS);
+        try {
+            return SecretKeyFactory.getInstance(ALGORITHM).generateSecret(spec).getEncoded();
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("Unable to hash password", e);
+        } finally {
+            spec.clearPassword();
+        }
+    }
+
+}
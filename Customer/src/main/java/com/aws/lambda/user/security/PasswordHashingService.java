@@ -0,0 +1,201 @@
+package com.aws.lambda.user.security;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Runs password hashing and verification on a dedicated, bounded worker pool.
+ * The PBKDF2 cost is calibrated in the background at startup to a target latency on the current
+ * hardware, and callers are rejected rather than queued indefinitely when the pool is saturated.
+ * The configured cost is a floor that calibration can only raise, and is used until calibration
+ * finishes. Calibration is noisy and differs between containers, so a stored hash is only upgraded
+ * when its cost is well below the current one, never lowered.
+ */
+@Slf4j
+@Component
+public class PasswordHashingService {
+
+    private static final int CALIBRATION_ITERATIONS = 10000;
+    private static final int CALIBRATION_MIN_ROUNDS = 20;
+
+    private final PasswordHasher passwordHasher = new PasswordHasher();
+
+    @Value("${auth.password.threads:2}")
+    private int threads;
+
+    @Value("${auth.password.queue-capacity:16}")
+    private int queueCapacity;
+
+    @Value("${auth.password.max-wait-ms:5000}")
+    private long maxWaitMs;
+
+    @Value("${auth.password.calibrate:true}")
+    private boolean calibrate;
+
+    @Value("${auth.password.target-ms:50}")
+    private long targetMs;
+
+    @Value("${auth.password.calibration-budget-ms:1000}")
+    private long calibrationBudgetMs;
+
+    @Value("${auth.password.iterations:100000}")
+    private volatile int iterations;
+
+    @Value("${auth.password.min-iterations:10000}")
+    private int minIterations;
+
+    @Value("${auth.password.max-iterations:600000}")
+    private int maxIterations;
+
+    @Value("${auth.password.rehash-tolerance:0.2}")
+    private double rehashTolerance;
+
+    private int configuredIterations;
+
+    private ThreadPoolExecutor executor;
+
+    @PostConstruct
+    void init() {
+        configuredIterations = iterations;
+        AtomicInteger counter = new AtomicInteger();
+        BlockingQueue<Runnable> queue = queueCapacity > 0
+                ? new ArrayBlockingQueue<>(queueCapacity)
+                : new SynchronousQueue<>();
+        executor = new ThreadPoolExecutor(threads, threads, 60L, TimeUnit.SECONDS, queue, runnable -> {
+            Thread thread = new Thread(runnable, "password-hash-" + counter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        }, new ThreadPoolExecutor.AbortPolicy());
+        executor.allowCoreThreadTimeOut(true);
+
+        if (calibrate) {
+            Thread calibration = new Thread(() -> {
+                iterations = calibrate();
+                log.info("Password hashing calibrated to {} PBKDF2 iterations for {} ms", iterations, targetMs);
+            }, "password-hash-calibration");
+            calibration.setDaemon(true);
+            calibration.start();
+        }
+        log.info("Password hashing uses {} PBKDF2 iterations on {} threads", iterations, threads);
+    }
+
+    @PreDestroy
+    void shutdown() {
+        executor.shutdownNow();
+    }
+
+    /**
+     * Hash a password at the current cost.
+     *
+     * @param password Plain-text password
+     * @return Encoded hash
+     * @throws RejectedExecutionException if the hashing pool is saturated
+     */
+    public String hash(String password) {
+        final int cost = iterations;
+        return execute(() -> passwordHasher.hash(password, cost));
+    }
+
+    /**
+     * Verify a password and report whether its hash should be upgraded.
+     *
+     * @param password    Plain-text password
+     * @param encodedHash Stored hash
+     * @return Verification result
+     * @throws RejectedExecutionException if the hashing pool is saturated
+     */
+    public VerificationResult verify(String password, String encodedHash) {
+        if (password == null || passwordHasher.iterations(encodedHash) <= 0) {
+            return new VerificationResult(false, false);
+        }
+        boolean matches = execute(() -> passwordHasher.verify(password, encodedHash));
+        return new VerificationResult(matches, matches && isBelowCost(passwordHasher.iterations(encodedHash)));
+    }
+
+    /**
+     * Get the PBKDF2 iteration count used for new hashes.
+     *
+     * @return Current iteration count
+     */
+    public int getIterations() {
+        return iterations;
+    }
+
+    private boolean isBelowCost(int storedIterations) {
+        return storedIterations < iterations * (1 - rehashTolerance);
+    }
+
+    <T> T execute(Callable<T> task) {
+        Future<T> future = executor.submit(task);
+        try {
+            return future.get(maxWaitMs, TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            future.cancel(true);
+            throw new RejectedExecutionException("Password hashing timed out waiting for a worker", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw new IllegalStateException(e.getCause());
+        } catch (InterruptedException e) {
+            future.cancel(true);
+            Thread.currentThread().interrupt();
+            throw new RejectedExecutionException("Interrupted while hashing password", e);
+        }
+    }
+
+    /**
+     * Measure hashing speed and derive the iteration count that meets the target latency.
+     * Rounds repeat for at least the time budget and a minimum number of rounds so the JIT
+     * has compiled the hash loop, and the fastest round is used.
+     *
+     * @return Calibrated iteration count, clamped to the configured bounds and never below the configured cost
+     */
+    int calibrate() {
+        long budget = TimeUnit.MILLISECONDS.toNanos(calibrationBudgetMs);
+        long began = System.nanoTime();
+        long best = Long.MAX_VALUE;
+        int rounds = 0;
+        do {
+            long start = System.nanoTime();
+            passwordHasher.hash("calibration-password", CALIBRATION_ITERATIONS);
+            best = Math.min(best, System.nanoTime() - start);
+            rounds++;
+        } while ((rounds < CALIBRATION_MIN_ROUNDS || System.nanoTime() - began < budget)
+                && System.nanoTime() - began < budget * 5);
+        double iterationsPerMs = CALIBRATION_ITERATIONS / (best / 1_000_000.0);
+        long calibrated = Math.round(iterationsPerMs * targetMs / 1000.0) * 1000;
+        return (int) Math.max(Math.max(minIterations, configuredIterations), Math.min(maxIterations, calibrated));
+    }
+
+    /**
+     * Outcome of a password verification.
+     */
+    @Getter
+    @AllArgsConstructor
+    public static class VerificationResult {
+
+        private final boolean matches;
+
+        private final boolean rehashNeeded;
+
+    }
+
+}
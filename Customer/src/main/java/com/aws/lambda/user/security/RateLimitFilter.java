@@ -0,0 +1,91 @@
+package com.aws.lambda.user.security;
+
+import com.amazonaws.serverless.proxy.RequestReader;
+import com.amazonaws.serverless.proxy.model.AwsProxyRequestContext;
+import com.aws.lambda.user.utils.ErrorResponses;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import javax.servlet.FilterChain;
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Base64;
+
+/**
+ * Servlet filter that applies per-client rate limits before authentication and any DynamoDB work.
+ * Clients are identified by their API key when API Gateway has validated one, otherwise by source IP.
+ * A key sent by the client but not validated is ignored, so that sending a different key with each
+ * request does not escape the per-IP limit. Handlers that end up scanning the table set the
+ * {@link #SCANNED_ATTRIBUTE} request attribute, and the client is charged the scan cost afterwards.
+ */
+public class RateLimitFilter extends OncePerRequestFilter {
+
+    public static final String SCANNED_ATTRIBUTE = "rateLimitScanned";
+
+    @Autowired
+    private RateLimiter rateLimiter;
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain chain)
+            throws ServletException, IOException {
+        Object requestContext = request.getAttribute(RequestReader.API_GATEWAY_CONTEXT_PROPERTY);
+        String clientId = clientId(requestContext instanceof AwsProxyRequestContext
+                ? validatedApiKeyId((AwsProxyRequestContext) requestContext) : null, request.getRemoteAddr());
+        RateLimiter.Decision decision = rateLimiter.acquire(clientId, request.getMethod(), request.getRequestURI());
+        if (!decision.isAllowed()) {
+            response.setStatus(HttpStatus.TOO_MANY_REQUESTS.value());
+            response.setHeader(HttpHeaders.RETRY_AFTER, Long.toString(decision.getRetryAfterSeconds()));
+            response.setContentType(MediaType.APPLICATION_JSON_VALUE);
+            response.getWriter().write(ErrorResponses.body(HttpStatus.TOO_MANY_REQUESTS,
+                    "Rate limit of " + rateLimiter.getLimit() + " units exceeded", request.getRequestURI()));
+            return;
+        }
+        chain.doFilter(request, response);
+        if (Boolean.TRUE.equals(request.getAttribute(SCANNED_ATTRIBUTE))) {
+            rateLimiter.chargeScan(clientId, decision.getCost());
+        }
+    }
+
+    /**
+     * Get the ID of the API key API Gateway validated for a request. API Gateway only sets it
+     * for methods that require a key, so it is never taken from a client-supplied header.
+     *
+     * @param requestContext API Gateway request context, may be null
+     * @return API key ID, or null if no key was validated
+     */
+    public static String validatedApiKeyId(AwsProxyRequestContext requestContext) {
+        if (requestContext == null || requestContext.getIdentity() == null) {
+            return null;
+        }
+        return requestContext.getIdentity().getApiKeyId();
+    }
+
+    /**
+     * Identify the calling client. API keys are digested so raw keys are never kept in
+     * counters or written to the shared counter table.
+     *
+     * @param apiKey     API key validated by API Gateway, may be null
+     * @param remoteAddr Source IP of the request
+     * @return Client identifier
+     */
+    public static String clientId(String apiKey, String remoteAddr) {
+        if (apiKey == null || apiKey.isEmpty()) {
+            return "ip:" + remoteAddr;
+        }
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(apiKey.getBytes(StandardCharsets.UTF_8));
+            return "key:" + Base64.getUrlEncoder().withoutPadding().encodeToString(digest).substring(0, 22);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+    }
+
+}
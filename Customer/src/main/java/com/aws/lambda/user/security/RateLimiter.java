@@ -0,0 +1,237 @@
+package com.aws.lambda.user.security;
+
+import com.amazonaws.AmazonClientException;
+import com.aws.lambda.user.repositories.RateLimitRepository;
+import com.aws.lambda.user.utils.ExpiringLruCache;
+import com.aws.lambda.user.utils.SlidingWindowCounter;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.util.AntPathMatcher;
+
+import javax.annotation.PostConstruct;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Per-client rate limiter with weighted endpoint costs.
+ * Every warm container keeps a sliding-window counter per client, so limit decisions need no
+ * remote call. When shared counters are enabled, each container periodically adds its local usage
+ * to a per-window counter in DynamoDB and folds the cluster-wide total back into its own counter;
+ * syncs happen after a batch of usage rather than per request, and a failed sync fails open.
+ */
+@Slf4j
+@Component
+public class RateLimiter {
+
+    private final AntPathMatcher pathMatcher = new AntPathMatcher();
+
+    @Autowired
+    private RateLimitRepository rateLimitRepository;
+
+    @Value("${ratelimit.enabled:true}")
+    private boolean enabled;
+
+    @Value("${ratelimit.window-seconds:60}")
+    private long windowSeconds;
+
+    @Value("${ratelimit.limit:300}")
+    private long limit;
+
+    @Value("${ratelimit.default-cost:1}")
+    private long defaultCost;
+
+    /**
+     * Comma-separated list of {@code METHOD /path/pattern:cost} entries; the first match wins.
+     */
+    @Value("${ratelimit.costs:}")
+    private String costs;
+
+    /**
+     * Cost of a request that scanned the User table, charged once the scan is known to have happened.
+     */
+    @Value("${ratelimit.scan-cost:25}")
+    private long scanCost;
+
+    @Value("${ratelimit.max-clients:10000}")
+    private int maxClients;
+
+    @Value("${ratelimit.shared.enabled:false}")
+    private boolean sharedEnabled;
+
+    @Value("${ratelimit.shared.sync-cost:20}")
+    private long syncCost;
+
+    @Value("${ratelimit.shared.sync-interval-ms:1000}")
+    private long syncIntervalMs;
+
+    private final List<EndpointCost> endpointCosts = new ArrayList<>();
+
+    private ExpiringLruCache<String, ClientState> clients;
+
+    @PostConstruct
+    void init() {
+        for (String entry : costs.split(",")) {
+            String trimmed = entry.trim();
+            int separator = trimmed.lastIndexOf(':');
+            int space = trimmed.indexOf(' ');
+            if (separator <= space || space <= 0) {
+                continue;
+            }
+            endpointCosts.add(new EndpointCost(trimmed.substring(0, space),
+                    trimmed.substring(space + 1, separator).trim(),
+                    Long.parseLong(trimmed.substring(separator + 1).trim())));
+        }
+        clients = new ExpiringLruCache<>(maxClients);
+    }
+
+    /**
+     * Check whether a client may call an endpoint, consuming the endpoint's cost if so.
+     *
+     * @param clientId Client identifier, such as an API key digest or source IP
+     * @param method   HTTP method
+     * @param path     Request path
+     * @return Rate limit decision
+     */
+    public Decision acquire(String clientId, String method, String path) {
+        long cost = cost(method, path);
+        if (!enabled || cost <= 0) {
+            return new Decision(true, cost, 0);
+        }
+
+        long now = System.currentTimeMillis();
+        long windowMillis = windowSeconds * 1000;
+        ClientState state = clients.get(clientId);
+        if (state == null) {
+            state = new ClientState(new SlidingWindowCounter(windowMillis));
+        }
+        clients.put(clientId, state, windowMillis * 2);
+
+        long waitMillis = state.counter.tryAcquire(cost, limit, now);
+        if (waitMillis > 0) {
+            return new Decision(false, cost, (waitMillis + 999) / 1000);
+        }
+        if (sharedEnabled) {
+            recordShared(clientId, state, cost, now);
+        }
+        return new Decision(true, cost, 0);
+    }
+
+    /**
+     * Get the cost weight of an endpoint.
+     *
+     * @param method HTTP method
+     * @param path   Request path
+     * @return Units consumed by one call
+     */
+    public long cost(String method, String path) {
+        for (EndpointCost endpointCost : endpointCosts) {
+            if (endpointCost.method.equals(method) && pathMatcher.match(endpointCost.pattern, path)) {
+                return endpointCost.cost;
+            }
+        }
+        return defaultCost;
+    }
+
+    /**
+     * Charge a client for a request found to have scanned the table, on top of the endpoint cost
+     * it already paid. The charge is never refused, but counts against the client's next requests.
+     *
+     * @param clientId Client identifier
+     * @param paid     Units already consumed for the request
+     */
+    public void chargeScan(String clientId, long paid) {
+        long extra = scanCost - paid;
+        if (!enabled || extra <= 0) {
+            return;
+        }
+        long now = System.currentTimeMillis();
+        long windowMillis = windowSeconds * 1000;
+        ClientState state = clients.get(clientId);
+        if (state == null) {
+            state = new ClientState(new SlidingWindowCounter(windowMillis));
+        }
+        clients.put(clientId, state, windowMillis * 2);
+        state.counter.add(extra, now);
+        if (sharedEnabled) {
+            recordShared(clientId, state, extra, now);
+        }
+    }
+
+    /**
+     * Get the number of units each client may consume per window.
+     *
+     * @return Limit per window
+     */
+    public long getLimit() {
+        return limit;
+    }
+
+    private void recordShared(String clientId, ClientState state, long cost, long now) {
+        long delta;
+        long windowStart = state.counter.windowStart(now);
+        synchronized (state) {
+            if (state.windowStart != windowStart) {
+                // Unsynced usage from an earlier window is dropped rather than counted against the new one
+                state.windowStart = windowStart;
+                state.unsynced = 0;
+            }
+            state.unsynced += cost;
+            if (state.unsynced < syncCost && now - state.lastSyncAt < syncIntervalMs) {
+                return;
+            }
+            delta = state.unsynced;
+            state.unsynced = 0;
+            state.lastSyncAt = now;
+        }
+
+        long expiresAt = (windowStart + windowSeconds * 2000) / 1000;
+        try {
+            long total = rateLimitRepository.increment(clientId + "#" + windowStart, delta, expiresAt);
+            synchronized (state) {
+                state.counter.observe(windowStart, total + (state.windowStart == windowStart ? state.unsynced : 0));
+            }
+        } catch (AmazonClientException e) {
+            log.warn("Unable to sync shared rate limit counter for {}: {}", clientId, e.getMessage());
+        }
+    }
+
+    /**
+     * Outcome of a rate limit check.
+     */
+    @Getter
+    @AllArgsConstructor
+    public static class Decision {
+
+        private final boolean allowed;
+
+        private final long cost;
+
+        private final long retryAfterSeconds;
+
+    }
+
+    private static final class ClientState {
+
+        private final SlidingWindowCounter counter;
+        private long windowStart;
+        private long unsynced;
+        private long lastSyncAt;
+
+        private ClientState(SlidingWindowCounter counter) {
+            this.counter = counter;
+        }
+    }
+
+    @AllArgsConstructor
+    private static final class EndpointCost {
+
+        private final String method;
+        private final String pattern;
+        private final long cost;
+    }
+
+}
@@ -0,0 +1,103 @@
+package com.aws.lambda.user.security;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.security.GeneralSecurityException;
+import java.security.SecureRandom;
+import java.util.Base64;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * In-memory cache of HMAC signing keys used for access tokens.
+ * Keys are decoded once at startup and each thread keeps its own initialised {@link Mac}
+ * per key, so signing and verification never re-derive key material.
+ */
+@Slf4j
+@Component
+public class SigningKeyCache {
+
+    static final String ALGORITHM = "HmacSHA256";
+
+    /**
+     * Comma-separated list of {@code keyId:base64Secret} pairs.
+     */
+    @Value("${auth.jwt.keys:}")
+    private String keys;
+
+    @Value("${auth.jwt.active-key-id:}")
+    private String activeKeyId;
+
+    private final Map<String, ThreadLocal<Mac>> macs = new HashMap<>();
+
+    @PostConstruct
+    void init() {
+        for (String pair : keys.split(",")) {
+            if (pair.trim().isEmpty()) {
+                continue;
+            }
+            int separator = pair.indexOf(':');
+            if (separator <= 0) {
+                throw new IllegalArgumentException("Signing keys must be configured as keyId:base64Secret");
+            }
+            String keyId = pair.substring(0, separator).trim();
+            register(keyId, Base64.getDecoder().decode(pair.substring(separator + 1).trim()));
+        }
+        if (macs.isEmpty()) {
+            log.warn("No auth.jwt.keys configured, generating an ephemeral signing key; tokens will not be valid across containers");
+            byte[] secret = new byte[32];
+            new SecureRandom().nextBytes(secret);
+            register("ephemeral", secret);
+            activeKeyId = "ephemeral";
+        }
+        if (activeKeyId == null || activeKeyId.isEmpty()) {
+            activeKeyId = macs.keySet().iterator().next();
+        }
+        if (!macs.containsKey(activeKeyId)) {
+            throw new IllegalArgumentException("Active signing key not configured: " + activeKeyId);
+        }
+    }
+
+    /**
+     * Get the identifier of the key used to sign new tokens.
+     *
+     * @return Active key identifier
+     */
+    public String getActiveKeyId() {
+        return activeKeyId;
+    }
+
+    /**
+     * Compute the HMAC of the given bytes with a cached key.
+     *
+     * @param keyId Key identifier
+     * @param data  Bytes to sign
+     * @return Signature, or null if the key is unknown
+     */
+    public byte[] sign(String keyId, byte[] data) {
+        ThreadLocal<Mac> mac = macs.get(keyId);
+        if (mac == null) {
+            return null;
+        }
+        return mac.get().doFinal(data);
+    }
+
+    private void register(String keyId, byte[] secret) {
+        SecretKeySpec key = new SecretKeySpec(secret, ALGORITHM);
+        macs.put(keyId, ThreadLocal.withInitial(() -> {
+            try {
+                Mac mac = Mac.getInstance(ALGORITHM);
+                mac.init(key);
+                return mac;
+            } catch (GeneralSecurityException e) {
+                throw new IllegalStateException("Unable to initialise " + ALGORITHM, e);
+            }
+        }));
+    }
+
+}
@@ -0,0 +1,29 @@
+package com.aws.lambda.user.services;
+
+import java.util.Map;
+
+/**
+ * Service interface for the audit trail of user changes.
+ * Events are recorded without waiting for them to be stored; callers that must not return before
+ * the trail is stored, such as the Lambda handler before an invocation completes, drain it.
+ */
+public interface AuditService {
+
+    /**
+     * Record a change to a user, made by the caller of the current request.
+     *
+     * @param action   Audit action, one of the {@code AuditEvent} action constants
+     * @param userUuid UUID of the changed user
+     * @param before   Fields before the change from {@code AuditEvent.fieldsOf}, null for a created user
+     * @param after    Fields after the change from {@code AuditEvent.fieldsOf}, null for a deleted user
+     */
+    void record(String action, String userUuid, Map<String, String> before, Map<String, String> after);
+
+    /**
+     * Wait until every recorded event has been stored or, if it could not be, logged.
+     *
+     * @return true if the trail was drained, false if the drain timed out
+     */
+    boolean drain();
+
+}
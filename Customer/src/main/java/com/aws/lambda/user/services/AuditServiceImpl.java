@@ -0,0 +1,207 @@
+package com.aws.lambda.user.services;
+
+import com.aws.lambda.user.entities.AuditEvent;
+import com.aws.lambda.user.repositories.AuditRepository;
+import com.aws.lambda.user.repositories.DynamoDBPriming;
+import com.aws.lambda.user.security.JwtAuthenticationFilter;
+import com.aws.lambda.user.security.JwtClaims;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.web.context.request.RequestAttributes;
+import org.springframework.web.context.request.RequestContextHolder;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Service implementation for the audit trail of user changes.
+ * Recording an event only computes the diff and adds it to an in-memory buffer. A background thread
+ * writes the buffer in batches, starting as soon as an event arrives, so the write overlaps the rest
+ * of the request and events recorded meanwhile share the next batch. Events that cannot be stored are
+ * logged as JSON lines rather than dropped, and a full buffer is written on the recording thread.
+ */
+@Slf4j
+@Service
+public class AuditServiceImpl implements AuditService {
+
+    static final String ANONYMOUS = "anonymous";
+
+    // Queued by drain() to cut a linger short; never written
+    private static final AuditEvent FLUSH = new AuditEvent();
+
+    @Autowired
+    private AuditRepository auditRepository;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Autowired
+    private DynamoDBPriming dynamoDBPriming;
+
+    @Value("${audit.enabled:true}")
+    private boolean enabled;
+
+    /**
+     * Most events written in one {@code BatchWriteItem} request.
+     */
+    @Value("${audit.batch-size:25}")
+    private int batchSize;
+
+    /**
+     * Time a batch waits for more events before it is written.
+     */
+    @Value("${audit.linger-ms:0}")
+    private long lingerMs;
+
+    @Value("${audit.buffer-size:10000}")
+    private int bufferSize;
+
+    @Value("${audit.drain-timeout-ms:2000}")
+    private long drainTimeoutMs;
+
+    private final Object lock = new Object();
+
+    // Events recorded but not yet stored or logged, guarded by lock
+    private long pending;
+
+    private BlockingQueue<AuditEvent> buffer;
+    private Thread flusher;
+
+    @PostConstruct
+    void init() {
+        buffer = new LinkedBlockingQueue<>(bufferSize);
+        if (enabled) {
+            flusher = new Thread(this::flush, "audit-flusher");
+            flusher.setDaemon(true);
+            flusher.start();
+        }
+    }
+
+    @PreDestroy
+    void shutdown() {
+        if (flusher != null) {
+            drain();
+            flusher.interrupt();
+        }
+    }
+
+    @Override
+    public void record(String action, String userUuid, Map<String, String> before, Map<String, String> after) {
+        // Priming changes only exist in its no-op table, and the flusher would write them for real
+        if (!enabled || dynamoDBPriming.isActive()) {
+            return;
+        }
+        long now = System.currentTimeMillis();
+        AuditEvent event = AuditEvent.builder()
+                .userUuid(userUuid)
+                .eventId(String.format("%013d-%08x", now, ThreadLocalRandom.current().nextInt()))
+                .action(action)
+                .actor(currentActor())
+                .occurredAt(now)
+                .build();
+        event.setChanges(before, after);
+
+        synchronized (lock) {
+            pending++;
+        }
+        if (!buffer.offer(event)) {
+            write(Collections.singletonList(event));
+        }
+    }
+
+    @Override
+    public boolean drain() {
+        if (!enabled) {
+            return true;
+        }
+        synchronized (lock) {
+            if (pending == 0) {
+                return true;
+            }
+        }
+        buffer.offer(FLUSH);
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(drainTimeoutMs);
+        synchronized (lock) {
+            while (pending > 0) {
+                long remainingMillis = TimeUnit.NANOSECONDS.toMillis(deadline - System.nanoTime());
+                if (remainingMillis <= 0) {
+                    log.warn("Audit trail not drained within {} ms, {} events pending", drainTimeoutMs, pending);
+                    return false;
+                }
+                try {
+                    lock.wait(remainingMillis);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+
+    private void flush() {
+        List<AuditEvent> batch = new ArrayList<>(batchSize);
+        while (!Thread.currentThread().isInterrupted()) {
+            try {
+                AuditEvent event = buffer.take();
+                long lingerUntil = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(lingerMs);
+                while (event != null && event != FLUSH) {
+                    batch.add(event);
+                    if (batch.size() >= batchSize) {
+                        break;
+                    }
+                    long lingerNanos = lingerUntil - System.nanoTime();
+                    event = lingerNanos > 0 ? buffer.poll(lingerNanos, TimeUnit.NANOSECONDS) : buffer.poll();
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            if (!batch.isEmpty()) {
+                write(batch);
+                batch.clear();
+            }
+        }
+    }
+
+    private void write(List<AuditEvent> batch) {
+        List<AuditEvent> unsaved;
+        try {
+            unsaved = auditRepository.saveAll(batch);
+        } catch (RuntimeException e) {
+            // Any failure is logged below, so the flusher keeps running and drain() still returns
+            log.warn("Unable to save {} audit events: {}", batch.size(), e.getMessage());
+            unsaved = batch;
+        }
+        for (AuditEvent event : unsaved) {
+            try {
+                log.warn("Audit event not saved {}", objectMapper.writeValueAsString(event));
+            } catch (JsonProcessingException e) {
+                log.error("Unable to serialize audit event {} of user {}", event.getEventId(), event.getUserUuid(), e);
+            }
+        }
+        synchronized (lock) {
+            pending -= batch.size();
+            lock.notifyAll();
+        }
+    }
+
+    private static String currentActor() {
+        RequestAttributes attributes = RequestContextHolder.getRequestAttributes();
+        Object claims = attributes == null ? null
+                : attributes.getAttribute(JwtAuthenticationFilter.CLAIMS_ATTRIBUTE, RequestAttributes.SCOPE_REQUEST);
+        return claims instanceof JwtClaims ? ((JwtClaims) claims).getSubject() : ANONYMOUS;
+    }
+
+}
@@ -0,0 +1,37 @@
+package com.aws.lambda.user.services;
+
+import com.aws.lambda.user.models.TokenResponse;
+import com.aws.lambda.user.security.JwtClaims;
+
+/**
+ * Service interface for authentication operations.
+ * Defines methods for exchanging credentials for tokens and validating tokens.
+ */
+public interface AuthService {
+
+    /**
+     * Authenticate a user by email and password.
+     * 
+     * @param email User's email address
+     * @param password Plain-text password
+     * @return Issued access token, or null if the credentials are invalid
+     */
+    TokenResponse login(String email, String password);
+
+    /**
+     * Authenticate a request by its bearer token.
+     * 
+     * @param token Compact JWT from the Authorization header
+     * @return Verified token claims
+     * @throws com.aws.lambda.user.security.InvalidTokenException if the token or its session is not valid
+     */
+    JwtClaims authenticate(String token);
+
+    /**
+     * End the session an access token is bound to.
+     * 
+     * @param claims Verified claims of the token being logged out
+     */
+    void logout(JwtClaims claims);
+
+}
@@ -0,0 +1,96 @@
+package com.aws.lambda.user.services;
+
+import com.amazonaws.AmazonClientException;
+import com.aws.lambda.user.entities.User;
+import com.aws.lambda.user.models.TokenResponse;
+import com.aws.lambda.user.repositories.UserRepository;
+import com.aws.lambda.user.entities.Session;
+import com.aws.lambda.user.security.InvalidTokenException;
+import com.aws.lambda.user.security.JwtClaims;
+import com.aws.lambda.user.security.JwtTokenService;
+import com.aws.lambda.user.security.PasswordHashingService;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+/**
+ * Service implementation for authentication operations.
+ * Verifies stored password hashes and issues signed access tokens.
+ */
+@Slf4j
+@Service
+public class AuthServiceImpl implements AuthService {
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private PasswordHashingService passwordHashingService;
+
+    @Autowired
+    private JwtTokenService jwtTokenService;
+
+    @Autowired
+    private SessionService sessionService;
+
+    @Override
+    public TokenResponse login(String email, String password) {
+        if (email == null || email.trim().isEmpty() || password == null || password.isEmpty()) {
+            throw new IllegalArgumentException("Email and password are required");
+        }
+
+        User user = userRepository.findByEmail(email);
+        if (user == null || !Boolean.TRUE.equals(user.getIsActive())) {
+            return null;
+        }
+        PasswordHashingService.VerificationResult verification = passwordHashingService.verify(password, user.getPasswordHash());
+        if (!verification.isMatches()) {
+            return null;
+        }
+        if (verification.isRehashNeeded()) {
+            rehash(user, password);
+        }
+
+        Session session = sessionService.createSession(user, jwtTokenService.getTtlSeconds());
+        return TokenResponse.builder()
+                .accessToken(jwtTokenService.issue(user, session.getSessionId()))
+                .tokenType("Bearer")
+                .expiresIn(jwtTokenService.getTtlSeconds())
+                .uuid(user.getUuid())
+                .build();
+    }
+
+    @Override
+    public JwtClaims authenticate(String token) {
+        JwtClaims claims = jwtTokenService.verify(token);
+        if (!sessionService.isActive(claims.getSessionId())) {
+            throw new InvalidTokenException("Session has expired or been revoked");
+        }
+        return claims;
+    }
+
+    @Override
+    public void logout(JwtClaims claims) {
+        sessionService.revoke(claims.getSessionId());
+    }
+
+    /**
+     * Upgrade a stored password hash to the current cost.
+     * Only the hash is written, and only if it is still the one verified, so a change made to the
+     * user meanwhile is neither reverted nor overwritten. A failed write only postpones the upgrade
+     * to the next login.
+     * 
+     * @param user User whose password was just verified
+     * @param password Verified plain-text password
+     */
+    private void rehash(User user, String password) {
+        try {
+            if (!userRepository.updatePasswordHash(user.getUuid(), user.getPasswordHash(), passwordHashingService.hash(password))) {
+                log.info("Password hash of user {} changed during login, not upgrading it", user.getUuid());
+            }
+        } catch (AmazonClientException e) {
+            log.warn("Unable to upgrade password hash for user {}", user.getUuid(), e);
+        }
+    }
+
+}
@@ -0,0 +1,33 @@
+package com.aws.lambda.user.services;
+
+import org.springframework.http.ResponseEntity;
+
+import java.util.function.Supplier;
+
+/**
+ * Service interface for idempotent request handling.
+ * Defines how operations guarded by an {@code Idempotency-Key} header are run at most once.
+ */
+public interface IdempotencyService {
+
+    String IDEMPOTENCY_KEY_HEADER = "Idempotency-Key";
+
+    String REPLAYED_HEADER = "Idempotent-Replayed";
+
+    /**
+     * Run an operation at most once per idempotency key, replaying the stored response on retries.
+     * 
+     * @param scope Operation name the key is scoped to
+     * @param idempotencyKey Client-supplied key, or null to run the operation unconditionally
+     * @param request Request body, used to detect a key reused for a different request
+     * @param responseType Type of the response body
+     * @param operation Operation to run
+     * @param <T> Response body type
+     * @return Response of the operation, either fresh or replayed
+     * @throws org.springframework.web.server.ResponseStatusException if the key is invalid, reused for a
+     *         different request, or held by a request that is still in progress
+     */
+    <T> ResponseEntity<T> execute(String scope, String idempotencyKey, Object request, Class<T> responseType,
+                                  Supplier<ResponseEntity<T>> operation);
+
+}
@@ -0,0 +1,169 @@
+package com.aws.lambda.user.services;
+
+import com.aws.lambda.user.entities.IdempotencyRecord;
+import com.aws.lambda.user.repositories.IdempotencyRepository;
+import com.aws.lambda.user.utils.ExpiringLruCache;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.stereotype.Service;
+import org.springframework.web.server.ResponseStatusException;
+
+import javax.annotation.PostConstruct;
+import java.io.IOException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Base64;
+import java.util.function.Supplier;
+
+/**
+ * Service implementation for idempotent request handling.
+ * A key is reserved with a conditional write before the operation runs, and the response is stored
+ * with a TTL once it completes. Completed responses are also cached in-process, so a retry landing
+ * on the same warm container is replayed without a DynamoDB read. Server errors are not stored,
+ * letting the client retry the operation itself.
+ */
+@Slf4j
+@Service
+public class IdempotencyServiceImpl implements IdempotencyService {
+
+    @Autowired
+    private IdempotencyRepository idempotencyRepository;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Value("${idempotency.ttl-seconds:86400}")
+    private long ttlSeconds;
+
+    @Value("${idempotency.lease-seconds:30}")
+    private long leaseSeconds;
+
+    @Value("${idempotency.cache-size:1000}")
+    private int cacheSize;
+
+    @Value("${idempotency.max-key-length:128}")
+    private int maxKeyLength;
+
+    private ExpiringLruCache<String, IdempotencyRecord> completedRecords;
+
+    @PostConstruct
+    void init() {
+        completedRecords = new ExpiringLruCache<>(cacheSize);
+    }
+
+    @Override
+    public <T> ResponseEntity<T> execute(String scope, String idempotencyKey, Object request, Class<T> responseType,
+                                         Supplier<ResponseEntity<T>> operation) {
+        if (idempotencyKey == null) {
+            return operation.get();
+        }
+        if (idempotencyKey.trim().isEmpty() || idempotencyKey.length() > maxKeyLength) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST,
+                    IDEMPOTENCY_KEY_HEADER + " must be between 1 and " + maxKeyLength + " characters");
+        }
+
+        String recordKey = scope + "#" + idempotencyKey;
+        String fingerprint = fingerprint(request);
+
+        IdempotencyRecord cached = completedRecords.get(recordKey);
+        if (cached != null) {
+            return replay(cached, fingerprint, responseType);
+        }
+
+        long now = System.currentTimeMillis();
+        IdempotencyRecord reservation = IdempotencyRecord.builder()
+                .idempotencyKey(recordKey)
+                .status(IdempotencyRecord.IN_PROGRESS)
+                .fingerprint(fingerprint)
+                .leaseExpiresAt(now + leaseSeconds * 1000)
+                .expiresAt(now / 1000 + ttlSeconds)
+                .build();
+        if (!idempotencyRepository.reserve(reservation)) {
+            IdempotencyRecord existing = idempotencyRepository.findById(recordKey);
+            if (existing == null || !IdempotencyRecord.COMPLETED.equals(existing.getStatus())) {
+                if (existing != null && !fingerprint.equals(existing.getFingerprint())) {
+                    throw mismatch();
+                }
+                throw new ResponseStatusException(HttpStatus.CONFLICT,
+                        "A request with this " + IDEMPOTENCY_KEY_HEADER + " is still in progress");
+            }
+            cache(existing);
+            return replay(existing, fingerprint, responseType);
+        }
+
+        ResponseEntity<T> response;
+        try {
+            response = operation.get();
+        } catch (RuntimeException e) {
+            release(recordKey);
+            throw e;
+        }
+        if (response.getStatusCode().is5xxServerError()) {
+            release(recordKey);
+            return response;
+        }
+
+        try {
+            IdempotencyRecord completed = IdempotencyRecord.builder()
+                    .idempotencyKey(recordKey)
+                    .status(IdempotencyRecord.COMPLETED)
+                    .fingerprint(fingerprint)
+                    .statusCode(response.getStatusCodeValue())
+                    .responseBody(response.getBody() == null ? null : objectMapper.writeValueAsString(response.getBody()))
+                    .expiresAt(System.currentTimeMillis() / 1000 + ttlSeconds)
+                    .build();
+            idempotencyRepository.save(completed);
+            cache(completed);
+        } catch (IOException | RuntimeException e) {
+            // The operation already succeeded; a retry after the lease expires will run it again
+            log.warn("Unable to store idempotent response for {}: {}", recordKey, e.getMessage());
+        }
+        return response;
+    }
+
+    private <T> ResponseEntity<T> replay(IdempotencyRecord record, String fingerprint, Class<T> responseType) {
+        if (!fingerprint.equals(record.getFingerprint())) {
+            throw mismatch();
+        }
+        try {
+            T body = record.getResponseBody() == null ? null : objectMapper.readValue(record.getResponseBody(), responseType);
+            return ResponseEntity.status(record.getStatusCode())
+                    .header(REPLAYED_HEADER, "true")
+                    .body(body);
+        } catch (IOException e) {
+            throw new IllegalStateException("Unable to read stored response for " + record.getIdempotencyKey(), e);
+        }
+    }
+
+    private void cache(IdempotencyRecord record) {
+        completedRecords.put(record.getIdempotencyKey(), record,
+                record.getExpiresAt() * 1000 - System.currentTimeMillis());
+    }
+
+    private void release(String recordKey) {
+        try {
+            idempotencyRepository.delete(recordKey);
+        } catch (RuntimeException e) {
+            log.warn("Unable to release idempotency key {}: {}", recordKey, e.getMessage());
+        }
+    }
+
+    private String fingerprint(Object request) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(objectMapper.writeValueAsBytes(request));
+            return Base64.getEncoder().encodeToString(digest);
+        } catch (IOException | NoSuchAlgorithmException e) {
+            throw new IllegalStateException("Unable to fingerprint request", e);
+        }
+    }
+
+    private static ResponseStatusException mismatch() {
+        return new ResponseStatusException(HttpStatus.UNPROCESSABLE_ENTITY,
+                IDEMPOTENCY_KEY_HEADER + " was already used for a different request");
+    }
+
+}
@@ -0,0 +1,36 @@
+package com.aws.lambda.user.services;
+
+import com.aws.lambda.user.entities.Session;
+import com.aws.lambda.user.entities.User;
+
+/**
+ * Service interface for session management operations.
+ * Defines methods for creating, checking and revoking login sessions.
+ */
+public interface SessionService {
+
+    /**
+     * Create a new session for a user.
+     * 
+     * @param user Authenticated user
+     * @param ttlSeconds Session lifetime in seconds
+     * @return Created session
+     */
+    Session createSession(User user, long ttlSeconds);
+
+    /**
+     * Check whether a session exists, has not expired and has not been revoked.
+     * 
+     * @param sessionId Session identifier
+     * @return true if the session is active
+     */
+    boolean isActive(String sessionId);
+
+    /**
+     * Revoke a session so tokens bound to it are no longer accepted.
+     * 
+     * @param sessionId Session identifier
+     */
+    void revoke(String sessionId);
+
+}
@@ -0,0 +1,103 @@
+package com.aws.lambda.user.services;
+
+import com.aws.lambda.user.entities.Session;
+import com.aws.lambda.user.entities.User;
+import com.aws.lambda.user.repositories.SessionRepository;
+import com.aws.lambda.user.utils.ExpiringLruCache;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PostConstruct;
+import java.util.UUID;
+
+/**
+ * Service implementation for session management operations.
+ * Session state is cached in-process so that authenticated calls do not need a DynamoDB
+ * round-trip in the common case. Active sessions are cached for a bounded time, which also
+ * bounds how long a revocation made on another container can go unnoticed; unknown sessions
+ * are negatively cached only briefly.
+ */
+@Service
+public class SessionServiceImpl implements SessionService {
+
+    @Autowired
+    private SessionRepository sessionRepository;
+
+    @Value("${auth.session.cache-size:10000}")
+    private int cacheSize;
+
+    @Value("${auth.session.cache-ttl-seconds:60}")
+    private long cacheTtlSeconds;
+
+    @Value("${auth.session.negative-cache-ttl-seconds:5}")
+    private long negativeCacheTtlSeconds;
+
+    private ExpiringLruCache<String, Boolean> sessionCache;
+
+    @PostConstruct
+    void init() {
+        sessionCache = new ExpiringLruCache<>(cacheSize);
+    }
+
+    @Override
+    public Session createSession(User user, long ttlSeconds) {
+        long now = System.currentTimeMillis() / 1000;
+        Session session = Session.builder()
+                .sessionId(UUID.randomUUID().toString())
+                .userUuid(user.getUuid())
+                .createdAt(now)
+                .expiresAt(now + ttlSeconds)
+                .revoked(false)
+                .build();
+        sessionRepository.save(session);
+        cacheActive(session);
+        return session;
+    }
+
+    @Override
+    public boolean isActive(String sessionId) {
+        if (sessionId == null || sessionId.isEmpty()) {
+            return false;
+        }
+        Boolean cached = sessionCache.get(sessionId);
+        if (cached != null) {
+            return cached;
+        }
+
+        Session session = sessionRepository.findById(sessionId);
+        if (session == null) {
+            sessionCache.put(sessionId, Boolean.FALSE, negativeCacheTtlSeconds * 1000);
+            return false;
+        }
+        if (Boolean.TRUE.equals(session.getRevoked()) || remainingMillis(session) <= 0) {
+            // Revocation and expiry are permanent, so remember them until the session would have expired
+            sessionCache.put(sessionId, Boolean.FALSE, Math.max(remainingMillis(session), negativeCacheTtlSeconds * 1000));
+            return false;
+        }
+        cacheActive(session);
+        return true;
+    }
+
+    @Override
+    public void revoke(String sessionId) {
+        if (sessionId == null || sessionId.isEmpty()) {
+            throw new IllegalArgumentException("Session ID cannot be null or empty");
+        }
+        sessionCache.invalidate(sessionId);
+        sessionRepository.revoke(sessionId);
+        sessionCache.put(sessionId, Boolean.FALSE, cacheTtlSeconds * 1000);
+    }
+
+    private void cacheActive(Session session) {
+        sessionCache.put(session.getSessionId(), Boolean.TRUE, Math.min(cacheTtlSeconds * 1000, remainingMillis(session)));
+    }
+
+    private static long remainingMillis(Session session) {
+        if (session.getExpiresAt() == null) {
+            return 0;
+        }
+        return session.getExpiresAt() * 1000 - System.currentTimeMillis();
+    }
+
+}
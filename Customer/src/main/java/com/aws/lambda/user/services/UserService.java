@@ -1,7 +1,13 @@
 package com.aws.lambda.user.services;
 
 import com.aws.lambda.user.entities.User;
+import com.aws.lambda.user.models.Reassignment;
+import com.aws.lambda.user.models.ReassignmentResult;
+import com.aws.lambda.user.models.UserQuery;
+import com.aws.lambda.user.models.UserQueryPage;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
 
 /**
  * Service interface for User management operations.
@@ -42,19 +48,54 @@ public interface UserService {
     boolean deleteUser(String uuid);
 
     /**
-     * Retrieve all users from the system.
+     * Retrieve all users from the system, as many as the request deadline allows.
      * 
-     * @return List of all users
+     * @param cursor Cursor returned with the previous partial result, or null to start
+     * @return Users read and the cursor for the rest, if the deadline cut the read short
      */
-    List<User> getAllUsers();
+    UserQueryPage getAllUsers(String cursor);
 
     /**
-     * Search users by department.
+     * Search users by department, as many as the request deadline allows.
      * 
      * @param department Department name to search for
-     * @return List of users in the specified department
+     * @param cursor Cursor returned with the previous partial result, or null to start
+     * @return Users in the department read and the cursor for the rest, if the deadline cut the read short
      */
-    List<User> getUsersByDepartment(String department);
+    UserQueryPage getUsersByDepartment(String department, String cursor);
+
+    /**
+     * Retrieve several users by their unique identifiers in as few round-trips as possible.
+     * 
+     * @param uuids User identifiers
+     * @return Future of the users found; unknown identifiers are omitted
+     */
+    CompletableFuture<List<User>> getUsers(List<String> uuids);
+
+    /**
+     * Search users in several departments, querying the departments concurrently.
+     * 
+     * @param departments Department names to search for
+     * @return Future of the users per department
+     */
+    CompletableFuture<Map<String, List<User>>> getUsersByDepartments(List<String> departments);
+
+    /**
+     * Search users matching a combination of predicates, one page at a time.
+     * 
+     * @param query Query predicates, fields, page size and cursor
+     * @return One page of matching users
+     */
+    UserQueryPage queryUsers(UserQuery query);
+
+    /**
+     * Move all users of one department to another, or give a list of users a role.
+     * Large reassignments are applied over several calls, each resuming from the cursor of the last.
+     * 
+     * @param reassignment Reassignment to apply
+     * @return Progress of this call
+     */
+    ReassignmentResult reassignUsers(Reassignment reassignment);
 
     /**
      * Search users by role.
@@ -1,18 +1,30 @@
 package com.aws.lambda.user.services;
 
 import com.amazonaws.services.dynamodbv2.datamodeling.DynamoDBMapper;
+import com.aws.lambda.user.entities.AuditEvent;
 import com.aws.lambda.user.entities.User;
+import com.aws.lambda.user.models.Reassignment;
+import com.aws.lambda.user.models.ReassignmentResult;
+import com.aws.lambda.user.models.UserQuery;
+import com.aws.lambda.user.models.UserQueryPage;
+import com.aws.lambda.user.repositories.AsyncUserRepository;
 import com.aws.lambda.user.repositories.UserRepository;
+import com.aws.lambda.user.security.PasswordHashingService;
+import com.aws.lambda.user.utils.Futures;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 
 import java.time.LocalDateTime;
+import java.util.Collections;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
 import java.util.stream.Collectors;
 
 /**
  * Service implementation for User management operations.
  * Contains business logic and validation for user-related operations.
+ * Every change to a user is recorded in the audit trail once it has been saved.
  */
 @Service
 public class UserServiceImpl implements UserService {
@@ -20,9 +32,18 @@ public class UserServiceImpl implements UserService {
     @Autowired
     private UserRepository userRepository;
 
+    @Autowired
+    private AsyncUserRepository asyncUserRepository;
+
     @Autowired
     private DynamoDBMapper dynamoDBMapper;
 
+    @Autowired
+    private PasswordHashingService passwordHashingService;
+
+    @Autowired
+    private AuditService auditService;
+
     @Override
     public User createUser(User user) {
         // Validate required fields
@@ -37,7 +58,15 @@ public class UserServiceImpl implements UserService {
             user.setIsActive(true);
         }
         
-        return userRepository.save(user);
+        // Store only the password hash
+        if (user.getPassword() != null) {
+            user.setPasswordHash(passwordHashingService.hash(user.getPassword()));
+            user.setPassword(null);
+        }
+        
+        User saved = userRepository.save(user);
+        auditService.record(AuditEvent.CREATE, user.getUuid(), null, AuditEvent.fieldsOf(user));
+        return saved;
     }
 
     @Override
@@ -54,8 +83,16 @@ public class UserServiceImpl implements UserService {
             throw new IllegalArgumentException("User UUID is required for update operation");
         }
         
-        // Check if user exists
-        User existingUser = userRepository.findById(user.getUuid());
+        // Check if user exists, hashing a new password while the read is in flight
+        User existingUser;
+        String newPasswordHash = null;
+        if (user.getPassword() != null) {
+            CompletableFuture<User> pendingUser = asyncUserRepository.findById(user.getUuid());
+            newPasswordHash = passwordHashingService.hash(user.getPassword());
+            existingUser = Futures.join(pendingUser);
+        } else {
+            existingUser = userRepository.findById(user.getUuid());
+        }
         if (existingUser == null) {
             return null;
         }
@@ -69,7 +106,17 @@ public class UserServiceImpl implements UserService {
             user.setIsActive(existingUser.getIsActive());
         }
         
-        return userRepository.save(user);
+        // Rehash a new password, otherwise keep the stored credentials
+        if (newPasswordHash != null) {
+            user.setPasswordHash(newPasswordHash);
+            user.setPassword(null);
+        } else {
+            user.setPasswordHash(existingUser.getPasswordHash());
+        }
+        
+        User saved = userRepository.save(user);
+        auditService.record(AuditEvent.UPDATE, user.getUuid(), AuditEvent.fieldsOf(existingUser), AuditEvent.fieldsOf(user));
+        return saved;
     }
 
     @Override
@@ -84,20 +131,85 @@ public class UserServiceImpl implements UserService {
         }
         
         userRepository.delete(uuid);
+        auditService.record(AuditEvent.DELETE, uuid, AuditEvent.fieldsOf(user), null);
         return true;
     }
 
     @Override
-    public List<User> getAllUsers() {
-        return userRepository.findAll();
+    public UserQueryPage getAllUsers(String cursor) {
+        return userRepository.findAll(cursor);
     }
 
     @Override
-    public List<User> getUsersByDepartment(String department) {
+    public UserQueryPage getUsersByDepartment(String department, String cursor) {
         if (department == null || department.trim().isEmpty()) {
             throw new IllegalArgumentException("Department cannot be null or empty");
         }
-        return userRepository.findByDepartment(department);
+        return userRepository.findByDepartment(department, cursor);
+    }
+
+    @Override
+    public CompletableFuture<List<User>> getUsers(List<String> uuids) {
+        if (uuids == null || uuids.isEmpty()) {
+            throw new IllegalArgumentException("At least one user UUID is required");
+        }
+        return asyncUserRepository.findByIds(uuids);
+    }
+
+    @Override
+    public CompletableFuture<Map<String, List<User>>> getUsersByDepartments(List<String> departments) {
+        if (departments == null || departments.isEmpty()) {
+            throw new IllegalArgumentException("At least one department is required");
+        }
+        if (departments.stream().anyMatch(department -> department == null || department.trim().isEmpty())) {
+            throw new IllegalArgumentException("Department cannot be null or empty");
+        }
+        return asyncUserRepository.findByDepartments(departments);
+    }
+
+    @Override
+    public UserQueryPage queryUsers(UserQuery query) {
+        if (query.getLimit() <= 0) {
+            throw new IllegalArgumentException("Limit must be positive");
+        }
+        return userRepository.query(query);
+    }
+
+    @Override
+    public ReassignmentResult reassignUsers(Reassignment reassignment) {
+        if (reassignment.getMaxWriteUnits() != null && reassignment.getMaxWriteUnits() < 1) {
+            throw new IllegalArgumentException("maxWriteUnits must be positive");
+        }
+        if (reassignment.isDepartmentTransfer()) {
+            if (reassignment.getUuids() != null || reassignment.getRole() != null) {
+                throw new IllegalArgumentException("A reassignment either transfers a department or assigns a role");
+            }
+            if (isBlank(reassignment.getFromDepartment()) || isBlank(reassignment.getToDepartment())) {
+                throw new IllegalArgumentException("Department cannot be null or empty");
+            }
+            if (reassignment.getFromDepartment().equals(reassignment.getToDepartment())) {
+                throw new IllegalArgumentException("Source and target department must differ");
+            }
+        } else {
+            if (reassignment.getUuids() == null || reassignment.getUuids().isEmpty()) {
+                throw new IllegalArgumentException("A department to transfer or at least one user UUID is required");
+            }
+            if (reassignment.getUuids().stream().anyMatch(UserServiceImpl::isBlank)) {
+                throw new IllegalArgumentException("User UUID cannot be null or empty");
+            }
+            if (isBlank(reassignment.getRole()) || reassignment.getToDepartment() != null) {
+                throw new IllegalArgumentException("Role cannot be null or empty");
+            }
+        }
+        ReassignmentResult result = userRepository.reassign(reassignment);
+        if (result.getChanges() != null) {
+            for (ReassignmentResult.Change change : result.getChanges()) {
+                auditService.record(AuditEvent.UPDATE, change.getUuid(),
+                        Collections.singletonMap(change.getAttribute(), change.getBefore()),
+                        Collections.singletonMap(change.getAttribute(), change.getAfter()));
+            }
+        }
+        return result;
     }
 
     @Override
@@ -126,10 +238,13 @@ public class UserServiceImpl implements UserService {
             return null;
         }
         
+        Map<String, String> before = AuditEvent.fieldsOf(user);
         user.setIsActive(false);
         user.setUpdatedAt(LocalDateTime.now());
         
-        return userRepository.save(user);
+        User saved = userRepository.save(user);
+        auditService.record(AuditEvent.DEACTIVATE, uuid, before, AuditEvent.fieldsOf(user));
+        return saved;
     }
 
     @Override
@@ -143,10 +258,13 @@ public class UserServiceImpl implements UserService {
             return null;
         }
         
+        Map<String, String> before = AuditEvent.fieldsOf(user);
         user.setIsActive(true);
         user.setUpdatedAt(LocalDateTime.now());
         
-        return userRepository.save(user);
+        User saved = userRepository.save(user);
+        auditService.record(AuditEvent.ACTIVATE, uuid, before, AuditEvent.fieldsOf(user));
+        return saved;
     }
 
     /**
@@ -172,13 +290,13 @@ public class UserServiceImpl implements UserService {
         }
         
         // Check for duplicate email
-        List<User> existingUsers = userRepository.findAll();
-        boolean emailExists = existingUsers.stream()
-                .anyMatch(existingUser -> user.getEmail().equals(existingUser.getEmail()));
-        
-        if (emailExists) {
+        if (userRepository.existsByEmail(user.getEmail())) {
             throw new IllegalArgumentException("User with this email already exists");
         }
     }
 
+    private static boolean isBlank(String value) {
+        return value == null || value.trim().isEmpty();
+    }
+
 }
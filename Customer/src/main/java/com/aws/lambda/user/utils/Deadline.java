@@ -0,0 +1,72 @@
+package com.aws.lambda.user.utils;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Point in time by which the current request must have been answered.
+ * Like the {@link RequestTrace}, the deadline of the current request is bound to the serving thread
+ * and carried to asynchronous DynamoDB calls by {@link RequestTrace#propagating}, so that every call
+ * can be given the time that is left rather than running until the function is stopped.
+ */
+public final class Deadline {
+
+    private static final ThreadLocal<Deadline> CURRENT = new ThreadLocal<>();
+
+    private final long expiresAtNanos;
+
+    private Deadline(long expiresAtNanos) {
+        this.expiresAtNanos = expiresAtNanos;
+    }
+
+    /**
+     * Create a deadline a number of milliseconds from now.
+     *
+     * @param millis Time allowed, may be negative
+     * @return Deadline
+     */
+    public static Deadline after(long millis) {
+        return new Deadline(System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(millis));
+    }
+
+    /**
+     * Get the deadline bound to the current thread.
+     *
+     * @return Current deadline, or null if the current request has none
+     */
+    public static Deadline current() {
+        return CURRENT.get();
+    }
+
+    /**
+     * Bind a deadline to the current thread, replacing any other.
+     *
+     * @param deadline Deadline to bind, or null to unbind
+     */
+    public static void bind(Deadline deadline) {
+        if (deadline == null) {
+            CURRENT.remove();
+        } else {
+            CURRENT.set(deadline);
+        }
+    }
+
+    /**
+     * Get the time left before the deadline.
+     *
+     * @return Remaining milliseconds, zero or negative once the deadline has passed
+     */
+    public long remainingMillis() {
+        return TimeUnit.NANOSECONDS.toMillis(expiresAtNanos - System.nanoTime());
+    }
+
+    /**
+     * Check whether there is still time for a step of a given duration.
+     *
+     * @param nanos Expected duration of the step
+     * @return true if the step is expected to finish before the deadline
+     */
+    public boolean hasTimeFor(long nanos) {
+        return expiresAtNanos - System.nanoTime() > nanos;
+    }
+
+}
@@ -0,0 +1,36 @@
+package com.aws.lambda.user.utils;
+
+import org.springframework.http.HttpStatus;
+
+import java.time.LocalDateTime;
+
+/**
+ * Builds JSON error bodies for responses written outside Spring MVC, such as from servlet
+ * filters or the Lambda fast path, in the same shape as the application's other error responses.
+ */
+public final class ErrorResponses {
+
+    private ErrorResponses() {
+    }
+
+    /**
+     * Build an error body.
+     *
+     * @param status  Response status
+     * @param message Error message
+     * @param path    Request path
+     * @return JSON error body
+     */
+    public static String body(HttpStatus status, String message, String path) {
+        return "{\"timestamp\":\"" + LocalDateTime.now()
+                + "\",\"status\":" + status.value()
+                + ",\"error\":\"" + status.getReasonPhrase()
+                + "\",\"message\":\"" + sanitize(message)
+                + "\",\"path\":\"" + sanitize(path) + "\"}";
+    }
+
+    private static String sanitize(String value) {
+        return value == null ? "" : value.replace("\\", "").replace("\"", "");
+    }
+
+}
@@ -0,0 +1,125 @@
+package com.aws.lambda.user.utils;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Bounded, thread-safe LRU cache whose entries expire after a per-entry time to live.
+ * Intended for small per-container caches in front of DynamoDB or expensive computations.
+ *
+ * @param <K> Key type
+ * @param <V> Value type
+ */
+public class ExpiringLruCache<K, V> {
+
+    private final LinkedHashMap<K, Entry<V>> entries;
+
+    /**
+     * Creates a cache holding at most the given number of entries.
+     *
+     * @param maxEntries Maximum number of entries before the least recently used one is evicted
+     */
+    public ExpiringLruCache(final int maxEntries) {
+        if (maxEntries <= 0) {
+            throw new IllegalArgumentException("Cache size must be positive");
+        }
+        this.entries = new BoundedMap<>(maxEntries);
+    }
+
+    /**
+     * Get a cached value.
+     *
+     * @param key Cache key
+     * @return Cached value, or null if absent or expired
+     */
+    public synchronized V get(K key) {
+        Entry<V> entry = entries.get(key);
+        if (entry == null) {
+            return null;
+        }
+        if (entry.expiresAt <= System.currentTimeMillis()) {
+            entries.remove(key);
+            return null;
+        }
+        return entry.value;
+    }
+
+    /**
+     * Check whether a live entry exists for the key.
+     *
+     * @param key Cache key
+     * @return true if a non-expired entry is cached
+     */
+    public boolean containsKey(K key) {
+        return get(key) != null;
+    }
+
+    /**
+     * Cache a value for the given time to live.
+     *
+     * @param key       Cache key
+     * @param value     Value to cache, must not be null
+     * @param ttlMillis Time to live in milliseconds; non-positive values are not cached
+     */
+    public synchronized void put(K key, V value, long ttlMillis) {
+        if (ttlMillis <= 0) {
+            entries.remove(key);
+            return;
+        }
+        entries.put(key, new Entry<>(value, System.currentTimeMillis() + ttlMillis));
+    }
+
+    /**
+     * Remove an entry.
+     *
+     * @param key Cache key
+     */
+    public synchronized void invalidate(K key) {
+        entries.remove(key);
+    }
+
+    /**
+     * Remove all entries.
+     */
+    public synchronized void clear() {
+        entries.clear();
+    }
+
+    /**
+     * Get the number of cached entries, including ones that expired but were not yet evicted.
+     *
+     * @return Number of entries
+     */
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    private static final class BoundedMap<K, V> extends LinkedHashMap<K, V> {
+
+        private static final long serialVersionUID = 1L;
+
+        private final int maxEntries;
+
+        private BoundedMap(int maxEntries) {
+            super(16, 0.75f, true);
+            this.maxEntries = maxEntries;
+        }
+
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<K, V> eldest) {
+            return size() > maxEntries;
+        }
+    }
+
+    private static final class Entry<V> {
+
+        private final V value;
+        private final long expiresAt;
+
+        private Entry(V value, long expiresAt) {
+            this.value = value;
+            this.expiresAt = expiresAt;
+        }
+    }
+
+}
@@ -0,0 +1,48 @@
+package com.aws.lambda.user.utils;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+
+/**
+ * Helpers for waiting on {@link CompletableFuture} results from synchronous code.
+ */
+public final class Futures {
+
+    private Futures() {
+    }
+
+    /**
+     * Wait for a future and rethrow its failure unwrapped, so callers see the same
+     * exceptions as from the equivalent blocking call.
+     *
+     * @param future Future to wait for
+     * @param <T>    Result type
+     * @return Result of the future
+     */
+    public static <T> T join(CompletableFuture<T> future) {
+        try {
+            return future.join();
+        } catch (CompletionException e) {
+            throw unwrap(e);
+        }
+    }
+
+    /**
+     * Unwrap the cause of a failed completion stage.
+     *
+     * @param throwable Failure, possibly a {@link CompletionException}
+     * @return Underlying runtime exception
+     */
+    public static RuntimeException unwrap(Throwable throwable) {
+        Throwable cause = throwable instanceof CompletionException && throwable.getCause() != null
+                ? throwable.getCause() : throwable;
+        if (cause instanceof RuntimeException) {
+            return (RuntimeException) cause;
+        }
+        if (cause instanceof Error) {
+            throw (Error) cause;
+        }
+        return new CompletionException(cause);
+    }
+
+}
@@ -0,0 +1,79 @@
+package com.aws.lambda.user.utils;
+
+import java.util.Arrays;
+
+/**
+ * Fixed-size ring buffer of recent latency samples.
+ * Percentiles are recomputed lazily every few samples so that recording stays cheap on hot paths.
+ */
+public class LatencyWindow {
+
+    private static final int RECOMPUTE_EVERY = 64;
+
+    private final long[] samples;
+    private final double percentile;
+    private int next;
+    private int size;
+    private int sinceRecompute;
+    private volatile long cachedPercentile = -1;
+
+    /**
+     * Creates a latency window.
+     *
+     * @param capacity   Number of most recent samples to retain
+     * @param percentile Percentile (0-100) reported by {@link #percentile()}
+     */
+    public LatencyWindow(int capacity, double percentile) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("Latency window capacity must be positive");
+        }
+        if (percentile <= 0 || percentile > 100) {
+            throw new IllegalArgumentException("Percentile must be in (0, 100]");
+        }
+        this.samples = new long[capacity];
+        this.percentile = percentile;
+    }
+
+    /**
+     * Record a latency sample.
+     *
+     * @param value Latency in any consistent unit
+     */
+    public synchronized void record(long value) {
+        samples[next] = value;
+        next = (next + 1) % samples.length;
+        if (size < samples.length) {
+            size++;
+        }
+        if (++sinceRecompute >= RECOMPUTE_EVERY || cachedPercentile < 0) {
+            sinceRecompute = 0;
+            cachedPercentile = compute();
+        }
+    }
+
+    /**
+     * Get the configured percentile over the retained samples.
+     *
+     * @return Percentile value, or -1 if no samples have been recorded yet
+     */
+    public long percentile() {
+        return cachedPercentile;
+    }
+
+    /**
+     * Get the number of retained samples.
+     *
+     * @return Sample count, at most the window capacity
+     */
+    public synchronized int size() {
+        return size;
+    }
+
+    private long compute() {
+        long[] sorted = Arrays.copyOf(samples, size);
+        Arrays.sort(sorted);
+        int index = (int) Math.ceil(percentile / 100.0 * size) - 1;
+        return sorted[Math.max(0, Math.min(index, size - 1))];
+    }
+
+}
@@ -0,0 +1,299 @@
+package com.aws.lambda.user.utils;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.AbstractExecutorService;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Timings of the DynamoDB calls made while serving one request.
+ * The trace of the current request is bound to the serving thread, and carried to asynchronous
+ * DynamoDB calls by executors wrapped with {@link #propagating(ExecutorService)}, so calls can be
+ * recorded without passing the trace through every repository method.
+ */
+public class RequestTrace {
+
+    /**
+     * Error reported for calls that had not finished when the trace was read.
+     */
+    public static final String UNFINISHED = "Unfinished";
+
+    private static final ThreadLocal<RequestTrace> CURRENT = new ThreadLocal<>();
+
+    private final long startNanos = System.nanoTime();
+    private final Queue<Call> calls = new ConcurrentLinkedQueue<>();
+    private final Map<Object, Call> inFlight = new ConcurrentHashMap<>();
+    private final LongAdder connectionLeases = new LongAdder();
+    private final LongAdder connectionWaitNanos = new LongAdder();
+
+    /**
+     * Get the trace bound to the current thread.
+     *
+     * @return Current trace, or null outside a traced request
+     */
+    public static RequestTrace current() {
+        return CURRENT.get();
+    }
+
+    /**
+     * Bind a trace to the current thread, replacing any other.
+     *
+     * @param trace Trace to bind, or null to unbind
+     */
+    public static void bind(RequestTrace trace) {
+        if (trace == null) {
+            CURRENT.remove();
+        } else {
+            CURRENT.set(trace);
+        }
+    }
+
+    /**
+     * Wrap an executor so that tasks run bound to the trace and {@link Deadline} of the thread
+     * that submitted them.
+     *
+     * @param executor Executor to wrap
+     * @return Propagating executor; shutting it down shuts down the wrapped executor
+     */
+    public static ExecutorService propagating(ExecutorService executor) {
+        return new AbstractExecutorService() {
+            @Override
+            public void execute(Runnable command) {
+                RequestTrace trace = CURRENT.get();
+                Deadline deadline = Deadline.current();
+                executor.execute(trace == null && deadline == null ? command : () -> {
+                    RequestTrace previousTrace = CURRENT.get();
+                    Deadline previousDeadline = Deadline.current();
+                    bind(trace);
+                    Deadline.bind(deadline);
+                    try {
+                        command.run();
+                    } finally {
+                        bind(previousTrace);
+                        Deadline.bind(previousDeadline);
+                    }
+                });
+            }
+
+            @Override
+            public void shutdown() {
+                executor.shutdown();
+            }
+
+            @Override
+            public List<Runnable> shutdownNow() {
+                return executor.shutdownNow();
+            }
+
+            @Override
+            public boolean isShutdown() {
+                return executor.isShutdown();
+            }
+
+            @Override
+            public boolean isTerminated() {
+                return executor.isTerminated();
+            }
+
+            @Override
+            public boolean awaitTermination(long timeout, TimeUnit unit) throws InterruptedException {
+                return executor.awaitTermination(timeout, unit);
+            }
+        };
+    }
+
+    /**
+     * Record a finished DynamoDB call. Safe to call from any thread.
+     *
+     * @param call Call to record
+     */
+    public void record(Call call) {
+        calls.add(call);
+    }
+
+    /**
+     * Note that a DynamoDB call has started. Until it is recorded as finished it is reported as
+     * unfinished, since the SDK gives no notice of calls it abandons at their timeout.
+     *
+     * @param key       Identity of the call, passed again to {@link #record(Object, Call)}
+     * @param operation Operation, such as {@code GetItem}
+     * @param target    Table, and index if any, the call addressed
+     */
+    public void started(Object key, String operation, String target) {
+        // Until the call finishes its duration holds its start time
+        inFlight.put(key, new Call(operation, target, System.nanoTime(), -1, -1, UNFINISHED));
+    }
+
+    /**
+     * Record a finished DynamoDB call that was noted as started. Safe to call from any thread.
+     *
+     * @param key  Identity the call was started with
+     * @param call Call to record
+     */
+    public void record(Object key, Call call) {
+        inFlight.remove(key);
+        calls.add(call);
+    }
+
+    /**
+     * Get the calls recorded so far, in the order they finished, followed by those still unfinished.
+     *
+     * @return Recorded calls
+     */
+    public List<Call> getCalls() {
+        List<Call> recorded = new ArrayList<>(calls);
+        long now = System.nanoTime();
+        for (Call started : inFlight.values()) {
+            recorded.add(new Call(started.operation, started.target, now - started.nanos, -1, -1, UNFINISHED));
+        }
+        return recorded;
+    }
+
+    /**
+     * Record the time a DynamoDB call waited to lease an HTTP connection. Safe to call from any thread.
+     *
+     * @param nanos Wait in nanoseconds
+     */
+    public void connectionAcquired(long nanos) {
+        connectionLeases.increment();
+        connectionWaitNanos.add(nanos);
+    }
+
+    /**
+     * Get the number of HTTP connections leased by the calls so far.
+     *
+     * @return Connection leases
+     */
+    public long getConnectionLeases() {
+        return connectionLeases.sum();
+    }
+
+    /**
+     * Get the total time calls waited to lease an HTTP connection, which is part of their duration.
+     *
+     * @return Wait in nanoseconds
+     */
+    public long getConnectionWaitNanos() {
+        return connectionWaitNanos.sum();
+    }
+
+    /**
+     * Get the time since the trace started.
+     *
+     * @return Elapsed nanoseconds
+     */
+    public long elapsedNanos() {
+        return System.nanoTime() - startNanos;
+    }
+
+    /**
+     * Format the trace as a {@code Server-Timing} header value: the total, the time outside
+     * DynamoDB, the DynamoDB total, the connection lease wait if any connections were leased, and then
+     * one entry per call, up to a limit.
+     * Concurrent calls overlap, so their sum may exceed the total.
+     *
+     * @param maxCalls Maximum number of individual calls to list
+     * @return Header value
+     */
+    public String serverTiming(int maxCalls) {
+        List<Call> recorded = getCalls();
+        long total = elapsedNanos();
+        long dynamoDB = 0;
+        for (Call call : recorded) {
+            dynamoDB += call.nanos;
+        }
+        StringBuilder header = new StringBuilder()
+                .append("total;dur=").append(millis(total))
+                .append(", app;dur=").append(millis(Math.max(0, total - dynamoDB)))
+                .append(", dynamodb;dur=").append(millis(dynamoDB)).append(";desc=\"calls=").append(recorded.size()).append('"');
+        long leases = getConnectionLeases();
+        if (leases > 0) {
+            header.append(", dynamodb-connect;dur=").append(millis(getConnectionWaitNanos()))
+                    .append(";desc=\"leases=").append(leases).append('"');
+        }
+        for (int i = 0; i < recorded.size() && i < maxCalls; i++) {
+            Call call = recorded.get(i);
+            header.append(", dynamodb").append(i + 1).append(";dur=").append(millis(call.nanos))
+                    .append(";desc=\"").append(call.describe()).append('"');
+        }
+        return header.toString();
+    }
+
+    /**
+     * Format nanoseconds as milliseconds with one decimal place.
+     *
+     * @param nanos Duration in nanoseconds
+     * @return Milliseconds
+     */
+    public static String millis(long nanos) {
+        return String.format(Locale.ROOT, "%.1f", nanos / 1_000_000.0);
+    }
+
+    /**
+     * One DynamoDB call.
+     */
+    @Getter
+    @AllArgsConstructor
+    public static class Call {
+
+        /**
+         * Operation, such as {@code GetItem}.
+         */
+        private final String operation;
+
+        /**
+         * Table, and index if any, the call addressed.
+         */
+        private final String target;
+
+        private final long nanos;
+
+        /**
+         * Items read, or -1 if the operation does not read items.
+         */
+        private final int itemsRead;
+
+        /**
+         * Capacity units consumed, or -1 if DynamoDB did not report them.
+         */
+        private final double capacityUnits;
+
+        /**
+         * Error code if the call failed, otherwise null.
+         */
+        private final String error;
+
+        /**
+         * Describe the call in a form safe for a quoted header parameter.
+         *
+         * @return Description
+         */
+        public String describe() {
+            StringBuilder description = new StringBuilder(operation);
+            if (target != null) {
+                description.append(' ').append(target);
+            }
+            if (itemsRead >= 0) {
+                description.append(" items=").append(itemsRead);
+            }
+            if (capacityUnits >= 0) {
+                description.append(" cu=").append(capacityUnits);
+            }
+            if (error != null) {
+                description.append(" error=").append(error);
+            }
+            return description.toString().replaceAll("[\"\\\\\\p{Cntrl}]", "");
+        }
+    }
+
+}
@@ -0,0 +1,110 @@
+package com.aws.lambda.user.utils;
+
+/**
+ * Sliding-window rate counter approximated from two fixed windows.
+ * The usage estimate is the current window's count plus the previous window's count weighted by
+ * how much of the previous window still overlaps the sliding window, which needs constant memory
+ * per client instead of one timestamp per request.
+ */
+public class SlidingWindowCounter {
+
+    private final long windowMillis;
+
+    private long currentWindowStart;
+    private long currentCount;
+    private long previousCount;
+
+    /**
+     * Creates a counter over the given window length.
+     *
+     * @param windowMillis Window length in milliseconds
+     */
+    public SlidingWindowCounter(long windowMillis) {
+        if (windowMillis <= 0) {
+            throw new IllegalArgumentException("Window length must be positive");
+        }
+        this.windowMillis = windowMillis;
+    }
+
+    /**
+     * Consume capacity if the sliding window has room for it.
+     *
+     * @param cost  Units to consume
+     * @param limit Units allowed per window
+     * @param now   Current time in epoch milliseconds
+     * @return 0 if the units were consumed, otherwise the milliseconds until they would fit
+     */
+    public synchronized long tryAcquire(long cost, long limit, long now) {
+        roll(now);
+        long elapsed = now - currentWindowStart;
+        double previousWeight = (double) (windowMillis - elapsed) / windowMillis;
+        if (previousCount * previousWeight + currentCount + cost <= limit) {
+            currentCount += cost;
+            return 0;
+        }
+        return retryAfter(cost, limit, elapsed);
+    }
+
+    /**
+     * Consume capacity whether or not the sliding window has room for it, for usage that is only
+     * known once a request has been served.
+     *
+     * @param cost Units to consume
+     * @param now  Current time in epoch milliseconds
+     */
+    public synchronized void add(long cost, long now) {
+        roll(now);
+        currentCount += cost;
+    }
+
+    /**
+     * Raise a window's count to a value observed elsewhere, such as a cluster-wide counter.
+     * Counts never decrease, and windows older than the previous one are ignored.
+     *
+     * @param windowStart Start of the window the count belongs to, in epoch milliseconds
+     * @param count       Observed count
+     */
+    public synchronized void observe(long windowStart, long count) {
+        if (windowStart == currentWindowStart) {
+            currentCount = Math.max(currentCount, count);
+        } else if (windowStart == currentWindowStart - windowMillis) {
+            previousCount = Math.max(previousCount, count);
+        }
+    }
+
+    /**
+     * Get the start of the fixed window containing a point in time.
+     *
+     * @param now Time in epoch milliseconds
+     * @return Window start in epoch milliseconds
+     */
+    public long windowStart(long now) {
+        return now - Math.floorMod(now, windowMillis);
+    }
+
+    private void roll(long now) {
+        long windowStart = windowStart(now);
+        if (windowStart == currentWindowStart) {
+            return;
+        }
+        previousCount = windowStart - currentWindowStart == windowMillis ? currentCount : 0;
+        currentCount = 0;
+        currentWindowStart = windowStart;
+    }
+
+    private long retryAfter(long cost, long limit, long elapsed) {
+        if (cost > limit) {
+            return windowMillis;
+        }
+        long remainingInWindow = windowMillis - elapsed;
+        if (currentCount + cost <= limit) {
+            // Wait for enough of the previous window to slide out
+            double needed = windowMillis - (double) windowMillis * (limit - currentCount - cost) / previousCount;
+            return Math.max(1, (long) Math.ceil(needed - elapsed));
+        }
+        // Wait for the next window, then for enough of this one to slide out
+        double needed = windowMillis - (double) windowMillis * (limit - cost) / currentCount;
+        return remainingInWindow + Math.max(0, (long) Math.ceil(needed));
+    }
+
+}
@@ -0,0 +1,225 @@
+package com.aws.lambda.user.controllers;
+
+import com.amazonaws.AmazonServiceException;
+import com.amazonaws.serverless.proxy.model.ApiGatewayRequestIdentity;
+import com.amazonaws.serverless.proxy.model.AwsProxyRequest;
+import com.amazonaws.serverless.proxy.model.AwsProxyRequestContext;
+import com.amazonaws.serverless.proxy.model.AwsProxyResponse;
+import com.amazonaws.serverless.proxy.model.Headers;
+import com.aws.lambda.user.entities.User;
+import com.aws.lambda.user.security.InvalidTokenException;
+import com.aws.lambda.user.security.JwtAuthenticationFilter;
+import com.aws.lambda.user.security.RateLimiter;
+import com.aws.lambda.user.services.UserService;
+import com.aws.lambda.user.utils.RequestTrace;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.http.HttpHeaders;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.web.method.HandlerMethod;
+import org.springframework.web.servlet.mvc.method.RequestMappingInfo;
+import org.springframework.web.servlet.mvc.method.annotation.RequestMappingHandlerMapping;
+
+import java.time.LocalDateTime;
+import java.util.Collections;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+/**
+ * Unit tests for FastPathRouter.
+ * Tests route matching, rate limiting, authentication and response serialization.
+ */
+@ExtendWith(MockitoExtension.class)
+class FastPathRouterTest {
+
+    @Mock
+    private UserService userService;
+
+    @Mock
+    private UserController userController;
+
+    @Mock
+    private RateLimiter rateLimiter;
+
+    @Mock
+    private JwtAuthenticationFilter jwtAuthenticationFilter;
+
+    @Mock
+    private RequestTraceFilter requestTraceFilter;
+
+    @Mock
+    private DeadlineFilter deadlineFilter;
+
+    @InjectMocks
+    private FastPathRouter fastPathRouter;
+
+    @BeforeEach
+    void setUp() {
+        ReflectionTestUtils.setField(fastPathRouter, "enabled", true);
+        ReflectionTestUtils.setField(fastPathRouter, "contextPath", "/user");
+        ReflectionTestUtils.setField(fastPathRouter, "allPath", "/all");
+        ReflectionTestUtils.setField(fastPathRouter, "batchPath", "/batch");
+        ReflectionTestUtils.setField(fastPathRouter, "departmentsPath", "/departments");
+        ReflectionTestUtils.setField(fastPathRouter, "queryPath", "/query");
+        ReflectionTestUtils.setField(fastPathRouter, "reassignmentsPath", "/reassignments");
+        ReflectionTestUtils.setField(fastPathRouter, "authPath", "/auth");
+        fastPathRouter.init();
+    }
+
+    @Test
+    void route_GetUser_ServesWithoutSpring() {
+        allow();
+        User user = User.builder()
+                .uuid("test-uuid-123")
+                .name("John Doe")
+                .email("john.doe@example.com")
+                .createdAt(LocalDateTime.of(2024, 1, 15, 10, 30))
+                .build();
+        when(userService.getUser("test-uuid-123")).thenReturn(user);
+
+        AwsProxyResponse response = fastPathRouter.route(request("GET", "/user/test-uuid-123", "Bearer token"));
+
+        assertEquals(200, response.getStatusCode());
+        assertTrue(response.getBody().contains("\"uuid\":\"test-uuid-123\""));
+        assertTrue(response.getBody().contains("\"createdAt\":\"2024-01-15T10:30:00\""));
+        verify(jwtAuthenticationFilter).authenticate("Bearer token");
+    }
+
+    @Test
+    void route_OtherRoutes_FallBackToSpring() {
+        assertNull(fastPathRouter.route(request("GET", "/user/all", null)));
+        assertNull(fastPathRouter.route(request("GET", "/user/query", null)));
+        assertNull(fastPathRouter.route(request("GET", "/user/reassignments", null)));
+        assertNull(fastPathRouter.route(request("GET", "/user/department/Engineering", null)));
+        assertNull(fastPathRouter.route(request("DELETE", "/user/test-uuid-123", null)));
+        assertNull(fastPathRouter.route(request("GET", "/other/test-uuid-123", null)));
+
+        ReflectionTestUtils.setField(fastPathRouter, "enabled", false);
+        assertNull(fastPathRouter.route(request("GET", "/user/test-uuid-123", null)));
+        verifyNoInteractions(rateLimiter, userService);
+    }
+
+    @Test
+    void route_PathsMappedByControllers_FallBackToSpring() {
+        RequestMappingHandlerMapping handlerMapping = mock(RequestMappingHandlerMapping.class);
+        when(handlerMapping.getHandlerMethods()).thenReturn(Collections.<RequestMappingInfo, HandlerMethod>singletonMap(
+                RequestMappingInfo.paths("/user/exports/{id}").build(), null));
+        ReflectionTestUtils.setField(fastPathRouter, "handlerMapping", handlerMapping);
+        fastPathRouter.init();
+
+        assertNull(fastPathRouter.route(request("GET", "/user/exports", null)));
+        verifyNoInteractions(rateLimiter, userService);
+    }
+
+    @Test
+    void route_MissingUser_ReturnsNotFound() {
+        allow();
+
+        AwsProxyResponse response = fastPathRouter.route(request("GET", "/user/missing", "Bearer token"));
+
+        assertEquals(404, response.getStatusCode());
+        assertTrue(response.getBody().contains("User not found with ID: missing"));
+    }
+
+    @Test
+    void route_InvalidToken_ReturnsUnauthorized() {
+        allow();
+        when(jwtAuthenticationFilter.authenticate(null)).thenThrow(new InvalidTokenException("Missing bearer token"));
+
+        AwsProxyResponse response = fastPathRouter.route(request("GET", "/user/test-uuid-123", null));
+
+        assertEquals(401, response.getStatusCode());
+        assertEquals("Bearer", response.getMultiValueHeaders().getFirst(HttpHeaders.WWW_AUTHENTICATE));
+        verifyNoInteractions(userService);
+    }
+
+    @Test
+    void route_RateLimited_ReturnsTooManyRequests() {
+        when(rateLimiter.acquire(anyString(), eq("GET"), eq("/user/test-uuid-123")))
+                .thenReturn(new RateLimiter.Decision(false, 1, 7));
+
+        AwsProxyResponse response = fastPathRouter.route(request("GET", "/user/test-uuid-123", "Bearer token"));
+
+        assertEquals(429, response.getStatusCode());
+        assertEquals("7", response.getMultiValueHeaders().getFirst(HttpHeaders.RETRY_AFTER));
+        verifyNoInteractions(jwtAuthenticationFilter, userService);
+    }
+
+    @Test
+    void route_UnvalidatedApiKey_IsLimitedBySourceIp() {
+        allow();
+        AwsProxyRequest request = request("GET", "/user/test-uuid-123", "Bearer token");
+        request.getMultiValueHeaders().putSingle("X-Api-Key", "random-key");
+        request.setRequestContext(new AwsProxyRequestContext());
+        request.getRequestContext().setIdentity(new ApiGatewayRequestIdentity());
+        request.getRequestContext().getIdentity().setSourceIp("1.2.3.4");
+
+        fastPathRouter.route(request);
+
+        verify(rateLimiter).acquire("ip:1.2.3.4", "GET", "/user/test-uuid-123");
+    }
+
+    @Test
+    void route_ServiceError_MapsStatus() {
+        allow();
+        AmazonServiceException exception = new AmazonServiceException("Throughput exceeded");
+        exception.setStatusCode(503);
+        when(userService.getUser("test-uuid-123")).thenThrow(exception);
+
+        AwsProxyResponse response = fastPathRouter.route(request("GET", "/user/test-uuid-123", "Bearer token"));
+
+        assertEquals(503, response.getStatusCode());
+    }
+
+    @Test
+    void route_UnexpectedError_ReturnsJsonServerError() {
+        allow();
+        when(userService.getUser("test-uuid-123")).thenThrow(new IllegalStateException("Broken"));
+
+        AwsProxyResponse response = fastPathRouter.route(request("GET", "/user/test-uuid-123", "Bearer token"));
+
+        assertEquals(500, response.getStatusCode());
+        assertTrue(response.getBody().contains("\"message\":\"Broken\""));
+    }
+
+    @Test
+    void route_Traced_AddsServerTimingAndUnbindsTrace() {
+        allow();
+        RequestTrace trace = new RequestTrace();
+        when(requestTraceFilter.begin()).thenAnswer(invocation -> {
+            RequestTrace.bind(trace);
+            return trace;
+        });
+        when(requestTraceFilter.complete(trace, "GET", "/user/missing", 404)).thenReturn("total;dur=1.0");
+
+        AwsProxyResponse response = fastPathRouter.route(request("GET", "/user/missing", "Bearer token"));
+
+        assertEquals("total;dur=1.0", response.getMultiValueHeaders().getFirst(RequestTraceFilter.SERVER_TIMING_HEADER));
+        assertNull(RequestTrace.current());
+    }
+
+    private void allow() {
+        when(rateLimiter.acquire(anyString(), eq("GET"), anyString())).thenReturn(new RateLimiter.Decision(true, 1, 0));
+        when(jwtAuthenticationFilter.requiresAuthentication(eq("GET"), anyString())).thenReturn(true);
+    }
+
+    private static AwsProxyRequest request(String method, String path, String authorization) {
+        AwsProxyRequest request = new AwsProxyRequest();
+        request.setHttpMethod(method);
+        request.setPath(path);
+        Headers headers = new Headers();
+        if (authorization != null) {
+            headers.putSingle(HttpHeaders.AUTHORIZATION, authorization);
+        }
+        request.setMultiValueHeaders(headers);
+        return request;
+    }
+
+}
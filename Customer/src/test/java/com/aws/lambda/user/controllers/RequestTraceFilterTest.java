@@ -0,0 +1,95 @@
+package com.aws.lambda.user.controllers;
+
+import com.aws.lambda.user.utils.RequestTrace;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.web.MockFilterChain;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import javax.servlet.http.HttpServlet;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for RequestTraceFilter.
+ * Tests that DynamoDB calls made while serving a request end up in its Server-Timing header.
+ */
+class RequestTraceFilterTest {
+
+    private RequestTraceFilter requestTraceFilter;
+
+    @BeforeEach
+    void setUp() {
+        requestTraceFilter = new RequestTraceFilter();
+        ReflectionTestUtils.setField(requestTraceFilter, "objectMapper", new ObjectMapper());
+        ReflectionTestUtils.setField(requestTraceFilter, "enabled", true);
+        ReflectionTestUtils.setField(requestTraceFilter, "serverTimingEnabled", true);
+        ReflectionTestUtils.setField(requestTraceFilter, "logSampleRate", 1.0);
+        ReflectionTestUtils.setField(requestTraceFilter, "slowRequestMs", 1000L);
+        ReflectionTestUtils.setField(requestTraceFilter, "maxCalls", 1);
+    }
+
+    @Test
+    void doFilter_CallsRecorded_AddsServerTimingBeforeBody() throws Exception {
+        MockHttpServletResponse response = new MockHttpServletResponse();
+
+        requestTraceFilter.doFilter(new MockHttpServletRequest("PUT", "/user"), response, new MockFilterChain(new HttpServlet() {
+            @Override
+            protected void service(HttpServletRequest request, HttpServletResponse response) throws IOException {
+                RequestTrace.current().record(new RequestTrace.Call("GetItem", "User", 2_000_000L, 1, 0.5, null));
+                RequestTrace.current().record(new RequestTrace.Call("PutItem", "User", 3_000_000L, -1, 1.0, null));
+                response.getWriter().write("{}");
+                response.flushBuffer();
+            }
+        }));
+
+        String serverTiming = response.getHeader(RequestTraceFilter.SERVER_TIMING_HEADER);
+        assertNotNull(serverTiming);
+        assertTrue(serverTiming.contains("dynamodb;dur=5.0;desc=\"calls=2\""));
+        assertTrue(serverTiming.contains("dynamodb1;dur=2.0;desc=\"GetItem User items=1 cu=0.5\""));
+        assertFalse(serverTiming.contains("dynamodb2"));
+        assertNull(RequestTrace.current());
+    }
+
+    @Test
+    void doFilter_NoBody_StillAddsServerTiming() throws Exception {
+        MockHttpServletResponse response = new MockHttpServletResponse();
+
+        requestTraceFilter.doFilter(new MockHttpServletRequest("DELETE", "/user/uuid-1"), response, new MockFilterChain());
+
+        assertTrue(response.getHeader(RequestTraceFilter.SERVER_TIMING_HEADER).contains("dynamodb;dur=0.0;desc=\"calls=0\""));
+    }
+
+    @Test
+    void doFilter_Disabled_DoesNotTrace() throws Exception {
+        ReflectionTestUtils.setField(requestTraceFilter, "enabled", false);
+        MockHttpServletResponse response = new MockHttpServletResponse();
+
+        requestTraceFilter.doFilter(new MockHttpServletRequest("GET", "/user/uuid-1"), response, new MockFilterChain(new HttpServlet() {
+            @Override
+            protected void service(HttpServletRequest request, HttpServletResponse response) {
+                assertNull(RequestTrace.current());
+            }
+        }));
+
+        assertNull(response.getHeader(RequestTraceFilter.SERVER_TIMING_HEADER));
+        assertNull(requestTraceFilter.begin());
+    }
+
+    @Test
+    void complete_ServerTimingDisabled_ReturnsNull() {
+        ReflectionTestUtils.setField(requestTraceFilter, "serverTimingEnabled", false);
+        RequestTrace trace = requestTraceFilter.begin();
+        RequestTrace.bind(null);
+
+        assertNull(requestTraceFilter.complete(trace, "GET", "/user/uuid-1", 200));
+        assertNull(requestTraceFilter.complete(null, "GET", "/user/uuid-1", 200));
+    }
+
+}
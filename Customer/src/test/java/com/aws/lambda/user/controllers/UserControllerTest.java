@@ -1,6 +1,13 @@
 package com.aws.lambda.user.controllers;
 
 import com.aws.lambda.user.entities.User;
+import com.aws.lambda.user.models.Reassignment;
+import com.aws.lambda.user.models.ReassignmentResult;
+import com.aws.lambda.user.models.UserQuery;
+import com.aws.lambda.user.models.UserQueryPage;
+import com.aws.lambda.user.security.JwtTokenService;
+import com.aws.lambda.user.security.RateLimitFilter;
+import com.aws.lambda.user.services.SessionService;
 import com.aws.lambda.user.services.UserService;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import org.junit.jupiter.api.BeforeEach;
@@ -8,15 +15,24 @@ import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
 import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.MediaType;
 import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
 
 import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
 
+import static org.hamcrest.Matchers.nullValue;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.argThat;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
@@ -24,8 +40,9 @@ import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.
 /**
  * Unit tests for UserController.
  * Tests REST API endpoints and error handling scenarios.
+ * The rate limit is raised so that requests of earlier tests never exhaust it.
  */
-@WebMvcTest(UserController.class)
+@WebMvcTest(value = UserController.class, properties = "ratelimit.limit=1000000")
 class UserControllerTest {
 
     @Autowired
@@ -34,11 +51,21 @@ class UserControllerTest {
     @MockBean
     private UserService userService;
 
+    @MockBean
+    private SessionService sessionService;
+
     @Autowired
     private ObjectMapper objectMapper;
 
+    @Autowired
+    private JwtTokenService jwtTokenService;
+
     private User testUser;
 
+    private String bearerToken;
+
+    private String adminToken;
+
     @BeforeEach
     void setUp() {
         testUser = User.builder()
@@ -53,6 +80,13 @@ class UserControllerTest {
                 .isActive(true)
                 .phoneNumber("+1234567890")
                 .build();
+        bearerToken = "Bearer " + jwtTokenService.issue(testUser, "session-123");
+        adminToken = "Bearer " + jwtTokenService.issue(User.builder()
+                .uuid("admin-uuid")
+                .email("admin@example.com")
+                .role("Administrator")
+                .build(), "session-admin");
+        when(sessionService.isActive(anyString())).thenReturn(true);
     }
 
     @Test
@@ -68,21 +102,49 @@ class UserControllerTest {
                 .andExpect(jsonPath("$.email").value("john.doe@example.com"));
     }
 
+    @Test
+    void createUser_AdministratorWithoutAdminToken_ReturnsForbidden() throws Exception {
+        testUser.setRole("Administrator");
+
+        mockMvc.perform(post("/user")
+                .header(HttpHeaders.AUTHORIZATION, bearerToken)
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(objectMapper.writeValueAsString(testUser)))
+                .andExpect(status().isForbidden());
+        verify(userService, never()).createUser(any(User.class));
+    }
+
+    @Test
+    void createUser_AdministratorWithAdminToken_ReturnsCreatedUser() throws Exception {
+        testUser.setRole("Administrator");
+        when(userService.createUser(any(User.class))).thenReturn(testUser);
+
+        mockMvc.perform(post("/user")
+                .header(HttpHeaders.AUTHORIZATION, adminToken)
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(objectMapper.writeValueAsString(testUser)))
+                .andExpect(status().isCreated())
+                .andExpect(jsonPath("$.role").value("Administrator"));
+    }
+
     @Test
     void getUser_ValidUuid_ReturnsUser() throws Exception {
         when(userService.getUser("test-uuid-123")).thenReturn(testUser);
 
-        mockMvc.perform(get("/user/test-uuid-123"))
+        mockMvc.perform(get("/user/test-uuid-123")
+                .header(HttpHeaders.AUTHORIZATION, bearerToken))
                 .andExpect(status().isOk())
                 .andExpect(jsonPath("$.uuid").value("test-uuid-123"))
-                .andExpect(jsonPath("$.name").value("John Doe"));
+                .andExpect(jsonPath("$.name").value("John Doe"))
+                .andExpect(jsonPath("$.createdAt").value(testUser.getCreatedAt().format(DateTimeFormatter.ISO_LOCAL_DATE_TIME)));
     }
 
     @Test
     void getUser_NonExistentUuid_ReturnsNotFound() throws Exception {
         when(userService.getUser("non-existent")).thenReturn(null);
 
-        mockMvc.perform(get("/user/non-existent"))
+        mockMvc.perform(get("/user/non-existent")
+                .header(HttpHeaders.AUTHORIZATION, bearerToken))
                 .andExpect(status().isNotFound());
     }
 
@@ -91,17 +153,64 @@ class UserControllerTest {
         when(userService.updateUser(any(User.class))).thenReturn(testUser);
 
         mockMvc.perform(put("/user")
+                .header(HttpHeaders.AUTHORIZATION, bearerToken)
                 .contentType(MediaType.APPLICATION_JSON)
                 .content(objectMapper.writeValueAsString(testUser)))
                 .andExpect(status().isOk())
                 .andExpect(jsonPath("$.uuid").value("test-uuid-123"));
     }
 
+    @Test
+    void updateUser_AnotherUser_ReturnsForbidden() throws Exception {
+        testUser.setUuid("other-uuid");
+
+        mockMvc.perform(put("/user")
+                .header(HttpHeaders.AUTHORIZATION, bearerToken)
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(objectMapper.writeValueAsString(testUser)))
+                .andExpect(status().isForbidden());
+        verify(userService, never()).updateUser(any(User.class));
+    }
+
+    @Test
+    void updateUser_OwnRoleChanged_ReturnsForbidden() throws Exception {
+        testUser.setRole("Administrator");
+
+        mockMvc.perform(put("/user")
+                .header(HttpHeaders.AUTHORIZATION, bearerToken)
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(objectMapper.writeValueAsString(testUser)))
+                .andExpect(status().isForbidden());
+        verify(userService, never()).updateUser(any(User.class));
+    }
+
+    @Test
+    void updateUser_AnotherUserAsAdmin_ReturnsUpdatedUser() throws Exception {
+        testUser.setRole("Team Lead");
+        when(userService.updateUser(any(User.class))).thenReturn(testUser);
+
+        mockMvc.perform(put("/user")
+                .header(HttpHeaders.AUTHORIZATION, adminToken)
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(objectMapper.writeValueAsString(testUser)))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.role").value("Team Lead"));
+    }
+
+    @Test
+    void deleteUser_AnotherUser_ReturnsForbidden() throws Exception {
+        mockMvc.perform(delete("/user/other-uuid")
+                .header(HttpHeaders.AUTHORIZATION, bearerToken))
+                .andExpect(status().isForbidden());
+        verify(userService, never()).deleteUser(anyString());
+    }
+
     @Test
     void deleteUser_ValidUuid_ReturnsSuccess() throws Exception {
         when(userService.deleteUser("test-uuid-123")).thenReturn(true);
 
-        mockMvc.perform(delete("/user/test-uuid-123"))
+        mockMvc.perform(delete("/user/test-uuid-123")
+                .header(HttpHeaders.AUTHORIZATION, bearerToken))
                 .andExpect(status().isOk())
                 .andExpect(jsonPath("$.message").value("User successfully deleted"));
     }
@@ -109,23 +218,170 @@ class UserControllerTest {
     @Test
     void getAllUsers_ReturnsUserList() throws Exception {
         List<User> users = Arrays.asList(testUser);
-        when(userService.getAllUsers()).thenReturn(users);
+        when(userService.getAllUsers(null)).thenReturn(UserQueryPage.builder().users(users).build());
 
-        mockMvc.perform(get("/user/all"))
+        mockMvc.perform(get("/user/all")
+                .header(HttpHeaders.AUTHORIZATION, bearerToken))
                 .andExpect(status().isOk())
+                .andExpect(header().doesNotExist(UserController.NEXT_CURSOR_HEADER))
+                .andExpect(jsonPath("$[0].uuid").value("test-uuid-123"));
+    }
+
+    @Test
+    void getAllUsers_CutShortByDeadline_ReturnsCursorHeader() throws Exception {
+        List<User> users = Arrays.asList(testUser);
+        when(userService.getAllUsers("cursor-1"))
+                .thenReturn(UserQueryPage.builder().users(users).nextCursor("cursor-2").build());
+
+        mockMvc.perform(get("/user/all").param("cursor", "cursor-1")
+                .header(HttpHeaders.AUTHORIZATION, bearerToken))
+                .andExpect(status().isOk())
+                .andExpect(header().string(UserController.NEXT_CURSOR_HEADER, "cursor-2"))
                 .andExpect(jsonPath("$[0].uuid").value("test-uuid-123"));
     }
 
     @Test
     void getUsersByDepartment_ValidDepartment_ReturnsUserList() throws Exception {
         List<User> users = Arrays.asList(testUser);
-        when(userService.getUsersByDepartment("Engineering")).thenReturn(users);
+        when(userService.getUsersByDepartment("Engineering", null)).thenReturn(UserQueryPage.builder().users(users).build());
 
-        mockMvc.perform(get("/user/department/Engineering"))
+        mockMvc.perform(get("/user/department/Engineering")
+                .header(HttpHeaders.AUTHORIZATION, bearerToken))
                 .andExpect(status().isOk())
                 .andExpect(jsonPath("$[0].department").value("Engineering"));
     }
 
+    @Test
+    void getUsersByDepartments_ValidNames_ReturnsUsersPerDepartment() throws Exception {
+        when(userService.getUsersByDepartments(Arrays.asList("Engineering", "Sales")))
+                .thenReturn(CompletableFuture.completedFuture(Collections.singletonMap("Engineering", Arrays.asList(testUser))));
+
+        MvcResult result = mockMvc.perform(get("/user/departments")
+                .param("names", "Engineering,Sales")
+                .header(HttpHeaders.AUTHORIZATION, bearerToken))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+
+        mockMvc.perform(asyncDispatch(result))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.Engineering[0].uuid").value("test-uuid-123"));
+    }
+
+    @Test
+    void queryUsers_CombinedPredicates_ReturnsPageWithPlanHeader() throws Exception {
+        UserQueryPage page = UserQueryPage.builder()
+                .users(Arrays.asList(testUser))
+                .nextCursor("next-page")
+                .plan("query index=department-index key=department; filter=role,age")
+                .build();
+        when(userService.queryUsers(argThat((UserQuery query) -> "Engineering".equals(query.getDepartment())
+                && "Software Engineer".equals(query.getRole()) && Boolean.TRUE.equals(query.getIsActive())
+                && query.getMinAge() == 25 && query.getMaxAge() == 40 && query.getLimit() == 10)))
+                .thenReturn(page);
+
+        mockMvc.perform(get("/user/query")
+                .param("department", "Engineering")
+                .param("role", "Software Engineer")
+                .param("active", "true")
+                .param("minAge", "25")
+                .param("maxAge", "40")
+                .param("limit", "10")
+                .header(HttpHeaders.AUTHORIZATION, bearerToken))
+                .andExpect(status().isOk())
+                .andExpect(header().string(UserController.QUERY_PLAN_HEADER, page.getPlan()))
+                .andExpect(jsonPath("$.users[0].uuid").value("test-uuid-123"))
+                .andExpect(jsonPath("$.nextCursor").value("next-page"))
+                .andExpect(jsonPath("$.plan").doesNotExist())
+                .andExpect(jsonPath("$.scanned").doesNotExist())
+                .andExpect(request().attribute(RateLimitFilter.SCANNED_ATTRIBUTE, nullValue()));
+    }
+
+    @Test
+    void queryUsers_PlannedScan_MarksRequestForScanCost() throws Exception {
+        when(userService.queryUsers(any(UserQuery.class))).thenReturn(UserQueryPage.builder()
+                .users(Collections.singletonList(testUser))
+                .plan("scan; filter=age")
+                .scanned(true)
+                .build());
+
+        mockMvc.perform(get("/user/query")
+                .param("minAge", "25")
+                .header(HttpHeaders.AUTHORIZATION, bearerToken))
+                .andExpect(status().isOk())
+                .andExpect(request().attribute(RateLimitFilter.SCANNED_ATTRIBUTE, true));
+    }
+
+    @Test
+    void queryUsers_InvalidQuery_ReturnsBadRequest() throws Exception {
+        when(userService.queryUsers(any(UserQuery.class))).thenThrow(new IllegalArgumentException("Invalid cursor"));
+
+        mockMvc.perform(get("/user/query")
+                .param("limit", "1000")
+                .header(HttpHeaders.AUTHORIZATION, bearerToken))
+                .andExpect(status().isBadRequest());
+        mockMvc.perform(get("/user/query")
+                .param("cursor", "not-a-cursor")
+                .header(HttpHeaders.AUTHORIZATION, bearerToken))
+                .andExpect(status().isBadRequest());
+    }
+
+    @Test
+    void reassignUsers_BudgetExhausted_ReturnsProgressAndCursor() throws Exception {
+        when(userService.reassignUsers(argThat((Reassignment reassignment) -> "Engineering".equals(reassignment.getFromDepartment())
+                && "Platform".equals(reassignment.getToDepartment()) && reassignment.getMaxWriteUnits() == 50)))
+                .thenReturn(ReassignmentResult.builder()
+                        .matched(50)
+                        .updated(48)
+                        .skipped(2)
+                        .consumedWriteUnits(50)
+                        .mode("conditional-updates")
+                        .nextCursor("resume-here")
+                        .build());
+
+        mockMvc.perform(post("/user/reassignments")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content("{\"fromDepartment\":\"Engineering\",\"toDepartment\":\"Platform\",\"maxWriteUnits\":50}")
+                .header(HttpHeaders.AUTHORIZATION, adminToken))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.updated").value(48))
+                .andExpect(jsonPath("$.nextCursor").value("resume-here"))
+                .andExpect(jsonPath("$.complete").value(false));
+    }
+
+    @Test
+    void reassignUsers_InvalidReassignment_ReturnsBadRequest() throws Exception {
+        when(userService.reassignUsers(any(Reassignment.class))).thenThrow(new IllegalArgumentException("Role cannot be null or empty"));
+
+        mockMvc.perform(post("/user/reassignments")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content("{\"uuids\":[\"test-uuid-123\"]}")
+                .header(HttpHeaders.AUTHORIZATION, adminToken))
+                .andExpect(status().isBadRequest());
+    }
+
+    @Test
+    void reassignUsers_NotAdministrator_ReturnsForbidden() throws Exception {
+        mockMvc.perform(post("/user/reassignments")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content("{\"fromDepartment\":\"Engineering\",\"toDepartment\":\"Platform\"}")
+                .header(HttpHeaders.AUTHORIZATION, bearerToken))
+                .andExpect(status().isForbidden());
+        verify(userService, never()).reassignUsers(any(Reassignment.class));
+    }
+
+    @Test
+    void getUser_MissingToken_ReturnsUnauthorized() throws Exception {
+        mockMvc.perform(get("/user/test-uuid-123"))
+                .andExpect(status().isUnauthorized());
+    }
+
+    @Test
+    void getUser_InvalidToken_ReturnsUnauthorized() throws Exception {
+        mockMvc.perform(get("/user/test-uuid-123")
+                .header(HttpHeaders.AUTHORIZATION, bearerToken + "x"))
+                .andExpect(status().isUnauthorized());
+    }
+
     @Test
     void healthCheck_ReturnsHealthStatus() throws Exception {
         mockMvc.perform(get("/user/health"))
@@ -0,0 +1,94 @@
+package com.aws.lambda.user.entities;
+
+import com.amazonaws.services.dynamodbv2.AbstractAmazonDynamoDB;
+import com.amazonaws.services.dynamodbv2.datamodeling.DynamoDBMapper;
+import com.amazonaws.services.dynamodbv2.datamodeling.DynamoDBMapperTableModel;
+import com.amazonaws.services.dynamodbv2.model.AttributeValue;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+import java.time.LocalDateTime;
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for UserArchiveFormat.
+ * Tests round trips from both storage formats, the plain attributes kept for lookups and item size.
+ */
+class UserArchiveFormatTest {
+
+    private DynamoDBMapperTableModel<User> tableModel;
+
+    private Map<String, AttributeValue> legacyItem;
+
+    @BeforeEach
+    void setUp() {
+        tableModel = new DynamoDBMapper(new AbstractAmazonDynamoDB() { }).getTableModel(User.class);
+        legacyItem = new UserIndexKeys("department:Engineering:4", 1).withKeys(tableModel.convert(User.builder()
+                .uuid("0f8fad5b-d9cb-469f-a165-70867728950e")
+                .name("John Doe")
+                .email("john.doe@example.com")
+                .age(30)
+                .department("Engineering")
+                .role("Software Engineer")
+                .phoneNumber("+1234567890")
+                .createdAt(LocalDateTime.of(2024, 1, 15, 10, 30))
+                .updatedAt(LocalDateTime.of(2024, 1, 16, 8, 0, 5, 120000000))
+                .isActive(false)
+                .passwordHash("pbkdf2$310000$c2FsdHNhbHRzYWx0c2FsdA==$aGFzaGhhc2hoYXNoaGFzaGhhc2hoYXNoaGFzaGhhc2g=")
+                .build()));
+    }
+
+    @Test
+    void archive_KeepsLookupAttributesPlain_AndRestoresUserWithoutIndexKeys() {
+        Map<String, AttributeValue> archived = UserArchiveFormat.archive(legacyItem, 1700000000000L);
+
+        assertEquals(legacyItem.get("uuid"), archived.get("uuid"));
+        assertEquals(legacyItem.get("email"), archived.get("email"));
+        assertEquals("1700000000000", archived.get(UserArchiveFormat.ARCHIVED_AT).getN());
+        assertEquals(4, archived.size());
+
+        Map<String, AttributeValue> restored = UserArchiveFormat.restore(archived);
+        Map<String, AttributeValue> expected = new HashMap<>(legacyItem);
+        expected.keySet().removeAll(UserIndexKeys.KEY_ATTRIBUTES.values());
+        assertEquals(expected, restored);
+        assertEquals("John Doe", tableModel.unconvert(restored).getName());
+    }
+
+    @Test
+    void archive_CompactItem_RestoresLegacyItem() {
+        Map<String, AttributeValue> restored = UserArchiveFormat.restore(
+                UserArchiveFormat.archive(UserStorageFormat.compact(legacyItem), 0L));
+
+        assertEquals(tableModel.convert(tableModel.unconvert(legacyItem)), tableModel.convert(tableModel.unconvert(restored)));
+        assertFalse(restored.containsKey(UserStorageFormat.COMPACT_ATTRIBUTE));
+    }
+
+    @Test
+    void archive_IsSmallerThanEitherStorageFormat() {
+        int archivedSize = UserStorageFormat.itemSize(UserArchiveFormat.archive(legacyItem, 0L));
+
+        assertTrue(archivedSize < UserStorageFormat.itemSize(legacyItem));
+        assertTrue(archivedSize < UserStorageFormat.itemSize(UserStorageFormat.compact(legacyItem)));
+    }
+
+    @Test
+    void archive_UnsupportedAttribute_IsRejected() {
+        Map<String, AttributeValue> item = new HashMap<>(legacyItem);
+        item.put("tags", new AttributeValue().withSS("a", "b"));
+
+        assertThrows(IllegalArgumentException.class, () -> UserArchiveFormat.archive(item, 0L));
+    }
+
+    @Test
+    void restore_UnknownVersion_IsRejected() {
+        Map<String, AttributeValue> archived = new HashMap<>(UserArchiveFormat.archive(legacyItem, 0L));
+        archived.put(UserArchiveFormat.DATA_ATTRIBUTE, new AttributeValue().withB(ByteBuffer.wrap(new byte[] {9})));
+
+        assertThrows(IllegalArgumentException.class, () -> UserArchiveFormat.restore(archived));
+    }
+
+}
@@ -0,0 +1,96 @@
+package com.aws.lambda.user.entities;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.exc.InvalidFormatException;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+import java.time.LocalDateTime;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for UserCodec.
+ * Tests the JSON shape, timestamp format and compatibility with reflective Jackson output.
+ */
+class UserCodecTest {
+
+    private ObjectMapper objectMapper;
+
+    private User testUser;
+
+    @BeforeEach
+    void setUp() {
+        objectMapper = Jackson2ObjectMapperBuilder.json().modulesToInstall(UserCodec.module()).build();
+
+        testUser = User.builder()
+                .uuid("test-uuid-123")
+                .name("John \"Johnny\" Doe")
+                .email("john.doe@example.com")
+                .age(30)
+                .department("Engineering")
+                .createdAt(LocalDateTime.of(2024, 1, 15, 10, 30))
+                .updatedAt(LocalDateTime.of(2024, 1, 15, 10, 30, 5, 120000000))
+                .isActive(true)
+                .password("secret-password")
+                .passwordHash("hash")
+                .build();
+    }
+
+    @Test
+    void serialize_MatchesEntityAnnotations() throws Exception {
+        String json = objectMapper.writeValueAsString(testUser);
+
+        assertEquals("{\"uuid\":\"test-uuid-123\",\"name\":\"John \\\"Johnny\\\" Doe\",\"email\":\"john.doe@example.com\","
+                + "\"age\":30,\"department\":\"Engineering\",\"role\":null,\"createdAt\":\"2024-01-15T10:30:00\","
+                + "\"updatedAt\":\"2024-01-15T10:30:05.12\",\"isActive\":true,\"phoneNumber\":null}", json);
+    }
+
+    @Test
+    void serialize_NonNullInclusion_OmitsNulls() throws Exception {
+        objectMapper.setSerializationInclusion(JsonInclude.Include.NON_NULL);
+
+        String json = objectMapper.writeValueAsString(testUser);
+
+        assertFalse(json.contains("role"));
+        assertFalse(json.contains("phoneNumber"));
+    }
+
+    @Test
+    void deserialize_RoundTrip() throws Exception {
+        User result = objectMapper.readValue(objectMapper.writeValueAsString(testUser), User.class);
+
+        assertEquals(testUser.getName(), result.getName());
+        assertEquals(testUser.getCreatedAt(), result.getCreatedAt());
+        assertEquals(testUser.getUpdatedAt(), result.getUpdatedAt());
+        assertEquals(30, result.getAge());
+        assertTrue(result.getIsActive());
+        assertNull(result.getPassword());
+    }
+
+    @Test
+    void deserialize_AcceptsWriteOnlyAndIgnoresHiddenProperties() throws Exception {
+        User result = objectMapper.readValue("{\"name\":\"John Doe\",\"password\":\"secret-password\","
+                + "\"passwordHash\":\"forged\",\"unknown\":{\"nested\":[1,2]},\"age\":\"42\"}", User.class);
+
+        assertEquals("secret-password", result.getPassword());
+        assertNull(result.getPasswordHash());
+        assertEquals(42, result.getAge());
+    }
+
+    @Test
+    void deserialize_TimestampArrays_AreAccepted() throws Exception {
+        User result = objectMapper.readValue("{\"createdAt\":[2024,1,15,10,30,5]}", User.class);
+
+        assertEquals(LocalDateTime.of(2024, 1, 15, 10, 30, 5), result.getCreatedAt());
+    }
+
+    @Test
+    void deserialize_InvalidTimestamp_ThrowsInvalidFormat() {
+        assertThrows(InvalidFormatException.class,
+                () -> objectMapper.readValue("{\"createdAt\":\"yesterday\"}", User.class));
+    }
+
+}
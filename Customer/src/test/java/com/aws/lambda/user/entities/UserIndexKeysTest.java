@@ -0,0 +1,61 @@
+package com.aws.lambda.user.entities;
+
+import com.amazonaws.services.dynamodbv2.model.AttributeValue;
+import org.junit.jupiter.api.Test;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for UserIndexKeys.
+ * Tests shard assignment, the keys written to items and parsing of shard counts.
+ */
+class UserIndexKeysTest {
+
+    private final UserIndexKeys indexKeys = new UserIndexKeys("department:Engineering:8, role:Software Engineer:4", 1);
+
+    @Test
+    void key_HotValue_SpreadsUsersOverItsShards() {
+        Set<String> keys = new HashSet<>();
+        for (int i = 0; i < 1000; i++) {
+            String key = indexKeys.key("department", "Engineering", "uuid-" + i);
+            assertTrue(indexKeys.keys("department", "Engineering").contains(key), key);
+            keys.add(key);
+        }
+
+        assertEquals(8, keys.size());
+        assertEquals(indexKeys.key("department", "Engineering", "uuid-1"), indexKeys.key("department", "Engineering", "uuid-1"));
+        assertEquals("Sales#0", indexKeys.key("department", "Sales", "uuid-1"));
+        assertEquals(4, indexKeys.shards("role", "Software Engineer"));
+    }
+
+    @Test
+    void withKeys_SetsMissingAndStaleKeys_AndKeepsCurrentItems() {
+        Map<String, AttributeValue> item = new HashMap<>();
+        item.put("uuid", new AttributeValue("uuid-1"));
+        item.put("department", new AttributeValue("Sales"));
+        item.put("roleKey", new AttributeValue("Manager#0"));
+
+        Map<String, AttributeValue> keyed = indexKeys.withKeys(item);
+
+        assertNotSame(item, keyed);
+        assertEquals("Sales#0", keyed.get("departmentKey").getS());
+        assertFalse(keyed.containsKey("roleKey"));
+        assertFalse(item.containsKey("departmentKey"));
+        assertSame(keyed, indexKeys.withKeys(keyed));
+    }
+
+    @Test
+    void constructor_MalformedEntry_ThrowsIllegalArgumentException() {
+        assertThrows(IllegalArgumentException.class, () -> new UserIndexKeys("department:Engineering", 1));
+        assertThrows(IllegalArgumentException.class, () -> new UserIndexKeys("email:a@example.com:4", 1));
+        assertThrows(IllegalArgumentException.class, () -> new UserIndexKeys("role:Manager:0", 1));
+        assertThrows(IllegalArgumentException.class, () -> new UserIndexKeys(null, 0));
+        assertEquals(1, new UserIndexKeys("", 1).shards("department", "Engineering"));
+    }
+
+}
@@ -0,0 +1,153 @@
+package com.aws.lambda.user.entities;
+
+import com.amazonaws.services.dynamodbv2.AbstractAmazonDynamoDB;
+import com.amazonaws.services.dynamodbv2.datamodeling.DynamoDBMapper;
+import com.amazonaws.services.dynamodbv2.datamodeling.DynamoDBMapperConfig;
+import com.amazonaws.services.dynamodbv2.datamodeling.DynamoDBMappingException;
+import com.amazonaws.services.dynamodbv2.model.AttributeValue;
+import com.amazonaws.services.dynamodbv2.model.GetItemRequest;
+import com.amazonaws.services.dynamodbv2.model.GetItemResult;
+import com.amazonaws.services.dynamodbv2.model.PutItemRequest;
+import com.amazonaws.services.dynamodbv2.model.PutItemResult;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+import java.time.LocalDateTime;
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for UserStorageFormat.
+ * Tests round trips through the mapper in both formats, reading legacy items and item size.
+ */
+class UserStorageFormatTest {
+
+    private static final DynamoDBMapperConfig PUT = DynamoDBMapperConfig.builder()
+            .withSaveBehavior(DynamoDBMapperConfig.SaveBehavior.PUT)
+            .build();
+
+    private StubDynamoDB amazonDynamoDB;
+
+    private User testUser;
+
+    @BeforeEach
+    void setUp() {
+        amazonDynamoDB = new StubDynamoDB();
+        testUser = User.builder()
+                .uuid("0f8fad5b-d9cb-469f-a165-70867728950e")
+                .name("John Doe")
+                .email("john.doe@example.com")
+                .age(30)
+                .department("Engineering")
+                .role("Software Engineer")
+                .phoneNumber("+1234567890")
+                .createdAt(LocalDateTime.of(2024, 1, 15, 10, 30))
+                .updatedAt(LocalDateTime.of(2024, 1, 16, 8, 0, 5, 120000000))
+                .isActive(false)
+                .passwordHash("hash")
+                .build();
+    }
+
+    @Test
+    void compactMapper_SavesColdAttributesPacked_AndLoadsThemBack() {
+        DynamoDBMapper mapper = mapper(true);
+
+        mapper.save(testUser, PUT);
+
+        Map<String, AttributeValue> stored = amazonDynamoDB.item;
+        assertNotNull(stored.get(UserStorageFormat.COMPACT_ATTRIBUTE).getB());
+        for (String attribute : UserStorageFormat.COLD_ATTRIBUTES) {
+            assertFalse(stored.containsKey(attribute), attribute);
+        }
+        assertEquals("Engineering", stored.get("department").getS());
+        assertEquals("john.doe@example.com", stored.get("email").getS());
+
+        assertSameUser(testUser, mapper.load(User.class, testUser.getUuid()));
+    }
+
+    @Test
+    void compactMapper_ReadsLegacyItems() {
+        mapper(false).save(testUser, PUT);
+        assertFalse(UserStorageFormat.isCompact(amazonDynamoDB.item));
+
+        assertSameUser(testUser, mapper(true).load(User.class, testUser.getUuid()));
+    }
+
+    @Test
+    void legacyMapper_ReadsCompactItems() {
+        mapper(true).save(testUser, PUT);
+
+        assertSameUser(testUser, mapper(false).load(User.class, testUser.getUuid()));
+    }
+
+    @Test
+    void compact_ShrinksTypicalItem() {
+        Map<String, AttributeValue> legacy = new DynamoDBMapper(amazonDynamoDB).getTableModel(User.class).convert(testUser);
+
+        Map<String, AttributeValue> compact = UserStorageFormat.compact(legacy);
+
+        assertTrue(UserStorageFormat.itemSize(compact) < UserStorageFormat.itemSize(legacy) * 3 / 4,
+                UserStorageFormat.itemSize(compact) + " vs " + UserStorageFormat.itemSize(legacy));
+        assertEquals(legacy, UserStorageFormat.expand(compact));
+    }
+
+    @Test
+    void compact_UnrepresentableValue_KeepsLegacyItem() {
+        Map<String, AttributeValue> item = new HashMap<>();
+        item.put("uuid", new AttributeValue("test-uuid-123"));
+        item.put("createdAt", new AttributeValue("yesterday"));
+
+        assertSame(item, UserStorageFormat.compact(item));
+    }
+
+    @Test
+    void expand_UnsupportedVersion_ThrowsMappingException() {
+        Map<String, AttributeValue> item = new HashMap<>();
+        item.put("uuid", new AttributeValue("test-uuid-123"));
+        item.put(UserStorageFormat.COMPACT_ATTRIBUTE, new AttributeValue().withB(ByteBuffer.wrap(new byte[]{9, 0})));
+
+        assertThrows(DynamoDBMappingException.class, () -> UserStorageFormat.expand(item));
+    }
+
+    private DynamoDBMapper mapper(boolean writeCompact) {
+        return new DynamoDBMapper(amazonDynamoDB, DynamoDBMapperConfig.DEFAULT, new UserStorageFormat.Transformer(writeCompact));
+    }
+
+    private static void assertSameUser(User expected, User actual) {
+        assertEquals(expected.getUuid(), actual.getUuid());
+        assertEquals(expected.getName(), actual.getName());
+        assertEquals(expected.getEmail(), actual.getEmail());
+        assertEquals(expected.getAge(), actual.getAge());
+        assertEquals(expected.getDepartment(), actual.getDepartment());
+        assertEquals(expected.getRole(), actual.getRole());
+        assertEquals(expected.getPhoneNumber(), actual.getPhoneNumber());
+        assertEquals(expected.getCreatedAt(), actual.getCreatedAt());
+        assertEquals(expected.getUpdatedAt(), actual.getUpdatedAt());
+        assertEquals(expected.getIsActive(), actual.getIsActive());
+        assertEquals(expected.getPasswordHash(), actual.getPasswordHash());
+    }
+
+    /**
+     * DynamoDB stub holding a single item.
+     */
+    private static class StubDynamoDB extends AbstractAmazonDynamoDB {
+
+        private Map<String, AttributeValue> item;
+
+        @Override
+        public PutItemResult putItem(PutItemRequest request) {
+            item = request.getItem();
+            return new PutItemResult();
+        }
+
+        @Override
+        public GetItemResult getItem(GetItemRequest request) {
+            return new GetItemResult().withItem(item);
+        }
+
+    }
+
+}
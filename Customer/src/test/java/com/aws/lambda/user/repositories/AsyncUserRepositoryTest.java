@@ -0,0 +1,288 @@
+package com.aws.lambda.user.repositories;
+
+import com.amazonaws.AmazonServiceException;
+import com.amazonaws.handlers.AsyncHandler;
+import com.amazonaws.services.dynamodbv2.AbstractAmazonDynamoDBAsync;
+import com.amazonaws.services.dynamodbv2.datamodeling.DynamoDBMapper;
+import com.amazonaws.services.dynamodbv2.model.AttributeValue;
+import com.amazonaws.services.dynamodbv2.model.BatchGetItemRequest;
+import com.amazonaws.services.dynamodbv2.model.BatchGetItemResult;
+import com.amazonaws.services.dynamodbv2.model.DescribeTableResult;
+import com.amazonaws.services.dynamodbv2.model.GetItemRequest;
+import com.amazonaws.services.dynamodbv2.model.GetItemResult;
+import com.amazonaws.services.dynamodbv2.model.GlobalSecondaryIndexDescription;
+import com.amazonaws.services.dynamodbv2.model.KeySchemaElement;
+import com.amazonaws.services.dynamodbv2.model.KeyType;
+import com.amazonaws.services.dynamodbv2.model.KeysAndAttributes;
+import com.amazonaws.services.dynamodbv2.model.Projection;
+import com.amazonaws.services.dynamodbv2.model.ProjectionType;
+import com.amazonaws.services.dynamodbv2.model.QueryRequest;
+import com.amazonaws.services.dynamodbv2.model.QueryResult;
+import com.amazonaws.services.dynamodbv2.model.ScanRequest;
+import com.amazonaws.services.dynamodbv2.model.ScanResult;
+import com.amazonaws.services.dynamodbv2.model.TableDescription;
+import com.aws.lambda.user.entities.User;
+import com.aws.lambda.user.entities.UserIndexKeys;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for AsyncUserRepository implementation.
+ * Tests item conversion, pagination, unprocessed keys, concurrent fan-out and the access path of
+ * department lookups against a stub client.
+ */
+class AsyncUserRepositoryTest {
+
+    private StubDynamoDB amazonDynamoDBAsync;
+
+    private DynamoDBMapper dynamoDBMapper;
+
+    private AsyncUserRepositoryImpl asyncUserRepository;
+
+    private User testUser;
+
+    @BeforeEach
+    void setUp() {
+        amazonDynamoDBAsync = new StubDynamoDB();
+        dynamoDBMapper = new DynamoDBMapper(amazonDynamoDBAsync);
+
+        asyncUserRepository = new AsyncUserRepositoryImpl();
+        ReflectionTestUtils.setField(asyncUserRepository, "amazonDynamoDBAsync", amazonDynamoDBAsync);
+        ReflectionTestUtils.setField(asyncUserRepository, "dynamoDBMapper", dynamoDBMapper);
+        ReflectionTestUtils.setField(asyncUserRepository, "userArchive", new UserArchive());
+        ReflectionTestUtils.setField(asyncUserRepository, "userQueryPlanner", userQueryPlanner());
+        ReflectionTestUtils.setField(asyncUserRepository, "readCapacityGovernor", readCapacityGovernor());
+        asyncUserRepository.init();
+
+        testUser = User.builder()
+                .uuid("test-uuid-123")
+                .name("John Doe")
+                .email("john.doe@example.com")
+                .age(30)
+                .department("Engineering")
+                .createdAt(LocalDateTime.of(2024, 1, 15, 10, 30))
+                .isActive(true)
+                .build();
+    }
+
+    @Test
+    void findById_ExistingUser_ConvertsItem() {
+        amazonDynamoDBAsync.item = item(testUser);
+
+        User result = asyncUserRepository.findById("test-uuid-123").join();
+
+        assertEquals("John Doe", result.getName());
+        assertEquals(LocalDateTime.of(2024, 1, 15, 10, 30), result.getCreatedAt());
+        assertEquals("test-uuid-123", amazonDynamoDBAsync.lastGet.getKey().get("uuid").getS());
+    }
+
+    @Test
+    void findById_MissingUser_ReturnsNull() {
+        assertNull(asyncUserRepository.findById("missing").join());
+    }
+
+    @Test
+    void findById_ServiceError_CompletesExceptionally() {
+        amazonDynamoDBAsync.failure = new AmazonServiceException("Throttled");
+
+        CompletionException exception = assertThrows(CompletionException.class,
+                () -> asyncUserRepository.findById("test-uuid-123").join());
+
+        assertTrue(exception.getCause() instanceof AmazonServiceException);
+    }
+
+    @Test
+    void findByIds_UnprocessedKeys_AreRetried() {
+        amazonDynamoDBAsync.unprocessedBatches = 1;
+
+        List<User> result = asyncUserRepository.findByIds(Arrays.asList("a", "b", "a")).join();
+
+        assertEquals(2, result.size());
+        assertEquals(2, amazonDynamoDBAsync.batchGets.get());
+    }
+
+    @Test
+    void findByDepartments_NoIndex_SharesOnePacedScanAcrossPages() {
+        amazonDynamoDBAsync.pages = 2;
+
+        Map<String, List<User>> result = asyncUserRepository.findByDepartments(Arrays.asList("Sales", "Engineering", "Sales")).join();
+
+        assertEquals(Arrays.asList("Sales", "Engineering"), new ArrayList<>(result.keySet()));
+        assertEquals(2, result.get("Sales").size());
+        assertEquals("Engineering", result.get("Engineering").get(0).getDepartment());
+        assertEquals(2, amazonDynamoDBAsync.scans.get());
+        assertEquals("#department IN (:department0, :department1)", amazonDynamoDBAsync.lastScan.getFilterExpression());
+        assertEquals(10, amazonDynamoDBAsync.lastScan.getLimit().intValue());
+    }
+
+    @Test
+    void findByDepartments_IndexActive_QueriesEveryShardWithoutScanning() {
+        amazonDynamoDBAsync.indexed = true;
+        amazonDynamoDBAsync.pages = 2;
+
+        Map<String, List<User>> result = asyncUserRepository.findByDepartments(Arrays.asList("Sales", "Engineering")).join();
+
+        assertEquals(2, result.get("Sales").size());
+        // Engineering has two shards of two pages each
+        assertEquals(4, result.get("Engineering").size());
+        assertEquals(6, amazonDynamoDBAsync.queries.get());
+        assertEquals(0, amazonDynamoDBAsync.scans.get());
+    }
+
+    private UserQueryPlanner userQueryPlanner() {
+        UserQueryPlanner userQueryPlanner = new UserQueryPlanner();
+        ReflectionTestUtils.setField(userQueryPlanner, "amazonDynamoDB", amazonDynamoDBAsync);
+        ReflectionTestUtils.setField(userQueryPlanner, "dynamoDBPriming", new DynamoDBPriming());
+        ReflectionTestUtils.setField(userQueryPlanner, "userIndexKeys", new UserIndexKeys("department:Engineering:2", 1));
+        ReflectionTestUtils.setField(userQueryPlanner, "migrationProgress", finishedMigrations());
+        ReflectionTestUtils.setField(userQueryPlanner, "statsTtlSeconds", 600L);
+        ReflectionTestUtils.setField(userQueryPlanner, "distinctValues", "department:20");
+        ReflectionTestUtils.setField(userQueryPlanner, "defaultDistinctValues", 10L);
+        userQueryPlanner.init();
+        return userQueryPlanner;
+    }
+
+    private static MigrationProgress finishedMigrations() {
+        // Every backfill has finished, so shard indexes are used as soon as they are active
+        return new MigrationProgress() {
+            @Override
+            public boolean isFinished(String migrationId) {
+                return true;
+            }
+        };
+    }
+
+    private ReadCapacityGovernor readCapacityGovernor() {
+        ReadCapacityGovernor readCapacityGovernor = new ReadCapacityGovernor();
+        ReflectionTestUtils.setField(readCapacityGovernor, "enabled", true);
+        ReflectionTestUtils.setField(readCapacityGovernor, "readCapacityUnits", 5.0);
+        ReflectionTestUtils.setField(readCapacityGovernor, "scanShare", 0.5);
+        ReflectionTestUtils.setField(readCapacityGovernor, "pointReadHeadroom", 0.2);
+        ReflectionTestUtils.setField(readCapacityGovernor, "minPageSize", 10);
+        ReflectionTestUtils.setField(readCapacityGovernor, "maxPageSize", 1000);
+        return readCapacityGovernor;
+    }
+
+    private Map<String, AttributeValue> item(User user) {
+        return dynamoDBMapper.getTableModel(User.class).convert(user);
+    }
+
+    /**
+     * DynamoDB stub completing async calls on the calling thread.
+     */
+    private class StubDynamoDB extends AbstractAmazonDynamoDBAsync {
+
+        private Map<String, AttributeValue> item;
+        private RuntimeException failure;
+        private GetItemRequest lastGet;
+        private int unprocessedBatches;
+        private int pages = 1;
+        private boolean indexed;
+        private ScanRequest lastScan;
+        private final AtomicInteger batchGets = new AtomicInteger();
+        private final AtomicInteger scans = new AtomicInteger();
+        private final AtomicInteger queries = new AtomicInteger();
+
+        @Override
+        public DescribeTableResult describeTable(String tableName) {
+            TableDescription table = new TableDescription().withItemCount(100L).withTableSizeBytes(30000L);
+            if (indexed) {
+                table.withGlobalSecondaryIndexes(new GlobalSecondaryIndexDescription()
+                        .withIndexName("department-shard-index")
+                        .withIndexStatus("ACTIVE")
+                        .withKeySchema(new KeySchemaElement("departmentKey", KeyType.HASH))
+                        .withProjection(new Projection().withProjectionType(ProjectionType.ALL)));
+            }
+            return new DescribeTableResult().withTable(table);
+        }
+
+        @Override
+        public Future<QueryResult> queryAsync(QueryRequest request, AsyncHandler<QueryRequest, QueryResult> handler) {
+            queries.incrementAndGet();
+            String shard = request.getExpressionAttributeValues().get(":departmentKey").getS();
+            int page = request.getExclusiveStartKey() == null ? 1 : Integer.parseInt(request.getExclusiveStartKey().get("uuid").getS());
+            QueryResult result = new QueryResult().withItems(Collections.singletonList(
+                    item(User.builder().uuid(shard + "-" + page).department(shard.substring(0, shard.indexOf('#'))).build())));
+            if (page < pages) {
+                result.setLastEvaluatedKey(Collections.singletonMap("uuid", new AttributeValue().withS(Integer.toString(page + 1))));
+            }
+            handler.onSuccess(request, result);
+            return CompletableFuture.completedFuture(result);
+        }
+
+        @Override
+        public Future<GetItemResult> getItemAsync(GetItemRequest request,
+                                                  AsyncHandler<GetItemRequest, GetItemResult> handler) {
+            lastGet = request;
+            if (failure != null) {
+                handler.onError(failure);
+                return failedFuture(failure);
+            }
+            GetItemResult result = new GetItemResult().withItem(item);
+            handler.onSuccess(request, result);
+            return CompletableFuture.completedFuture(result);
+        }
+
+        @Override
+        public Future<BatchGetItemResult> batchGetItemAsync(BatchGetItemRequest request,
+                                                            AsyncHandler<BatchGetItemRequest, BatchGetItemResult> handler) {
+            batchGets.incrementAndGet();
+            KeysAndAttributes keys = request.getRequestItems().get("User");
+            List<Map<String, AttributeValue>> items = new ArrayList<>();
+            Map<String, KeysAndAttributes> unprocessed = new HashMap<>();
+            if (unprocessedBatches-- > 0) {
+                // Serve the first key only and leave the rest unprocessed
+                items.add(item(User.builder().uuid(keys.getKeys().get(0).get("uuid").getS()).build()));
+                unprocessed.put("User", new KeysAndAttributes().withKeys(keys.getKeys().subList(1, keys.getKeys().size())));
+            } else {
+                keys.getKeys().forEach(key -> items.add(item(User.builder().uuid(key.get("uuid").getS()).build())));
+            }
+            BatchGetItemResult result = new BatchGetItemResult()
+                    .withResponses(Collections.singletonMap("User", items))
+                    .withUnprocessedKeys(unprocessed);
+            handler.onSuccess(request, result);
+            return CompletableFuture.completedFuture(result);
+        }
+
+        @Override
+        public Future<ScanResult> scanAsync(ScanRequest request, AsyncHandler<ScanRequest, ScanResult> handler) {
+            scans.incrementAndGet();
+            lastScan = request;
+            int page = request.getExclusiveStartKey() == null ? 1 : Integer.parseInt(request.getExclusiveStartKey().get("uuid").getS());
+            List<Map<String, AttributeValue>> items = new ArrayList<>();
+            for (AttributeValue department : request.getExpressionAttributeValues().values()) {
+                items.add(item(User.builder().uuid(department.getS() + "-" + page).department(department.getS()).build()));
+            }
+            items.add(item(User.builder().uuid("other-" + page).department("Marketing").build()));
+            ScanResult result = new ScanResult().withItems(items);
+            if (page < pages) {
+                result.setLastEvaluatedKey(Collections.singletonMap("uuid", new AttributeValue().withS(Integer.toString(page + 1))));
+            }
+            handler.onSuccess(request, result);
+            return CompletableFuture.completedFuture(result);
+        }
+
+        private <T> Future<T> failedFuture(RuntimeException e) {
+            CompletableFuture<T> future = new CompletableFuture<>();
+            future.completeExceptionally(e);
+            return future;
+        }
+
+    }
+
+}
@@ -0,0 +1,111 @@
+package com.aws.lambda.user.repositories;
+
+import com.amazonaws.AmazonServiceException;
+import com.amazonaws.AmazonWebServiceRequest;
+import com.amazonaws.DefaultRequest;
+import com.amazonaws.Request;
+import com.amazonaws.Response;
+import com.amazonaws.services.dynamodbv2.model.AttributeValue;
+import com.amazonaws.services.dynamodbv2.model.ConsumedCapacity;
+import com.amazonaws.services.dynamodbv2.model.GetItemRequest;
+import com.amazonaws.services.dynamodbv2.model.GetItemResult;
+import com.amazonaws.services.dynamodbv2.model.QueryRequest;
+import com.amazonaws.services.dynamodbv2.model.QueryResult;
+import com.amazonaws.services.dynamodbv2.model.ReturnConsumedCapacity;
+import com.amazonaws.services.dynamodbv2.model.ScanRequest;
+import com.aws.lambda.user.utils.RequestTrace;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.Collections;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for DynamoDBCallTracer.
+ * Tests that only calls made under a request trace are recorded, with their table, items and capacity.
+ */
+class DynamoDBCallTracerTest {
+
+    private final DynamoDBCallTracer tracer = new DynamoDBCallTracer();
+
+    @AfterEach
+    void tearDown() {
+        RequestTrace.bind(null);
+    }
+
+    @Test
+    void afterResponse_Traced_RecordsCall() {
+        RequestTrace trace = new RequestTrace();
+        RequestTrace.bind(trace);
+        QueryRequest query = new QueryRequest().withTableName("User").withIndexName("department-index");
+
+        Request<QueryRequest> request = execute(query);
+        tracer.afterResponse(request, new Response<>(new QueryResult()
+                .withScannedCount(3)
+                .withConsumedCapacity(new ConsumedCapacity().withCapacityUnits(1.5)), null));
+
+        assertEquals("TOTAL", query.getReturnConsumedCapacity());
+        RequestTrace.Call call = trace.getCalls().get(0);
+        assertEquals("Query", call.getOperation());
+        assertEquals("User.department-index", call.getTarget());
+        assertEquals(3, call.getItemsRead());
+        assertEquals(1.5, call.getCapacityUnits());
+        assertNull(call.getError());
+    }
+
+    @Test
+    void afterError_Traced_RecordsErrorCode() {
+        RequestTrace trace = new RequestTrace();
+        RequestTrace.bind(trace);
+        AmazonServiceException exception = new AmazonServiceException("Throughput exceeded");
+        exception.setErrorCode("ProvisionedThroughputExceededException");
+
+        tracer.afterError(execute(new GetItemRequest().withTableName("User")), null, exception);
+
+        assertEquals("GetItem User error=ProvisionedThroughputExceededException", trace.getCalls().get(0).describe());
+    }
+
+    @Test
+    void beforeRequest_CallAbandoned_ReportedAsUnfinished() {
+        RequestTrace trace = new RequestTrace();
+        RequestTrace.bind(trace);
+
+        execute(new ScanRequest().withTableName("User"));
+
+        assertEquals("Scan User error=Unfinished", trace.getCalls().get(0).describe());
+    }
+
+    @Test
+    void afterResponse_Untraced_LeavesRequestUntouched() {
+        GetItemRequest getItem = new GetItemRequest().withTableName("User");
+
+        Request<GetItemRequest> request = execute(getItem);
+        RequestTrace trace = new RequestTrace();
+        RequestTrace.bind(trace);
+        tracer.afterResponse(request, new Response<>(new GetItemResult()
+                .withItem(Collections.singletonMap("uuid", new AttributeValue("uuid-1"))), null));
+
+        assertNull(getItem.getReturnConsumedCapacity());
+        assertTrue(trace.getCalls().isEmpty());
+    }
+
+    @Test
+    void beforeExecution_CapacityAlreadyRequested_KeepsIt() {
+        RequestTrace.bind(new RequestTrace());
+        GetItemRequest getItem = new GetItemRequest().withTableName("User")
+                .withReturnConsumedCapacity(ReturnConsumedCapacity.INDEXES);
+
+        tracer.beforeExecution(getItem);
+
+        assertEquals("INDEXES", getItem.getReturnConsumedCapacity());
+    }
+
+    private <T extends AmazonWebServiceRequest> Request<T> execute(T original) {
+        tracer.beforeExecution(original);
+        Request<T> request = new DefaultRequest<>(original, "AmazonDynamoDBv2");
+        tracer.beforeRequest(request);
+        return request;
+    }
+
+}
@@ -0,0 +1,120 @@
+package com.aws.lambda.user.repositories;
+
+import com.amazonaws.AmazonServiceException;
+import com.amazonaws.handlers.AsyncHandler;
+import com.amazonaws.services.dynamodbv2.AbstractAmazonDynamoDBAsync;
+import com.amazonaws.services.dynamodbv2.model.DescribeTableRequest;
+import com.amazonaws.services.dynamodbv2.model.DescribeTableResult;
+import com.aws.lambda.user.utils.RequestTrace;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for DynamoDBConnectionPool.
+ * Tests that warming calls both clients without failing startup, and where lease times are recorded.
+ */
+class DynamoDBConnectionPoolTest {
+
+    private DynamoDBConnectionPool connectionPool;
+
+    private StubDynamoDB stub;
+
+    @BeforeEach
+    void setUp() {
+        stub = new StubDynamoDB();
+        connectionPool = new DynamoDBConnectionPool();
+        ReflectionTestUtils.setField(connectionPool, "amazonDynamoDB", stub);
+        ReflectionTestUtils.setField(connectionPool, "amazonDynamoDBAsync", stub);
+        ReflectionTestUtils.setField(connectionPool, "prewarmConnections", 3);
+        ReflectionTestUtils.setField(connectionPool, "prewarmTimeoutMs", 1000L);
+        ReflectionTestUtils.setField(connectionPool, "acquireMetricsEnabled", true);
+        ReflectionTestUtils.setField(connectionPool, "reportInterval", 1000L);
+        connectionPool.init();
+    }
+
+    @AfterEach
+    void tearDown() {
+        connectionPool.shutdown();
+        RequestTrace.bind(null);
+    }
+
+    @Test
+    void startWarming_CallsEachClientOncePerConnection() {
+        connectionPool.startWarming();
+        connectionPool.awaitWarming();
+
+        assertEquals(3, stub.syncCalls.get());
+        assertEquals(3, stub.asyncCalls.get());
+
+        connectionPool.startWarming();
+        connectionPool.awaitWarming();
+
+        assertEquals(3, stub.syncCalls.get());
+    }
+
+    @Test
+    void awaitWarming_CallsFail_DoesNotThrow() {
+        stub.fail = true;
+
+        connectionPool.startWarming();
+
+        assertDoesNotThrow(connectionPool::awaitWarming);
+    }
+
+    @Test
+    void recordAcquire_RecordsInBoundTraceAndStats() {
+        RequestTrace trace = new RequestTrace();
+        RequestTrace.bind(trace);
+
+        connectionPool.recordAcquire(2_000_000L);
+        connectionPool.recordAcquire(4_000_000L);
+
+        assertEquals(2, trace.getConnectionLeases());
+        assertEquals(6_000_000L, trace.getConnectionWaitNanos());
+        assertTrue(trace.serverTiming(0).contains("dynamodb-connect;dur=6.0;desc=\"leases=2\""));
+        DynamoDBConnectionPool.AcquireStats stats = connectionPool.getStats();
+        assertEquals(2, stats.getAcquisitions());
+        assertEquals(3_000_000L, stats.getMeanNanos());
+    }
+
+    /**
+     * DynamoDB stub that counts DescribeTable calls on the blocking and asynchronous paths.
+     */
+    private static class StubDynamoDB extends AbstractAmazonDynamoDBAsync {
+
+        private final AtomicInteger syncCalls = new AtomicInteger();
+        private final AtomicInteger asyncCalls = new AtomicInteger();
+        private volatile boolean fail;
+
+        @Override
+        public DescribeTableResult describeTable(DescribeTableRequest request) {
+            syncCalls.incrementAndGet();
+            if (fail) {
+                throw new AmazonServiceException("Unavailable");
+            }
+            return new DescribeTableResult();
+        }
+
+        @Override
+        public Future<DescribeTableResult> describeTableAsync(DescribeTableRequest request,
+                AsyncHandler<DescribeTableRequest, DescribeTableResult> asyncHandler) {
+            asyncCalls.incrementAndGet();
+            if (fail) {
+                asyncHandler.onError(new AmazonServiceException("Unavailable"));
+            } else {
+                asyncHandler.onSuccess(request, new DescribeTableResult());
+            }
+            return CompletableFuture.completedFuture(null);
+        }
+
+    }
+
+}
@@ -0,0 +1,57 @@
+package com.aws.lambda.user.repositories;
+
+import com.amazonaws.services.dynamodbv2.model.GetItemRequest;
+import com.amazonaws.services.dynamodbv2.model.ScanRequest;
+import com.aws.lambda.user.utils.Deadline;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for DynamoDBDeadlineHandler.
+ * Tests that calls are bounded by the deadline of the current request and refused once it has passed.
+ */
+class DynamoDBDeadlineHandlerTest {
+
+    private final DynamoDBDeadlineHandler handler = new DynamoDBDeadlineHandler();
+
+    @AfterEach
+    void tearDown() {
+        Deadline.bind(null);
+    }
+
+    @Test
+    void beforeExecution_Deadline_SetsRemainingTimeAsTimeout() {
+        Deadline.bind(Deadline.after(5000));
+        ScanRequest scan = new ScanRequest().withTableName("User");
+        GetItemRequest shorter = new GetItemRequest().withTableName("User").withSdkClientExecutionTimeout(100);
+
+        handler.beforeExecution(scan);
+        handler.beforeExecution(shorter);
+
+        assertTrue(scan.getSdkClientExecutionTimeout() > 4000 && scan.getSdkClientExecutionTimeout() <= 5000);
+        assertEquals(100, shorter.getSdkClientExecutionTimeout());
+    }
+
+    @Test
+    void beforeExecution_DeadlinePassed_ThrowsGatewayTimeout() {
+        Deadline.bind(Deadline.after(-1));
+
+        DeadlineExceededException exception = assertThrows(DeadlineExceededException.class,
+                () -> handler.beforeExecution(new GetItemRequest().withTableName("User")));
+
+        assertEquals(504, exception.getStatusCode());
+        assertTrue(exception.getMessage().contains("GetItem"));
+    }
+
+    @Test
+    void beforeExecution_NoDeadline_LeavesRequestUntouched() {
+        ScanRequest scan = new ScanRequest().withTableName("User");
+
+        handler.beforeExecution(scan);
+
+        assertNull(scan.getSdkClientExecutionTimeout());
+    }
+
+}
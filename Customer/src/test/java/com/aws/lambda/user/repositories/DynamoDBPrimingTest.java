@@ -0,0 +1,107 @@
+package com.aws.lambda.user.repositories;
+
+import com.amazonaws.AmazonClientException;
+import com.amazonaws.services.dynamodbv2.AbstractAmazonDynamoDBAsync;
+import com.amazonaws.services.dynamodbv2.AmazonDynamoDB;
+import com.amazonaws.services.dynamodbv2.AmazonDynamoDBAsync;
+import com.amazonaws.services.dynamodbv2.model.AttributeValue;
+import com.amazonaws.services.dynamodbv2.model.GetItemRequest;
+import com.amazonaws.services.dynamodbv2.model.GetItemResult;
+import com.amazonaws.services.dynamodbv2.model.PutItemRequest;
+import com.amazonaws.services.dynamodbv2.model.UpdateItemRequest;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for DynamoDBPriming.
+ * Tests that only calls made while priming, on the priming thread, reach the no-op table.
+ */
+class DynamoDBPrimingTest {
+
+    private static final Map<String, AttributeValue> KEY = Collections.singletonMap("uuid", new AttributeValue("priming-1"));
+
+    private DynamoDBPriming dynamoDBPriming;
+
+    private StubDynamoDB stub;
+
+    private AmazonDynamoDBAsync client;
+
+    @BeforeEach
+    void setUp() {
+        dynamoDBPriming = new DynamoDBPriming();
+        stub = new StubDynamoDB();
+        client = (AmazonDynamoDBAsync) dynamoDBPriming.postProcessAfterInitialization(stub, "amazonDynamoDBAsync");
+    }
+
+    @Test
+    void postProcessAfterInitialization_OtherBean_ReturnedUnchanged() {
+        Object bean = new Object();
+
+        assertSame(bean, dynamoDBPriming.postProcessAfterInitialization(bean, "other"));
+        assertTrue(dynamoDBPriming.postProcessAfterInitialization(stub, "amazonDynamoDB") instanceof AmazonDynamoDB);
+    }
+
+    @Test
+    void run_ItemsWrittenWhilePriming_ReadBackWithoutReachingDynamoDB() throws Exception {
+        Map<String, AttributeValue> item = new HashMap<>(KEY);
+        item.put("name", new AttributeValue("Priming"));
+        AtomicReference<Future<GetItemResult>> asyncRead = new AtomicReference<>();
+
+        dynamoDBPriming.run(() -> {
+            client.putItem(new PutItemRequest().withTableName("User").withItem(item));
+            assertEquals("Priming", client.getItem(new GetItemRequest().withTableName("User").withKey(KEY)).getItem().get("name").getS());
+            assertNull(client.getItem(new GetItemRequest().withTableName("Session").withKey(KEY)).getItem());
+            asyncRead.set(client.getItemAsync(new GetItemRequest().withTableName("User").withKey(KEY)));
+        });
+
+        assertTrue(asyncRead.get().isDone());
+        assertEquals("Priming", asyncRead.get().get().getItem().get("name").getS());
+        assertEquals(0, stub.calls.get());
+        assertEquals("Stub", client.getItem(new GetItemRequest().withTableName("User").withKey(KEY)).getItem().get("name").getS());
+        assertEquals(1, stub.calls.get());
+    }
+
+    @Test
+    void run_UnsupportedOperation_ThrowsAmazonClientException() {
+        dynamoDBPriming.run(() -> assertThrows(AmazonClientException.class, () -> client.updateItem(new UpdateItemRequest()
+                .withTableName("User")
+                .withKey(KEY)
+                .withUpdateExpression("SET #role = :role"))));
+
+        assertEquals(0, stub.calls.get());
+    }
+
+    @Test
+    void run_CallsFromOtherThreads_ReachDynamoDB() {
+        dynamoDBPriming.run(() -> CompletableFuture.runAsync(
+                () -> client.getItem(new GetItemRequest().withTableName("User").withKey(KEY))).join());
+
+        assertEquals(1, stub.calls.get());
+    }
+
+    /**
+     * DynamoDB stub that counts reads and answers each with the same item.
+     */
+    private static class StubDynamoDB extends AbstractAmazonDynamoDBAsync {
+
+        private final AtomicInteger calls = new AtomicInteger();
+
+        @Override
+        public GetItemResult getItem(GetItemRequest request) {
+            calls.incrementAndGet();
+            return new GetItemResult().withItem(Collections.singletonMap("name", new AttributeValue("Stub")));
+        }
+
+    }
+
+}
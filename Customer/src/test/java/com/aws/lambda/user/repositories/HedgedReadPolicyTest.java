@@ -0,0 +1,124 @@
+package com.aws.lambda.user.repositories;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for HedgedReadPolicy.
+ * Tests hedge triggering, hedge wins and the hedge rate cap.
+ */
+class HedgedReadPolicyTest {
+
+    private HedgedReadPolicy policy;
+
+    private final DynamoDBPriming dynamoDBPriming = new DynamoDBPriming();
+
+    @BeforeEach
+    void setUp() {
+        policy = new HedgedReadPolicy();
+        ReflectionTestUtils.setField(policy, "enabled", true);
+        ReflectionTestUtils.setField(policy, "dynamoDBPriming", dynamoDBPriming);
+        ReflectionTestUtils.setField(policy, "percentile", 95.0);
+        ReflectionTestUtils.setField(policy, "minDelayMs", 5L);
+        ReflectionTestUtils.setField(policy, "maxDelayMs", 20L);
+        ReflectionTestUtils.setField(policy, "maxHedgeRatio", 1.0);
+        ReflectionTestUtils.setField(policy, "threads", 4);
+        ReflectionTestUtils.setField(policy, "reportInterval", 0L);
+        policy.init();
+    }
+
+    @AfterEach
+    void tearDown() {
+        policy.shutdown();
+    }
+
+    @Test
+    void execute_Disabled_CallsReadDirectly() {
+        HedgedReadPolicy disabled = new HedgedReadPolicy();
+        ReflectionTestUtils.setField(disabled, "percentile", 95.0);
+        ReflectionTestUtils.setField(disabled, "dynamoDBPriming", new DynamoDBPriming());
+        disabled.init();
+
+        assertEquals("value", disabled.execute(() -> "value"));
+        assertEquals(0, disabled.getStats().getReads());
+    }
+
+    @Test
+    void execute_WhilePriming_ReadsOnCallingThread() {
+        Thread caller = Thread.currentThread();
+
+        dynamoDBPriming.run(() -> assertSame(caller, policy.execute(Thread::currentThread)));
+
+        assertEquals(0, policy.getStats().getReads());
+    }
+
+    @Test
+    void execute_FastPrimary_DoesNotHedge() {
+        assertEquals("value", policy.execute(() -> "value"));
+
+        assertEquals(1, policy.getStats().getReads());
+        assertEquals(0, policy.getStats().getHedges());
+    }
+
+    @Test
+    void execute_SlowPrimary_HedgeWins() {
+        AtomicInteger attempts = new AtomicInteger();
+
+        String result = policy.execute(() -> {
+            if (attempts.incrementAndGet() == 1) {
+                sleep(500);
+                return "primary";
+            }
+            return "hedge";
+        });
+
+        assertEquals("hedge", result);
+        assertEquals(1, policy.getStats().getHedges());
+        assertEquals(1, policy.getStats().getHedgeWins());
+    }
+
+    @Test
+    void execute_HedgeRatioZero_NeverHedges() {
+        ReflectionTestUtils.setField(policy, "maxHedgeRatio", 0.0);
+        policy.execute(() -> "warm");
+        AtomicInteger attempts = new AtomicInteger();
+
+        policy.execute(() -> {
+            attempts.incrementAndGet();
+            sleep(50);
+            return "primary";
+        });
+        String result = policy.execute(() -> {
+            attempts.incrementAndGet();
+            sleep(50);
+            return "primary";
+        });
+
+        assertEquals("primary", result);
+        assertEquals(0, policy.getStats().getHedges());
+        assertEquals(2, policy.getStats().getHedgesSuppressed());
+        assertEquals(2, attempts.get());
+    }
+
+    @Test
+    void execute_ReadFails_PropagatesException() {
+        assertThrows(IllegalStateException.class, () -> policy.execute(() -> {
+            throw new IllegalStateException("boom");
+        }));
+    }
+
+    private static void sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+}
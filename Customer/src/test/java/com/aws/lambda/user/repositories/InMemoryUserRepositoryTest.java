@@ -0,0 +1,196 @@
+package com.aws.lambda.user.repositories;
+
+import com.aws.lambda.user.entities.User;
+import com.aws.lambda.user.models.UserQuery;
+import com.aws.lambda.user.models.UserQueryPage;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for InMemoryUserRepository and InMemoryAsyncUserRepository.
+ * Tests index maintenance, copies, queries with cursors and snapshots under concurrent writes.
+ */
+class InMemoryUserRepositoryTest {
+
+    private InMemoryUserRepository userRepository;
+
+    private InMemoryAsyncUserRepository asyncUserRepository;
+
+    @BeforeEach
+    void setUp() {
+        userRepository = new InMemoryUserRepository();
+        asyncUserRepository = new InMemoryAsyncUserRepository();
+        ReflectionTestUtils.setField(asyncUserRepository, "inMemoryUserRepository", userRepository);
+    }
+
+    @Test
+    void save_NewUser_GeneratesUuidAndIndexesIt() {
+        User saved = userRepository.save(user(null, "john.doe@example.com", "Engineering", "Software Engineer", true, 30));
+
+        assertNotNull(saved.getUuid());
+        assertEquals("John Doe", userRepository.findById(saved.getUuid()).getName());
+        assertEquals(saved.getUuid(), userRepository.findByEmail("john.doe@example.com").getUuid());
+        assertEquals(1, userRepository.findByDepartment("Engineering").size());
+        assertEquals(1, userRepository.findByRole("Software Engineer").size());
+        assertTrue(userRepository.existsById(saved.getUuid()));
+        assertEquals(1, userRepository.count());
+    }
+
+    @Test
+    void save_ExistingUser_MovesIndexEntries() {
+        userRepository.save(user("uuid-1", "john.doe@example.com", "Engineering", "Software Engineer", true, 30));
+
+        userRepository.save(user("uuid-1", "john@example.com", "Sales", "Software Engineer", true, 30));
+
+        assertTrue(userRepository.findByDepartment("Engineering").isEmpty());
+        assertEquals("uuid-1", userRepository.findByDepartment("Sales").get(0).getUuid());
+        assertNull(userRepository.findByEmail("john.doe@example.com"));
+        assertEquals("uuid-1", userRepository.findByEmail("john@example.com").getUuid());
+        assertEquals(1, userRepository.findByRole("Software Engineer").size());
+        assertEquals(1, userRepository.count());
+    }
+
+    @Test
+    void delete_RemovesUserFromAllIndexes() {
+        userRepository.save(user("uuid-1", "john.doe@example.com", "Engineering", "Software Engineer", true, 30));
+
+        userRepository.delete("uuid-1");
+        userRepository.delete("uuid-1");
+
+        assertNull(userRepository.findById("uuid-1"));
+        assertNull(userRepository.findByEmail("john.doe@example.com"));
+        assertTrue(userRepository.findByDepartment("Engineering").isEmpty());
+        assertTrue(userRepository.query(UserQuery.builder().isActive(true).limit(10).build()).getUsers().isEmpty());
+        assertEquals(0, userRepository.count());
+    }
+
+    @Test
+    void findById_ReturnsCopies() {
+        User user = user("uuid-1", "john.doe@example.com", "Engineering", "Software Engineer", true, 30);
+        userRepository.save(user);
+        user.setDepartment("Sales");
+
+        User found = userRepository.findById("uuid-1");
+        found.setDepartment("Marketing");
+
+        assertEquals("Engineering", userRepository.findById("uuid-1").getDepartment());
+        assertEquals(1, userRepository.findByDepartment("Engineering").size());
+    }
+
+    @Test
+    void query_CombinedPredicates_PagesWithCursor() {
+        for (int i = 0; i < 10; i++) {
+            userRepository.save(user("uuid-" + i, "user" + i + "@example.com", i < 8 ? "Engineering" : "Sales",
+                    i % 2 == 0 ? "Software Engineer" : "Manager", i != 4, 20 + i));
+        }
+        UserQuery query = UserQuery.builder()
+                .department("Engineering")
+                .role("Software Engineer")
+                .isActive(true)
+                .minAge(21)
+                .fields(Arrays.asList("name", "age"))
+                .limit(2)
+                .build();
+
+        UserQueryPage first = userRepository.query(query);
+        query.setCursor(first.getNextCursor());
+        UserQueryPage second = userRepository.query(query);
+
+        assertEquals(Arrays.asList("uuid-2", "uuid-6"), uuids(first.getUsers()));
+        assertNull(first.getUsers().get(0).getEmail());
+        assertEquals(Integer.valueOf(22), first.getUsers().get(0).getAge());
+        assertEquals("memory index=role; examined=4", first.getPlan());
+        assertEquals(0, second.getUsers().size());
+        assertNull(second.getNextCursor());
+    }
+
+    @Test
+    void query_InvalidQuery_ThrowsIllegalArgumentException() {
+        assertThrows(IllegalArgumentException.class,
+                () -> userRepository.query(UserQuery.builder().minAge(40).maxAge(25).limit(10).build()));
+        assertThrows(IllegalArgumentException.class,
+                () -> userRepository.query(UserQuery.builder().fields(Arrays.asList("passwordHash")).limit(10).build()));
+        assertThrows(IllegalArgumentException.class,
+                () -> userRepository.query(UserQuery.builder().cursor("not a cursor").limit(10).build()));
+    }
+
+    @Test
+    void asyncRepository_AnswersFromSameStore() {
+        userRepository.save(user("uuid-1", "john.doe@example.com", "Engineering", "Software Engineer", true, 30));
+        userRepository.save(user("uuid-2", "jane.doe@example.com", "Sales", "Manager", true, 30));
+
+        assertEquals("uuid-1", asyncUserRepository.findById("uuid-1").join().getUuid());
+        assertEquals(1, asyncUserRepository.findByIds(Arrays.asList("uuid-2", "missing")).join().size());
+        Map<String, List<User>> byDepartment = asyncUserRepository.findByDepartments(Arrays.asList("Sales", "HR")).join();
+        assertEquals(Arrays.asList("Sales", "HR"), new ArrayList<>(byDepartment.keySet()));
+        assertEquals(1, byDepartment.get("Sales").size());
+        assertTrue(byDepartment.get("HR").isEmpty());
+    }
+
+    @Test
+    void findAll_ConcurrentCreatesAndDeletes_SeesConsistentSnapshots() throws Exception {
+        // Each writer replaces its user with a new one, so a consistent snapshot always holds
+        // between one and two users per writer and agrees with the count taken under it
+        int writers = 4;
+        ExecutorService executor = Executors.newFixedThreadPool(writers);
+        CountDownLatch stop = new CountDownLatch(1);
+        List<Future<?>> futures = new ArrayList<>();
+        for (int w = 0; w < writers; w++) {
+            String prefix = "writer-" + w + "-";
+            userRepository.save(user(prefix + 0, null, "Engineering", null, true, 30));
+            futures.add(executor.submit(() -> {
+                for (int i = 1; stop.getCount() > 0; i++) {
+                    userRepository.save(user(prefix + i, null, "Engineering", null, true, 30));
+                    userRepository.delete(prefix + (i - 1));
+                }
+            }));
+        }
+        try {
+            for (int i = 0; i < 200; i++) {
+                int size = userRepository.findAll().size();
+                assertTrue(size >= writers && size <= 2 * writers, "snapshot of " + size + " users");
+            }
+        } finally {
+            stop.countDown();
+            for (Future<?> future : futures) {
+                future.get(5, TimeUnit.SECONDS);
+            }
+            executor.shutdown();
+        }
+        assertEquals(writers, userRepository.findAll().size());
+        assertEquals(writers, userRepository.count());
+        assertEquals(writers, userRepository.findByDepartment("Engineering").size());
+    }
+
+    private static User user(String uuid, String email, String department, String role, boolean active, int age) {
+        return User.builder()
+                .uuid(uuid)
+                .name("John Doe")
+                .email(email)
+                .age(age)
+                .department(department)
+                .role(role)
+                .isActive(active)
+                .build();
+    }
+
+    private static List<String> uuids(List<User> users) {
+        List<String> uuids = new ArrayList<>();
+        users.forEach(user -> uuids.add(user.getUuid()));
+        return uuids;
+    }
+
+}
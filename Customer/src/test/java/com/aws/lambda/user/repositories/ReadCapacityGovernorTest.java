@@ -0,0 +1,113 @@
+package com.aws.lambda.user.repositories;
+
+import com.amazonaws.DefaultRequest;
+import com.amazonaws.Response;
+import com.amazonaws.handlers.RequestHandler2;
+import com.amazonaws.services.dynamodbv2.model.ConsumedCapacity;
+import com.amazonaws.services.dynamodbv2.model.GetItemRequest;
+import com.amazonaws.services.dynamodbv2.model.GetItemResult;
+import com.amazonaws.services.dynamodbv2.model.ReturnConsumedCapacity;
+import com.aws.lambda.user.utils.Deadline;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for ReadCapacityGovernor.
+ * Tests page sizing from consumed capacity, the headroom kept for point reads and waiting for capacity.
+ */
+class ReadCapacityGovernorTest {
+
+    private ReadCapacityGovernor readCapacityGovernor;
+
+    @BeforeEach
+    void setUp() {
+        readCapacityGovernor = new ReadCapacityGovernor();
+        ReflectionTestUtils.setField(readCapacityGovernor, "enabled", true);
+        ReflectionTestUtils.setField(readCapacityGovernor, "readCapacityUnits", 100.0);
+        ReflectionTestUtils.setField(readCapacityGovernor, "scanShare", 0.5);
+        ReflectionTestUtils.setField(readCapacityGovernor, "pointReadHeadroom", 0.2);
+        ReflectionTestUtils.setField(readCapacityGovernor, "concurrency", 1);
+        ReflectionTestUtils.setField(readCapacityGovernor, "minPageSize", 10);
+        ReflectionTestUtils.setField(readCapacityGovernor, "maxPageSize", 1000);
+    }
+
+    @Test
+    void nextLimit_FullBucket_SizesPageToAvailableCapacity() {
+        ReadCapacityGovernor.ScanPacer pacer = readCapacityGovernor.pacer();
+
+        // 50 units at the assumed half a unit per item
+        assertEquals(100, pacer.nextLimit(Integer.MAX_VALUE, null));
+        assertEquals(25, pacer.nextLimit(25, null));
+    }
+
+    @Test
+    void nextLimit_AfterPage_SizesFromMeasuredUnitsPerItem() {
+        ReadCapacityGovernor.ScanPacer pacer = readCapacityGovernor.pacer();
+        pacer.nextLimit(Integer.MAX_VALUE, null);
+
+        pacer.record(new ConsumedCapacity().withCapacityUnits(5.0), 100);
+
+        // 45 units left at a twentieth of a unit per item
+        int limit = pacer.nextLimit(Integer.MAX_VALUE, null);
+        assertTrue(limit >= 900 && limit <= 1000, "limit " + limit);
+    }
+
+    @Test
+    void scanRate_SeveralContainers_SplitsShareBetweenThem() {
+        ReflectionTestUtils.setField(readCapacityGovernor, "concurrency", 4);
+
+        assertEquals(12.5, readCapacityGovernor.scanRate(), 0.01);
+    }
+
+    @Test
+    void scanRate_PointReadsBusy_KeepsHeadroomFree() {
+        assertEquals(50.0, readCapacityGovernor.scanRate(), 0.01);
+
+        readCapacityGovernor.recordPointRead(70);
+
+        // 80 units outside the headroom, less 70 used by point reads
+        assertEquals(10.0, readCapacityGovernor.scanRate(), 0.5);
+    }
+
+    @Test
+    void scanRate_PointReadsSaturating_LeavesScansATrickle() {
+        readCapacityGovernor.recordPointRead(500);
+
+        assertEquals(5.0, readCapacityGovernor.scanRate(), 0.01);
+    }
+
+    @Test
+    void nextLimit_InDebtPastDeadline_ReturnsZero() {
+        ReadCapacityGovernor.ScanPacer pacer = readCapacityGovernor.pacer();
+        pacer.nextLimit(Integer.MAX_VALUE, null);
+        pacer.record(new ConsumedCapacity().withCapacityUnits(500.0), 100);
+
+        assertEquals(0, pacer.nextLimit(Integer.MAX_VALUE, Deadline.after(100)));
+    }
+
+    @Test
+    void nextLimit_Disabled_ReturnsWanted() {
+        ReflectionTestUtils.setField(readCapacityGovernor, "enabled", false);
+        ReadCapacityGovernor.ScanPacer pacer = readCapacityGovernor.pacer();
+        pacer.record(new ConsumedCapacity().withCapacityUnits(500.0), 100);
+
+        assertEquals(Integer.MAX_VALUE, pacer.nextLimit(Integer.MAX_VALUE, Deadline.after(100)));
+    }
+
+    @Test
+    void pointReadMeter_GetItem_RequestsAndRecordsConsumedCapacity() {
+        RequestHandler2 meter = readCapacityGovernor.pointReadMeter();
+        GetItemRequest getItem = new GetItemRequest().withTableName("User");
+
+        meter.beforeExecution(getItem);
+        meter.afterResponse(new DefaultRequest<>(getItem, "AmazonDynamoDBv2"),
+                new Response<>(new GetItemResult().withConsumedCapacity(new ConsumedCapacity().withCapacityUnits(70.0)), null));
+
+        assertEquals(ReturnConsumedCapacity.TOTAL.toString(), getItem.getReturnConsumedCapacity());
+        assertEquals(10.0, readCapacityGovernor.scanRate(), 0.5);
+    }
+
+}
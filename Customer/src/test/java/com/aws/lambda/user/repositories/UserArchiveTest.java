@@ -0,0 +1,228 @@
+package com.aws.lambda.user.repositories;
+
+import com.amazonaws.services.dynamodbv2.AbstractAmazonDynamoDB;
+import com.amazonaws.services.dynamodbv2.datamodeling.DynamoDBMapper;
+import com.amazonaws.services.dynamodbv2.model.AttributeValue;
+import com.amazonaws.services.dynamodbv2.model.ConditionalCheckFailedException;
+import com.amazonaws.services.dynamodbv2.model.DeleteItemRequest;
+import com.amazonaws.services.dynamodbv2.model.DeleteItemResult;
+import com.amazonaws.services.dynamodbv2.model.GetItemRequest;
+import com.amazonaws.services.dynamodbv2.model.GetItemResult;
+import com.amazonaws.services.dynamodbv2.model.PutItemRequest;
+import com.amazonaws.services.dynamodbv2.model.PutItemResult;
+import com.amazonaws.services.dynamodbv2.model.QueryRequest;
+import com.amazonaws.services.dynamodbv2.model.QueryResult;
+import com.amazonaws.services.dynamodbv2.model.ScanRequest;
+import com.amazonaws.services.dynamodbv2.model.ScanResult;
+import com.aws.lambda.user.entities.User;
+import com.aws.lambda.user.entities.UserArchiveFormat;
+import com.aws.lambda.user.entities.UserIndexKeys;
+import com.aws.lambda.user.entities.UserStorageFormat;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for UserArchive.
+ * Tests moves in both directions, conflicts with concurrent writes and lookups against a stub client.
+ */
+class UserArchiveTest {
+
+    private StubDynamoDB amazonDynamoDB;
+
+    private UserArchive userArchive;
+
+    private Map<String, AttributeValue> item;
+
+    @BeforeEach
+    void setUp() {
+        amazonDynamoDB = new StubDynamoDB();
+        DynamoDBMapper dynamoDBMapper = new DynamoDBMapper(amazonDynamoDB);
+        userArchive = new UserArchive();
+        ReflectionTestUtils.setField(userArchive, "amazonDynamoDB", amazonDynamoDB);
+        ReflectionTestUtils.setField(userArchive, "dynamoDBMapper", dynamoDBMapper);
+        ReflectionTestUtils.setField(userArchive, "userIndexKeys", new UserIndexKeys("department:Engineering:4", 1));
+        ReflectionTestUtils.setField(userArchive, "enabled", true);
+        ReflectionTestUtils.setField(userArchive, "compactStorage", true);
+        userArchive.init();
+
+        item = new UserIndexKeys("department:Engineering:4", 1).withKeys(dynamoDBMapper.getTableModel(User.class).convert(User.builder()
+                .uuid("test-uuid-123")
+                .name("John Doe")
+                .email("john.doe@example.com")
+                .department("Engineering")
+                .createdAt(LocalDateTime.of(2024, 1, 15, 10, 30))
+                .isActive(false)
+                .build()));
+        amazonDynamoDB.table("User").put("test-uuid-123", item);
+    }
+
+    @Test
+    void archive_UnchangedUser_MovesItToArchive() {
+        Map<String, AttributeValue> archived = userArchive.archive(item);
+
+        assertNotNull(archived);
+        assertTrue(amazonDynamoDB.table("User").isEmpty());
+        assertEquals(archived, amazonDynamoDB.table(UserArchive.TABLE_NAME).get("test-uuid-123"));
+    }
+
+    @Test
+    void archive_UserChangedSinceScan_StaysInUserTable() {
+        Map<String, AttributeValue> saved = new HashMap<>(item);
+        saved.put("name", new AttributeValue("Jane Doe"));
+        amazonDynamoDB.table("User").put("test-uuid-123", saved);
+
+        assertNull(userArchive.archive(item));
+
+        assertEquals(saved, amazonDynamoDB.table("User").get("test-uuid-123"));
+        assertTrue(amazonDynamoDB.table(UserArchive.TABLE_NAME).isEmpty());
+    }
+
+    @Test
+    void restore_ArchivedUser_MovesItBackInConfiguredFormat() {
+        userArchive.archive(item);
+
+        User user = userArchive.restore("test-uuid-123");
+
+        assertEquals("John Doe", user.getName());
+        assertFalse(user.getIsActive());
+        assertTrue(amazonDynamoDB.table(UserArchive.TABLE_NAME).isEmpty());
+        Map<String, AttributeValue> restored = amazonDynamoDB.table("User").get("test-uuid-123");
+        assertTrue(UserStorageFormat.isCompact(restored));
+        assertEquals(item.get("departmentKey"), restored.get("departmentKey"));
+        assertNotNull(restored.get(UserArchive.RESTORED_AT));
+    }
+
+    @Test
+    void restore_RestoredConcurrently_ReturnsCurrentUser() {
+        Map<String, AttributeValue> saved = new HashMap<>(item);
+        saved.put("name", new AttributeValue("Jane Doe"));
+        amazonDynamoDB.table(UserArchive.TABLE_NAME).put("test-uuid-123", UserArchiveFormat.archive(item, 0L));
+        amazonDynamoDB.table("User").put("test-uuid-123", saved);
+
+        User user = userArchive.restore("test-uuid-123");
+
+        assertEquals("Jane Doe", user.getName());
+        assertEquals(saved, amazonDynamoDB.table("User").get("test-uuid-123"));
+        assertTrue(amazonDynamoDB.table(UserArchive.TABLE_NAME).isEmpty());
+    }
+
+    @Test
+    void restore_NotArchived_ReturnsNull() {
+        assertNull(userArchive.restore("missing"));
+    }
+
+    @Test
+    void findByEmail_ArchivedUser_IsFoundWithoutRestoring() {
+        userArchive.archive(item);
+
+        User user = userArchive.findByEmail("john.doe@example.com");
+
+        assertEquals("test-uuid-123", user.getUuid());
+        assertEquals("John Doe", user.getName());
+        assertNull(userArchive.findByEmail("jane.doe@example.com"));
+        assertEquals(1, amazonDynamoDB.table(UserArchive.TABLE_NAME).size());
+    }
+
+    @Test
+    void scanKeys_ReturnsUuidAndEmailOfArchivedUsers() {
+        userArchive.archive(item);
+        List<User> users = new ArrayList<>();
+
+        userArchive.scanKeys(new ReadCapacityGovernor().pacer(), users::add);
+
+        assertEquals(1, users.size());
+        assertEquals("test-uuid-123", users.get(0).getUuid());
+        assertEquals("john.doe@example.com", users.get(0).getEmail());
+    }
+
+    @Test
+    void disabled_FindsNothingAndReadsNothing() {
+        userArchive.archive(item);
+        ReflectionTestUtils.setField(userArchive, "enabled", false);
+        int calls = amazonDynamoDB.calls;
+        List<User> users = new ArrayList<>();
+
+        assertNull(userArchive.restore("test-uuid-123"));
+        assertNull(userArchive.findByEmail("john.doe@example.com"));
+        userArchive.scanKeys(new ReadCapacityGovernor().pacer(), users::add);
+
+        assertTrue(users.isEmpty());
+        assertEquals(calls, amazonDynamoDB.calls);
+    }
+
+    /**
+     * DynamoDB stub holding tables in memory, evaluating the condition expressions UserArchive writes with.
+     */
+    private static class StubDynamoDB extends AbstractAmazonDynamoDB {
+
+        private final Map<String, Map<String, Map<String, AttributeValue>>> tables = new HashMap<>();
+        private int calls;
+
+        private Map<String, Map<String, AttributeValue>> table(String name) {
+            return tables.computeIfAbsent(name, key -> new HashMap<>());
+        }
+
+        @Override
+        public GetItemResult getItem(GetItemRequest request) {
+            calls++;
+            return new GetItemResult().withItem(table(request.getTableName()).get(request.getKey().get("uuid").getS()));
+        }
+
+        @Override
+        public PutItemResult putItem(PutItemRequest request) {
+            calls++;
+            String uuid = request.getItem().get("uuid").getS();
+            if (request.getConditionExpression() != null && table(request.getTableName()).containsKey(uuid)) {
+                throw new ConditionalCheckFailedException("The conditional request failed");
+            }
+            table(request.getTableName()).put(uuid, request.getItem());
+            return new PutItemResult();
+        }
+
+        @Override
+        public DeleteItemResult deleteItem(DeleteItemRequest request) {
+            calls++;
+            String uuid = request.getKey().get("uuid").getS();
+            Map<String, AttributeValue> current = table(request.getTableName()).get(uuid);
+            if (request.getConditionExpression() != null) {
+                Map<String, AttributeValue> expected = new HashMap<>();
+                request.getExpressionAttributeNames().forEach((name, attribute) ->
+                        expected.put(attribute, request.getExpressionAttributeValues().get(":" + name.substring(1))));
+                if (current == null || !current.entrySet().containsAll(expected.entrySet())) {
+                    throw new ConditionalCheckFailedException("The conditional request failed");
+                }
+            }
+            table(request.getTableName()).remove(uuid);
+            return new DeleteItemResult();
+        }
+
+        @Override
+        public QueryResult query(QueryRequest request) {
+            calls++;
+            String email = request.getExpressionAttributeValues().get(":email").getS();
+            return new QueryResult().withItems(table(request.getTableName()).values().stream()
+                    .filter(item -> email.equals(item.get("email").getS()))
+                    .map(item -> Collections.singletonMap("uuid", item.get("uuid")))
+                    .collect(Collectors.toList()));
+        }
+
+        @Override
+        public ScanResult scan(ScanRequest request) {
+            calls++;
+            return new ScanResult().withItems(new ArrayList<>(table(request.getTableName()).values()));
+        }
+
+    }
+
+}
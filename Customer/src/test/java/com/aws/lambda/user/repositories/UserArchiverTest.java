@@ -0,0 +1,244 @@
+package com.aws.lambda.user.repositories;
+
+import com.amazonaws.services.dynamodbv2.AbstractAmazonDynamoDB;
+import com.amazonaws.services.dynamodbv2.datamodeling.DynamoDBMapper;
+import com.amazonaws.services.dynamodbv2.model.AttributeValue;
+import com.amazonaws.services.dynamodbv2.model.ConditionalCheckFailedException;
+import com.amazonaws.services.dynamodbv2.model.DeleteItemRequest;
+import com.amazonaws.services.dynamodbv2.model.DeleteItemResult;
+import com.amazonaws.services.dynamodbv2.model.GetItemRequest;
+import com.amazonaws.services.dynamodbv2.model.GetItemResult;
+import com.amazonaws.services.dynamodbv2.model.PutItemRequest;
+import com.amazonaws.services.dynamodbv2.model.PutItemResult;
+import com.amazonaws.services.dynamodbv2.model.ScanRequest;
+import com.amazonaws.services.dynamodbv2.model.ScanResult;
+import com.amazonaws.services.dynamodbv2.model.UpdateItemRequest;
+import com.amazonaws.services.dynamodbv2.model.UpdateItemResult;
+import com.aws.lambda.user.entities.User;
+import com.aws.lambda.user.entities.UserIndexKeys;
+import com.aws.lambda.user.entities.UserStorageFormat;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for UserArchiver.
+ * Tests which users are archived, conflicts, segment paging and the recorded progress
+ * that lets a sweep started again on the same day skip finished segments, against a stub client.
+ */
+class UserArchiverTest {
+
+    private static final LocalDateTime CUTOFF = LocalDateTime.of(2024, 6, 1, 0, 0);
+
+    private StubDynamoDB amazonDynamoDB;
+
+    private DynamoDBMapper dynamoDBMapper;
+
+    private MigrationProgress migrationProgress;
+
+    private UserArchiver userArchiver;
+
+    @BeforeEach
+    void setUp() {
+        amazonDynamoDB = new StubDynamoDB();
+        dynamoDBMapper = new DynamoDBMapper(amazonDynamoDB);
+        UserArchive userArchive = new UserArchive();
+        ReflectionTestUtils.setField(userArchive, "amazonDynamoDB", amazonDynamoDB);
+        ReflectionTestUtils.setField(userArchive, "dynamoDBMapper", dynamoDBMapper);
+        ReflectionTestUtils.setField(userArchive, "userIndexKeys", new UserIndexKeys(null, 1));
+        ReflectionTestUtils.setField(userArchive, "enabled", true);
+        userArchive.init();
+
+        migrationProgress = new MigrationProgress();
+        ReflectionTestUtils.setField(migrationProgress, "amazonDynamoDB", amazonDynamoDB);
+
+        userArchiver = new UserArchiver();
+        ReflectionTestUtils.setField(userArchiver, "amazonDynamoDB", amazonDynamoDB);
+        ReflectionTestUtils.setField(userArchiver, "dynamoDBMapper", dynamoDBMapper);
+        ReflectionTestUtils.setField(userArchiver, "userArchive", userArchive);
+        ReflectionTestUtils.setField(userArchiver, "readCapacityGovernor", new ReadCapacityGovernor());
+        ReflectionTestUtils.setField(userArchiver, "migrationProgress", migrationProgress);
+        ReflectionTestUtils.setField(userArchiver, "inactiveDays", 90L);
+        ReflectionTestUtils.setField(userArchiver, "segments", 4);
+        ReflectionTestUtils.setField(userArchiver, "pageSize", 2);
+        userArchiver.init();
+    }
+
+    @Test
+    void archive_InactiveBeforeCutoff_MovesUserAndCountsBytes() {
+        Map<String, AttributeValue> item = item(false, LocalDateTime.of(2024, 1, 15, 10, 30));
+
+        assertTrue(userArchiver.archive(UserStorageFormat.compact(item), CUTOFF));
+
+        assertEquals(UserArchive.TABLE_NAME, amazonDynamoDB.puts.get(0).getTableName());
+        assertEquals("User", amazonDynamoDB.deletes.get(0).getTableName());
+        UserArchiver.SweepStats stats = userArchiver.getStats();
+        assertEquals(1, stats.getArchived());
+        assertTrue(stats.getBytesAfter() < stats.getBytesBefore());
+    }
+
+    @Test
+    void archive_ActiveOrRecentlyUpdatedUser_IsKept() {
+        assertFalse(userArchiver.archive(item(true, LocalDateTime.of(2024, 1, 15, 10, 30)), CUTOFF));
+        assertFalse(userArchiver.archive(item(false, CUTOFF.plusDays(1)), CUTOFF));
+
+        assertTrue(amazonDynamoDB.puts.isEmpty());
+        assertEquals(2, userArchiver.getStats().getScanned());
+    }
+
+    @Test
+    void archive_RecentlyRestoredUser_IsKeptUntilInactiveAgain() {
+        Map<String, AttributeValue> item = new HashMap<>(item(false, LocalDateTime.of(2024, 1, 15, 10, 30)));
+        item.put(UserArchive.RESTORED_AT, new AttributeValue().withN(Long.toString(System.currentTimeMillis())));
+
+        assertFalse(userArchiver.archive(item, CUTOFF));
+
+        item.put(UserArchive.RESTORED_AT, new AttributeValue().withN(
+                Long.toString(System.currentTimeMillis() - TimeUnit.DAYS.toMillis(91))));
+        assertTrue(userArchiver.archive(item, CUTOFF));
+    }
+
+    @Test
+    void archive_UserChangedSinceScan_CountsConflict() {
+        amazonDynamoDB.conflict = true;
+
+        assertFalse(userArchiver.archive(item(false, LocalDateTime.of(2024, 1, 15, 10, 30)), CUTOFF));
+
+        assertEquals(1, userArchiver.getStats().getConflicts());
+        assertEquals(2, amazonDynamoDB.deletes.size());
+        assertEquals(UserArchive.TABLE_NAME, amazonDynamoDB.deletes.get(1).getTableName());
+    }
+
+    @Test
+    void sweepSegment_FollowsPagesWithinSegment() throws Exception {
+        for (int i = 0; i < 5; i++) {
+            amazonDynamoDB.items.add(item(i % 2 == 0, LocalDateTime.of(2024, 1, 15, 10, 30)));
+        }
+
+        userArchiver.sweepSegment(1, CUTOFF);
+
+        assertEquals(3, amazonDynamoDB.scans.size());
+        assertEquals(Integer.valueOf(1), amazonDynamoDB.scans.get(0).getSegment());
+        assertEquals(Integer.valueOf(4), amazonDynamoDB.scans.get(0).getTotalSegments());
+        assertEquals(5, userArchiver.getStats().getScanned());
+        assertEquals(2, userArchiver.getStats().getArchived());
+    }
+
+    @Test
+    void run_RecordsFinishedSegmentsAndSkipsThemOnRestart() {
+        amazonDynamoDB.items.add(item(false, LocalDateTime.of(2024, 1, 15, 10, 30)));
+
+        userArchiver.run();
+
+        assertEquals(4, amazonDynamoDB.scans.size());
+        assertTrue(amazonDynamoDB.progress.keySet().iterator().next().startsWith("user-archive:"));
+
+        userArchiver.run();
+
+        assertEquals(4, amazonDynamoDB.scans.size());
+    }
+
+    @Test
+    void sweepId_ChangesWithTheDayOfTheCutoff() {
+        assertEquals(UserArchiver.sweepId(CUTOFF), UserArchiver.sweepId(CUTOFF.plusHours(23)));
+        assertNotEquals(UserArchiver.sweepId(CUTOFF), UserArchiver.sweepId(CUTOFF.plusDays(1)));
+    }
+
+    private Map<String, AttributeValue> item(boolean active, LocalDateTime updatedAt) {
+        return new UserIndexKeys(null, 1).withKeys(dynamoDBMapper.getTableModel(User.class).convert(User.builder()
+                .uuid("test-uuid-123")
+                .name("John Doe")
+                .email("john.doe@example.com")
+                .department("Engineering")
+                .role("Software Engineer")
+                .phoneNumber("+1234567890")
+                .passwordHash("pbkdf2$310000$c2FsdHNhbHRzYWx0c2FsdA==$aGFzaGhhc2hoYXNoaGFzaGhhc2hoYXNoaGFzaGhhc2g=")
+                .createdAt(LocalDateTime.of(2023, 3, 1, 9, 0))
+                .updatedAt(updatedAt)
+                .isActive(active)
+                .build()));
+    }
+
+    /**
+     * DynamoDB stub serving scans in pages, recording archive writes and keeping sweep progress.
+     */
+    private static class StubDynamoDB extends AbstractAmazonDynamoDB {
+
+        private final List<Map<String, AttributeValue>> items = new ArrayList<>();
+        private final List<ScanRequest> scans = new ArrayList<>();
+        private final List<PutItemRequest> puts = new ArrayList<>();
+        private final List<DeleteItemRequest> deletes = new ArrayList<>();
+        private final Map<String, Map<String, AttributeValue>> progress = new HashMap<>();
+        private boolean conflict;
+
+        @Override
+        public ScanResult scan(ScanRequest request) {
+            scans.add(request);
+            int start = request.getExclusiveStartKey() == null ? 0
+                    : Integer.parseInt(request.getExclusiveStartKey().get("page").getN());
+            int end = Math.min(items.size(), start + request.getLimit());
+            ScanResult result = new ScanResult().withItems(items.subList(start, end));
+            if (end < items.size()) {
+                result.setLastEvaluatedKey(Collections.singletonMap("page", new AttributeValue().withN(String.valueOf(end))));
+            }
+            return result;
+        }
+
+        @Override
+        public GetItemResult getItem(GetItemRequest request) {
+            assertEquals(MigrationProgress.TABLE_NAME, request.getTableName());
+            return new GetItemResult().withItem(progress.get(request.getKey().get("migrationId").getS()));
+        }
+
+        @Override
+        public PutItemResult putItem(PutItemRequest request) {
+            if (MigrationProgress.TABLE_NAME.equals(request.getTableName())) {
+                progress.put(request.getItem().get("migrationId").getS(), request.getItem());
+            } else {
+                puts.add(request);
+            }
+            return new PutItemResult();
+        }
+
+        @Override
+        public UpdateItemResult updateItem(UpdateItemRequest request) {
+            assertEquals(MigrationProgress.TABLE_NAME, request.getTableName());
+            String id = request.getKey().get("migrationId").getS();
+            AttributeValue total = request.getExpressionAttributeValues().get(":total");
+            Map<String, AttributeValue> item = progress.computeIfAbsent(id, key -> new HashMap<>(request.getKey()));
+            if (item.containsKey("totalSegments") && !item.get("totalSegments").equals(total)) {
+                throw new ConditionalCheckFailedException("The conditional request failed");
+            }
+            Set<String> finished = new TreeSet<>(request.getExpressionAttributeValues().get(":segment").getNS());
+            if (item.containsKey("finishedSegments")) {
+                finished.addAll(item.get("finishedSegments").getNS());
+            }
+            item.put("totalSegments", total);
+            item.put("finishedSegments", new AttributeValue().withNS(finished));
+            return new UpdateItemResult();
+        }
+
+        @Override
+        public DeleteItemResult deleteItem(DeleteItemRequest request) {
+            deletes.add(request);
+            if (conflict && request.getConditionExpression() != null) {
+                throw new ConditionalCheckFailedException("The conditional request failed");
+            }
+            return new DeleteItemResult();
+        }
+
+    }
+
+}
@@ -0,0 +1,176 @@
+package com.aws.lambda.user.repositories;
+
+import com.amazonaws.AmazonServiceException;
+import com.amazonaws.services.dynamodbv2.AbstractAmazonDynamoDB;
+import com.amazonaws.services.dynamodbv2.datamodeling.DynamoDBMapper;
+import com.amazonaws.services.dynamodbv2.model.AttributeValue;
+import com.amazonaws.services.dynamodbv2.model.ScanRequest;
+import com.amazonaws.services.dynamodbv2.model.ScanResult;
+import com.aws.lambda.user.entities.User;
+import com.aws.lambda.user.utils.BloomFilter;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for UserLookupIndex.
+ * Tests the negative cache, Bloom filter builds from a scan and filter maintenance on writes.
+ */
+class UserLookupIndexTest {
+
+    private StubDynamoDB amazonDynamoDB;
+
+    private UserLookupIndex userLookupIndex;
+
+    private ReadCapacityGovernor readCapacityGovernor;
+
+    @BeforeEach
+    void setUp() {
+        amazonDynamoDB = new StubDynamoDB();
+        readCapacityGovernor = new ReadCapacityGovernor();
+        ReflectionTestUtils.setField(readCapacityGovernor, "readCapacityUnits", 5.0);
+        ReflectionTestUtils.setField(readCapacityGovernor, "scanShare", 0.5);
+        ReflectionTestUtils.setField(readCapacityGovernor, "pointReadHeadroom", 0.2);
+        ReflectionTestUtils.setField(readCapacityGovernor, "minPageSize", 10);
+        ReflectionTestUtils.setField(readCapacityGovernor, "maxPageSize", 1000);
+        userLookupIndex = new UserLookupIndex();
+        ReflectionTestUtils.setField(userLookupIndex, "dynamoDBMapper", new DynamoDBMapper(amazonDynamoDB));
+        ReflectionTestUtils.setField(userLookupIndex, "userArchive", new UserArchive());
+        ReflectionTestUtils.setField(userLookupIndex, "readCapacityGovernor", readCapacityGovernor);
+        ReflectionTestUtils.setField(userLookupIndex, "negativeCacheSize", 16);
+        ReflectionTestUtils.setField(userLookupIndex, "negativeCacheTtlSeconds", 60L);
+        ReflectionTestUtils.setField(userLookupIndex, "expectedInsertions", 1000L);
+        ReflectionTestUtils.setField(userLookupIndex, "falsePositiveRate", 0.01);
+        ReflectionTestUtils.setField(userLookupIndex, "rebuildIntervalSeconds", 300L);
+        userLookupIndex.init();
+    }
+
+    @Test
+    void negativeCache_RemembersMissesUntilSaved() {
+        assertFalse(userLookupIndex.isMissingId("test-uuid-123"));
+
+        userLookupIndex.recordMissingId("test-uuid-123");
+        userLookupIndex.recordMissingEmail("john.doe@example.com");
+
+        assertTrue(userLookupIndex.isMissingId("test-uuid-123"));
+        assertTrue(userLookupIndex.isMissingEmail("john.doe@example.com"));
+
+        userLookupIndex.recordSaved(User.builder().uuid("test-uuid-123").email("john.doe@example.com").build());
+
+        assertFalse(userLookupIndex.isMissingId("test-uuid-123"));
+        assertFalse(userLookupIndex.isMissingEmail("john.doe@example.com"));
+    }
+
+    @Test
+    void bloomFilter_BuiltFromScan_RejectsUnknownKeys() {
+        ReflectionTestUtils.setField(userLookupIndex, "bloomEnabled", true);
+        for (int i = 0; i < 250; i++) {
+            amazonDynamoDB.items.add(item("uuid-" + i, "user" + i + "@example.com"));
+        }
+
+        userLookupIndex.build();
+
+        assertEquals(3, amazonDynamoDB.scans);
+        for (int i = 0; i < 250; i++) {
+            assertFalse(userLookupIndex.isMissingId("uuid-" + i));
+            assertFalse(userLookupIndex.isMissingEmail("user" + i + "@example.com"));
+        }
+        assertTrue(userLookupIndex.isMissingId("never-created"));
+        assertTrue(userLookupIndex.getStats().isFilterTrusted());
+        assertEquals(250, userLookupIndex.getStats().getFilterEntries());
+
+        // Writes made by this container are added to the filter
+        userLookupIndex.recordSaved(User.builder().uuid("never-created").email("new@example.com").build());
+        assertFalse(userLookupIndex.isMissingId("never-created"));
+        assertFalse(userLookupIndex.isMissingEmail("new@example.com"));
+    }
+
+    @Test
+    void bloomFilter_Build_IsPacedByReadCapacityGovernor() {
+        ReflectionTestUtils.setField(userLookupIndex, "bloomEnabled", true);
+        ReflectionTestUtils.setField(readCapacityGovernor, "enabled", true);
+        for (int i = 0; i < 20; i++) {
+            amazonDynamoDB.items.add(item("uuid-" + i, "user" + i + "@example.com"));
+        }
+
+        userLookupIndex.build();
+
+        assertEquals(2, amazonDynamoDB.scans);
+        assertEquals(10, amazonDynamoDB.lastRequest.getLimit().intValue());
+        assertEquals("TOTAL", amazonDynamoDB.lastRequest.getReturnConsumedCapacity());
+        assertEquals(20, userLookupIndex.getStats().getFilterEntries());
+    }
+
+    @Test
+    void bloomFilter_ScanFails_LookupsFallThrough() {
+        ReflectionTestUtils.setField(userLookupIndex, "bloomEnabled", true);
+        amazonDynamoDB.failure = new AmazonServiceException("Throttled");
+
+        userLookupIndex.build();
+
+        assertFalse(userLookupIndex.getStats().isFilterTrusted());
+        assertFalse(userLookupIndex.isMissingId("never-created"));
+    }
+
+    @Test
+    void bloomFilter_FalsePositiveRateStaysNearTarget() {
+        BloomFilter filter = new BloomFilter(10000, 0.01);
+        for (int i = 0; i < 10000; i++) {
+            filter.put("member-" + i);
+        }
+
+        int falsePositives = 0;
+        for (int i = 0; i < 10000; i++) {
+            assertTrue(filter.mightContain("member-" + i));
+            if (filter.mightContain("other-" + i)) {
+                falsePositives++;
+            }
+        }
+
+        assertTrue(falsePositives < 200, "false positives: " + falsePositives);
+        assertEquals(0.01, filter.expectedFalsePositiveRate(), 0.002);
+    }
+
+    private Map<String, AttributeValue> item(String uuid, String email) {
+        return new DynamoDBMapper(amazonDynamoDB).getTableModel(User.class)
+                .convert(User.builder().uuid(uuid).email(email).build());
+    }
+
+    /**
+     * DynamoDB stub serving scans in pages of up to 100 items.
+     */
+    private static class StubDynamoDB extends AbstractAmazonDynamoDB {
+
+        private final List<Map<String, AttributeValue>> items = new ArrayList<>();
+        private RuntimeException failure;
+        private int scans;
+        private ScanRequest lastRequest;
+
+        @Override
+        public ScanResult scan(ScanRequest request) {
+            scans++;
+            lastRequest = request;
+            if (failure != null) {
+                throw failure;
+            }
+            assertEquals("#uuid, #email", request.getProjectionExpression());
+            int start = request.getExclusiveStartKey() == null ? 0
+                    : Integer.parseInt(request.getExclusiveStartKey().get("uuid").getS().substring("uuid-".length())) + 1;
+            int end = Math.min(items.size(), start + Math.min(100, request.getLimit()));
+            ScanResult result = new ScanResult().withItems(items.subList(start, end));
+            if (end < items.size()) {
+                result.setLastEvaluatedKey(Collections.singletonMap("uuid", items.get(end - 1).get("uuid")));
+            }
+            return result;
+        }
+
+    }
+
+}
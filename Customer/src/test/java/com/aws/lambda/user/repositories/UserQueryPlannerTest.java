@@ -0,0 +1,298 @@
+package com.aws.lambda.user.repositories;
+
+import com.amazonaws.AmazonServiceException;
+import com.amazonaws.services.dynamodbv2.AbstractAmazonDynamoDB;
+import com.amazonaws.services.dynamodbv2.model.AttributeValue;
+import com.amazonaws.services.dynamodbv2.model.DescribeTableResult;
+import com.amazonaws.services.dynamodbv2.model.GlobalSecondaryIndexDescription;
+import com.amazonaws.services.dynamodbv2.model.KeySchemaElement;
+import com.amazonaws.services.dynamodbv2.model.KeyType;
+import com.amazonaws.services.dynamodbv2.model.Projection;
+import com.amazonaws.services.dynamodbv2.model.ProjectionType;
+import com.amazonaws.services.dynamodbv2.model.QueryRequest;
+import com.amazonaws.services.dynamodbv2.model.ScanRequest;
+import com.amazonaws.services.dynamodbv2.model.TableDescription;
+import com.aws.lambda.user.entities.User;
+import com.aws.lambda.user.entities.UserIndexKeys;
+import com.aws.lambda.user.models.UserQuery;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for UserQueryPlanner.
+ * Tests access path selection, generated expressions, residual predicates, sharded indexes and cursors
+ * against a stub client.
+ */
+class UserQueryPlannerTest {
+
+    private StubDynamoDB amazonDynamoDB;
+
+    private UserQueryPlanner userQueryPlanner;
+
+    private final DynamoDBPriming dynamoDBPriming = new DynamoDBPriming();
+
+    private final Set<String> finishedMigrations = new HashSet<>();
+
+    @BeforeEach
+    void setUp() {
+        amazonDynamoDB = new StubDynamoDB();
+        finishedMigrations.add(UserStorageMigrator.indexKeysMigrationId(new UserIndexKeys("department:Engineering:4", 1)));
+        amazonDynamoDB.table = new TableDescription()
+                .withItemCount(10000L)
+                .withTableSizeBytes(3000000L)
+                .withGlobalSecondaryIndexes(index("department-index", "department"), index("role-index", "role"));
+        userQueryPlanner = new UserQueryPlanner();
+        ReflectionTestUtils.setField(userQueryPlanner, "amazonDynamoDB", amazonDynamoDB);
+        ReflectionTestUtils.setField(userQueryPlanner, "dynamoDBPriming", dynamoDBPriming);
+        ReflectionTestUtils.setField(userQueryPlanner, "userIndexKeys", new UserIndexKeys("department:Engineering:4", 1));
+        ReflectionTestUtils.setField(userQueryPlanner, "migrationProgress", new MigrationProgress() {
+            @Override
+            public boolean isFinished(String migrationId) {
+                return finishedMigrations.contains(migrationId);
+            }
+        });
+        ReflectionTestUtils.setField(userQueryPlanner, "statsTtlSeconds", 600L);
+        ReflectionTestUtils.setField(userQueryPlanner, "distinctValues", "department:20,role:10");
+        ReflectionTestUtils.setField(userQueryPlanner, "defaultDistinctValues", 10L);
+        userQueryPlanner.init();
+    }
+
+    @Test
+    void plan_SeveralIndexedPredicates_QueriesMostSelectiveIndex() {
+        UserQueryPlanner.QueryPlan plan = userQueryPlanner.plan(UserQuery.builder()
+                .department("Engineering")
+                .role("Software Engineer")
+                .minAge(25)
+                .maxAge(40)
+                .build());
+
+        assertFalse(plan.isScan());
+        assertEquals(500, plan.getEstimatedItems());
+        QueryRequest request = plan.queryRequest(25, null);
+        assertEquals("department-index", request.getIndexName());
+        assertEquals("#department = :department", request.getKeyConditionExpression());
+        assertEquals("#role = :role AND #age BETWEEN :minAge AND :maxAge", request.getFilterExpression());
+        assertEquals("Software Engineer", request.getExpressionAttributeValues().get(":role").getS());
+        assertEquals("25", request.getExpressionAttributeValues().get(":minAge").getN());
+        assertNull(request.getProjectionExpression());
+        assertTrue(plan.describe(1, 2.5).startsWith("query index=department-index key=department; filter=role,age;"));
+    }
+
+    @Test
+    void plan_NoIndexedPredicate_ScansWithFilter() {
+        UserQueryPlanner.QueryPlan plan = userQueryPlanner.plan(UserQuery.builder()
+                .email("john.doe@example.com")
+                .build());
+
+        assertTrue(plan.isScan());
+        ScanRequest request = plan.scanRequest(25, null);
+        assertEquals("#email = :email", request.getFilterExpression());
+        assertEquals(10000, plan.getEstimatedItems());
+    }
+
+    @Test
+    void plan_IndexNotActive_ScansInstead() {
+        amazonDynamoDB.table.getGlobalSecondaryIndexes().forEach(index -> index.setIndexStatus("CREATING"));
+
+        assertTrue(userQueryPlanner.plan(UserQuery.builder().department("Engineering").build()).isScan());
+    }
+
+    @Test
+    void plan_DescribeTableFails_ScansWithUnknownEstimate() {
+        amazonDynamoDB.table = null;
+
+        UserQueryPlanner.QueryPlan plan = userQueryPlanner.plan(UserQuery.builder().department("Engineering").build());
+
+        assertTrue(plan.isScan());
+        assertTrue(plan.describe(0, 0).contains("estimatedItems=unknown"));
+    }
+
+    @Test
+    void plan_WhilePriming_DoesNotCacheStatistics() {
+        UserQuery query = UserQuery.builder().department("Engineering").build();
+        TableDescription table = amazonDynamoDB.table;
+
+        // The no-op table priming runs against cannot be described
+        dynamoDBPriming.run(() -> {
+            amazonDynamoDB.table = null;
+            assertTrue(userQueryPlanner.plan(query).isScan());
+        });
+        amazonDynamoDB.table = table;
+
+        assertEquals("department-index", userQueryPlanner.plan(query).getIndexName());
+    }
+
+    @Test
+    void plan_ActivePredicate_PassesCompactItemsAndChecksThemAfterReading() {
+        UserQueryPlanner.QueryPlan plan = userQueryPlanner.plan(UserQuery.builder()
+                .department("Engineering")
+                .isActive(true)
+                .fields(Arrays.asList("name", "email"))
+                .build());
+
+        QueryRequest request = plan.queryRequest(25, null);
+        assertEquals("(#isActive = :isActive OR attribute_exists(#c))", request.getFilterExpression());
+        assertEquals("1", request.getExpressionAttributeValues().get(":isActive").getN());
+        assertEquals("#uuid, #name, #email, #isActive, #c", request.getProjectionExpression());
+        assertTrue(plan.matches(User.builder().isActive(true).build()));
+        assertFalse(plan.matches(User.builder().isActive(false).build()));
+    }
+
+    @Test
+    void plan_CursorFromPreviousPage_KeepsAccessPathAndStartKey() {
+        UserQuery query = UserQuery.builder().department("Engineering").role("Software Engineer").build();
+        Map<String, AttributeValue> lastKey = new HashMap<>();
+        lastKey.put("uuid", new AttributeValue("test-uuid-123"));
+        lastKey.put("department", new AttributeValue("Engineering"));
+        String cursor = userQueryPlanner.plan(query).cursor(lastKey);
+        // Statistics changing between pages must not move the query to another index
+        ReflectionTestUtils.setField(userQueryPlanner, "stats", null);
+        amazonDynamoDB.table.getGlobalSecondaryIndexes().add(index("department-shard-index", "departmentKey"));
+
+        query.setCursor(cursor);
+        UserQueryPlanner.QueryPlan plan = userQueryPlanner.plan(query);
+
+        assertEquals("department-index", plan.getIndexName());
+        assertEquals(lastKey, plan.queryRequest(25, plan.getStartKey()).getExclusiveStartKey());
+    }
+
+    @Test
+    void plan_CursorIndexNotActiveOnItsAttribute_IsRejected() {
+        UserQuery query = UserQuery.builder().department("Engineering").build();
+        String cursor = userQueryPlanner.plan(query)
+                .cursor(Collections.singletonMap("uuid", new AttributeValue("test-uuid-123")));
+        ReflectionTestUtils.setField(userQueryPlanner, "stats", null);
+        amazonDynamoDB.table.setGlobalSecondaryIndexes(Collections.singletonList(index("role-index", "role")));
+
+        assertThrows(IllegalArgumentException.class, () -> userQueryPlanner.plan(UserQuery.builder().department("Engineering").cursor(cursor).build()));
+        assertThrows(IllegalArgumentException.class, () -> userQueryPlanner.plan(UserQuery.builder().department("Engineering")
+                .cursor(cursor("{\"index\":\"role-index\",\"key\":\"department\",\"start\":{\"uuid\":\"a\"}}")).build()));
+        assertThrows(IllegalArgumentException.class, () -> userQueryPlanner.plan(UserQuery.builder().department("Engineering")
+                .cursor(cursor("{\"index\":\"role-index\",\"start\":{\"uuid\":\"a\"}}")).build()));
+    }
+
+    @Test
+    void plan_ShardedIndex_QueriesEveryShardOfTheValue() {
+        amazonDynamoDB.table.getGlobalSecondaryIndexes().add(index("department-shard-index", "departmentKey"));
+
+        UserQueryPlanner.QueryPlan plan = userQueryPlanner.plan(UserQuery.builder()
+                .department("Engineering")
+                .role("Software Engineer")
+                .build());
+
+        assertTrue(plan.isSharded());
+        assertEquals(Arrays.asList("Engineering#0", "Engineering#1", "Engineering#2", "Engineering#3"), plan.getKeyValues());
+        assertEquals(plan.getKeyValues(), Arrays.asList(plan.getPositions().keySet().toArray()));
+        QueryRequest request = plan.queryRequest("Engineering#2", 25, null);
+        assertEquals("department-shard-index", request.getIndexName());
+        assertEquals("#departmentKey = :departmentKey", request.getKeyConditionExpression());
+        assertEquals("Engineering#2", request.getExpressionAttributeValues().get(":departmentKey").getS());
+        assertEquals("#role = :role", request.getFilterExpression());
+        assertTrue(plan.describe(1, 2.5).startsWith("query index=department-shard-index key=department shards=4; filter=role;"));
+
+        // A value without a configured shard count has a single shard
+        assertEquals(Collections.singletonList("Sales#0"),
+                userQueryPlanner.plan(UserQuery.builder().department("Sales").build()).getKeyValues());
+    }
+
+    @Test
+    void plan_ShardKeysNotBackfilledForCurrentCounts_UsesUnshardedIndex() {
+        amazonDynamoDB.table.getGlobalSecondaryIndexes().add(index("department-shard-index", "departmentKey"));
+        UserQuery query = UserQuery.builder().department("Engineering").build();
+        assertTrue(userQueryPlanner.plan(query).isSharded());
+
+        // A changed shard count keys users differently until the migration has run again
+        ReflectionTestUtils.setField(userQueryPlanner, "userIndexKeys", new UserIndexKeys("department:Engineering:8", 1));
+        ReflectionTestUtils.setField(userQueryPlanner, "stats", null);
+        UserQueryPlanner.QueryPlan plan = userQueryPlanner.plan(query);
+
+        assertFalse(plan.isSharded());
+        assertEquals("department-index", plan.getIndexName());
+        assertEquals(Collections.singletonList("Engineering"), plan.getKeyValues());
+
+        finishedMigrations.add(UserStorageMigrator.indexKeysMigrationId(new UserIndexKeys("department:Engineering:8", 1)));
+        ReflectionTestUtils.setField(userQueryPlanner, "stats", null);
+
+        assertEquals(8, userQueryPlanner.plan(query).getKeyValues().size());
+    }
+
+    @Test
+    void plan_ShardedCursor_ResumesOnlyPendingShards() {
+        amazonDynamoDB.table.getGlobalSecondaryIndexes().add(index("department-shard-index", "departmentKey"));
+        UserQuery query = UserQuery.builder().department("Engineering").build();
+        Map<String, AttributeValue> lastKey = new HashMap<>();
+        lastKey.put("uuid", new AttributeValue("test-uuid-123"));
+        lastKey.put("departmentKey", new AttributeValue("Engineering#1"));
+        Map<String, Map<String, AttributeValue>> pending = new LinkedHashMap<>();
+        pending.put("Engineering#1", lastKey);
+        pending.put("Engineering#3", null);
+        String cursor = userQueryPlanner.plan(query).indexCursor(pending);
+
+        query.setCursor(cursor);
+        UserQueryPlanner.QueryPlan plan = userQueryPlanner.plan(query);
+
+        assertEquals(pending, plan.getPositions());
+        assertNull(userQueryPlanner.plan(UserQuery.builder().department("Engineering").build())
+                .indexCursor(Collections.emptyMap()));
+        assertThrows(IllegalArgumentException.class,
+                () -> userQueryPlanner.plan(UserQuery.builder().department("Sales").cursor(cursor).build()));
+    }
+
+    @Test
+    void plan_InvalidQuery_ThrowsIllegalArgumentException() {
+        String cursor = userQueryPlanner.plan(UserQuery.builder().department("Engineering").build())
+                .cursor(Collections.singletonMap("uuid", new AttributeValue("test-uuid-123")));
+
+        assertThrows(IllegalArgumentException.class,
+                () -> userQueryPlanner.plan(UserQuery.builder().role("Software Engineer").cursor(cursor).build()));
+        assertThrows(IllegalArgumentException.class,
+                () -> userQueryPlanner.plan(UserQuery.builder().cursor("not-a-cursor").build()));
+        assertThrows(IllegalArgumentException.class,
+                () -> userQueryPlanner.plan(UserQuery.builder().minAge(40).maxAge(25).build()));
+        assertThrows(IllegalArgumentException.class,
+                () -> userQueryPlanner.plan(UserQuery.builder().fields(Collections.singletonList("passwordHash")).build()));
+    }
+
+    private static String cursor(String json) {
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(json.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static GlobalSecondaryIndexDescription index(String name, String hashKey) {
+        return new GlobalSecondaryIndexDescription()
+                .withIndexName(name)
+                .withIndexStatus("ACTIVE")
+                .withKeySchema(new KeySchemaElement(hashKey, KeyType.HASH))
+                .withProjection(new Projection().withProjectionType(ProjectionType.ALL));
+    }
+
+    /**
+     * DynamoDB stub describing a configurable table.
+     */
+    private static class StubDynamoDB extends AbstractAmazonDynamoDB {
+
+        private TableDescription table;
+
+        @Override
+        public DescribeTableResult describeTable(String tableName) {
+            if (table == null) {
+                throw new AmazonServiceException("Access denied");
+            }
+            return new DescribeTableResult().withTable(table);
+        }
+
+    }
+
+}
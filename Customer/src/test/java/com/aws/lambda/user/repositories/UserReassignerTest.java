@@ -0,0 +1,327 @@
+package com.aws.lambda.user.repositories;
+
+import com.amazonaws.handlers.AsyncHandler;
+import com.amazonaws.services.dynamodbv2.AbstractAmazonDynamoDBAsync;
+import com.amazonaws.services.dynamodbv2.model.AttributeValue;
+import com.amazonaws.services.dynamodbv2.model.BatchGetItemRequest;
+import com.amazonaws.services.dynamodbv2.model.BatchGetItemResult;
+import com.amazonaws.services.dynamodbv2.model.ConditionalCheckFailedException;
+import com.amazonaws.services.dynamodbv2.model.ConsumedCapacity;
+import com.amazonaws.services.dynamodbv2.model.DescribeTableResult;
+import com.amazonaws.services.dynamodbv2.model.GlobalSecondaryIndexDescription;
+import com.amazonaws.services.dynamodbv2.model.KeySchemaElement;
+import com.amazonaws.services.dynamodbv2.model.KeyType;
+import com.amazonaws.services.dynamodbv2.model.Projection;
+import com.amazonaws.services.dynamodbv2.model.ProjectionType;
+import com.amazonaws.services.dynamodbv2.model.QueryRequest;
+import com.amazonaws.services.dynamodbv2.model.QueryResult;
+import com.amazonaws.services.dynamodbv2.model.TableDescription;
+import com.amazonaws.services.dynamodbv2.model.TransactWriteItem;
+import com.amazonaws.services.dynamodbv2.model.TransactWriteItemsRequest;
+import com.amazonaws.services.dynamodbv2.model.TransactWriteItemsResult;
+import com.amazonaws.services.dynamodbv2.model.TransactionCanceledException;
+import com.amazonaws.services.dynamodbv2.model.UpdateItemRequest;
+import com.amazonaws.services.dynamodbv2.model.UpdateItemResult;
+import com.aws.lambda.user.entities.UserIndexKeys;
+import com.aws.lambda.user.models.Reassignment;
+import com.aws.lambda.user.models.ReassignmentResult;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Future;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for UserReassigner.
+ * Tests transactions for small sets, conditional updates for large ones, budgets and resuming against a stub client.
+ */
+class UserReassignerTest {
+
+    private StubDynamoDB amazonDynamoDB;
+
+    private UserReassigner userReassigner;
+
+    @BeforeEach
+    void setUp() {
+        amazonDynamoDB = new StubDynamoDB();
+        UserQueryPlanner userQueryPlanner = new UserQueryPlanner();
+        ReflectionTestUtils.setField(userQueryPlanner, "amazonDynamoDB", amazonDynamoDB);
+        ReflectionTestUtils.setField(userQueryPlanner, "dynamoDBPriming", new DynamoDBPriming());
+        ReflectionTestUtils.setField(userQueryPlanner, "statsTtlSeconds", 600L);
+        ReflectionTestUtils.setField(userQueryPlanner, "distinctValues", "department:20");
+        ReflectionTestUtils.setField(userQueryPlanner, "defaultDistinctValues", 10L);
+        userQueryPlanner.init();
+
+        userReassigner = new UserReassigner();
+        ReflectionTestUtils.setField(userReassigner, "amazonDynamoDB", amazonDynamoDB);
+        ReflectionTestUtils.setField(userReassigner, "amazonDynamoDBAsync", amazonDynamoDB);
+        ReflectionTestUtils.setField(userReassigner, "userQueryPlanner", userQueryPlanner);
+        ReflectionTestUtils.setField(userReassigner, "userIndexKeys", new UserIndexKeys(null, 1));
+        ReflectionTestUtils.setField(userReassigner, "transactionLimit", 3);
+        ReflectionTestUtils.setField(userReassigner, "pageSize", 2);
+        ReflectionTestUtils.setField(userReassigner, "maxPages", 50);
+        ReflectionTestUtils.setField(userReassigner, "maxWriteUnits", 100);
+    }
+
+    @Test
+    void reassign_SmallDepartment_UsesOneTransaction() {
+        amazonDynamoDB.addUsers(3);
+
+        ReassignmentResult result = userReassigner.reassign(transfer(null, null));
+
+        assertEquals(UserReassigner.TRANSACTION, result.getMode());
+        assertEquals(3, result.getUpdated());
+        assertEquals(6.0, result.getConsumedWriteUnits());
+        assertTrue(result.isComplete());
+        assertEquals(1, amazonDynamoDB.transactions.size());
+        assertTrue(amazonDynamoDB.updates.isEmpty());
+        assertEquals("department-index", amazonDynamoDB.queries.get(0).getIndexName());
+        assertEquals("#uuid, #department", amazonDynamoDB.queries.get(0).getProjectionExpression());
+        assertEquals("#department = :from", amazonDynamoDB.transactions.get(0).getTransactItems().get(0).getUpdate().getConditionExpression());
+        assertEquals(3, result.getChanges().size());
+        assertEquals("department", result.getChanges().get(0).getAttribute());
+        assertEquals("Engineering", result.getChanges().get(0).getBefore());
+        assertEquals("Platform", result.getChanges().get(0).getAfter());
+    }
+
+    @Test
+    void reassign_RoleForFewUsers_TransactsOnTheRolesRead() {
+        amazonDynamoDB.roles.put("uuid-0", "Engineer");
+        amazonDynamoDB.roles.put("uuid-1", null);
+
+        ReassignmentResult result = userReassigner.reassign(role(Arrays.asList("uuid-0", "uuid-1"), null, null));
+
+        assertEquals(UserReassigner.TRANSACTION, result.getMode());
+        assertTrue(result.isComplete());
+        List<TransactWriteItem> items = amazonDynamoDB.transactions.get(0).getTransactItems();
+        assertEquals("attribute_exists(#uuid) AND #role = :previous", items.get(0).getUpdate().getConditionExpression());
+        assertEquals("Engineer", items.get(0).getUpdate().getExpressionAttributeValues().get(":previous").getS());
+        assertEquals("attribute_exists(#uuid) AND attribute_not_exists(#role)", items.get(1).getUpdate().getConditionExpression());
+        assertEquals("Engineer", result.getChanges().get(0).getBefore());
+        assertNull(result.getChanges().get(1).getBefore());
+        assertEquals("Manager", result.getChanges().get(1).getAfter());
+    }
+
+    @Test
+    void reassign_RoleForFewUsersOneMissing_UpdatesUsersIndividually() {
+        amazonDynamoDB.roles.put("uuid-0", "Engineer");
+        amazonDynamoDB.failing.add("uuid-1");
+
+        ReassignmentResult result = userReassigner.reassign(role(Arrays.asList("uuid-0", "uuid-1"), null, null));
+
+        assertEquals(UserReassigner.CONDITIONAL_UPDATES, result.getMode());
+        assertTrue(amazonDynamoDB.transactions.isEmpty());
+        assertEquals(1, result.getUpdated());
+        assertEquals(1, result.getSkipped());
+        assertEquals(1, result.getChanges().size());
+        assertEquals("Engineer", result.getChanges().get(0).getBefore());
+    }
+
+    @Test
+    void reassign_TransactionCancelled_UpdatesUsersIndividually() {
+        amazonDynamoDB.addUsers(3);
+        amazonDynamoDB.cancelTransactions = true;
+        amazonDynamoDB.failing.add("uuid-1");
+
+        ReassignmentResult result = userReassigner.reassign(transfer(null, null));
+
+        assertEquals(UserReassigner.CONDITIONAL_UPDATES, result.getMode());
+        assertEquals(3, result.getMatched());
+        assertEquals(2, result.getUpdated());
+        assertEquals(1, result.getSkipped());
+        assertTrue(result.isComplete());
+    }
+
+    @Test
+    void reassign_LargeDepartment_StopsAtBudgetAndResumes() {
+        amazonDynamoDB.addUsers(10);
+
+        ReassignmentResult first = userReassigner.reassign(transfer(5, null));
+
+        assertEquals(UserReassigner.CONDITIONAL_UPDATES, first.getMode());
+        assertEquals(5, first.getUpdated());
+        assertEquals(5.0, first.getConsumedWriteUnits());
+        assertFalse(first.isComplete());
+        assertEquals("SET #department = :to, #departmentKey = :toKey, #updatedAt = :updatedAt",
+                amazonDynamoDB.updates.get(0).getUpdateExpression());
+        assertEquals("Platform#0", amazonDynamoDB.updates.get(0).getExpressionAttributeValues().get(":toKey").getS());
+
+        ReassignmentResult second = userReassigner.reassign(transfer(null, first.getNextCursor()));
+
+        assertEquals(5, second.getUpdated());
+        assertTrue(second.isComplete());
+        assertEquals(10, new HashSet<>(amazonDynamoDB.updatedUuids()).size());
+    }
+
+    @Test
+    void reassign_RoleForManyUsers_PagesByOffset() {
+        List<String> uuids = Arrays.asList("uuid-0", "uuid-1", "uuid-2", "uuid-3", "uuid-4");
+        amazonDynamoDB.failing.add("uuid-3");
+
+        ReassignmentResult first = userReassigner.reassign(role(uuids, 3, null));
+        ReassignmentResult second = userReassigner.reassign(role(uuids, 3, first.getNextCursor()));
+
+        assertEquals(3, first.getUpdated());
+        assertFalse(first.isComplete());
+        assertEquals(1, second.getUpdated());
+        assertEquals(1, second.getSkipped());
+        assertTrue(second.isComplete());
+        assertEquals(Collections.singletonList("uuid-4"),
+                second.getChanges().stream().map(ReassignmentResult.Change::getUuid).collect(Collectors.toList()));
+        assertTrue(amazonDynamoDB.transactions.isEmpty());
+        assertEquals("attribute_exists(#uuid) AND (attribute_not_exists(#role) OR #role <> :role)",
+                amazonDynamoDB.updates.get(0).getConditionExpression());
+    }
+
+    @Test
+    void reassign_InvalidCursor_ThrowsIllegalArgumentException() {
+        assertThrows(IllegalArgumentException.class,
+                () -> userReassigner.reassign(role(Arrays.asList("uuid-0"), null, "not-a-cursor")));
+        assertThrows(IllegalArgumentException.class,
+                () -> userReassigner.reassign(transfer(null, "not-a-cursor")));
+    }
+
+    private static Reassignment transfer(Integer maxWriteUnits, String cursor) {
+        return Reassignment.builder()
+                .fromDepartment("Engineering")
+                .toDepartment("Platform")
+                .maxWriteUnits(maxWriteUnits)
+                .cursor(cursor)
+                .build();
+    }
+
+    private static Reassignment role(List<String> uuids, Integer maxWriteUnits, String cursor) {
+        return Reassignment.builder()
+                .uuids(uuids)
+                .role("Manager")
+                .maxWriteUnits(maxWriteUnits)
+                .cursor(cursor)
+                .build();
+    }
+
+    /**
+     * DynamoDB stub with a department index and the roles of some users, paging queries by their limit and recording writes.
+     */
+    private static class StubDynamoDB extends AbstractAmazonDynamoDBAsync {
+
+        private final List<Map<String, AttributeValue>> items = new ArrayList<>();
+        private final List<QueryRequest> queries = new ArrayList<>();
+        private final List<TransactWriteItemsRequest> transactions = new ArrayList<>();
+        private final List<UpdateItemRequest> updates = new ArrayList<>();
+        private final Set<String> failing = new HashSet<>();
+        private final Map<String, String> roles = new HashMap<>();
+        private boolean cancelTransactions;
+
+        void addUsers(int count) {
+            for (int i = 0; i < count; i++) {
+                Map<String, AttributeValue> item = new HashMap<>();
+                item.put("uuid", new AttributeValue("uuid-" + i));
+                item.put("department", new AttributeValue("Engineering"));
+                items.add(item);
+            }
+        }
+
+        List<String> updatedUuids() {
+            List<String> uuids = new ArrayList<>();
+            for (UpdateItemRequest update : updates) {
+                if (!failing.contains(update.getKey().get("uuid").getS())) {
+                    uuids.add(update.getKey().get("uuid").getS());
+                }
+            }
+            return uuids;
+        }
+
+        @Override
+        public DescribeTableResult describeTable(String tableName) {
+            return new DescribeTableResult().withTable(new TableDescription()
+                    .withItemCount(1000L)
+                    .withTableSizeBytes(300000L)
+                    .withGlobalSecondaryIndexes(new GlobalSecondaryIndexDescription()
+                            .withIndexName("department-index")
+                            .withIndexStatus("ACTIVE")
+                            .withKeySchema(new KeySchemaElement("department", KeyType.HASH))
+                            .withProjection(new Projection().withProjectionType(ProjectionType.ALL))));
+        }
+
+        @Override
+        public QueryResult query(QueryRequest request) {
+            queries.add(request);
+            int start = 0;
+            if (request.getExclusiveStartKey() != null) {
+                while (!items.get(start).get("uuid").equals(request.getExclusiveStartKey().get("uuid"))) {
+                    start++;
+                }
+                start++;
+            }
+            int end = Math.min(items.size(), start + request.getLimit());
+            QueryResult result = new QueryResult().withItems(new ArrayList<>(items.subList(start, end)));
+            if (end < items.size()) {
+                result.setLastEvaluatedKey(items.get(end - 1));
+            }
+            return result;
+        }
+
+        @Override
+        public BatchGetItemResult batchGetItem(BatchGetItemRequest request) {
+            List<Map<String, AttributeValue>> found = new ArrayList<>();
+            for (Map<String, AttributeValue> key : request.getRequestItems().get("User").getKeys()) {
+                String uuid = key.get("uuid").getS();
+                if (roles.containsKey(uuid)) {
+                    found.add(item(uuid));
+                }
+            }
+            return new BatchGetItemResult().withResponses(Collections.singletonMap("User", found));
+        }
+
+        private Map<String, AttributeValue> item(String uuid) {
+            Map<String, AttributeValue> item = new HashMap<>();
+            item.put("uuid", new AttributeValue(uuid));
+            if (roles.get(uuid) != null) {
+                item.put("role", new AttributeValue(roles.get(uuid)));
+            }
+            return item;
+        }
+
+        @Override
+        public TransactWriteItemsResult transactWriteItems(TransactWriteItemsRequest request) {
+            if (cancelTransactions) {
+                throw new TransactionCanceledException("Transaction cancelled");
+            }
+            transactions.add(request);
+            return new TransactWriteItemsResult();
+        }
+
+        @Override
+        public Future<UpdateItemResult> updateItemAsync(UpdateItemRequest request,
+                                                        AsyncHandler<UpdateItemRequest, UpdateItemResult> handler) {
+            updates.add(request);
+            if (failing.contains(request.getKey().get("uuid").getS())) {
+                ConditionalCheckFailedException exception = new ConditionalCheckFailedException("The conditional request failed");
+                handler.onError(exception);
+                CompletableFuture<UpdateItemResult> failed = new CompletableFuture<>();
+                failed.completeExceptionally(exception);
+                return failed;
+            }
+            UpdateItemResult result = new UpdateItemResult().withConsumedCapacity(new ConsumedCapacity().withCapacityUnits(1.0));
+            if (roles.containsKey(request.getKey().get("uuid").getS())) {
+                result.setAttributes(item(request.getKey().get("uuid").getS()));
+            }
+            handler.onSuccess(request, result);
+            return CompletableFuture.completedFuture(result);
+        }
+
+    }
+
+}
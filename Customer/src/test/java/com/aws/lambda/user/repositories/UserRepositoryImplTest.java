@@ -0,0 +1,309 @@
+package com.aws.lambda.user.repositories;
+
+import com.amazonaws.handlers.AsyncHandler;
+import com.amazonaws.services.dynamodbv2.AbstractAmazonDynamoDBAsync;
+import com.amazonaws.services.dynamodbv2.datamodeling.DynamoDBMapper;
+import com.amazonaws.services.dynamodbv2.model.AttributeValue;
+import com.amazonaws.services.dynamodbv2.model.ConditionalCheckFailedException;
+import com.amazonaws.services.dynamodbv2.model.ConsumedCapacity;
+import com.amazonaws.services.dynamodbv2.model.DescribeTableResult;
+import com.amazonaws.services.dynamodbv2.model.GlobalSecondaryIndexDescription;
+import com.amazonaws.services.dynamodbv2.model.KeySchemaElement;
+import com.amazonaws.services.dynamodbv2.model.KeyType;
+import com.amazonaws.services.dynamodbv2.model.Projection;
+import com.amazonaws.services.dynamodbv2.model.ProjectionType;
+import com.amazonaws.services.dynamodbv2.model.QueryRequest;
+import com.amazonaws.services.dynamodbv2.model.QueryResult;
+import com.amazonaws.services.dynamodbv2.model.ScanRequest;
+import com.amazonaws.services.dynamodbv2.model.ScanResult;
+import com.amazonaws.services.dynamodbv2.model.Select;
+import com.amazonaws.services.dynamodbv2.model.TableDescription;
+import com.amazonaws.services.dynamodbv2.model.UpdateItemRequest;
+import com.amazonaws.services.dynamodbv2.model.UpdateItemResult;
+import com.aws.lambda.user.entities.User;
+import com.aws.lambda.user.entities.UserIndexKeys;
+import com.aws.lambda.user.models.UserQuery;
+import com.aws.lambda.user.models.UserQueryPage;
+import com.aws.lambda.user.utils.Deadline;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Future;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for UserRepositoryImpl.
+ * Tests that paginated scans stop at the request deadline and can be resumed from their cursor,
+ * that scans are paced by the read capacity governor and that sharded index queries are merged.
+ */
+class UserRepositoryImplTest {
+
+    private static final int PAGES = 3;
+
+    private StubDynamoDB amazonDynamoDB;
+
+    private UserQueryPlanner userQueryPlanner;
+
+    private ReadCapacityGovernor readCapacityGovernor;
+
+    private UserRepositoryImpl userRepository;
+
+    @BeforeEach
+    void setUp() {
+        amazonDynamoDB = new StubDynamoDB();
+        userQueryPlanner = new UserQueryPlanner();
+        ReflectionTestUtils.setField(userQueryPlanner, "amazonDynamoDB", amazonDynamoDB);
+        ReflectionTestUtils.setField(userQueryPlanner, "dynamoDBPriming", new DynamoDBPriming());
+        ReflectionTestUtils.setField(userQueryPlanner, "migrationProgress", finishedMigrations());
+        ReflectionTestUtils.setField(userQueryPlanner, "statsTtlSeconds", 600L);
+        ReflectionTestUtils.setField(userQueryPlanner, "distinctValues", "department:20");
+        ReflectionTestUtils.setField(userQueryPlanner, "defaultDistinctValues", 10L);
+        userQueryPlanner.init();
+
+        readCapacityGovernor = new ReadCapacityGovernor();
+        ReflectionTestUtils.setField(readCapacityGovernor, "readCapacityUnits", 5.0);
+        ReflectionTestUtils.setField(readCapacityGovernor, "scanShare", 0.5);
+        ReflectionTestUtils.setField(readCapacityGovernor, "pointReadHeadroom", 0.2);
+        ReflectionTestUtils.setField(readCapacityGovernor, "minPageSize", 10);
+        ReflectionTestUtils.setField(readCapacityGovernor, "maxPageSize", 1000);
+
+        userRepository = new UserRepositoryImpl();
+        ReflectionTestUtils.setField(userRepository, "dynamoDBMapper", new DynamoDBMapper(amazonDynamoDB));
+        ReflectionTestUtils.setField(userRepository, "amazonDynamoDB", amazonDynamoDB);
+        ReflectionTestUtils.setField(userRepository, "amazonDynamoDBAsync", amazonDynamoDB);
+        ReflectionTestUtils.setField(userRepository, "userQueryPlanner", userQueryPlanner);
+        ReflectionTestUtils.setField(userRepository, "readCapacityGovernor", readCapacityGovernor);
+        ReflectionTestUtils.setField(userRepository, "maxQueryPages", 10);
+    }
+
+    @AfterEach
+    void tearDown() {
+        Deadline.bind(null);
+    }
+
+    @Test
+    void findAll_NoDeadline_ReadsEveryPage() {
+        UserQueryPage page = userRepository.findAll(null);
+
+        assertEquals(PAGES, page.getUsers().size());
+        assertNull(page.getNextCursor());
+        assertEquals(PAGES, amazonDynamoDB.scans);
+    }
+
+    @Test
+    void findAll_DeadlineNear_ReturnsPartialPageWithCursor() {
+        Deadline.bind(Deadline.after(0));
+
+        UserQueryPage first = userRepository.findAll(null);
+
+        assertEquals(1, first.getUsers().size());
+        assertNotNull(first.getNextCursor());
+
+        Deadline.bind(null);
+        UserQueryPage rest = userRepository.findByDepartment("Engineering", first.getNextCursor());
+
+        assertEquals(PAGES - 1, rest.getUsers().size());
+        assertEquals("user-2", rest.getUsers().get(0).getUuid());
+        assertNull(rest.getNextCursor());
+    }
+
+    @Test
+    void existsByEmail_EmailRecordedMissing_ReadsTableConsistently() {
+        UserLookupIndex userLookupIndex = new UserLookupIndex();
+        ReflectionTestUtils.setField(userLookupIndex, "negativeCacheSize", 16);
+        ReflectionTestUtils.setField(userLookupIndex, "negativeCacheTtlSeconds", 60L);
+        userLookupIndex.init();
+        userLookupIndex.recordMissingEmail("john.doe@example.com");
+        ReflectionTestUtils.setField(userRepository, "userLookupIndex", userLookupIndex);
+
+        assertNull(userRepository.findByEmail("john.doe@example.com"));
+        assertEquals(0, amazonDynamoDB.scans);
+
+        assertTrue(userRepository.existsByEmail("john.doe@example.com"));
+        assertTrue(amazonDynamoDB.lastRequest.getConsistentRead());
+    }
+
+    @Test
+    void count_PacingEnabled_CountsEveryPageWithinPageLimit() {
+        ReflectionTestUtils.setField(readCapacityGovernor, "enabled", true);
+
+        assertEquals(PAGES, userRepository.count());
+        assertEquals(PAGES, amazonDynamoDB.scans);
+        assertEquals(Select.COUNT.toString(), amazonDynamoDB.lastRequest.getSelect());
+        assertEquals(10, amazonDynamoDB.lastRequest.getLimit().intValue());
+    }
+
+    @Test
+    void findAll_ScanCapacitySpent_ReturnsCursorRatherThanWaitPastDeadline() {
+        ReflectionTestUtils.setField(readCapacityGovernor, "enabled", true);
+        // The first page puts scans seconds into debt at 2.5 units per second
+        amazonDynamoDB.unitsPerPage = 10;
+        Deadline.bind(Deadline.after(1000));
+
+        UserQueryPage page = userRepository.findAll(null);
+
+        assertEquals(1, page.getUsers().size());
+        assertNotNull(page.getNextCursor());
+        assertEquals(1, amazonDynamoDB.scans);
+    }
+
+    @Test
+    void query_ShardedIndex_MergesShardsAndResumesFromCursor() {
+        amazonDynamoDB.shardedIndex = true;
+        ReflectionTestUtils.setField(userQueryPlanner, "userIndexKeys", new UserIndexKeys("department:Engineering:3", 1));
+        UserQuery query = UserQuery.builder().department("Engineering").limit(4).build();
+
+        UserQueryPage first = userRepository.query(query);
+
+        // Three shards of one user each, then the rest of the first shard
+        assertEquals(4, first.getUsers().size());
+        assertEquals(3, amazonDynamoDB.asyncQueries);
+        assertNotNull(first.getNextCursor());
+        assertTrue(first.getPlan().startsWith("query index=department-shard-index key=department shards=3;"));
+
+        query.setCursor(first.getNextCursor());
+        UserQueryPage second = userRepository.query(query);
+
+        assertEquals(2, second.getUsers().size());
+        assertNull(second.getNextCursor());
+        Set<String> uuids = new HashSet<>();
+        first.getUsers().forEach(user -> uuids.add(user.getUuid()));
+        second.getUsers().forEach(user -> uuids.add(user.getUuid()));
+        assertEquals(6, uuids.size());
+        for (User user : second.getUsers()) {
+            assertEquals("Engineering", user.getDepartment());
+        }
+    }
+
+    private static MigrationProgress finishedMigrations() {
+        // Every backfill has finished, so shard indexes are used as soon as they are active
+        return new MigrationProgress() {
+            @Override
+            public boolean isFinished(String migrationId) {
+                return true;
+            }
+        };
+    }
+
+    /**
+     * DynamoDB stub holding one user per scan page, and two users per shard of a sharded department index.
+     */
+    @Test
+    void updatePasswordHash_HashUnchanged_WritesOnlyTheHash() {
+        assertTrue(userRepository.updatePasswordHash("user-1", "old-hash", "new-hash"));
+
+        assertEquals("new-hash", amazonDynamoDB.passwordHash);
+        assertEquals("SET #passwordHash = :new", amazonDynamoDB.lastUpdate.getUpdateExpression());
+    }
+
+    @Test
+    void updatePasswordHash_HashChangedSinceRead_KeepsStoredHash() {
+        amazonDynamoDB.passwordHash = "changed-hash";
+
+        assertFalse(userRepository.updatePasswordHash("user-1", "old-hash", "new-hash"));
+
+        assertEquals("changed-hash", amazonDynamoDB.passwordHash);
+    }
+
+    private static class StubDynamoDB extends AbstractAmazonDynamoDBAsync {
+
+        private static final int USERS_PER_SHARD = 2;
+
+        private int scans;
+        private double unitsPerPage = 0.5;
+        private ScanRequest lastRequest;
+        private boolean shardedIndex;
+        private int asyncQueries;
+        private String passwordHash = "old-hash";
+        private UpdateItemRequest lastUpdate;
+
+        @Override
+        public UpdateItemResult updateItem(UpdateItemRequest request) {
+            lastUpdate = request;
+            if (!passwordHash.equals(request.getExpressionAttributeValues().get(":current").getS())) {
+                throw new ConditionalCheckFailedException("The conditional request failed");
+            }
+            passwordHash = request.getExpressionAttributeValues().get(":new").getS();
+            return new UpdateItemResult();
+        }
+
+        @Override
+        public DescribeTableResult describeTable(String tableName) {
+            TableDescription table = new TableDescription().withItemCount((long) PAGES).withTableSizeBytes(300L);
+            if (shardedIndex) {
+                table.withGlobalSecondaryIndexes(new GlobalSecondaryIndexDescription()
+                        .withIndexName("department-shard-index")
+                        .withIndexStatus("ACTIVE")
+                        .withKeySchema(new KeySchemaElement("departmentKey", KeyType.HASH))
+                        .withProjection(new Projection().withProjectionType(ProjectionType.ALL)));
+            }
+            return new DescribeTableResult().withTable(table);
+        }
+
+        @Override
+        public QueryResult query(QueryRequest request) {
+            String shard = request.getExpressionAttributeValues().get(":departmentKey").getS();
+            int first = request.getExclusiveStartKey() == null ? 0
+                    : Integer.parseInt(request.getExclusiveStartKey().get("uuid").getS().substring((shard + "-").length())) + 1;
+            int end = Math.min(USERS_PER_SHARD, first + request.getLimit());
+            List<Map<String, AttributeValue>> items = new ArrayList<>();
+            for (int i = first; i < end; i++) {
+                Map<String, AttributeValue> item = new HashMap<>();
+                item.put("uuid", new AttributeValue(shard + "-" + i));
+                item.put("department", new AttributeValue("Engineering"));
+                item.put("departmentKey", new AttributeValue(shard));
+                items.add(item);
+            }
+            Map<String, AttributeValue> lastEvaluatedKey = null;
+            if (end < USERS_PER_SHARD) {
+                lastEvaluatedKey = new HashMap<>();
+                lastEvaluatedKey.put("uuid", items.get(items.size() - 1).get("uuid"));
+                lastEvaluatedKey.put("departmentKey", new AttributeValue(shard));
+            }
+            return new QueryResult()
+                    .withItems(items)
+                    .withCount(items.size())
+                    .withConsumedCapacity(new ConsumedCapacity().withCapacityUnits(0.5))
+                    .withLastEvaluatedKey(lastEvaluatedKey);
+        }
+
+        @Override
+        public Future<QueryResult> queryAsync(QueryRequest request, AsyncHandler<QueryRequest, QueryResult> handler) {
+            asyncQueries++;
+            QueryResult result = query(request);
+            handler.onSuccess(request, result);
+            return CompletableFuture.completedFuture(result);
+        }
+
+        @Override
+        public ScanResult scan(ScanRequest request) {
+            scans++;
+            lastRequest = request;
+            int page = request.getExclusiveStartKey() == null ? 1
+                    : Integer.parseInt(request.getExclusiveStartKey().get("uuid").getS().substring("user-".length())) + 1;
+            Map<String, AttributeValue> item = new HashMap<>();
+            item.put("uuid", new AttributeValue("user-" + page));
+            item.put("name", new AttributeValue("User " + page));
+            item.put("department", new AttributeValue("Engineering"));
+            return new ScanResult()
+                    .withItems(Select.COUNT.toString().equals(request.getSelect()) ? null : Collections.singletonList(item))
+                    .withCount(1)
+                    .withScannedCount(1)
+                    .withConsumedCapacity(new ConsumedCapacity().withCapacityUnits(unitsPerPage))
+                    .withLastEvaluatedKey(page < PAGES ? Collections.singletonMap("uuid", item.get("uuid")) : null);
+        }
+
+    }
+
+}
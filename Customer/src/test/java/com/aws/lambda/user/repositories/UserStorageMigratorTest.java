@@ -0,0 +1,253 @@
+package com.aws.lambda.user.repositories;
+
+import com.amazonaws.services.dynamodbv2.AbstractAmazonDynamoDB;
+import com.amazonaws.services.dynamodbv2.datamodeling.DynamoDBMapper;
+import com.amazonaws.services.dynamodbv2.model.AttributeValue;
+import com.amazonaws.services.dynamodbv2.model.ConditionalCheckFailedException;
+import com.amazonaws.services.dynamodbv2.model.GetItemRequest;
+import com.amazonaws.services.dynamodbv2.model.GetItemResult;
+import com.amazonaws.services.dynamodbv2.model.PutItemRequest;
+import com.amazonaws.services.dynamodbv2.model.PutItemResult;
+import com.amazonaws.services.dynamodbv2.model.ScanRequest;
+import com.amazonaws.services.dynamodbv2.model.ScanResult;
+import com.amazonaws.services.dynamodbv2.model.UpdateItemRequest;
+import com.amazonaws.services.dynamodbv2.model.UpdateItemResult;
+import com.aws.lambda.user.entities.User;
+import com.aws.lambda.user.entities.UserIndexKeys;
+import com.aws.lambda.user.entities.UserStorageFormat;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for UserStorageMigrator.
+ * Tests conditional rewrites in both directions, conflicts, segment paging and the progress markers
+ * that let a restarted migration skip finished segments, against a stub client.
+ */
+class UserStorageMigratorTest {
+
+    private StubDynamoDB amazonDynamoDB;
+
+    private UserStorageMigrator userStorageMigrator;
+
+    private MigrationProgress migrationProgress;
+
+    private Map<String, AttributeValue> legacyItem;
+
+    @BeforeEach
+    void setUp() {
+        amazonDynamoDB = new StubDynamoDB();
+        migrationProgress = new MigrationProgress();
+        ReflectionTestUtils.setField(migrationProgress, "amazonDynamoDB", amazonDynamoDB);
+        userStorageMigrator = new UserStorageMigrator();
+        ReflectionTestUtils.setField(userStorageMigrator, "amazonDynamoDB", amazonDynamoDB);
+        ReflectionTestUtils.setField(userStorageMigrator, "userIndexKeys", new UserIndexKeys(null, 1));
+        ReflectionTestUtils.setField(userStorageMigrator, "readCapacityGovernor", new ReadCapacityGovernor());
+        ReflectionTestUtils.setField(userStorageMigrator, "migrationProgress", migrationProgress);
+        ReflectionTestUtils.setField(userStorageMigrator, "compactStorage", true);
+        ReflectionTestUtils.setField(userStorageMigrator, "segments", 4);
+        ReflectionTestUtils.setField(userStorageMigrator, "pageSize", 2);
+
+        // Index keys as written by the mapper, so that only the storage format needs migrating
+        legacyItem = new UserIndexKeys(null, 1).withKeys(new DynamoDBMapper(amazonDynamoDB).getTableModel(User.class).convert(User.builder()
+                .uuid("test-uuid-123")
+                .name("John Doe")
+                .email("john.doe@example.com")
+                .department("Engineering")
+                .createdAt(LocalDateTime.of(2024, 1, 15, 10, 30))
+                .isActive(true)
+                .build()));
+    }
+
+    @Test
+    void migrate_LegacyItem_PacksColdAttributesConditionally() {
+        assertTrue(userStorageMigrator.migrate(legacyItem));
+
+        UpdateItemRequest request = amazonDynamoDB.updates.get(0);
+        assertEquals("test-uuid-123", request.getKey().get("uuid").getS());
+        assertEquals("SET #a4 = :new4 REMOVE #a1, #a3", request.getUpdateExpression());
+        assertEquals("attribute_not_exists(#a0) AND #a1 = :old1 AND attribute_not_exists(#a2) AND #a3 = :old3"
+                + " AND attribute_not_exists(#a4) AND #a5 = :old5 AND attribute_not_exists(#a6) AND #a7 = :old7"
+                + " AND attribute_not_exists(#a8)", request.getConditionExpression());
+        assertEquals("2024-01-15T10:30", request.getExpressionAttributeValues().get(":old1").getS());
+
+        UserStorageMigrator.MigrationStats stats = userStorageMigrator.getStats();
+        assertEquals(1, stats.getMigrated());
+        assertTrue(stats.getBytesAfter() < stats.getBytesBefore());
+    }
+
+    @Test
+    void migrate_CompactItem_ExpandsWhenCompactStorageDisabled() {
+        ReflectionTestUtils.setField(userStorageMigrator, "compactStorage", false);
+        Map<String, AttributeValue> compactItem = UserStorageFormat.compact(legacyItem);
+
+        assertTrue(userStorageMigrator.migrate(compactItem));
+
+        UpdateItemRequest request = amazonDynamoDB.updates.get(0);
+        assertEquals("SET #a1 = :new1, #a3 = :new3 REMOVE #a4", request.getUpdateExpression());
+        assertEquals("1", request.getExpressionAttributeValues().get(":new3").getN());
+    }
+
+    @Test
+    void migrate_ItemWithoutIndexKeys_BackfillsThemConditionally() {
+        ReflectionTestUtils.setField(userStorageMigrator, "userIndexKeys", new UserIndexKeys("department:Engineering:4", 1));
+        Map<String, AttributeValue> item = new HashMap<>(UserStorageFormat.compact(legacyItem));
+        item.remove("departmentKey");
+
+        assertTrue(userStorageMigrator.migrate(item));
+
+        UpdateItemRequest request = amazonDynamoDB.updates.get(0);
+        assertEquals("SET #a7 = :new7", request.getUpdateExpression());
+        assertEquals("departmentKey", request.getExpressionAttributeNames().get("#a7"));
+        assertEquals(new UserIndexKeys("department:Engineering:4", 1).key("department", "Engineering", "test-uuid-123"),
+                request.getExpressionAttributeValues().get(":new7").getS());
+        assertTrue(request.getConditionExpression().contains("#a5 = :old5 AND attribute_not_exists(#a6) AND attribute_not_exists(#a7)"));
+    }
+
+    @Test
+    void migrate_ItemAlreadyInTargetFormat_IsNotWritten() {
+        assertFalse(userStorageMigrator.migrate(UserStorageFormat.compact(legacyItem)));
+
+        assertTrue(amazonDynamoDB.updates.isEmpty());
+        assertEquals(1, userStorageMigrator.getStats().getScanned());
+    }
+
+    @Test
+    void migrate_ItemChangedSinceScan_CountsConflict() {
+        amazonDynamoDB.conflict = true;
+
+        assertFalse(userStorageMigrator.migrate(legacyItem));
+
+        assertEquals(1, userStorageMigrator.getStats().getConflicts());
+        assertEquals(0, userStorageMigrator.getStats().getMigrated());
+    }
+
+    @Test
+    void migrateSegment_FollowsPagesWithinSegment() throws Exception {
+        for (int i = 0; i < 5; i++) {
+            amazonDynamoDB.items.add(legacyItem);
+        }
+
+        userStorageMigrator.migrateSegment(3);
+
+        assertEquals(3, amazonDynamoDB.scans.size());
+        assertEquals(Integer.valueOf(3), amazonDynamoDB.scans.get(0).getSegment());
+        assertEquals(Integer.valueOf(4), amazonDynamoDB.scans.get(0).getTotalSegments());
+        assertEquals(5, userStorageMigrator.getStats().getMigrated());
+    }
+
+    @Test
+    void run_RecordsFinishedSegmentsAndSkipsThemOnRestart() {
+        amazonDynamoDB.items.add(legacyItem);
+
+        userStorageMigrator.run();
+
+        assertEquals(4, amazonDynamoDB.scans.size());
+        assertTrue(migrationProgress.isFinished("user-storage-format:compact"));
+        assertTrue(migrationProgress.isFinished(UserStorageMigrator.indexKeysMigrationId(new UserIndexKeys(null, 1))));
+
+        userStorageMigrator.run();
+
+        assertEquals(4, amazonDynamoDB.scans.size());
+    }
+
+    @Test
+    void run_ShardCountsChanged_MigratesSegmentsAgain() {
+        UserIndexKeys sharded = new UserIndexKeys("department:Engineering:4", 1);
+        for (int segment = 0; segment < 4; segment++) {
+            migrationProgress.markFinished("user-storage-format:compact", segment, 4);
+            migrationProgress.markFinished(UserStorageMigrator.indexKeysMigrationId(sharded), segment, 4);
+        }
+        migrationProgress.markFinished(UserStorageMigrator.indexKeysMigrationId(new UserIndexKeys(null, 1)), 2, 4);
+
+        userStorageMigrator.run();
+
+        // Only the segment finished with the current shard counts is skipped
+        assertEquals(3, amazonDynamoDB.scans.size());
+        assertTrue(amazonDynamoDB.scans.stream().noneMatch(scan -> scan.getSegment() == 2));
+        assertTrue(migrationProgress.isFinished(UserStorageMigrator.indexKeysMigrationId(new UserIndexKeys(null, 1))));
+    }
+
+    @Test
+    void markFinished_OtherSegmentCount_StartsOver() {
+        migrationProgress.markFinished("user-storage-format:compact", 0, 4);
+        migrationProgress.markFinished("user-storage-format:compact", 1, 2);
+
+        assertTrue(migrationProgress.finishedSegments("user-storage-format:compact", 4).isEmpty());
+        assertEquals(Collections.singleton(1), migrationProgress.finishedSegments("user-storage-format:compact", 2));
+    }
+
+    /**
+     * DynamoDB stub serving scans in pages of two items, recording updates and holding migration progress.
+     */
+    private static class StubDynamoDB extends AbstractAmazonDynamoDB {
+
+        private final List<Map<String, AttributeValue>> items = new ArrayList<>();
+        private final List<ScanRequest> scans = new ArrayList<>();
+        private final List<UpdateItemRequest> updates = new ArrayList<>();
+        private final Map<String, Map<String, AttributeValue>> progress = new HashMap<>();
+        private boolean conflict;
+
+        @Override
+        public ScanResult scan(ScanRequest request) {
+            scans.add(request);
+            int start = request.getExclusiveStartKey() == null ? 0
+                    : Integer.parseInt(request.getExclusiveStartKey().get("page").getN());
+            int end = Math.min(items.size(), start + request.getLimit());
+            ScanResult result = new ScanResult().withItems(items.subList(start, end));
+            if (end < items.size()) {
+                result.setLastEvaluatedKey(Collections.singletonMap("page", new AttributeValue().withN(String.valueOf(end))));
+            }
+            return result;
+        }
+
+        @Override
+        public GetItemResult getItem(GetItemRequest request) {
+            assertEquals(MigrationProgress.TABLE_NAME, request.getTableName());
+            return new GetItemResult().withItem(progress.get(request.getKey().get("migrationId").getS()));
+        }
+
+        @Override
+        public PutItemResult putItem(PutItemRequest request) {
+            progress.put(request.getItem().get("migrationId").getS(), request.getItem());
+            return new PutItemResult();
+        }
+
+        @Override
+        public UpdateItemResult updateItem(UpdateItemRequest request) {
+            if (MigrationProgress.TABLE_NAME.equals(request.getTableName())) {
+                String id = request.getKey().get("migrationId").getS();
+                AttributeValue total = request.getExpressionAttributeValues().get(":total");
+                Map<String, AttributeValue> item = progress.computeIfAbsent(id, key -> new HashMap<>(request.getKey()));
+                if (item.containsKey("totalSegments") && !item.get("totalSegments").equals(total)) {
+                    throw new ConditionalCheckFailedException("The conditional request failed");
+                }
+                Set<String> finished = new TreeSet<>(request.getExpressionAttributeValues().get(":segment").getNS());
+                if (item.containsKey("finishedSegments")) {
+                    finished.addAll(item.get("finishedSegments").getNS());
+                }
+                item.put("totalSegments", total);
+                item.put("finishedSegments", new AttributeValue().withNS(finished));
+                return new UpdateItemResult();
+            }
+            if (conflict) {
+                throw new ConditionalCheckFailedException("The conditional request failed");
+            }
+            updates.add(request);
+            return new UpdateItemResult();
+        }
+
+    }
+
+}
@@ -0,0 +1,92 @@
+package com.aws.lambda.user.security;
+
+import com.aws.lambda.user.entities.User;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for JwtTokenService.
+ * Tests token issuing, signature verification and expiry handling.
+ */
+class JwtTokenServiceTest {
+
+    private JwtTokenService jwtTokenService;
+
+    private User testUser;
+
+    @BeforeEach
+    void setUp() {
+        SigningKeyCache signingKeyCache = new SigningKeyCache();
+        ReflectionTestUtils.setField(signingKeyCache, "keys", "k1:c2VjcmV0LWtleS1vbmUtZm9yLXRlc3Rz,k2:c2VjcmV0LWtleS10d28tZm9yLXRlc3Rz");
+        ReflectionTestUtils.setField(signingKeyCache, "activeKeyId", "k1");
+        signingKeyCache.init();
+
+        jwtTokenService = new JwtTokenService();
+        ReflectionTestUtils.setField(jwtTokenService, "signingKeyCache", signingKeyCache);
+        ReflectionTestUtils.setField(jwtTokenService, "issuer", "test-issuer");
+        ReflectionTestUtils.setField(jwtTokenService, "ttlSeconds", 60L);
+        ReflectionTestUtils.setField(jwtTokenService, "verifiedCacheSize", 16);
+        jwtTokenService.init();
+
+        testUser = User.builder()
+                .uuid("test-uuid-123")
+                .email("john.doe@example.com")
+                .role("Software Engineer")
+                .build();
+    }
+
+    @Test
+    void verify_IssuedToken_ReturnsClaims() {
+        String token = jwtTokenService.issue(testUser, "session-123");
+
+        JwtClaims claims = jwtTokenService.verify(token);
+
+        assertEquals("test-uuid-123", claims.getSubject());
+        assertEquals("john.doe@example.com", claims.getEmail());
+        assertEquals("Software Engineer", claims.getRole());
+        assertEquals("session-123", claims.getSessionId());
+        assertTrue(claims.getExpiresAt() > claims.getIssuedAt());
+    }
+
+    @Test
+    void verify_RepeatedToken_ReturnsCachedClaims() {
+        String token = jwtTokenService.issue(testUser, "session-123");
+
+        assertSame(jwtTokenService.verify(token), jwtTokenService.verify(token));
+    }
+
+    @Test
+    void verify_TamperedSignature_ThrowsException() {
+        String token = jwtTokenService.issue(testUser, "session-123");
+        String tampered = token.substring(0, token.length() - 2) + (token.endsWith("A") ? "BB" : "AA");
+
+        assertThrows(InvalidTokenException.class, () -> jwtTokenService.verify(tampered));
+    }
+
+    @Test
+    void verify_TamperedPayload_ThrowsException() {
+        String token = jwtTokenService.issue(testUser, "session-123");
+        String[] parts = token.split("\\.");
+        String forged = parts[0] + "." + parts[1].substring(1) + "." + parts[2];
+
+        assertThrows(InvalidTokenException.class, () -> jwtTokenService.verify(forged));
+    }
+
+    @Test
+    void verify_ExpiredToken_ThrowsException() {
+        ReflectionTestUtils.setField(jwtTokenService, "ttlSeconds", -1L);
+        String token = jwtTokenService.issue(testUser, "session-123");
+
+        assertThrows(InvalidTokenException.class, () -> jwtTokenService.verify(token));
+    }
+
+    @Test
+    void verify_MalformedToken_ThrowsException() {
+        assertThrows(InvalidTokenException.class, () -> jwtTokenService.verify("not-a-token"));
+        assertThrows(InvalidTokenException.class, () -> jwtTokenService.verify("a.b.c"));
+    }
+
+}
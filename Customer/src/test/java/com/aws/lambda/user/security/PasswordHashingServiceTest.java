@@ -0,0 +1,130 @@
+package com.aws.lambda.user.security;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for PasswordHashingService.
+ * Tests hashing, rehash detection, cost calibration and pool saturation.
+ */
+class PasswordHashingServiceTest {
+
+    private PasswordHashingService passwordHashingService;
+
+    @BeforeEach
+    void setUp() {
+        passwordHashingService = newService(1000);
+    }
+
+    @AfterEach
+    void tearDown() {
+        passwordHashingService.shutdown();
+    }
+
+    @Test
+    void verify_CorrectPassword_Matches() {
+        String hash = passwordHashingService.hash("correct-horse-battery");
+
+        PasswordHashingService.VerificationResult result = passwordHashingService.verify("correct-horse-battery", hash);
+
+        assertTrue(result.isMatches());
+        assertFalse(result.isRehashNeeded());
+    }
+
+    @Test
+    void verify_WrongPassword_DoesNotMatch() {
+        String hash = passwordHashingService.hash("correct-horse-battery");
+
+        assertFalse(passwordHashingService.verify("wrong-password", hash).isMatches());
+        assertFalse(passwordHashingService.verify("correct-horse-battery", null).isMatches());
+        assertFalse(passwordHashingService.verify("correct-horse-battery", "plain-text").isMatches());
+    }
+
+    @Test
+    void verify_CostChanged_RequestsRehash() {
+        String hash = passwordHashingService.hash("correct-horse-battery");
+        ReflectionTestUtils.setField(passwordHashingService, "iterations", 2000);
+
+        PasswordHashingService.VerificationResult result = passwordHashingService.verify("correct-horse-battery", hash);
+
+        assertTrue(result.isMatches());
+        assertTrue(result.isRehashNeeded());
+    }
+
+    @Test
+    void verify_CostLowerOrWithinTolerance_DoesNotRequestRehash() {
+        String hash = passwordHashingService.hash("correct-horse-battery");
+
+        ReflectionTestUtils.setField(passwordHashingService, "iterations", 500);
+        assertFalse(passwordHashingService.verify("correct-horse-battery", hash).isRehashNeeded());
+
+        ReflectionTestUtils.setField(passwordHashingService, "iterations", 1200);
+        assertFalse(passwordHashingService.verify("correct-horse-battery", hash).isRehashNeeded());
+    }
+
+    @Test
+    void calibrate_NeverGoesBelowConfiguredCost() {
+        PasswordHashingService service = newService(500000);
+        try {
+            assertTrue(service.calibrate() >= 500000);
+        } finally {
+            service.shutdown();
+        }
+    }
+
+    @Test
+    void calibrate_FastTarget_KeepsIterationsWithinBounds() {
+        int calibrated = passwordHashingService.calibrate();
+
+        assertTrue(calibrated >= 10000);
+        assertTrue(calibrated <= 600000);
+        assertEquals(0, calibrated % 1000);
+    }
+
+    @Test
+    void execute_PoolSaturated_RejectsTask() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        CountDownLatch started = new CountDownLatch(1);
+        Thread blocker = new Thread(() -> passwordHashingService.execute(() -> {
+            started.countDown();
+            return release.await(5, TimeUnit.SECONDS);
+        }));
+        blocker.start();
+        started.await(5, TimeUnit.SECONDS);
+
+        Thread queued = new Thread(() -> passwordHashingService.execute(() -> true));
+        queued.start();
+        Thread.sleep(50);
+
+        assertThrows(RejectedExecutionException.class, () -> passwordHashingService.hash("correct-horse-battery"));
+
+        release.countDown();
+        blocker.join();
+        queued.join();
+    }
+
+    private static PasswordHashingService newService(int iterations) {
+        PasswordHashingService service = new PasswordHashingService();
+        ReflectionTestUtils.setField(service, "threads", 1);
+        ReflectionTestUtils.setField(service, "queueCapacity", 1);
+        ReflectionTestUtils.setField(service, "maxWaitMs", 5000L);
+        ReflectionTestUtils.setField(service, "calibrate", false);
+        ReflectionTestUtils.setField(service, "targetMs", 5L);
+        ReflectionTestUtils.setField(service, "calibrationBudgetMs", 100L);
+        ReflectionTestUtils.setField(service, "iterations", iterations);
+        ReflectionTestUtils.setField(service, "minIterations", 10000);
+        ReflectionTestUtils.setField(service, "maxIterations", 600000);
+        ReflectionTestUtils.setField(service, "rehashTolerance", 0.2);
+        service.init();
+        return service;
+    }
+
+}
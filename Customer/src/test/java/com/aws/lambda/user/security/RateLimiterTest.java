@@ -0,0 +1,156 @@
+package com.aws.lambda.user.security;
+
+import com.amazonaws.AmazonClientException;
+import com.amazonaws.serverless.proxy.model.ApiGatewayRequestIdentity;
+import com.amazonaws.serverless.proxy.model.AwsProxyRequestContext;
+import com.aws.lambda.user.repositories.RateLimitRepository;
+import com.aws.lambda.user.utils.SlidingWindowCounter;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+/**
+ * Unit tests for RateLimiter.
+ * Tests endpoint costs, sliding-window decisions and shared counter syncing.
+ */
+@ExtendWith(MockitoExtension.class)
+class RateLimiterTest {
+
+    @Mock
+    private RateLimitRepository rateLimitRepository;
+
+    @InjectMocks
+    private RateLimiter rateLimiter;
+
+    @BeforeEach
+    void setUp() {
+        ReflectionTestUtils.setField(rateLimiter, "enabled", true);
+        ReflectionTestUtils.setField(rateLimiter, "windowSeconds", 60L);
+        ReflectionTestUtils.setField(rateLimiter, "limit", 10L);
+        ReflectionTestUtils.setField(rateLimiter, "defaultCost", 1L);
+        ReflectionTestUtils.setField(rateLimiter, "costs", "GET /user/health:0, GET /user/all:5, GET /user/department/*:3");
+        ReflectionTestUtils.setField(rateLimiter, "scanCost", 5L);
+        ReflectionTestUtils.setField(rateLimiter, "maxClients", 16);
+        ReflectionTestUtils.setField(rateLimiter, "sharedEnabled", false);
+        ReflectionTestUtils.setField(rateLimiter, "syncCost", 4L);
+        ReflectionTestUtils.setField(rateLimiter, "syncIntervalMs", 60000L);
+        rateLimiter.init();
+    }
+
+    @Test
+    void cost_ConfiguredEndpoints_ReturnsWeights() {
+        assertEquals(5, rateLimiter.cost("GET", "/user/all"));
+        assertEquals(3, rateLimiter.cost("GET", "/user/department/Engineering"));
+        assertEquals(0, rateLimiter.cost("GET", "/user/health"));
+        assertEquals(1, rateLimiter.cost("GET", "/user/test-uuid-123"));
+        assertEquals(1, rateLimiter.cost("DELETE", "/user/all"));
+    }
+
+    @Test
+    void acquire_ScansExhaustLimitBeforePointReads() {
+        assertTrue(rateLimiter.acquire("ip:1.2.3.4", "GET", "/user/all").isAllowed());
+        assertTrue(rateLimiter.acquire("ip:1.2.3.4", "GET", "/user/all").isAllowed());
+
+        RateLimiter.Decision decision = rateLimiter.acquire("ip:1.2.3.4", "GET", "/user/test-uuid-123");
+
+        assertFalse(decision.isAllowed());
+        assertTrue(decision.getRetryAfterSeconds() > 0);
+        assertTrue(rateLimiter.acquire("ip:5.6.7.8", "GET", "/user/test-uuid-123").isAllowed());
+    }
+
+    @Test
+    void chargeScan_QueryThatScanned_PaysScanCost() {
+        RateLimiter.Decision query = rateLimiter.acquire("ip:1.2.3.4", "GET", "/user/query");
+
+        rateLimiter.chargeScan("ip:1.2.3.4", query.getCost());
+
+        // 5 of the 10 units are used, so a full-table listing still fits and a third request does not
+        assertTrue(rateLimiter.acquire("ip:1.2.3.4", "GET", "/user/all").isAllowed());
+        assertFalse(rateLimiter.acquire("ip:1.2.3.4", "GET", "/user/test-uuid-123").isAllowed());
+    }
+
+    @Test
+    void acquire_ZeroCostEndpoint_IsNeverLimited() {
+        for (int i = 0; i < 20; i++) {
+            assertTrue(rateLimiter.acquire("ip:1.2.3.4", "GET", "/user/health").isAllowed());
+        }
+    }
+
+    @Test
+    void acquire_SharedCounterAboveLimit_RejectsLocally() {
+        ReflectionTestUtils.setField(rateLimiter, "sharedEnabled", true);
+        when(rateLimitRepository.increment(startsWith("ip:1.2.3.4#"), eq(1L), anyLong())).thenReturn(10L);
+
+        // The first request syncs immediately and learns that other containers used the whole window
+        assertTrue(rateLimiter.acquire("ip:1.2.3.4", "GET", "/user/test-uuid-123").isAllowed());
+        assertFalse(rateLimiter.acquire("ip:1.2.3.4", "GET", "/user/test-uuid-123").isAllowed());
+    }
+
+    @Test
+    void acquire_SharedCounter_SyncsInBatches() {
+        ReflectionTestUtils.setField(rateLimiter, "sharedEnabled", true);
+        when(rateLimitRepository.increment(anyString(), anyLong(), anyLong())).thenReturn(1L, 5L);
+
+        for (int i = 0; i < 5; i++) {
+            assertTrue(rateLimiter.acquire("ip:1.2.3.4", "GET", "/user/test-uuid-123").isAllowed());
+        }
+
+        verify(rateLimitRepository, times(1)).increment(anyString(), eq(1L), anyLong());
+        verify(rateLimitRepository, times(1)).increment(anyString(), eq(4L), anyLong());
+    }
+
+    @Test
+    void acquire_SharedCounterUnavailable_FailsOpen() {
+        ReflectionTestUtils.setField(rateLimiter, "sharedEnabled", true);
+        when(rateLimitRepository.increment(anyString(), anyLong(), anyLong()))
+                .thenThrow(new AmazonClientException("unavailable"));
+
+        for (int i = 0; i < 8; i++) {
+            assertTrue(rateLimiter.acquire("ip:1.2.3.4", "GET", "/user/test-uuid-123").isAllowed());
+        }
+    }
+
+    @Test
+    void slidingWindow_PreviousWindowDecays() {
+        SlidingWindowCounter counter = new SlidingWindowCounter(1000);
+
+        assertEquals(0, counter.tryAcquire(10, 10, 0));
+        long wait = counter.tryAcquire(1, 10, 500);
+        assertEquals(600, wait);
+
+        // Half of the previous window still overlaps at 1500, leaving room for 5 units
+        assertEquals(0, counter.tryAcquire(5, 10, 1500));
+        assertNotEquals(0, counter.tryAcquire(1, 10, 1500));
+    }
+
+    @Test
+    void clientId_ApiKeyIsDigested() {
+        assertEquals("ip:1.2.3.4", RateLimitFilter.clientId(null, "1.2.3.4"));
+
+        String clientId = RateLimitFilter.clientId("secret-api-key", "1.2.3.4");
+        assertTrue(clientId.startsWith("key:"));
+        assertFalse(clientId.contains("secret"));
+    }
+
+    @Test
+    void validatedApiKeyId_OnlyTakenFromApiGatewayIdentity() {
+        AwsProxyRequestContext requestContext = new AwsProxyRequestContext();
+        assertNull(RateLimitFilter.validatedApiKeyId(null));
+        assertNull(RateLimitFilter.validatedApiKeyId(requestContext));
+
+        requestContext.setIdentity(new ApiGatewayRequestIdentity());
+        requestContext.getIdentity().setApiKeyId("key-id");
+        assertEquals("key-id", RateLimitFilter.validatedApiKeyId(requestContext));
+    }
+
+}
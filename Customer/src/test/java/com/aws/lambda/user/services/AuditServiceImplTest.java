@@ -0,0 +1,165 @@
+package com.aws.lambda.user.services;
+
+import com.amazonaws.AmazonServiceException;
+import com.aws.lambda.user.entities.AuditEvent;
+import com.aws.lambda.user.entities.User;
+import com.aws.lambda.user.repositories.AuditRepository;
+import com.aws.lambda.user.repositories.DynamoDBPriming;
+import com.aws.lambda.user.security.JwtAuthenticationFilter;
+import com.aws.lambda.user.security.JwtClaims;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.web.context.request.RequestContextHolder;
+import org.springframework.web.context.request.ServletRequestAttributes;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for AuditService implementation.
+ * Tests the recorded diff and actor, batching, draining and the fallback for events that cannot be saved.
+ */
+class AuditServiceImplTest {
+
+    private StubAuditRepository auditRepository;
+
+    private AuditServiceImpl auditService;
+
+    private User user;
+
+    @BeforeEach
+    void setUp() {
+        auditRepository = new StubAuditRepository();
+        auditService = new AuditServiceImpl();
+        ReflectionTestUtils.setField(auditService, "auditRepository", auditRepository);
+        ReflectionTestUtils.setField(auditService, "objectMapper", Jackson2ObjectMapperBuilder.json().build());
+        ReflectionTestUtils.setField(auditService, "dynamoDBPriming", new DynamoDBPriming());
+        ReflectionTestUtils.setField(auditService, "enabled", true);
+        ReflectionTestUtils.setField(auditService, "batchSize", 2);
+        // A long linger shows that drain() does not wait for it
+        ReflectionTestUtils.setField(auditService, "lingerMs", 60000L);
+        ReflectionTestUtils.setField(auditService, "bufferSize", 100);
+        ReflectionTestUtils.setField(auditService, "drainTimeoutMs", 5000L);
+        auditService.init();
+
+        user = User.builder()
+                .uuid("test-uuid-123")
+                .name("John Doe")
+                .email("john.doe@example.com")
+                .age(30)
+                .department("Engineering")
+                .isActive(true)
+                .passwordHash("hash-1")
+                .build();
+    }
+
+    @AfterEach
+    void tearDown() {
+        auditService.shutdown();
+        RequestContextHolder.resetRequestAttributes();
+    }
+
+    @Test
+    void record_Update_StoresOnlyChangedFieldsWithPasswordRedacted() {
+        Map<String, String> before = AuditEvent.fieldsOf(user);
+        user.setDepartment("Sales");
+        user.setPasswordHash("hash-2");
+
+        auditService.record(AuditEvent.UPDATE, user.getUuid(), before, AuditEvent.fieldsOf(user));
+
+        assertTrue(auditService.drain());
+        AuditEvent event = auditRepository.saved.get(0);
+        assertEquals(AuditEvent.UPDATE, event.getAction());
+        assertEquals(AuditServiceImpl.ANONYMOUS, event.getActor());
+        assertEquals(2, event.getBefore().size());
+        assertEquals("Engineering", event.getBefore().get("department"));
+        assertEquals("Sales", event.getAfter().get("department"));
+        assertEquals("[redacted]", event.getAfter().get("password"));
+    }
+
+    @Test
+    void record_Create_HasNoBeforeAndRecordsCaller() {
+        MockHttpServletRequest request = new MockHttpServletRequest();
+        request.setAttribute(JwtAuthenticationFilter.CLAIMS_ATTRIBUTE,
+                new JwtClaims("admin-uuid", "admin@example.com", "admin", "session-1", 0, 0));
+        RequestContextHolder.setRequestAttributes(new ServletRequestAttributes(request));
+
+        auditService.record(AuditEvent.CREATE, user.getUuid(), null, AuditEvent.fieldsOf(user));
+
+        assertTrue(auditService.drain());
+        AuditEvent event = auditRepository.saved.get(0);
+        assertEquals("admin-uuid", event.getActor());
+        assertNull(event.getBefore());
+        assertEquals("John Doe", event.getAfter().get("name"));
+        assertFalse(event.getAfter().containsKey("role"));
+    }
+
+    @Test
+    void drain_ManyEvents_WritesThemInBatches() {
+        for (int i = 0; i < 5; i++) {
+            auditService.record(AuditEvent.DELETE, "uuid-" + i, AuditEvent.fieldsOf(user), null);
+        }
+
+        assertTrue(auditService.drain());
+
+        assertEquals(5, auditRepository.saved.size());
+        assertTrue(auditRepository.batches >= 3, "batches " + auditRepository.batches);
+        assertNull(auditRepository.saved.get(0).getAfter());
+    }
+
+    @Test
+    void drain_RepositoryFails_ReturnsOnceEventsAreLogged() {
+        auditRepository.failure = new AmazonServiceException("Throughput exceeded");
+
+        auditService.record(AuditEvent.ACTIVATE, user.getUuid(), AuditEvent.fieldsOf(user), AuditEvent.fieldsOf(user));
+
+        assertTrue(auditService.drain());
+        assertTrue(auditRepository.saved.isEmpty());
+    }
+
+    @Test
+    void record_WhilePriming_IsNotRecorded() {
+        DynamoDBPriming dynamoDBPriming = (DynamoDBPriming) ReflectionTestUtils.getField(auditService, "dynamoDBPriming");
+
+        dynamoDBPriming.run(() -> auditService.record(AuditEvent.CREATE, user.getUuid(), null, AuditEvent.fieldsOf(user)));
+
+        assertTrue(auditService.drain());
+        assertEquals(0, auditRepository.batches);
+    }
+
+    @Test
+    void drain_NothingRecorded_ReturnsImmediately() {
+        assertTrue(auditService.drain());
+        assertEquals(0, auditRepository.batches);
+    }
+
+    /**
+     * Audit repository stub that keeps saved events in memory.
+     */
+    private static class StubAuditRepository implements AuditRepository {
+
+        private final List<AuditEvent> saved = Collections.synchronizedList(new ArrayList<>());
+        private volatile int batches;
+        private volatile RuntimeException failure;
+
+        @Override
+        public List<AuditEvent> saveAll(List<AuditEvent> events) {
+            batches++;
+            if (failure != null) {
+                throw failure;
+            }
+            saved.addAll(events);
+            return Collections.emptyList();
+        }
+
+    }
+
+}
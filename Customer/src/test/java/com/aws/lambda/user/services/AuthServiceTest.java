@@ -0,0 +1,162 @@
+package com.aws.lambda.user.services;
+
+import com.aws.lambda.user.entities.Session;
+import com.aws.lambda.user.entities.User;
+import com.aws.lambda.user.models.TokenResponse;
+import com.aws.lambda.user.repositories.UserRepository;
+import com.aws.lambda.user.security.InvalidTokenException;
+import com.aws.lambda.user.security.JwtClaims;
+import com.aws.lambda.user.security.JwtTokenService;
+import com.aws.lambda.user.security.PasswordHashingService;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+/**
+ * Unit tests for AuthService implementation.
+ * Tests credential checks, token issuing, session checks and transparent password rehashing.
+ */
+@ExtendWith(MockitoExtension.class)
+class AuthServiceTest {
+
+    @Mock
+    private UserRepository userRepository;
+
+    @Mock
+    private PasswordHashingService passwordHashingService;
+
+    @Mock
+    private JwtTokenService jwtTokenService;
+
+    @Mock
+    private SessionService sessionService;
+
+    @InjectMocks
+    private AuthServiceImpl authService;
+
+    private User testUser;
+
+    private Session session;
+
+    private JwtClaims claims;
+
+    @BeforeEach
+    void setUp() {
+        testUser = User.builder()
+                .uuid("test-uuid-123")
+                .email("john.doe@example.com")
+                .isActive(true)
+                .passwordHash("pbkdf2$1000$c2FsdA==$aGFzaA==")
+                .build();
+        session = Session.builder()
+                .sessionId("session-123")
+                .userUuid("test-uuid-123")
+                .build();
+        claims = new JwtClaims("test-uuid-123", "john.doe@example.com", null, "session-123", 0L, Long.MAX_VALUE);
+    }
+
+    @Test
+    void login_ValidCredentials_ReturnsToken() {
+        when(userRepository.findByEmail("john.doe@example.com")).thenReturn(testUser);
+        when(passwordHashingService.verify("correct-horse-battery", testUser.getPasswordHash()))
+                .thenReturn(new PasswordHashingService.VerificationResult(true, false));
+        when(jwtTokenService.getTtlSeconds()).thenReturn(3600L);
+        when(sessionService.createSession(testUser, 3600L)).thenReturn(session);
+        when(jwtTokenService.issue(testUser, "session-123")).thenReturn("token");
+
+        TokenResponse result = authService.login("john.doe@example.com", "correct-horse-battery");
+
+        assertNotNull(result);
+        assertEquals("token", result.getAccessToken());
+        assertEquals("Bearer", result.getTokenType());
+        verify(userRepository, never()).updatePasswordHash(any(), any(), any());
+    }
+
+    @Test
+    void login_WrongPassword_ReturnsNull() {
+        when(userRepository.findByEmail("john.doe@example.com")).thenReturn(testUser);
+        when(passwordHashingService.verify("wrong-password", testUser.getPasswordHash()))
+                .thenReturn(new PasswordHashingService.VerificationResult(false, false));
+
+        assertNull(authService.login("john.doe@example.com", "wrong-password"));
+
+        verify(jwtTokenService, never()).issue(any(User.class), any());
+        verify(sessionService, never()).createSession(any(User.class), anyLong());
+    }
+
+    @Test
+    void login_InactiveUser_ReturnsNull() {
+        testUser.setIsActive(false);
+        when(userRepository.findByEmail("john.doe@example.com")).thenReturn(testUser);
+
+        assertNull(authService.login("john.doe@example.com", "correct-horse-battery"));
+
+        verify(passwordHashingService, never()).verify(any(), any());
+    }
+
+    @Test
+    void login_OutdatedCost_RehashesPassword() {
+        when(userRepository.findByEmail("john.doe@example.com")).thenReturn(testUser);
+        when(passwordHashingService.verify("correct-horse-battery", testUser.getPasswordHash()))
+                .thenReturn(new PasswordHashingService.VerificationResult(true, true));
+        when(passwordHashingService.hash("correct-horse-battery")).thenReturn("pbkdf2$2000$bmV3$aGFzaA==");
+        when(userRepository.updatePasswordHash("test-uuid-123", "pbkdf2$1000$c2FsdA==$aGFzaA==", "pbkdf2$2000$bmV3$aGFzaA=="))
+                .thenReturn(true);
+        when(sessionService.createSession(eq(testUser), anyLong())).thenReturn(session);
+        when(jwtTokenService.issue(testUser, "session-123")).thenReturn("token");
+
+        authService.login("john.doe@example.com", "correct-horse-battery");
+
+        verify(userRepository, times(1)).updatePasswordHash("test-uuid-123", "pbkdf2$1000$c2FsdA==$aGFzaA==", "pbkdf2$2000$bmV3$aGFzaA==");
+        verify(userRepository, never()).save(any(User.class));
+    }
+
+    @Test
+    void login_HashChangedBeforeRehash_StillIssuesToken() {
+        when(userRepository.findByEmail("john.doe@example.com")).thenReturn(testUser);
+        when(passwordHashingService.verify("correct-horse-battery", testUser.getPasswordHash()))
+                .thenReturn(new PasswordHashingService.VerificationResult(true, true));
+        when(passwordHashingService.hash("correct-horse-battery")).thenReturn("pbkdf2$2000$bmV3$aGFzaA==");
+        when(userRepository.updatePasswordHash(any(), any(), any())).thenReturn(false);
+        when(sessionService.createSession(eq(testUser), anyLong())).thenReturn(session);
+        when(jwtTokenService.issue(testUser, "session-123")).thenReturn("token");
+
+        TokenResponse result = authService.login("john.doe@example.com", "correct-horse-battery");
+
+        assertEquals("token", result.getAccessToken());
+        verify(userRepository, never()).save(any(User.class));
+    }
+
+    @Test
+    void authenticate_ActiveSession_ReturnsClaims() {
+        when(jwtTokenService.verify("token")).thenReturn(claims);
+        when(sessionService.isActive("session-123")).thenReturn(true);
+
+        assertSame(claims, authService.authenticate("token"));
+    }
+
+    @Test
+    void authenticate_RevokedSession_ThrowsException() {
+        when(jwtTokenService.verify("token")).thenReturn(claims);
+        when(sessionService.isActive("session-123")).thenReturn(false);
+
+        assertThrows(InvalidTokenException.class, () -> authService.authenticate("token"));
+    }
+
+    @Test
+    void logout_RevokesSession() {
+        authService.logout(claims);
+
+        verify(sessionService, times(1)).revoke("session-123");
+    }
+
+}
@@ -0,0 +1,170 @@
+package com.aws.lambda.user.services;
+
+import com.aws.lambda.user.entities.IdempotencyRecord;
+import com.aws.lambda.user.entities.User;
+import com.aws.lambda.user.repositories.IdempotencyRepository;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.Spy;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.time.LocalDateTime;
+import java.util.Collections;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+/**
+ * Unit tests for IdempotencyService implementation.
+ * Tests key reservation, response replay and conflict handling.
+ */
+@ExtendWith(MockitoExtension.class)
+class IdempotencyServiceTest {
+
+    @Mock
+    private IdempotencyRepository idempotencyRepository;
+
+    @Spy
+    private ObjectMapper objectMapper = Jackson2ObjectMapperBuilder.json().build();
+
+    @InjectMocks
+    private IdempotencyServiceImpl idempotencyService;
+
+    private User request;
+
+    private AtomicInteger invocations;
+
+    private Supplier<ResponseEntity<User>> operation;
+
+    @BeforeEach
+    void setUp() {
+        ReflectionTestUtils.setField(idempotencyService, "ttlSeconds", 3600L);
+        ReflectionTestUtils.setField(idempotencyService, "leaseSeconds", 30L);
+        ReflectionTestUtils.setField(idempotencyService, "cacheSize", 16);
+        ReflectionTestUtils.setField(idempotencyService, "maxKeyLength", 64);
+        idempotencyService.init();
+
+        request = User.builder()
+                .name("John Doe")
+                .email("john.doe@example.com")
+                .build();
+        invocations = new AtomicInteger();
+        operation = () -> {
+            invocations.incrementAndGet();
+            User created = User.builder()
+                    .uuid("test-uuid-123")
+                    .name("John Doe")
+                    .email("john.doe@example.com")
+                    .createdAt(LocalDateTime.now())
+                    .build();
+            return ResponseEntity.status(HttpStatus.CREATED).body(created);
+        };
+    }
+
+    @Test
+    void execute_NoKey_RunsOperation() {
+        ResponseEntity<User> response = idempotencyService.execute("createUser", null, request, User.class, operation);
+
+        assertEquals(HttpStatus.CREATED, response.getStatusCode());
+        assertEquals(1, invocations.get());
+        verifyNoInteractions(idempotencyRepository);
+    }
+
+    @Test
+    void execute_RetryOnSameContainer_ReplaysFromCache() {
+        when(idempotencyRepository.reserve(any(IdempotencyRecord.class))).thenReturn(true);
+
+        idempotencyService.execute("createUser", "key-1", request, User.class, operation);
+        ResponseEntity<User> replayed = idempotencyService.execute("createUser", "key-1", request, User.class, operation);
+
+        assertEquals(1, invocations.get());
+        assertEquals(HttpStatus.CREATED, replayed.getStatusCode());
+        assertEquals("test-uuid-123", replayed.getBody().getUuid());
+        assertEquals("true", replayed.getHeaders().getFirst(IdempotencyService.REPLAYED_HEADER));
+        verify(idempotencyRepository, times(1)).reserve(any(IdempotencyRecord.class));
+    }
+
+    @Test
+    void execute_CompletedElsewhere_ReplaysStoredResponse() {
+        when(idempotencyRepository.reserve(any(IdempotencyRecord.class))).thenReturn(true);
+        idempotencyService.execute("createUser", "key-1", request, User.class, operation);
+        ArgumentCaptor<IdempotencyRecord> stored = ArgumentCaptor.forClass(IdempotencyRecord.class);
+        verify(idempotencyRepository).save(stored.capture());
+
+        // A second container has an empty cache and loses the reservation race
+        idempotencyService.init();
+        when(idempotencyRepository.reserve(any(IdempotencyRecord.class))).thenReturn(false);
+        when(idempotencyRepository.findById("createUser#key-1")).thenReturn(stored.getValue());
+
+        ResponseEntity<User> replayed = idempotencyService.execute("createUser", "key-1", request, User.class, operation);
+
+        assertEquals(1, invocations.get());
+        assertEquals(HttpStatus.CREATED, replayed.getStatusCode());
+        assertEquals("test-uuid-123", replayed.getBody().getUuid());
+    }
+
+    @Test
+    void execute_KeyReusedForDifferentRequest_ThrowsUnprocessable() {
+        when(idempotencyRepository.reserve(any(IdempotencyRecord.class))).thenReturn(true);
+        idempotencyService.execute("createUser", "key-1", request, User.class, operation);
+
+        request.setName("Jane Doe");
+        ResponseStatusException exception = assertThrows(ResponseStatusException.class,
+                () -> idempotencyService.execute("createUser", "key-1", request, User.class, operation));
+
+        assertEquals(HttpStatus.UNPROCESSABLE_ENTITY, exception.getStatus());
+        assertEquals(1, invocations.get());
+    }
+
+    @Test
+    void execute_KeyInProgress_ThrowsConflict() {
+        when(idempotencyRepository.reserve(any(IdempotencyRecord.class))).thenAnswer(invocation -> {
+            IdempotencyRecord reservation = invocation.getArgument(0);
+            when(idempotencyRepository.findById(reservation.getIdempotencyKey())).thenReturn(reservation);
+            return false;
+        });
+
+        ResponseStatusException exception = assertThrows(ResponseStatusException.class,
+                () -> idempotencyService.execute("createUser", "key-1", request, User.class, operation));
+
+        assertEquals(HttpStatus.CONFLICT, exception.getStatus());
+        assertEquals(0, invocations.get());
+    }
+
+    @Test
+    void execute_OperationFails_ReleasesKey() {
+        when(idempotencyRepository.reserve(any(IdempotencyRecord.class))).thenReturn(true);
+
+        assertThrows(IllegalArgumentException.class, () -> idempotencyService.execute("createUser", "key-1",
+                request, User.class, () -> {
+                    throw new IllegalArgumentException("User with email already exists");
+                }));
+
+        verify(idempotencyRepository, times(1)).delete("createUser#key-1");
+        verify(idempotencyRepository, never()).save(any(IdempotencyRecord.class));
+    }
+
+    @Test
+    void execute_OverlongKey_ThrowsBadRequest() {
+        String key = String.join("", Collections.nCopies(65, "k"));
+
+        ResponseStatusException exception = assertThrows(ResponseStatusException.class,
+                () -> idempotencyService.execute("createUser", key, request, User.class, operation));
+
+        assertEquals(HttpStatus.BAD_REQUEST, exception.getStatus());
+    }
+
+}
@@ -0,0 +1,117 @@
+package com.aws.lambda.user.services;
+
+import com.aws.lambda.user.entities.Session;
+import com.aws.lambda.user.entities.User;
+import com.aws.lambda.user.repositories.SessionRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.*;
+
+/**
+ * Unit tests for SessionService implementation.
+ * Tests session creation, cached lookups and revocation.
+ */
+@ExtendWith(MockitoExtension.class)
+class SessionServiceTest {
+
+    @Mock
+    private SessionRepository sessionRepository;
+
+    @InjectMocks
+    private SessionServiceImpl sessionService;
+
+    private User testUser;
+
+    @BeforeEach
+    void setUp() {
+        ReflectionTestUtils.setField(sessionService, "cacheSize", 16);
+        ReflectionTestUtils.setField(sessionService, "cacheTtlSeconds", 60L);
+        ReflectionTestUtils.setField(sessionService, "negativeCacheTtlSeconds", 5L);
+        sessionService.init();
+
+        testUser = User.builder()
+                .uuid("test-uuid-123")
+                .build();
+    }
+
+    @Test
+    void createSession_SavesAndCachesSession() {
+        Session session = sessionService.createSession(testUser, 3600);
+
+        assertNotNull(session.getSessionId());
+        assertEquals("test-uuid-123", session.getUserUuid());
+        assertEquals(3600L, session.getExpiresAt() - session.getCreatedAt());
+        verify(sessionRepository, times(1)).save(session);
+
+        assertTrue(sessionService.isActive(session.getSessionId()));
+        verify(sessionRepository, never()).findById(anyString());
+    }
+
+    @Test
+    void isActive_UncachedSession_LoadsOnce() {
+        when(sessionRepository.findById("session-123")).thenReturn(session(false, 3600));
+
+        assertTrue(sessionService.isActive("session-123"));
+        assertTrue(sessionService.isActive("session-123"));
+
+        verify(sessionRepository, times(1)).findById("session-123");
+    }
+
+    @Test
+    void isActive_UnknownSession_IsNegativelyCached() {
+        when(sessionRepository.findById("missing")).thenReturn(null);
+
+        assertFalse(sessionService.isActive("missing"));
+        assertFalse(sessionService.isActive("missing"));
+
+        verify(sessionRepository, times(1)).findById("missing");
+    }
+
+    @Test
+    void isActive_ExpiredOrRevokedSession_ReturnsFalse() {
+        when(sessionRepository.findById("expired")).thenReturn(session(false, -10));
+        when(sessionRepository.findById("revoked")).thenReturn(session(true, 3600));
+
+        assertFalse(sessionService.isActive("expired"));
+        assertFalse(sessionService.isActive("revoked"));
+    }
+
+    @Test
+    void isActive_NullSessionId_ReturnsFalse() {
+        assertFalse(sessionService.isActive(null));
+
+        verify(sessionRepository, never()).findById(any());
+    }
+
+    @Test
+    void revoke_CachedSession_IsNoLongerActive() {
+        Session session = sessionService.createSession(testUser, 3600);
+
+        sessionService.revoke(session.getSessionId());
+
+        assertFalse(sessionService.isActive(session.getSessionId()));
+        verify(sessionRepository, times(1)).revoke(session.getSessionId());
+        verify(sessionRepository, never()).findById(anyString());
+    }
+
+    private static Session session(boolean revoked, long expiresInSeconds) {
+        long now = System.currentTimeMillis() / 1000;
+        return Session.builder()
+                .sessionId("session-123")
+                .userUuid("test-uuid-123")
+                .createdAt(now)
+                .expiresAt(now + expiresInSeconds)
+                .revoked(revoked)
+                .build();
+    }
+
+}
@@ -1,17 +1,27 @@
 package com.aws.lambda.user.services;
 
+import com.aws.lambda.user.entities.AuditEvent;
 import com.aws.lambda.user.entities.User;
+import com.aws.lambda.user.models.Reassignment;
+import com.aws.lambda.user.models.ReassignmentResult;
+import com.aws.lambda.user.models.UserQueryPage;
+import com.aws.lambda.user.repositories.AsyncUserRepository;
 import com.aws.lambda.user.repositories.UserRepository;
+import com.aws.lambda.user.security.PasswordHashingService;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
 
 import java.time.LocalDateTime;
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
 
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.ArgumentMatchers.any;
@@ -28,6 +38,15 @@ class UserServiceTest {
     @Mock
     private UserRepository userRepository;
 
+    @Mock
+    private AsyncUserRepository asyncUserRepository;
+
+    @Mock
+    private PasswordHashingService passwordHashingService;
+
+    @Mock
+    private AuditService auditService;
+
     @InjectMocks
     private UserServiceImpl userService;
 
@@ -52,7 +71,6 @@ class UserServiceTest {
     @Test
     void createUser_ValidUser_ReturnsCreatedUser() {
         when(userRepository.save(any(User.class))).thenReturn(testUser);
-        when(userRepository.findAll()).thenReturn(Arrays.asList());
 
         User result = userService.createUser(testUser);
 
@@ -79,8 +97,7 @@ class UserServiceTest {
 
     @Test
     void createUser_DuplicateEmail_ThrowsException() {
-        User existingUser = User.builder().email("john.doe@example.com").build();
-        when(userRepository.findAll()).thenReturn(Arrays.asList(existingUser));
+        when(userRepository.existsByEmail("john.doe@example.com")).thenReturn(true);
 
         assertThrows(IllegalArgumentException.class, () -> {
             userService.createUser(testUser);
@@ -151,6 +168,7 @@ class UserServiceTest {
 
         verify(userRepository, times(1)).findById("test-uuid-123");
         verify(userRepository, times(1)).delete("test-uuid-123");
+        verify(auditService).record(eq(AuditEvent.DELETE), eq("test-uuid-123"), eq(AuditEvent.fieldsOf(testUser)), isNull());
     }
 
     @Test
@@ -163,34 +181,36 @@ class UserServiceTest {
 
         verify(userRepository, times(1)).findById("non-existent");
         verify(userRepository, never()).delete(anyString());
+        verifyNoInteractions(auditService);
     }
 
     @Test
     void getAllUsers_ReturnsUserList() {
         List<User> users = Arrays.asList(testUser);
-        when(userRepository.findAll()).thenReturn(users);
+        when(userRepository.findAll("cursor-1")).thenReturn(UserQueryPage.builder().users(users).nextCursor("cursor-2").build());
 
-        List<User> result = userService.getAllUsers();
+        UserQueryPage result = userService.getAllUsers("cursor-1");
 
         assertNotNull(result);
-        assertEquals(1, result.size());
-        assertEquals("John Doe", result.get(0).getName());
+        assertEquals(1, result.getUsers().size());
+        assertEquals("John Doe", result.getUsers().get(0).getName());
+        assertEquals("cursor-2", result.getNextCursor());
 
-        verify(userRepository, times(1)).findAll();
+        verify(userRepository, times(1)).findAll("cursor-1");
     }
 
     @Test
     void getUsersByDepartment_ValidDepartment_ReturnsUserList() {
         List<User> users = Arrays.asList(testUser);
-        when(userRepository.findByDepartment("Engineering")).thenReturn(users);
+        when(userRepository.findByDepartment("Engineering", null)).thenReturn(UserQueryPage.builder().users(users).build());
 
-        List<User> result = userService.getUsersByDepartment("Engineering");
+        UserQueryPage result = userService.getUsersByDepartment("Engineering", null);
 
         assertNotNull(result);
-        assertEquals(1, result.size());
-        assertEquals("Engineering", result.get(0).getDepartment());
+        assertEquals(1, result.getUsers().size());
+        assertEquals("Engineering", result.getUsers().get(0).getDepartment());
 
-        verify(userRepository, times(1)).findByDepartment("Engineering");
+        verify(userRepository, times(1)).findByDepartment("Engineering", null);
     }
 
     @Test
@@ -206,6 +226,14 @@ class UserServiceTest {
 
         verify(userRepository, times(1)).findById("test-uuid-123");
         verify(userRepository, times(1)).save(any(User.class));
+
+        @SuppressWarnings("unchecked")
+        ArgumentCaptor<Map<String, String>> before = ArgumentCaptor.forClass(Map.class);
+        @SuppressWarnings("unchecked")
+        ArgumentCaptor<Map<String, String>> after = ArgumentCaptor.forClass(Map.class);
+        verify(auditService).record(eq(AuditEvent.DEACTIVATE), eq("test-uuid-123"), before.capture(), after.capture());
+        assertEquals("true", before.getValue().get("isActive"));
+        assertEquals("false", after.getValue().get("isActive"));
     }
 
     @Test
@@ -224,4 +252,85 @@ class UserServiceTest {
         verify(userRepository, times(1)).save(any(User.class));
     }
 
+    @Test
+    void updateUser_NewPassword_HashesWhileReading() {
+        testUser.setPassword("correct-horse-battery");
+        CompletableFuture<User> pendingUser = new CompletableFuture<>();
+        when(asyncUserRepository.findById("test-uuid-123")).thenReturn(pendingUser);
+        when(passwordHashingService.hash("correct-horse-battery")).thenAnswer(invocation -> {
+            // The read is still in flight while the password is hashed
+            assertFalse(pendingUser.isDone());
+            pendingUser.complete(User.builder().uuid("test-uuid-123").build());
+            return "pbkdf2$1000$c2FsdA==$aGFzaA==";
+        });
+        when(userRepository.save(any(User.class))).thenAnswer(invocation -> invocation.getArgument(0));
+
+        User result = userService.updateUser(testUser);
+
+        assertEquals("pbkdf2$1000$c2FsdA==$aGFzaA==", result.getPasswordHash());
+        assertNull(result.getPassword());
+        verify(userRepository, never()).findById(anyString());
+    }
+
+    @Test
+    void getUsersByDepartments_ValidDepartments_ReturnsUsersPerDepartment() {
+        List<String> departments = Arrays.asList("Engineering", "Sales");
+        Map<String, List<User>> users = Collections.singletonMap("Engineering", Arrays.asList(testUser));
+        when(asyncUserRepository.findByDepartments(departments)).thenReturn(CompletableFuture.completedFuture(users));
+
+        Map<String, List<User>> result = userService.getUsersByDepartments(departments).join();
+
+        assertEquals(1, result.get("Engineering").size());
+        verify(asyncUserRepository, times(1)).findByDepartments(departments);
+    }
+
+    @Test
+    void getUsersByDepartments_BlankDepartment_ThrowsException() {
+        assertThrows(IllegalArgumentException.class,
+                () -> userService.getUsersByDepartments(Arrays.asList("Engineering", " ")));
+
+        verify(asyncUserRepository, never()).findByDepartments(any());
+    }
+
+    @Test
+    void reassignUsers_DepartmentTransfer_DelegatesToRepository() {
+        Reassignment reassignment = Reassignment.builder().fromDepartment("Engineering").toDepartment("Platform").build();
+        when(userRepository.reassign(reassignment)).thenReturn(ReassignmentResult.builder().updated(3).build());
+
+        ReassignmentResult result = userService.reassignUsers(reassignment);
+
+        assertEquals(3, result.getUpdated());
+        assertTrue(result.isComplete());
+    }
+
+    @Test
+    void reassignUsers_ChangedUsers_RecordsAuditEvents() {
+        Reassignment reassignment = Reassignment.builder().uuids(Arrays.asList("test-uuid-123", "test-uuid-456")).role("Manager").build();
+        when(userRepository.reassign(reassignment)).thenReturn(ReassignmentResult.builder()
+                .updated(1)
+                .skipped(1)
+                .changes(Collections.singletonList(new ReassignmentResult.Change("test-uuid-123", "role", "Software Engineer", "Manager")))
+                .build());
+
+        userService.reassignUsers(reassignment);
+
+        verify(auditService).record(AuditEvent.UPDATE, "test-uuid-123",
+                Collections.singletonMap("role", "Software Engineer"), Collections.singletonMap("role", "Manager"));
+        verifyNoMoreInteractions(auditService);
+    }
+
+    @Test
+    void reassignUsers_InvalidReassignment_ThrowsException() {
+        assertThrows(IllegalArgumentException.class, () -> userService.reassignUsers(
+                Reassignment.builder().fromDepartment("Engineering").toDepartment("Engineering").build()));
+        assertThrows(IllegalArgumentException.class, () -> userService.reassignUsers(
+                Reassignment.builder().fromDepartment("Engineering").toDepartment("Platform").role("Manager").build()));
+        assertThrows(IllegalArgumentException.class, () -> userService.reassignUsers(
+                Reassignment.builder().uuids(Arrays.asList("test-uuid-123", " ")).role("Manager").build()));
+        assertThrows(IllegalArgumentException.class, () -> userService.reassignUsers(
+                Reassignment.builder().uuids(Arrays.asList("test-uuid-123")).role("Manager").maxWriteUnits(0).build()));
+
+        verify(userRepository, never()).reassign(any());
+    }
+
 }